@@ -21,7 +21,33 @@ dependencies {
 }
 
 tasks.test {
-    useJUnitPlatform()
+    useJUnitPlatform {
+        excludeTags("performance")
+    }
+}
+
+val performanceReportDir = layout.buildDirectory.dir("reports/performance")
+
+tasks.register<Test>("performanceTest") {
+    group = "verification"
+    description = "Checks allocation and throughput against the budgets in src/test/resources/performance-baselines.properties."
+    testClassesDirs = sourceSets["test"].output.classesDirs
+    classpath = sourceSets["test"].runtimeClasspath
+    useJUnitPlatform {
+        includeTags("performance")
+    }
+    shouldRunAfter("test")
+    outputs.upToDateWhen { false }
+
+    systemProperty("performance.reportDir", performanceReportDir.get().asFile.absolutePath)
+    providers.gradlePropertiesPrefixedBy("performance.").get().forEach { (key, value) -> systemProperty(key, value) }
+
+    doFirst {
+        delete(performanceReportDir)
+    }
+    doLast {
+        logger.lifecycle("Performance report at: ${performanceReportDir.get().file("performance-report.txt").asFile.absolutePath}")
+    }
 }
 
 tasks.withType<Jar> {
@@ -80,7 +106,7 @@ tasks.register<Exec>("createCustomJRE") {
 
 
 tasks.named("shadowJar") {
-    dependsOn("test")
+    dependsOn("test", "performanceTest")
 }
 
 
@@ -117,6 +143,41 @@ java {
 }
 
 
+val toolArgs = providers.gradleProperty("args").map { it.split(" ").filter(String::isNotBlank) }.orElse(emptyList())
+
+tasks.register<JavaExec>("generateWorkload") {
+    group = "benchmark"
+    description = "Generates a reproducible synthetic workload, e.g. -Pargs=\"lines=10000 operations=500 out=workload.txt\"."
+    classpath = sourceSets["test"].runtimeClasspath
+    mainClass = "me.thiagorigonatti.capitalgains.bench.WorkloadGenerator"
+    args(toolArgs.get())
+}
+
+tasks.register<JavaExec>("loadTest") {
+    group = "benchmark"
+    description = "Runs the calculator end to end over a workload and reports throughput, allocation rate and GC time."
+    classpath = sourceSets["test"].runtimeClasspath
+    mainClass = "me.thiagorigonatti.capitalgains.bench.LoadTestHarness"
+    args(toolArgs.get())
+}
+
+tasks.register<JavaExec>("lotBenchmark") {
+    group = "benchmark"
+    description = "Measures the latency of sales on FIFO, LIFO and average-cost lot stocks as the lot queue deepens."
+    classpath = sourceSets["test"].runtimeClasspath
+    mainClass = "me.thiagorigonatti.capitalgains.bench.LotStockBenchmark"
+    args(toolArgs.get())
+}
+
+tasks.register<JavaExec>("concurrentStockBenchmark") {
+    group = "benchmark"
+    description = "Compares the lock-free ConcurrentStock with a synchronized stock under contended buys and sells."
+    classpath = sourceSets["test"].runtimeClasspath
+    mainClass = "me.thiagorigonatti.capitalgains.bench.ConcurrentStockBenchmark"
+    args(toolArgs.get())
+}
+
+
 tasks.register("buildAll") {
     dependsOn("javadoc", "test", "shadowJar", "createCustomJRE")
 }
@@ -0,0 +1,105 @@
+package me.thiagorigonatti.capitalgains.columnar;
+
+import java.math.BigDecimal;
+
+/**
+ * One batch of rows loaded by {@link ColumnarReader}, exposed as primitive columns.
+ * <p>
+ * A reader fills the same instance batch after batch, so the arrays are only valid until the next call to
+ * {@link ColumnarReader#next(ColumnarBatch)}, and only their first {@link #size()} entries are meaningful.
+ * </p>
+ *
+ * <p>This class is not thread-safe.</p>
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public final class ColumnarBatch {
+
+    long[] lineIds = new long[0];
+    int[] operationIndexes = new int[0];
+    int[] tickerIds = new int[0];
+    long[] unscaledTaxes = new long[0];
+    int size;
+    int scale;
+
+    /**
+     * Creates an empty batch to be filled by a reader.
+     */
+    public ColumnarBatch() {
+    }
+
+    void ensureCapacity(final int capacity) {
+        if (lineIds.length >= capacity) return;
+        lineIds = new long[capacity];
+        operationIndexes = new int[capacity];
+        tickerIds = new int[capacity];
+        unscaledTaxes = new long[capacity];
+    }
+
+    /**
+     * Returns the number of rows in this batch.
+     *
+     * @return the number of rows
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the line id column.
+     *
+     * @return the position of the input line of each row
+     */
+    public long[] lineIds() {
+        return lineIds;
+    }
+
+    /**
+     * Returns the operation index column.
+     *
+     * @return the position of the operation of each row in the results of its line
+     */
+    public int[] operationIndexes() {
+        return operationIndexes;
+    }
+
+    /**
+     * Returns the ticker id column, to be resolved with {@link ColumnarReader#ticker(int)}.
+     *
+     * @return the ticker id of each row, {@link ColumnarFormat#NO_TICKER} if it has none
+     */
+    public int[] tickerIds() {
+        return tickerIds;
+    }
+
+    /**
+     * Returns the tax column, unscaled.
+     *
+     * @return the tax of each row multiplied by ten to the power of {@link #scale()}
+     */
+    public long[] unscaledTaxes() {
+        return unscaledTaxes;
+    }
+
+    /**
+     * Returns the number of decimal places of the taxes.
+     *
+     * @return the scale of the tax column
+     */
+    public int scale() {
+        return scale;
+    }
+
+    /**
+     * Returns the tax of a row.
+     *
+     * @param row the position of the row
+     * @return the tax as a {@link BigDecimal}
+     */
+    public BigDecimal tax(final int row) {
+        if (row < 0 || row >= size) throw new IndexOutOfBoundsException(row);
+        return BigDecimal.valueOf(unscaledTaxes[row], scale);
+    }
+}
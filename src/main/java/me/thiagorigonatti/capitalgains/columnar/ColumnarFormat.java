@@ -0,0 +1,57 @@
+package me.thiagorigonatti.capitalgains.columnar;
+
+/**
+ * Constants of the columnar format written by {@link ColumnarWriter} and read by {@link ColumnarReader}.
+ * <p>
+ * All numbers are big-endian. A file starts with a header of four {@code int}s: {@link #MAGIC}, {@link #VERSION},
+ * the batch size and the scale of the taxes. It is followed by batches, each made of:
+ * </p>
+ * <ol>
+ *   <li>the number of rows, an {@code int} between 1 and the batch size;</li>
+ *   <li>the number of tickers first seen in the batch, an {@code int}, followed by each of them in modified UTF-8,
+ *   their ids being assigned in order of appearance from 0;</li>
+ *   <li>the columns, one after the other: line ids ({@code long}), operation indexes ({@code int}), ticker ids
+ *   ({@code int}, {@link #NO_TICKER} for operations without a ticker) and taxes ({@code long}, unscaled).</li>
+ * </ol>
+ * <p>A batch with zero rows ends the file.</p>
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public final class ColumnarFormat {
+
+    /**
+     * Private constructor to prevent instantiation of this utility class.
+     *
+     * @throws AssertionError always, as this class should not be instantiated
+     */
+    private ColumnarFormat() {
+        throw new AssertionError("Instantiation of utility class...");
+    }
+
+    /**
+     * The first four bytes of every file, {@code CGC1} in ASCII.
+     */
+    public static final int MAGIC = 0x43474331;
+
+    /**
+     * The version of the format.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * The number of rows per batch used unless another one is requested.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 4_096;
+
+    /**
+     * The ticker id of operations without a ticker.
+     */
+    public static final int NO_TICKER = -1;
+
+    /**
+     * The number of bytes taken by one row across all columns.
+     */
+    static final int ROW_BYTES = Long.BYTES + Integer.BYTES + Integer.BYTES + Long.BYTES;
+}
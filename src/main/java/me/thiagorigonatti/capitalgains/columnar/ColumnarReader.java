@@ -0,0 +1,146 @@
+package me.thiagorigonatti.capitalgains.columnar;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads files written by {@link ColumnarWriter}, one batch at a time.
+ * <p>
+ * Each batch is read with a single bulk read and its columns copied into the primitive arrays of a reused
+ * {@link ColumnarBatch}, without any per-row parsing.
+ * </p>
+ *
+ * <pre>{@code
+ * try (ColumnarReader reader = new ColumnarReader(inputStream)) {
+ *     final ColumnarBatch batch = new ColumnarBatch();
+ *     while (reader.next(batch)) {
+ *         for (int row = 0; row < batch.size(); row++) total += batch.unscaledTaxes()[row];
+ *     }
+ * }
+ * }</pre>
+ *
+ * <p>This class is not thread-safe.</p>
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class ColumnarReader implements Closeable {
+
+    private final DataInputStream dataInputStream;
+    private final int batchSize;
+    private final int scale;
+    private final ByteBuffer columns;
+    private final List<String> tickers = new ArrayList<>();
+    private boolean finished;
+
+    /**
+     * Creates a reader and reads the header.
+     *
+     * @param inputStream the source of the file
+     * @throws IOException if the header cannot be read or does not describe a supported columnar file
+     */
+    public ColumnarReader(final InputStream inputStream) throws IOException {
+        this.dataInputStream = new DataInputStream(inputStream);
+
+        if (dataInputStream.readInt() != ColumnarFormat.MAGIC) throw new StreamCorruptedException("Not a columnar file.");
+
+        final int version = dataInputStream.readInt();
+        if (version != ColumnarFormat.VERSION) throw new StreamCorruptedException("Unsupported columnar version: " + version);
+
+        this.batchSize = dataInputStream.readInt();
+        this.scale = dataInputStream.readInt();
+        if (batchSize < 1 || scale < 0) throw new StreamCorruptedException("Invalid columnar header.");
+
+        this.columns = ByteBuffer.allocate(batchSize * ColumnarFormat.ROW_BYTES);
+    }
+
+    /**
+     * Returns the maximum number of rows per batch.
+     *
+     * @return the batch size written in the header
+     */
+    public int batchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Returns the number of decimal places of the taxes.
+     *
+     * @return the scale written in the header
+     */
+    public int scale() {
+        return scale;
+    }
+
+    /**
+     * Returns the ticker with the given id, as known from the batches read so far.
+     *
+     * @param tickerId the id of a ticker
+     * @return the ticker, or {@code null} for {@link ColumnarFormat#NO_TICKER}
+     */
+    public String ticker(final int tickerId) {
+        return tickerId == ColumnarFormat.NO_TICKER ? null : tickers.get(tickerId);
+    }
+
+    /**
+     * Reads the next batch into the given one.
+     *
+     * @param batch the batch to fill
+     * @return {@code true} if a batch was read, {@code false} at the end of the file
+     * @throws IOException if the file is truncated or corrupted
+     */
+    public boolean next(final ColumnarBatch batch) throws IOException {
+        if (finished) return false;
+
+        final int rows;
+        try {
+            rows = dataInputStream.readInt();
+        } catch (EOFException e) {
+            throw new StreamCorruptedException("Columnar file ends without its last batch.");
+        }
+
+        if (rows == 0) {
+            finished = true;
+            batch.size = 0;
+            return false;
+        }
+        if (rows < 0 || rows > batchSize) throw new StreamCorruptedException("Invalid batch size: " + rows);
+
+        final int newTickers = dataInputStream.readInt();
+        for (int i = 0; i < newTickers; i++) tickers.add(dataInputStream.readUTF());
+
+        columns.clear();
+        dataInputStream.readFully(columns.array(), 0, rows * ColumnarFormat.ROW_BYTES);
+
+        batch.ensureCapacity(rows);
+        columns.asLongBuffer().get(batch.lineIds, 0, rows);
+        columns.position(columns.position() + rows * Long.BYTES);
+        columns.asIntBuffer().get(batch.operationIndexes, 0, rows);
+        columns.position(columns.position() + rows * Integer.BYTES);
+        columns.asIntBuffer().get(batch.tickerIds, 0, rows);
+        columns.position(columns.position() + rows * Integer.BYTES);
+        columns.asLongBuffer().get(batch.unscaledTaxes, 0, rows);
+
+        batch.size = rows;
+        batch.scale = scale;
+        return true;
+    }
+
+    /**
+     * Closes the underlying stream.
+     *
+     * @throws IOException if closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        dataInputStream.close();
+    }
+}
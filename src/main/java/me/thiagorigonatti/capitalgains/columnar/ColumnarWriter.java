@@ -0,0 +1,180 @@
+package me.thiagorigonatti.capitalgains.columnar;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes calculated taxes in the columnar format described by {@link ColumnarFormat}.
+ * <p>
+ * Rows are buffered in primitive arrays and written a whole batch at a time, column after column, through a single
+ * {@link ByteBuffer}, so consumers can load each column with one bulk read instead of parsing JSON. Tickers are
+ * replaced by ids, each ticker being written once, in the batch where it first appears.
+ * </p>
+ *
+ * <p>This class is not thread-safe.</p>
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class ColumnarWriter implements Closeable, Flushable {
+
+    private final DataOutputStream dataOutputStream;
+    private final int batchSize;
+    private final int scale;
+    private final long[] lineIds;
+    private final int[] operationIndexes;
+    private final int[] tickerIds;
+    private final long[] unscaledTaxes;
+    private final ByteBuffer columns;
+    private final Map<String, Integer> tickerIdsByTicker = new HashMap<>();
+    private final List<String> newTickers = new ArrayList<>();
+    private int rows;
+    private boolean closed;
+
+    /**
+     * Creates a writer with {@link ColumnarFormat#DEFAULT_BATCH_SIZE} rows per batch and taxes with two decimal places,
+     * and writes the header.
+     *
+     * @param outputStream the destination of the file
+     * @throws IOException if the header cannot be written
+     */
+    public ColumnarWriter(final OutputStream outputStream) throws IOException {
+        this(outputStream, ColumnarFormat.DEFAULT_BATCH_SIZE, 2);
+    }
+
+    /**
+     * Creates a writer and writes the header.
+     *
+     * @param outputStream the destination of the file
+     * @param batchSize    the maximum number of rows per batch
+     * @param scale        the number of decimal places of the taxes
+     * @throws IOException              if the header cannot be written
+     * @throws IllegalArgumentException if the batch size is not positive or the scale is negative
+     */
+    public ColumnarWriter(final OutputStream outputStream, final int batchSize, final int scale) throws IOException {
+        if (batchSize < 1) throw new IllegalArgumentException("The batch size must be positive: " + batchSize);
+        if (scale < 0) throw new IllegalArgumentException("The scale must not be negative: " + scale);
+
+        this.dataOutputStream = new DataOutputStream(outputStream);
+        this.batchSize = batchSize;
+        this.scale = scale;
+        this.lineIds = new long[batchSize];
+        this.operationIndexes = new int[batchSize];
+        this.tickerIds = new int[batchSize];
+        this.unscaledTaxes = new long[batchSize];
+        this.columns = ByteBuffer.allocate(batchSize * ColumnarFormat.ROW_BYTES);
+
+        dataOutputStream.writeInt(ColumnarFormat.MAGIC);
+        dataOutputStream.writeInt(ColumnarFormat.VERSION);
+        dataOutputStream.writeInt(batchSize);
+        dataOutputStream.writeInt(scale);
+    }
+
+    /**
+     * Appends the tax of one operation, writing the batch once it is full.
+     *
+     * @param lineId         the position of the input line
+     * @param operationIndex the position of the operation in the results of its line
+     * @param ticker         the ticker of the operation, possibly {@code null}
+     * @param tax            the tax of the operation
+     * @throws IOException         if a full batch cannot be written
+     * @throws ArithmeticException if the tax has more decimal places than the scale or does not fit in a {@code long}
+     */
+    public void write(final long lineId, final int operationIndex, final String ticker, final BigDecimal tax) throws IOException {
+        write(lineId, operationIndex, ticker, tax.signum() == 0 ? 0L : tax.setScale(scale, RoundingMode.UNNECESSARY).unscaledValue().longValueExact());
+    }
+
+    /**
+     * Appends the tax of one operation, already unscaled, writing the batch once it is full.
+     *
+     * @param lineId         the position of the input line
+     * @param operationIndex the position of the operation in the results of its line
+     * @param ticker         the ticker of the operation, possibly {@code null}
+     * @param unscaledTax    the tax of the operation, multiplied by ten to the power of the scale
+     * @throws IOException if a full batch cannot be written
+     */
+    public void write(final long lineId, final int operationIndex, final String ticker, final long unscaledTax) throws IOException {
+        if (closed) throw new IOException("The writer is closed.");
+
+        lineIds[rows] = lineId;
+        operationIndexes[rows] = operationIndex;
+        tickerIds[rows] = tickerId(ticker);
+        unscaledTaxes[rows] = unscaledTax;
+
+        if (++rows == batchSize) writeBatch();
+    }
+
+    private int tickerId(final String ticker) {
+        if (ticker == null) return ColumnarFormat.NO_TICKER;
+
+        Integer tickerId = tickerIdsByTicker.get(ticker);
+        if (tickerId == null) {
+            tickerId = tickerIdsByTicker.size();
+            tickerIdsByTicker.put(ticker, tickerId);
+            newTickers.add(ticker);
+        }
+        return tickerId;
+    }
+
+    private void writeBatch() throws IOException {
+        if (rows == 0) return;
+
+        dataOutputStream.writeInt(rows);
+        dataOutputStream.writeInt(newTickers.size());
+        for (String ticker : newTickers) dataOutputStream.writeUTF(ticker);
+        newTickers.clear();
+
+        columns.clear();
+        columns.asLongBuffer().put(lineIds, 0, rows);
+        columns.position(columns.position() + rows * Long.BYTES);
+        columns.asIntBuffer().put(operationIndexes, 0, rows);
+        columns.position(columns.position() + rows * Integer.BYTES);
+        columns.asIntBuffer().put(tickerIds, 0, rows);
+        columns.position(columns.position() + rows * Integer.BYTES);
+        columns.asLongBuffer().put(unscaledTaxes, 0, rows);
+        columns.position(columns.position() + rows * Long.BYTES);
+
+        dataOutputStream.write(columns.array(), 0, columns.position());
+        rows = 0;
+    }
+
+    /**
+     * Writes the pending rows as a possibly smaller batch and flushes the underlying stream.
+     *
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void flush() throws IOException {
+        writeBatch();
+        dataOutputStream.flush();
+    }
+
+    /**
+     * Writes the pending rows and the end of the file, and closes the underlying stream.
+     *
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        try {
+            writeBatch();
+            dataOutputStream.writeInt(0);
+            dataOutputStream.flush();
+        } finally {
+            closed = true;
+            dataOutputStream.close();
+        }
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * This package contains the compact columnar output format, written in fixed-size batches of line ids, operation
+ * indexes, ticker ids and scaled taxes, and the reader that loads it back column by column.
+ */
+package me.thiagorigonatti.capitalgains.columnar;
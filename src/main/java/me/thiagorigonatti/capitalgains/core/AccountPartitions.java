@@ -0,0 +1,213 @@
+package me.thiagorigonatti.capitalgains.core;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectReader;
+import me.thiagorigonatti.capitalgains.format.TaxFormatter;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Calculates lines tagged with an account on a fixed set of worker threads, keeping the positions of each account
+ * from one line to the next, and writes the results in input order.
+ * <p>
+ * Each account is hashed to one partition, and each partition is a single thread owning the stocks of its accounts
+ * in plain maps. Since an account is only ever touched by the thread of its partition, its lines are applied in input
+ * order without any lock, and partitions run in parallel. Each line is parsed, calculated and formatted on its
+ * partition; the caller only extracts the account to route it.
+ * </p>
+ *
+ * <p>Results are written by the caller in input order: every submitted line leaves a {@link Future} in a queue, and
+ * once {@value #LINES_IN_FLIGHT_PER_PARTITION} lines per partition are in flight, the oldest result is awaited and
+ * written before the next line is submitted. A failure, such as selling more shares than held, is rethrown when the
+ * result of its line is due.</p>
+ *
+ * <p>This class is not thread-safe: lines must be submitted by one thread.</p>
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+class AccountPartitions implements AutoCloseable {
+
+    /**
+     * The number of lines per partition that may be calculated ahead of the oldest line not yet written.
+     */
+    static final int LINES_IN_FLIGHT_PER_PARTITION = 256;
+
+    private final TaxCalculator taxCalculator;
+    private final ObjectReader accountLineReader;
+    private final Partition[] partitions;
+    private final ArrayDeque<Future<String>> pendingResults = new ArrayDeque<>();
+    private final Writer writer;
+    private final boolean flushEveryLine;
+    private final String lineSeparator = System.lineSeparator();
+
+    /**
+     * A line of operations of one account, e.g. {@code {"account":"A1","operations":[...]}}.
+     *
+     * @param account    the account the operations belong to
+     * @param operations the operations, in order
+     */
+    private record AccountLine(@JsonProperty("account") String account, @JsonProperty("operations") List<Operation> operations) {
+    }
+
+    /**
+     * One worker thread and the stocks of the accounts hashed to it, which only that thread reads or writes.
+     */
+    private final class Partition {
+
+        private final ExecutorService executor;
+        private final Map<String, Map<String, Stock>> stocksByAccount = new HashMap<>();
+        private final StringWriter result = new StringWriter();
+        private final JsonGenerator jsonGenerator;
+        private final String zeroTax;
+
+        private Partition(final int index) throws IOException {
+            this.executor = Executors.newSingleThreadExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "account-partition-" + index);
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.jsonGenerator = taxCalculator.getObjectMapper().getFactory().createGenerator(result).setRootValueSeparator(null);
+            this.zeroTax = taxCalculator.getTaxFormatter().format(0L);
+        }
+
+        /**
+         * Applies the operations of the line to the stocks of its account and formats the result line.
+         */
+        private String calculate(final String line) throws IOException {
+            final AccountLine accountLine = accountLineReader.readValue(line);
+            final Map<String, Stock> stocksByTicker = stocksByAccount.computeIfAbsent(accountLine.account(), account -> new HashMap<>());
+            final Predicate<Operation> operationPredicate = taxCalculator.getOperationPredicate();
+            final TaxFormatter taxFormatter = taxCalculator.getTaxFormatter();
+
+            result.getBuffer().setLength(0);
+            jsonGenerator.writeStartObject();
+            jsonGenerator.writeStringField("account", accountLine.account());
+            jsonGenerator.writeArrayFieldStart("taxes");
+
+            if (accountLine.operations() != null) {
+                for (Operation op : accountLine.operations()) {
+                    if (operationPredicate != null && !operationPredicate.test(op)) continue;
+
+                    final BigDecimal tax = taxCalculator.processOperation(op, stocksByTicker.computeIfAbsent(op.ticker(), this::newStock));
+                    jsonGenerator.writeString(tax.signum() == 0 ? zeroTax : TaxResult.of(tax).format(taxFormatter));
+                }
+            }
+
+            jsonGenerator.writeEndArray();
+            jsonGenerator.writeEndObject();
+            jsonGenerator.flush();
+            return result.toString();
+        }
+
+        private Stock newStock(final String ticker) {
+            final Supplier<? extends Stock> stockSupplier = taxCalculator.getStockSupplier();
+            final Function<String, TaxRegime> taxRegimeResolver = taxCalculator.getTaxRegimeResolver();
+
+            final Stock stock = stockSupplier.get();
+            if (taxRegimeResolver != null) stock.taxRegime(taxRegimeResolver.apply(ticker));
+            return stock;
+        }
+    }
+
+    /**
+     * Starts the worker threads.
+     *
+     * @param taxCalculator  the calculator whose supplier, resolver, predicate and formatter apply to every line
+     * @param partitions     the number of worker threads
+     * @param writer         the destination of the result lines
+     * @param flushEveryLine whether to flush the writer after each result line
+     * @throws IOException              if a result generator cannot be created
+     * @throws IllegalArgumentException if the number of partitions is not positive
+     */
+    AccountPartitions(final TaxCalculator taxCalculator, final int partitions, final Writer writer, final boolean flushEveryLine) throws IOException {
+        if (partitions < 1) throw new IllegalArgumentException("The number of partitions must be positive: " + partitions);
+
+        this.taxCalculator = taxCalculator;
+        this.accountLineReader = taxCalculator.getObjectMapper().readerFor(AccountLine.class);
+        this.writer = writer;
+        this.flushEveryLine = flushEveryLine;
+        this.partitions = new Partition[partitions];
+        for (int i = 0; i < partitions; i++) this.partitions[i] = new Partition(i);
+    }
+
+    /**
+     * Returns the partition of an account, the same for every line of the account.
+     *
+     * @param account    the account
+     * @param partitions the number of partitions
+     * @return the index of the partition, from zero to {@code partitions - 1}
+     */
+    static int partitionOf(final String account, final int partitions) {
+        final int hash = account.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), partitions);
+    }
+
+    /**
+     * Hands the line to the partition of its account, first writing the oldest result if too many lines are in
+     * flight.
+     *
+     * @param account the account of the line, which must be the one in the line
+     * @param line    the input line
+     * @throws IOException if writing fails, or if an earlier line failed to parse
+     */
+    void submit(final String account, final String line) throws IOException {
+        if (pendingResults.size() >= partitions.length * LINES_IN_FLIGHT_PER_PARTITION) writeOldest();
+
+        final Partition partition = partitions[partitionOf(account, partitions.length)];
+        pendingResults.add(partition.executor.submit(() -> partition.calculate(line)));
+    }
+
+    /**
+     * Waits for and writes the results of every line submitted, in input order.
+     *
+     * @throws IOException if writing fails, or if a line failed to parse
+     */
+    void finish() throws IOException {
+        while (!pendingResults.isEmpty()) writeOldest();
+    }
+
+    private void writeOldest() throws IOException {
+        final String result;
+        try {
+            result = pendingResults.poll().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for an account partition.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) throw ioException;
+            if (e.getCause() instanceof RuntimeException runtimeException) throw runtimeException;
+            if (e.getCause() instanceof Error error) throw error;
+            throw new IllegalStateException(e.getCause());
+        }
+
+        writer.write(result);
+        writer.write(lineSeparator);
+        if (flushEveryLine) writer.flush();
+    }
+
+    /**
+     * Stops the worker threads, abandoning the lines not yet calculated.
+     */
+    @Override
+    public void close() {
+        for (Partition partition : partitions) partition.executor.shutdownNow();
+    }
+}
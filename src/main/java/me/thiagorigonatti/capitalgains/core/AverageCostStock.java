@@ -0,0 +1,91 @@
+package me.thiagorigonatti.capitalgains.core;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * {@link LotStock} whose sales are measured against the weighted average cost, exactly as in {@link Stock}, while
+ * still keeping the individual lots, consumed oldest first.
+ * <p>
+ * It produces the same taxes as {@link Stock} and lets the lots be inspected, or the accounting method be compared
+ * with {@link FifoStock} and {@link LifoStock} over the same operations.
+ * </p>
+ *
+ * <p>This class is not thread-safe.</p>
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class AverageCostStock extends LotStock {
+
+    private BigDecimal totalCost = BigDecimal.ZERO;
+    private BigDecimal averageCost = BigDecimal.ZERO;
+
+    /**
+     * Default constructor for the {@code AverageCostStock} class, starting from an empty position taxed under
+     * {@link TaxRegime#DEFAULT}.
+     */
+    public AverageCostStock() {
+    }
+
+    /**
+     * Constructs an empty position taxed under the given regime.
+     *
+     * @param taxRegime the rules applied to sales
+     */
+    public AverageCostStock(final TaxRegime taxRegime) {
+        super(taxRegime);
+    }
+
+    /**
+     * Resets this stock to an empty position, keeping the lot buffers for reuse.
+     */
+    @Override
+    protected void reset() {
+        super.reset();
+        totalCost = BigDecimal.ZERO;
+        averageCost = BigDecimal.ZERO;
+    }
+
+    /**
+     * Returns a snapshot of this position, with the cost and average cost the sales are measured against.
+     *
+     * @return the current shares, costs and carried loss
+     */
+    @Override
+    Position snapshot() {
+        final Position position = super.snapshot();
+        return new Position(position.shares(), totalCost, averageCost, position.accumulatedLoss());
+    }
+
+    /**
+     * Processes a buy operation, appending a new lot and updating the average cost.
+     *
+     * @param quantity the number of shares to buy; must be greater than zero
+     * @param unitCost the cost per share
+     */
+    @Override
+    public void buy(final long quantity, final BigDecimal unitCost) {
+        super.buy(quantity, unitCost);
+
+        totalCost = totalCost.add(unitCost.multiply(BigDecimal.valueOf(quantity)));
+        averageCost = totalCost.divide(BigDecimal.valueOf(shares()), 2, RoundingMode.HALF_EVEN);
+    }
+
+    /**
+     * Removes the sold shares from the oldest lots, and measures them at the average cost.
+     *
+     * @param quantity the number of shares sold
+     * @return the average cost of the sold shares
+     */
+    @Override
+    protected BigDecimal release(final long quantity) {
+        final BigDecimal cost = averageCost.multiply(BigDecimal.valueOf(quantity));
+
+        takeOldest(quantity);
+        totalCost = averageCost.multiply(BigDecimal.valueOf(shares()));
+
+        return cost;
+    }
+}
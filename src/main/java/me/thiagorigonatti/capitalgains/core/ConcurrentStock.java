@@ -0,0 +1,207 @@
+package me.thiagorigonatti.capitalgains.core;
+
+import me.thiagorigonatti.capitalgains.exception.InsufficientSharesException;
+import me.thiagorigonatti.capitalgains.exception.ZeroOrNegativeQuantityException;
+import me.thiagorigonatti.capitalgains.jfr.CalculatorEvents;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Lock-free, thread-safe {@link Stock} that many producer threads can apply buy and sell operations to.
+ * <p>
+ * The whole position (shares, total cost, average cost and accumulated loss) is held in an immutable {@link State}
+ * that every operation replaces with a compare-and-set through a {@link VarHandle}, retrying if another thread won
+ * the race. Each operation therefore takes effect atomically at its successful compare-and-set, giving a single,
+ * linearizable order of operations per ticker, and produces exactly the taxes {@link Stock} would produce for
+ * that order.
+ * </p>
+ *
+ * <p>To share a position between producers, create one instance and call {@link #buy(long, BigDecimal)} and
+ * {@link #sell(long, BigDecimal)} on it directly from each thread. Passing it to the calculator, e.g.
+ * {@code new TaxCalculator.Builder().with(ConcurrentStock::new)}, gives each line its own instance per ticker, so
+ * nothing is shared and the result is the same as with {@link Stock}. Sales are settled by
+ * {@link TaxRegime#settle(BigDecimal, BigDecimal, BigDecimal, BigDecimal, BigDecimal)} with the stock's regime,
+ * and subclasses may still override {@link #taxRate()} and {@link #threshold()}.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class ConcurrentStock extends Stock {
+
+    private static final VarHandle STATE;
+
+    static {
+        try {
+            STATE = MethodHandles.lookup().findVarHandle(ConcurrentStock.class, "state", State.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Immutable snapshot of a stock position.
+     *
+     * @param totalCost       the total cost of the shares held
+     * @param totalShares     the number of shares held
+     * @param averageCost     the weighted average cost per share
+     * @param accumulatedLoss the losses not yet offset against gains
+     */
+    public record State(BigDecimal totalCost, long totalShares, BigDecimal averageCost, BigDecimal accumulatedLoss) {
+
+        /**
+         * The position of a stock that was never traded.
+         */
+        public static final State EMPTY = new State(BigDecimal.ZERO, 0L, BigDecimal.ZERO, BigDecimal.ZERO);
+    }
+
+    private volatile State state = State.EMPTY;
+
+    /**
+     * Default constructor for the {@code ConcurrentStock} class, starting from an empty position taxed under
+     * {@link TaxRegime#DEFAULT}.
+     */
+    public ConcurrentStock() {
+    }
+
+    /**
+     * Constructs an empty position taxed under the given regime.
+     *
+     * @param taxRegime the rules applied to sales
+     */
+    public ConcurrentStock(final TaxRegime taxRegime) {
+        super(taxRegime);
+    }
+
+    /**
+     * Returns the current position.
+     *
+     * @return the latest state published by a buy or sell
+     */
+    public State state() {
+        return state;
+    }
+
+    /**
+     * Resets this stock to an empty position. Not meant to race with buy or sell operations.
+     */
+    @Override
+    protected void reset() {
+        super.reset();
+        state = State.EMPTY;
+    }
+
+    /**
+     * Returns a snapshot of the current position.
+     *
+     * @return the shares, costs and carried loss of the latest state
+     */
+    @Override
+    Position snapshot() {
+        final State current = state;
+        return new Position(current.totalShares(), current.totalCost(), current.averageCost(), current.accumulatedLoss());
+    }
+
+    /**
+     * Returns the number of shares in the latest state.
+     *
+     * @return the number of shares held
+     */
+    @Override
+    protected long shares() {
+        return state.totalShares();
+    }
+
+    /**
+     * Atomically removes shares being sold at the average cost and returns their cost basis.
+     *
+     * @param quantity the number of shares sold; must not exceed current holdings
+     * @return the cost basis of the sold shares
+     * @throws InsufficientSharesException if the shares were sold by another thread in the meantime
+     */
+    @Override
+    protected BigDecimal release(final long quantity) {
+        State current;
+        State next;
+        do {
+            current = state;
+            if (quantity > current.totalShares()) throw new InsufficientSharesException(quantity, current.totalShares());
+
+            final long totalShares = current.totalShares() - quantity;
+            final BigDecimal totalCost = current.averageCost().multiply(BigDecimal.valueOf(totalShares));
+            next = new State(totalCost, totalShares, current.averageCost(), current.accumulatedLoss());
+        } while (!STATE.compareAndSet(this, current, next));
+
+        return current.averageCost().multiply(BigDecimal.valueOf(quantity));
+    }
+
+    /**
+     * Atomically processes a buy operation, increasing the number of shares and updating the average cost.
+     *
+     * @param quantity the number of shares to buy; must be greater than zero
+     * @param unitCost the cost per share
+     * @throws ZeroOrNegativeQuantityException if the quantity is less than or equal to zero
+     */
+    @Override
+    public void buy(final long quantity, final BigDecimal unitCost) {
+        if (quantity <= 0) throw new ZeroOrNegativeQuantityException(quantity);
+
+        final BigDecimal valorPago = unitCost.multiply(BigDecimal.valueOf(quantity));
+
+        State current;
+        State next;
+        do {
+            current = state;
+            final BigDecimal totalCost = current.totalCost().add(valorPago);
+            final long totalShares = current.totalShares() + quantity;
+            final BigDecimal averageCost = totalCost.divide(BigDecimal.valueOf(totalShares), 2, RoundingMode.HALF_EVEN);
+            next = new State(totalCost, totalShares, averageCost, current.accumulatedLoss());
+        } while (!STATE.compareAndSet(this, current, next));
+    }
+
+    /**
+     * Atomically processes a sell operation, updating shares and calculating the capital gains tax against the
+     * position as of the moment the sale takes effect.
+     *
+     * @param quantity the number of shares to sell; must be greater than zero and not exceed current holdings
+     * @param unitCost the sale price per share
+     * @return the amount of tax due from the operation, rounded to two decimal places
+     * @throws ZeroOrNegativeQuantityException if the quantity is less than or equal to zero
+     * @throws InsufficientSharesException     if attempting to sell more shares than currently owned
+     */
+    @Override
+    public BigDecimal sell(final long quantity, final BigDecimal unitCost) {
+        if (quantity <= 0) throw new ZeroOrNegativeQuantityException(quantity);
+
+        final BigDecimal saleTotal = unitCost.multiply(BigDecimal.valueOf(quantity));
+
+        State current;
+        State next;
+        BigDecimal profit;
+        BigDecimal tax;
+        do {
+            current = state;
+            if (quantity > current.totalShares()) throw new InsufficientSharesException(quantity, current.totalShares());
+
+            final BigDecimal cost = current.averageCost().multiply(BigDecimal.valueOf(quantity));
+            profit = saleTotal.subtract(cost);
+
+            final TaxRegime.Settlement settlement = taxRegime().settle(saleTotal, profit, current.accumulatedLoss(), threshold(), taxRate());
+            tax = settlement.tax();
+
+            final long totalShares = current.totalShares() - quantity;
+            final BigDecimal totalCost = current.averageCost().multiply(BigDecimal.valueOf(totalShares));
+            next = new State(totalCost, totalShares, current.averageCost(), settlement.accumulatedLoss());
+        } while (!STATE.compareAndSet(this, current, next));
+
+        if (profit.signum() < 0 && taxRegime().carriesLosses()) CalculatorEvents.lossCarried(quantity, unitCost, profit.abs(), next.accumulatedLoss());
+        else if (tax.signum() > 0) CalculatorEvents.taxableSell(quantity, unitCost, profit, current.accumulatedLoss(), tax);
+
+        return tax;
+    }
+}
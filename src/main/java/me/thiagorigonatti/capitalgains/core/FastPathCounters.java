@@ -0,0 +1,24 @@
+package me.thiagorigonatti.capitalgains.core;
+
+import java.util.Locale;
+
+/**
+ * How often the lines calculated by a {@link TaxCalculator} took each path of its {@link LineClassifier}.
+ *
+ * @param buyOnlyLines       the lines of buys only, answered with zero taxes and no stock arithmetic
+ * @param exemptLines        the lines with sells, none of them above the threshold, answered the same way
+ * @param fullLines          the lines with a sell above the threshold, calculated on the stocks
+ * @param replayedOperations the operations of full lines that were absorbed before their first taxable sell and
+ *                           then replayed on the stocks
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public record FastPathCounters(long buyOnlyLines, long exemptLines, long fullLines, long replayedOperations) {
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "Fast paths: buy-only lines=%d exempt lines=%d full lines=%d replayed operations=%d",
+                buyOnlyLines, exemptLines, fullLines, replayedOperations);
+    }
+}
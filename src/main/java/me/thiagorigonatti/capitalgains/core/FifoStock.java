@@ -0,0 +1,43 @@
+package me.thiagorigonatti.capitalgains.core;
+
+import java.math.BigDecimal;
+
+/**
+ * {@link LotStock} whose sales consume the oldest lots first (first in, first out), so the cost basis of a sale is
+ * the price actually paid for the earliest shares still held.
+ *
+ * <p>This class is not thread-safe.</p>
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class FifoStock extends LotStock {
+
+    /**
+     * Default constructor for the {@code FifoStock} class, starting from an empty position taxed under
+     * {@link TaxRegime#DEFAULT}.
+     */
+    public FifoStock() {
+    }
+
+    /**
+     * Constructs an empty position taxed under the given regime.
+     *
+     * @param taxRegime the rules applied to sales
+     */
+    public FifoStock(final TaxRegime taxRegime) {
+        super(taxRegime);
+    }
+
+    /**
+     * Removes the sold shares from the oldest lots.
+     *
+     * @param quantity the number of shares sold
+     * @return the cost of the oldest shares held
+     */
+    @Override
+    protected BigDecimal release(final long quantity) {
+        return takeOldest(quantity);
+    }
+}
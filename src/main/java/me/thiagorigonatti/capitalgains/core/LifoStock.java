@@ -0,0 +1,43 @@
+package me.thiagorigonatti.capitalgains.core;
+
+import java.math.BigDecimal;
+
+/**
+ * {@link LotStock} whose sales consume the newest lots first (last in, first out), so the cost basis of a sale is
+ * the price actually paid for the latest shares bought.
+ *
+ * <p>This class is not thread-safe.</p>
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class LifoStock extends LotStock {
+
+    /**
+     * Default constructor for the {@code LifoStock} class, starting from an empty position taxed under
+     * {@link TaxRegime#DEFAULT}.
+     */
+    public LifoStock() {
+    }
+
+    /**
+     * Constructs an empty position taxed under the given regime.
+     *
+     * @param taxRegime the rules applied to sales
+     */
+    public LifoStock(final TaxRegime taxRegime) {
+        super(taxRegime);
+    }
+
+    /**
+     * Removes the sold shares from the newest lots.
+     *
+     * @param quantity the number of shares sold
+     * @return the cost of the newest shares held
+     */
+    @Override
+    protected BigDecimal release(final long quantity) {
+        return takeNewest(quantity);
+    }
+}
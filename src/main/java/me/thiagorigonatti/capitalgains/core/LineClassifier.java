@@ -0,0 +1,151 @@
+package me.thiagorigonatti.capitalgains.core;
+
+import me.thiagorigonatti.capitalgains.exception.InsufficientSharesException;
+import me.thiagorigonatti.capitalgains.exception.InvalidOperationException;
+import me.thiagorigonatti.capitalgains.exception.ZeroOrNegativeQuantityException;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Classifies the operations of a line as they are parsed, absorbing those that cannot be taxed without touching any
+ * {@link Stock}.
+ * <p>
+ * As long as a line holds only buys and sells whose total does not exceed the threshold of their regime, every tax of
+ * the line is zero, whatever the cost basis and the carried loss, and the positions are dropped at the end of the
+ * line. Such operations are only validated as {@link Stock} would, against a {@code long} count of shares per ticker,
+ * and kept. The first sell above the threshold ends the fast path: the caller replays the absorbed operations on the
+ * stocks and goes on with the full arithmetic. Buy-only lines and lines of exempt sells never do any
+ * {@link BigDecimal} arithmetic beyond the sale totals.
+ * </p>
+ *
+ * <p>This class is not thread-safe; each {@link LineContext} keeps its own instance.</p>
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+class LineClassifier {
+
+    private final Map<String, Integer> slotsByTicker = new HashMap<>();
+    private long[] shares = new long[8];
+    private BigDecimal[] thresholds = new BigDecimal[8];
+    private Operation[] absorbed = new Operation[16];
+    private Function<String, TaxRegime> taxRegimeResolver;
+    private int size;
+    private boolean sells;
+    private boolean fallenBack;
+
+    /**
+     * Prepares the classifier for a new line.
+     *
+     * @param taxRegimeResolver the regime of each ticker, or {@code null} for {@link TaxRegime#DEFAULT}
+     */
+    void begin(final Function<String, TaxRegime> taxRegimeResolver) {
+        this.taxRegimeResolver = taxRegimeResolver;
+        this.slotsByTicker.clear();
+        Arrays.fill(this.absorbed, 0, this.size, null);
+        this.size = 0;
+        this.sells = false;
+        this.fallenBack = false;
+    }
+
+    /**
+     * Validates the operation and absorbs it if its tax is zero whatever the state of its stock.
+     *
+     * @param op the next operation of the line
+     * @return {@code true} if the operation was absorbed, {@code false} if it needs the full arithmetic, in which
+     * case the operation is left untouched for the caller to process
+     * @throws InvalidOperationException       if the operation type is not recognized
+     * @throws ZeroOrNegativeQuantityException if the quantity is less than or equal to zero
+     * @throws InsufficientSharesException     if a sale exceeds the shares held
+     */
+    boolean absorb(final Operation op) {
+        final long quantity = op.quantity();
+        final BigDecimal unitCost = op.unitCost();
+
+        switch (op.operation()) {
+            case "buy" -> {
+                if (quantity <= 0) throw new ZeroOrNegativeQuantityException(quantity);
+                if (unitCost == null) return false;
+                final int slot = slotFor(op.ticker());
+                shares[slot] += quantity;
+            }
+            case "sell" -> {
+                if (quantity <= 0) throw new ZeroOrNegativeQuantityException(quantity);
+                final int slot = slotFor(op.ticker());
+                if (quantity > shares[slot]) throw new InsufficientSharesException(quantity, shares[slot]);
+                if (unitCost == null || unitCost.multiply(BigDecimal.valueOf(quantity)).compareTo(thresholds[slot]) > 0) return false;
+                shares[slot] -= quantity;
+                sells = true;
+            }
+            default -> throw new InvalidOperationException(op.operation());
+        }
+
+        if (size == absorbed.length) absorbed = Arrays.copyOf(absorbed, size << 1);
+        absorbed[size++] = op;
+        return true;
+    }
+
+    private int slotFor(final String ticker) {
+        final Integer slot = slotsByTicker.get(ticker);
+        if (slot != null) return slot;
+
+        final int newSlot = slotsByTicker.size();
+        if (newSlot == shares.length) {
+            shares = Arrays.copyOf(shares, newSlot << 1);
+            thresholds = Arrays.copyOf(thresholds, newSlot << 1);
+        }
+        shares[newSlot] = 0;
+        thresholds[newSlot] = (taxRegimeResolver != null ? taxRegimeResolver.apply(ticker) : TaxRegime.DEFAULT).threshold();
+        slotsByTicker.put(ticker, newSlot);
+        return newSlot;
+    }
+
+    /**
+     * Ends the fast path for the rest of the line.
+     */
+    void fallBack() {
+        fallenBack = true;
+    }
+
+    /**
+     * Returns whether the line left the fast path.
+     *
+     * @return {@code true} after {@link #fallBack()}
+     */
+    boolean isFallenBack() {
+        return fallenBack;
+    }
+
+    /**
+     * Returns whether any absorbed operation is a sell.
+     *
+     * @return {@code false} if every absorbed operation is a buy
+     */
+    boolean hasSells() {
+        return sells;
+    }
+
+    /**
+     * Returns the number of operations absorbed.
+     *
+     * @return the number of operations on the fast path
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns an absorbed operation, in line order.
+     *
+     * @param index the position of the operation among the absorbed ones
+     * @return the operation
+     */
+    Operation get(final int index) {
+        return absorbed[index];
+    }
+}
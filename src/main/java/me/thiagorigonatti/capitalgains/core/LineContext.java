@@ -0,0 +1,111 @@
+package me.thiagorigonatti.capitalgains.core;
+
+import com.fasterxml.jackson.core.JsonFactory;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Per-thread scratch state reused by {@link TaxCalculator} from one line to the next.
+ * <p>
+ * Instead of allocating a new map for every line, a context keeps the ticker-to-stock map (cleared, not
+ * reallocated). It also keeps the {@link OperationParser} and its scratch buffers, and the {@link LineClassifier}.
+ * </p>
+ * <p>
+ * Only the stocks the calculator creates itself, those of its default supplier, are pooled: they are
+ * {@link Stock#reset() reset} and handed out again. Stocks of any other supplier are taken from the supplier once
+ * per ticker per line and never reset, since a user subclass may keep state {@code reset()} does not know about and
+ * a supplier may hand out an instance shared with other lines.
+ * </p>
+ *
+ * <p>This class is not thread-safe; {@link TaxCalculator} keeps one instance per thread.</p>
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+class LineContext {
+
+    private static final int MAX_POOLED_STOCKS = 1_024;
+
+    private final Map<String, Stock> stocksByTicker = new HashMap<>();
+    private final ArrayDeque<Stock> pooledStocks = new ArrayDeque<>();
+    private final LineClassifier lineClassifier = new LineClassifier();
+    private Supplier<? extends Stock> stockSupplier;
+    private Function<String, TaxRegime> taxRegimeResolver;
+    private OperationParser operationParser;
+    private JsonFactory jsonFactory;
+
+    /**
+     * Prepares the context for a new line, returning the stocks used by the previous line to the pool when they come
+     * from the default supplier.
+     *
+     * @param stockSupplier     the supplier of new stocks; the pool is dropped if it differs from the previous one
+     * @param taxRegimeResolver the regime of each ticker, or {@code null} to keep the regime of each stock; the pool
+     *                          is dropped if it differs from the previous one
+     */
+    void begin(final Supplier<? extends Stock> stockSupplier, final Function<String, TaxRegime> taxRegimeResolver) {
+        if (this.stockSupplier != stockSupplier || this.taxRegimeResolver != taxRegimeResolver) {
+            this.stockSupplier = stockSupplier;
+            this.taxRegimeResolver = taxRegimeResolver;
+            this.pooledStocks.clear();
+            this.stocksByTicker.clear();
+            return;
+        }
+
+        if (stockSupplier != TaxCalculator.DEFAULT_STOCK_SUPPLIER) {
+            stocksByTicker.clear();
+            return;
+        }
+
+        for (Stock stock : stocksByTicker.values()) {
+            if (pooledStocks.size() == MAX_POOLED_STOCKS) break;
+            stock.reset();
+            pooledStocks.push(stock);
+        }
+        stocksByTicker.clear();
+    }
+
+    /**
+     * Returns the stock of the given ticker for the current line, taking it from the pool or the supplier on first use
+     * and setting its regime if a resolver is configured.
+     *
+     * @param ticker the ticker, possibly {@code null}
+     * @return the stock holding the position of the ticker
+     */
+    Stock stockFor(final String ticker) {
+        Stock stock = stocksByTicker.get(ticker);
+        if (stock == null) {
+            stock = pooledStocks.isEmpty() ? stockSupplier.get() : pooledStocks.pop();
+            if (taxRegimeResolver != null) stock.taxRegime(taxRegimeResolver.apply(ticker));
+            stocksByTicker.put(ticker, stock);
+        }
+        return stock;
+    }
+
+    /**
+     * Returns the classifier of this thread, to be {@link LineClassifier#begin(Function) begun} for each line.
+     *
+     * @return the line classifier
+     */
+    LineClassifier lineClassifier() {
+        return lineClassifier;
+    }
+
+    /**
+     * Returns the parser of this thread, creating it on first use or when the factory changes.
+     *
+     * @param jsonFactory the factory used to tokenize lines
+     * @return the operation parser
+     */
+    OperationParser operationParser(final JsonFactory jsonFactory) {
+        if (this.jsonFactory != jsonFactory) {
+            this.jsonFactory = jsonFactory;
+            this.operationParser = new OperationParser(jsonFactory);
+        }
+        return operationParser;
+    }
+}
@@ -0,0 +1,166 @@
+package me.thiagorigonatti.capitalgains.core;
+
+import me.thiagorigonatti.capitalgains.io.CompressedStreams;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link Flow.Publisher} over the line-oriented mode of {@link TaxCalculator}: each input line is an independent
+ * simulation and is published as the {@link TaxResults} that {@link TaxCalculator#run()} would have written for it.
+ * <p>
+ * Lines are read lazily, only when the subscriber has outstanding demand, so a slow subscriber slows down reading
+ * instead of having results queue up in memory. Reading and calculating happen on the given {@link Executor}, one
+ * task at a time. As in {@link TaxCalculator#run()}, the stream ends at the end of the input or at the first blank
+ * line, and gzip input is decoded transparently.
+ * </p>
+ *
+ * <p>The input stream can be read only once, so a publisher accepts a single subscriber; it is closed when the
+ * stream completes, fails or is cancelled.</p>
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class LinePublisher implements Flow.Publisher<TaxResults> {
+
+    private final TaxCalculator taxCalculator;
+    private final InputStream inputStream;
+    private final int bufferSize;
+    private final Executor executor;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    /**
+     * Creates a publisher reading lines from the given stream.
+     *
+     * @param taxCalculator the calculator computing the taxes of each line
+     * @param inputStream   the input lines, possibly gzip-compressed
+     * @param bufferSize    the size of the read buffer
+     * @param executor      the executor reading and calculating lines
+     */
+    LinePublisher(final TaxCalculator taxCalculator, final InputStream inputStream, final int bufferSize, final Executor executor) {
+        this.taxCalculator = taxCalculator;
+        this.inputStream = inputStream;
+        this.bufferSize = bufferSize;
+        this.executor = executor;
+    }
+
+    /**
+     * Subscribes the consumer of the results. Only one subscriber is accepted; others receive an
+     * {@link IllegalStateException}.
+     *
+     * @param subscriber the subscriber
+     */
+    @Override
+    public void subscribe(final Flow.Subscriber<? super TaxResults> subscriber) {
+        Objects.requireNonNull(subscriber);
+
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(TaxProcessor.CancelledSubscription.INSTANCE);
+            subscriber.onError(new IllegalStateException("LinePublisher accepts a single subscriber."));
+            return;
+        }
+
+        subscriber.onSubscribe(new LineSubscription(subscriber));
+    }
+
+    private final class LineSubscription implements Flow.Subscription, Runnable {
+
+        private final Flow.Subscriber<? super TaxResults> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger pendingDrains = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile Throwable invalidRequest;
+        private BufferedReader bufferedReader;
+
+        private LineSubscription(final Flow.Subscriber<? super TaxResults> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(final long n) {
+            if (n <= 0) invalidRequest = new IllegalArgumentException("Requested " + n + " items; demand must be positive.");
+            else demand.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+
+            if (pendingDrains.getAndIncrement() == 0) executor.execute(this);
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            if (pendingDrains.getAndIncrement() == 0) executor.execute(this);
+        }
+
+        /**
+         * Emits as many lines as requested, then leaves until the next request.
+         */
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                if (cancelled) {
+                    close();
+                    return;
+                }
+                if (invalidRequest != null) {
+                    fail(invalidRequest);
+                    return;
+                }
+
+                long emitted = 0;
+                final long requested = demand.get();
+
+                while (emitted != requested && !cancelled) {
+                    final TaxResults taxResults;
+                    try {
+                        final String line = reader().readLine();
+                        if (line == null || line.trim().isEmpty()) {
+                            cancelled = true;
+                            close();
+                            subscriber.onComplete();
+                            return;
+                        }
+                        taxResults = taxCalculator.calculate(line);
+                    } catch (IOException | RuntimeException e) {
+                        fail(e);
+                        return;
+                    }
+                    subscriber.onNext(taxResults);
+                    emitted++;
+                }
+
+                if (emitted != 0 && requested != Long.MAX_VALUE) demand.addAndGet(-emitted);
+                missed = pendingDrains.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private BufferedReader reader() throws IOException {
+            if (bufferedReader == null) {
+                bufferedReader = new BufferedReader(new InputStreamReader(CompressedStreams.decoding(inputStream, bufferSize)), bufferSize);
+            }
+            return bufferedReader;
+        }
+
+        private void fail(final Throwable throwable) {
+            cancelled = true;
+            close();
+            subscriber.onError(throwable);
+        }
+
+        private void close() {
+            try {
+                if (bufferedReader != null) bufferedReader.close();
+                else inputStream.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
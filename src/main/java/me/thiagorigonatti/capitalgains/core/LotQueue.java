@@ -0,0 +1,174 @@
+package me.thiagorigonatti.capitalgains.core;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * Double-ended queue of purchase lots, each a quantity bought at a unit cost, kept in primitive ring buffers.
+ * <p>
+ * Lots are appended at the tail in purchase order, and shares are taken from the head (oldest first) or from the tail
+ * (newest first). A partially consumed lot is shrunk in place, and a fully consumed lot is dropped by moving an index,
+ * so taking shares costs one step per lot it touches. Since a lot is dropped at most once, a sale costs amortized
+ * {@code O(1)} however many lots are queued. The buffers double when full, also amortized {@code O(1)} per lot.
+ * </p>
+ *
+ * <p>Unit costs are stored as their unscaled value and scale, and turned back into {@link BigDecimal} only for the
+ * lots a sale touches, so costs are exact. The rare unit cost whose unscaled value does not fit in a {@code long} is
+ * kept as is in a side buffer, allocated on first use.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+class LotQueue {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] quantities = new long[INITIAL_CAPACITY];
+    private long[] unscaledCosts = new long[INITIAL_CAPACITY];
+    private int[] scales = new int[INITIAL_CAPACITY];
+    private BigDecimal[] wideCosts;
+    private int head;
+    private int size;
+    private long shares;
+
+    /**
+     * Returns the number of lots in the queue.
+     *
+     * @return the number of lots not fully consumed
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of shares over all lots.
+     *
+     * @return the number of shares held
+     */
+    long shares() {
+        return shares;
+    }
+
+    /**
+     * Returns the cost of the shares over all lots, at the prices they were bought for.
+     *
+     * @return the total cost of the shares held
+     */
+    BigDecimal cost() {
+        final int mask = quantities.length - 1;
+        BigDecimal cost = BigDecimal.ZERO;
+        for (int i = 0; i < size; i++) cost = cost.add(costOf((head + i) & mask, quantities[(head + i) & mask]));
+        return cost;
+    }
+
+    /**
+     * Appends a lot at the tail.
+     *
+     * @param quantity the number of shares bought, greater than zero
+     * @param unitCost the cost per share
+     */
+    void add(final long quantity, final BigDecimal unitCost) {
+        if (size == quantities.length) grow();
+
+        final int tail = (head + size) & (quantities.length - 1);
+        final boolean wide = unitCost.unscaledValue().bitLength() > 63;
+        if (wide && wideCosts == null) wideCosts = new BigDecimal[quantities.length];
+        if (wideCosts != null) wideCosts[tail] = wide ? unitCost : null;
+
+        quantities[tail] = quantity;
+        unscaledCosts[tail] = wide ? 0L : unitCost.unscaledValue().longValue();
+        scales[tail] = unitCost.scale();
+        size++;
+        shares += quantity;
+    }
+
+    private void grow() {
+        final int capacity = quantities.length << 1;
+        quantities = unwrap(quantities, new long[capacity]);
+        unscaledCosts = unwrap(unscaledCosts, new long[capacity]);
+        scales = unwrap(scales, new int[capacity]);
+        if (wideCosts != null) wideCosts = unwrap(wideCosts, new BigDecimal[capacity]);
+        head = 0;
+    }
+
+    /**
+     * Copies the lots of a full buffer to the start of a larger one, in queue order.
+     */
+    private <T> T unwrap(final T buffer, final T grown) {
+        final int firstPart = size - head;
+        System.arraycopy(buffer, head, grown, 0, firstPart);
+        System.arraycopy(buffer, 0, grown, firstPart, head);
+        return grown;
+    }
+
+    /**
+     * Takes shares from the oldest lots, first in first out.
+     *
+     * @param quantity the number of shares to take, not more than {@link #shares()}
+     * @return the cost of the shares taken
+     */
+    BigDecimal takeFirst(final long quantity) {
+        final int mask = quantities.length - 1;
+        BigDecimal cost = BigDecimal.ZERO;
+        long remaining = quantity;
+
+        while (remaining > 0) {
+            final long taken = Math.min(remaining, quantities[head]);
+            cost = cost.add(costOf(head, taken));
+            remaining -= taken;
+
+            if (taken == quantities[head]) {
+                head = (head + 1) & mask;
+                size--;
+            } else {
+                quantities[head] -= taken;
+            }
+        }
+
+        shares -= quantity;
+        return cost;
+    }
+
+    /**
+     * Takes shares from the newest lots, last in first out.
+     *
+     * @param quantity the number of shares to take, not more than {@link #shares()}
+     * @return the cost of the shares taken
+     */
+    BigDecimal takeLast(final long quantity) {
+        final int mask = quantities.length - 1;
+        BigDecimal cost = BigDecimal.ZERO;
+        long remaining = quantity;
+
+        while (remaining > 0) {
+            final int tail = (head + size - 1) & mask;
+            final long taken = Math.min(remaining, quantities[tail]);
+            cost = cost.add(costOf(tail, taken));
+            remaining -= taken;
+
+            if (taken == quantities[tail]) size--;
+            else quantities[tail] -= taken;
+        }
+
+        shares -= quantity;
+        return cost;
+    }
+
+    private BigDecimal costOf(final int index, final long quantity) {
+        final BigDecimal unitCost = wideCosts != null && wideCosts[index] != null ? wideCosts[index] : BigDecimal.valueOf(unscaledCosts[index], scales[index]);
+        return unitCost.multiply(BigDecimal.valueOf(quantity));
+    }
+
+    /**
+     * Removes every lot, keeping the buffers.
+     */
+    void clear() {
+        if (wideCosts != null) Arrays.fill(wideCosts, null);
+        head = 0;
+        size = 0;
+        shares = 0;
+    }
+}
@@ -0,0 +1,136 @@
+package me.thiagorigonatti.capitalgains.core;
+
+import me.thiagorigonatti.capitalgains.exception.InsufficientSharesException;
+import me.thiagorigonatti.capitalgains.exception.ZeroOrNegativeQuantityException;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * {@link Stock} that keeps every purchase as a separate lot, for accounting methods whose cost basis depends on which
+ * shares are sold.
+ * <p>
+ * Lots are kept in a {@link LotQueue} in purchase order, and subclasses choose which lots a sale consumes by
+ * implementing {@link #release(long)} with {@link #takeOldest(long)} or {@link #takeNewest(long)}. Losses, the
+ * exemption threshold and the tax rate follow the {@link TaxRegime} exactly as in {@link Stock}; only the cost basis
+ * differs.
+ * </p>
+ *
+ * <p>Subclasses plug into the calculator like any other stock, e.g.
+ * {@code new TaxCalculator.Builder().with(FifoStock::new)}.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public abstract class LotStock extends Stock {
+
+    private final LotQueue lots = new LotQueue();
+
+    /**
+     * Constructs an empty position taxed under {@link TaxRegime#DEFAULT}.
+     */
+    protected LotStock() {
+    }
+
+    /**
+     * Constructs an empty position taxed under the given regime.
+     *
+     * @param taxRegime the rules applied to sales
+     */
+    protected LotStock(final TaxRegime taxRegime) {
+        super(taxRegime);
+    }
+
+    /**
+     * Resets this stock to an empty position, keeping the lot buffers for reuse.
+     */
+    @Override
+    protected void reset() {
+        super.reset();
+        lots.clear();
+    }
+
+    /**
+     * Returns the number of lots not fully sold.
+     *
+     * @return the number of lots held
+     */
+    public int lots() {
+        return lots.size();
+    }
+
+    /**
+     * Returns the number of shares over all lots.
+     *
+     * @return the number of shares held
+     */
+    @Override
+    protected long shares() {
+        return lots.shares();
+    }
+
+    /**
+     * Returns a snapshot of this position, with the shares and cost summed over the lots and the average cost
+     * derived from them.
+     *
+     * @return the current shares, costs and carried loss
+     */
+    @Override
+    Position snapshot() {
+        final long shares = lots.shares();
+        final BigDecimal cost = lots.cost();
+        final BigDecimal averageCost = shares == 0 ? BigDecimal.ZERO : cost.divide(BigDecimal.valueOf(shares), 2, RoundingMode.HALF_EVEN);
+        return new Position(shares, cost, averageCost, super.snapshot().accumulatedLoss());
+    }
+
+    /**
+     * Processes a buy operation, appending a new lot.
+     *
+     * @param quantity the number of shares to buy; must be greater than zero
+     * @param unitCost the cost per share
+     * @throws ZeroOrNegativeQuantityException if the quantity is less than or equal to zero
+     */
+    @Override
+    public void buy(final long quantity, final BigDecimal unitCost) {
+        if (quantity <= 0) throw new ZeroOrNegativeQuantityException(quantity);
+        lots.add(quantity, unitCost);
+    }
+
+    /**
+     * Processes a sell operation, taking the sold shares from the lots chosen by {@link #release(long)}, and
+     * calculates its tax as {@link Stock} does.
+     *
+     * @param quantity the number of shares to sell; must be greater than zero and not exceed current holdings
+     * @param unitCost the sale price per share
+     * @return the amount of tax due from the operation
+     * @throws ZeroOrNegativeQuantityException if the quantity is less than or equal to zero
+     * @throws InsufficientSharesException     if attempting to sell more shares than currently owned
+     */
+    @Override
+    public BigDecimal sell(final long quantity, final BigDecimal unitCost) {
+        return super.sell(quantity, unitCost);
+    }
+
+    /**
+     * Removes shares from the oldest lots, partially consuming the last lot touched if needed.
+     *
+     * @param quantity the number of shares to remove, not more than {@link #shares()}
+     * @return the cost of the removed shares at the prices they were bought for
+     */
+    protected final BigDecimal takeOldest(final long quantity) {
+        return lots.takeFirst(quantity);
+    }
+
+    /**
+     * Removes shares from the newest lots, partially consuming the last lot touched if needed.
+     *
+     * @param quantity the number of shares to remove, not more than {@link #shares()}
+     * @return the cost of the removed shares at the prices they were bought for
+     */
+    protected final BigDecimal takeNewest(final long quantity) {
+        return lots.takeLast(quantity);
+    }
+}
@@ -0,0 +1,202 @@
+package me.thiagorigonatti.capitalgains.core;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Declarative filter over operations, based on ticker, operation type and quantity range.
+ * <p>
+ * Unlike an arbitrary {@link Predicate}, this filter can be evaluated by the parser directly on the raw JSON tokens,
+ * so operations that do not match are skipped without materializing their {@link String} and
+ * {@link java.math.BigDecimal} values. It is still a {@link Predicate} and can be passed to
+ * {@link TaxCalculator.Builder#onlyFor(Predicate)}, which detects it and pushes it down into the parser.
+ * </p>
+ *
+ * <p>Criteria left unset accept every operation. Instances are immutable and thread-safe.</p>
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public final class OperationFilter implements Predicate<Operation> {
+
+    private final Set<String> tickers;
+    private final char[][] tickerTable;
+    private final boolean acceptBuy;
+    private final boolean acceptSell;
+    private final boolean acceptOtherOperations;
+    private final long minQuantity;
+    private final long maxQuantity;
+
+    private OperationFilter(final Builder builder) {
+        this.tickers = Set.copyOf(builder.tickers);
+        this.tickerTable = builder.tickers.isEmpty() ? null : hashTable(builder.tickers);
+        this.acceptOtherOperations = builder.operations.isEmpty();
+        this.acceptBuy = acceptOtherOperations || builder.operations.contains("buy");
+        this.acceptSell = acceptOtherOperations || builder.operations.contains("sell");
+        this.minQuantity = builder.minQuantity;
+        this.maxQuantity = builder.maxQuantity;
+    }
+
+    private static char[][] hashTable(final Set<String> tickers) {
+        final char[][] table = new char[Integer.highestOneBit(tickers.size() * 2 + 1) << 1][];
+        for (String ticker : tickers) {
+            int slot = ticker.hashCode() & (table.length - 1);
+            while (table[slot] != null) slot = (slot + 1) & (table.length - 1);
+            table[slot] = ticker.toCharArray();
+        }
+        return table;
+    }
+
+    /**
+     * Returns the tickers accepted by this filter.
+     *
+     * @return the accepted tickers, empty if every ticker is accepted
+     */
+    public Set<String> tickers() {
+        return tickers;
+    }
+
+    /**
+     * Tests an operation that was already deserialized.
+     *
+     * @param operation the operation to test
+     * @return {@code true} if the operation matches every criterion
+     */
+    @Override
+    public boolean test(final Operation operation) {
+        if (tickerTable != null && (operation.ticker() == null || !tickers.contains(operation.ticker()))) return false;
+        if (!acceptsOperation(operation.operation())) return false;
+        return acceptsQuantity(operation.quantity());
+    }
+
+    private boolean acceptsOperation(final String operation) {
+        if (acceptOtherOperations) return true;
+        return ("buy".equals(operation) && acceptBuy) || ("sell".equals(operation) && acceptSell);
+    }
+
+    /**
+     * Tells whether the ticker criterion is set, meaning operations without a ticker are rejected.
+     *
+     * @return {@code true} if only some tickers are accepted
+     */
+    boolean filtersTickers() {
+        return tickerTable != null;
+    }
+
+    /**
+     * Tells whether the operation type criterion is set, meaning operations without a type are rejected.
+     *
+     * @return {@code true} if only some operation types are accepted
+     */
+    boolean filtersOperations() {
+        return !acceptOtherOperations;
+    }
+
+    /**
+     * Tests a raw ticker token without creating a {@link String}.
+     *
+     * @param chars  the buffer holding the token
+     * @param offset the offset of the token in the buffer
+     * @param length the length of the token
+     * @return {@code true} if the ticker is accepted
+     */
+    boolean acceptsTicker(final char[] chars, final int offset, final int length) {
+        if (tickerTable == null) return true;
+
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) hash = 31 * hash + chars[i];
+
+        for (int slot = hash & (tickerTable.length - 1); tickerTable[slot] != null; slot = (slot + 1) & (tickerTable.length - 1)) {
+            if (Arrays.equals(tickerTable[slot], 0, tickerTable[slot].length, chars, offset, offset + length)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Tests a raw operation type token without creating a {@link String}.
+     *
+     * @param chars  the buffer holding the token
+     * @param offset the offset of the token in the buffer
+     * @param length the length of the token
+     * @return {@code true} if the operation type is accepted
+     */
+    boolean acceptsOperation(final char[] chars, final int offset, final int length) {
+        if (acceptOtherOperations) return true;
+        return (acceptBuy && OperationParser.matches("buy", chars, offset, length))
+                || (acceptSell && OperationParser.matches("sell", chars, offset, length));
+    }
+
+    /**
+     * Tests a quantity.
+     *
+     * @param quantity the quantity of the operation
+     * @return {@code true} if the quantity is within the accepted range
+     */
+    boolean acceptsQuantity(final long quantity) {
+        return quantity >= minQuantity && quantity <= maxQuantity;
+    }
+
+    /**
+     * <p>Builder for new instances of {@code OperationFilter}.</p>
+     */
+    public static class Builder {
+
+        /**
+         * <p>Constructs a new {@code Builder} accepting every operation.</p>
+         */
+        public Builder() {
+        }
+
+        private final Set<String> tickers = new LinkedHashSet<>();
+        private final Set<String> operations = new LinkedHashSet<>();
+        private long minQuantity = Long.MIN_VALUE;
+        private long maxQuantity = Long.MAX_VALUE;
+
+        /**
+         * Restricts the filter to operations on the given tickers.
+         *
+         * @param tickers the accepted tickers
+         * @return this builder instance
+         */
+        public Builder tickers(final String... tickers) {
+            this.tickers.addAll(Arrays.asList(tickers));
+            return this;
+        }
+
+        /**
+         * Restricts the filter to the given operation types, such as {@code "buy"} or {@code "sell"}.
+         *
+         * @param operations the accepted operation types
+         * @return this builder instance
+         */
+        public Builder operations(final String... operations) {
+            this.operations.addAll(Arrays.asList(operations));
+            return this;
+        }
+
+        /**
+         * Restricts the filter to operations whose quantity is within the given inclusive range.
+         *
+         * @param minQuantity the minimum accepted quantity
+         * @param maxQuantity the maximum accepted quantity
+         * @return this builder instance
+         */
+        public Builder quantityBetween(final long minQuantity, final long maxQuantity) {
+            this.minQuantity = minQuantity;
+            this.maxQuantity = maxQuantity;
+            return this;
+        }
+
+        /**
+         * Builds and returns a new instance of {@link OperationFilter} with the configured criteria.
+         *
+         * @return a new OperationFilter instance
+         */
+        public OperationFilter build() {
+            return new OperationFilter(this);
+        }
+    }
+}
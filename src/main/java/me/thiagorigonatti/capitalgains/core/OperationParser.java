@@ -0,0 +1,210 @@
+package me.thiagorigonatti.capitalgains.core;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Streaming parser that turns a JSON array of operations into {@link Operation} records, evaluating an
+ * {@link OperationFilter} on the raw tokens.
+ * <p>
+ * Field values are kept in reusable buffers while an object is scanned, and only materialized into
+ * {@link String} and {@link BigDecimal} instances once every criterion of the filter has passed. As soon as one
+ * criterion fails, the remaining fields of the object are skipped.
+ * </p>
+ *
+ * <p>This class is not thread-safe; each instance keeps its own scratch buffers.</p>
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+class OperationParser {
+
+    private final JsonFactory jsonFactory;
+    private char[] tickerBuffer = new char[16];
+    private int tickerLength;
+    private char[] unitCostBuffer = new char[32];
+    private int unitCostLength;
+
+    /**
+     * Creates a parser using the given {@link JsonFactory} to tokenize lines.
+     *
+     * @param jsonFactory the factory used to create {@link JsonParser} instances
+     */
+    OperationParser(final JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    /**
+     * Parses a line holding a JSON array of operations.
+     *
+     * @param line   the input line
+     * @param filter the filter evaluated on raw tokens
+     * @param sink   receives every operation accepted by the filter, in input order
+     * @throws IOException if the line is not a valid array of operations
+     */
+    void parse(final String line, final OperationFilter filter, final Consumer<Operation> sink) throws IOException {
+        try (final JsonParser parser = jsonFactory.createParser(line)) {
+            parser.nextToken();
+            parseArray(parser, filter, sink);
+        }
+    }
+
+    /**
+     * Parses the array at the current token of the given parser, leaving it positioned at the closing bracket.
+     *
+     * @param parser the parser positioned at {@link JsonToken#START_ARRAY}
+     * @param filter the filter evaluated on raw tokens
+     * @param sink   receives every operation accepted by the filter, in input order
+     * @throws IOException if the array is not a valid array of operations
+     */
+    void parseArray(final JsonParser parser, final OperationFilter filter, final Consumer<Operation> sink) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            throw new JsonParseException(parser, "Expected an array of operations");
+        }
+
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token != JsonToken.START_OBJECT) throw new JsonParseException(parser, "Expected an operation object");
+
+            final Operation operation = parseObject(parser, filter);
+            if (operation != null) sink.accept(operation);
+        }
+    }
+
+    /**
+     * Parses one operation object, returning {@code null} if the filter rejected it.
+     */
+    private Operation parseObject(final JsonParser parser, final OperationFilter filter) throws IOException {
+
+        boolean rejected = false;
+        boolean hasTicker = false;
+        boolean hasUnitCost = false;
+        String operation = null;
+        long quantity = 0L;
+        boolean hasQuantity = false;
+        tickerLength = 0;
+        unitCostLength = 0;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.currentName();
+            final JsonToken value = parser.nextToken();
+
+            if (rejected) {
+                parser.skipChildren();
+                continue;
+            }
+
+            switch (field) {
+                case "operation" -> {
+                    if (value == JsonToken.VALUE_NULL) break;
+                    expectScalar(parser, value, field);
+                    final char[] chars = parser.getTextCharacters();
+                    final int offset = parser.getTextOffset();
+                    final int length = parser.getTextLength();
+                    if (!filter.acceptsOperation(chars, offset, length)) {
+                        rejected = true;
+                    } else {
+                        operation = matches("buy", chars, offset, length) ? "buy"
+                                : matches("sell", chars, offset, length) ? "sell"
+                                : new String(chars, offset, length);
+                    }
+                }
+                case "ticker" -> {
+                    if (value == JsonToken.VALUE_NULL) break;
+                    expectScalar(parser, value, field);
+                    final char[] chars = parser.getTextCharacters();
+                    final int offset = parser.getTextOffset();
+                    final int length = parser.getTextLength();
+                    if (!filter.acceptsTicker(chars, offset, length)) {
+                        rejected = true;
+                    } else {
+                        if (tickerBuffer.length < length) tickerBuffer = Arrays.copyOf(tickerBuffer, length);
+                        System.arraycopy(chars, offset, tickerBuffer, 0, length);
+                        tickerLength = length;
+                        hasTicker = true;
+                    }
+                }
+                case "quantity" -> {
+                    expectScalar(parser, value, field);
+                    quantity = value == JsonToken.VALUE_STRING
+                            ? quantity(parser)
+                            : parser.getValueAsLong();
+                    hasQuantity = true;
+                    if (!filter.acceptsQuantity(quantity)) rejected = true;
+                }
+                case "unit-cost" -> {
+                    if (value == JsonToken.VALUE_NULL) break;
+                    expectScalar(parser, value, field);
+                    final int length = parser.getTextLength();
+                    if (unitCostBuffer.length < length) unitCostBuffer = Arrays.copyOf(unitCostBuffer, length);
+                    System.arraycopy(parser.getTextCharacters(), parser.getTextOffset(), unitCostBuffer, 0, length);
+                    unitCostLength = length;
+                    hasUnitCost = true;
+                }
+                default -> throw new JsonParseException(parser, "Unrecognized field \"" + field + "\" in operation");
+            }
+        }
+
+        if (rejected) return null;
+        if (!hasTicker && filter.filtersTickers()) return null;
+        if (operation == null && filter.filtersOperations()) return null;
+        if (!hasQuantity && !filter.acceptsQuantity(0L)) return null;
+
+        return new Operation(
+                operation,
+                hasUnitCost ? unitCost(parser) : null,
+                quantity,
+                hasTicker ? new String(tickerBuffer, 0, tickerLength) : null
+        );
+    }
+
+    /**
+     * Converts the buffered unit cost of an accepted operation, which is only done once the whole object is read.
+     *
+     * @throws JsonParseException if the unit cost is not a number, located at the end of its operation
+     */
+    private BigDecimal unitCost(final JsonParser parser) throws JsonParseException {
+        try {
+            return new BigDecimal(unitCostBuffer, 0, unitCostLength);
+        } catch (NumberFormatException e) {
+            throw new JsonParseException(parser, "Invalid value for field \"unit-cost\": \"" + new String(unitCostBuffer, 0, unitCostLength) + "\"", e);
+        }
+    }
+
+    private static long quantity(final JsonParser parser) throws IOException {
+        try {
+            return Long.parseLong(parser.getText().trim());
+        } catch (NumberFormatException e) {
+            throw new JsonParseException(parser, "Invalid value for field \"quantity\": \"" + parser.getText() + "\"", e);
+        }
+    }
+
+    private static void expectScalar(final JsonParser parser, final JsonToken value, final String field) throws JsonParseException {
+        if (!value.isScalarValue()) throw new JsonParseException(parser, "Unexpected value for field \"" + field + "\"");
+    }
+
+    /**
+     * Compares a raw token with a constant without creating a {@link String}.
+     *
+     * @param expected the constant to compare with
+     * @param chars    the buffer holding the token
+     * @param offset   the offset of the token in the buffer
+     * @param length   the length of the token
+     * @return {@code true} if the token equals the constant
+     */
+    static boolean matches(final String expected, final char[] chars, final int offset, final int length) {
+        if (expected.length() != length) return false;
+        for (int i = 0; i < length; i++) {
+            if (expected.charAt(i) != chars[offset + i]) return false;
+        }
+        return true;
+    }
+}
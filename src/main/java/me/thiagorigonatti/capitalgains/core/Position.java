@@ -0,0 +1,22 @@
+package me.thiagorigonatti.capitalgains.core;
+
+import java.math.BigDecimal;
+
+/**
+ * Immutable snapshot of the position of a {@link Stock}: what it holds and the loss it carries into later sales.
+ *
+ * @param shares          the number of shares held
+ * @param totalCost       the total cost of the shares held
+ * @param averageCost     the weighted average cost per share
+ * @param accumulatedLoss the losses not yet offset against gains
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public record Position(long shares, BigDecimal totalCost, BigDecimal averageCost, BigDecimal accumulatedLoss) {
+
+    /**
+     * The position of a stock that was never traded.
+     */
+    public static final Position EMPTY = new Position(0L, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO);
+}
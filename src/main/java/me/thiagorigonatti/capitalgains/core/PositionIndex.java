@@ -0,0 +1,186 @@
+package me.thiagorigonatti.capitalgains.core;
+
+import me.thiagorigonatti.capitalgains.exception.InsufficientSharesException;
+import me.thiagorigonatti.capitalgains.exception.InvalidOperationException;
+import me.thiagorigonatti.capitalgains.exception.ZeroOrNegativeQuantityException;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Answers what the position of a ticker was right after any operation of a line, without replaying the whole line.
+ * <p>
+ * The index is built in one pass over the operations, applying them to one {@link Stock} per ticker and storing a
+ * {@link Position} snapshot of each ticker every {@code interval} of its operations. A query restores the last
+ * snapshot taken before the requested operation and replays at most {@code interval} operations of that ticker, so
+ * it costs {@code O(interval)} instead of {@code O(history)}. The snapshots take one {@link Position} per
+ * {@code interval} operations of each ticker, on top of the operations themselves.
+ * </p>
+ *
+ * <p>Stocks are plain {@link Stock} instances under the regime given by the resolver, or {@link TaxRegime#DEFAULT}
+ * without one, so positions match those of a calculator with the default stock supplier.</p>
+ *
+ * <p>This class is thread-safe once built: queries replay on their own stock.</p>
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class PositionIndex {
+
+    /**
+     * The default number of operations of a ticker between two snapshots.
+     */
+    public static final int DEFAULT_INTERVAL = 1_024;
+
+    private final Operation[] operations;
+    private final Map<String, TickerIndex> tickerIndexes;
+    private final int interval;
+
+    private PositionIndex(final Operation[] operations, final Map<String, TickerIndex> tickerIndexes, final int interval) {
+        this.operations = operations;
+        this.tickerIndexes = tickerIndexes;
+        this.interval = interval;
+    }
+
+    /**
+     * The operations of one ticker, by position in the line, and the snapshots taken before every {@code interval}
+     * of them.
+     */
+    private static final class TickerIndex {
+
+        private final TaxRegime taxRegime;
+        private final Stock stock;
+        private int[] operationIndexes = new int[16];
+        private Position[] snapshots = new Position[1];
+        private int size;
+
+        private TickerIndex(final TaxRegime taxRegime) {
+            this.taxRegime = taxRegime;
+            this.stock = new Stock(taxRegime);
+        }
+
+        private void add(final int operationIndex, final int interval) {
+            if (size % interval == 0) {
+                final int snapshot = size / interval;
+                if (snapshot == snapshots.length) snapshots = Arrays.copyOf(snapshots, snapshot << 1);
+                snapshots[snapshot] = stock.snapshot();
+            }
+            if (size == operationIndexes.length) operationIndexes = Arrays.copyOf(operationIndexes, size << 1);
+            operationIndexes[size++] = operationIndex;
+        }
+    }
+
+    /**
+     * Builds the index of a line by applying its operations in order.
+     *
+     * @param operations        the operations of the line, in order
+     * @param taxRegimeResolver the regime of each ticker, or {@code null} for {@link TaxRegime#DEFAULT}
+     * @param interval          the number of operations of a ticker between two snapshots
+     * @return the index of the line
+     * @throws IllegalArgumentException        if the interval is not positive
+     * @throws InvalidOperationException       if an operation type is not recognized
+     * @throws ZeroOrNegativeQuantityException if a quantity is less than or equal to zero
+     * @throws InsufficientSharesException     if a sale exceeds the shares held
+     */
+    public static PositionIndex build(final List<Operation> operations, final Function<String, TaxRegime> taxRegimeResolver, final int interval) {
+        if (interval < 1) throw new IllegalArgumentException("The interval must be positive: " + interval);
+
+        final Operation[] indexed = operations.toArray(new Operation[0]);
+        final Map<String, TickerIndex> tickerIndexes = new LinkedHashMap<>();
+
+        for (int i = 0; i < indexed.length; i++) {
+            final TickerIndex tickerIndex = tickerIndexes.computeIfAbsent(indexed[i].ticker(),
+                    ticker -> new TickerIndex(taxRegimeResolver != null ? taxRegimeResolver.apply(ticker) : TaxRegime.DEFAULT));
+            tickerIndex.add(i, interval);
+            apply(indexed[i], tickerIndex.stock);
+        }
+
+        return new PositionIndex(indexed, tickerIndexes, interval);
+    }
+
+    private static void apply(final Operation op, final Stock stock) {
+        switch (op.operation()) {
+            case "buy" -> stock.buy(op.quantity(), op.unitCost());
+            case "sell" -> stock.sell(op.quantity(), op.unitCost());
+            default -> throw new InvalidOperationException(op.operation());
+        }
+    }
+
+    /**
+     * Returns the number of operations indexed.
+     *
+     * @return the number of operations of the line
+     */
+    public int size() {
+        return operations.length;
+    }
+
+    /**
+     * Returns the tickers traded in the line, in order of first trade.
+     *
+     * @return the tickers, possibly including {@code null} for operations without one
+     */
+    public Set<String> tickers() {
+        return Collections.unmodifiableSet(tickerIndexes.keySet());
+    }
+
+    /**
+     * Returns the operation at the given position of the line.
+     *
+     * @param operation the position of the operation, starting at zero
+     * @return the operation
+     * @throws IndexOutOfBoundsException if there is no such operation
+     */
+    public Operation operation(final int operation) {
+        return operations[checkIndex(operation)];
+    }
+
+    /**
+     * Returns the position of the ticker traded by the given operation, right after it.
+     *
+     * @param operation the position of the operation in the line, starting at zero
+     * @return the position of its ticker
+     * @throws IndexOutOfBoundsException if there is no such operation
+     */
+    public Position positionAfter(final int operation) {
+        return positionAfter(operation, operations[checkIndex(operation)].ticker());
+    }
+
+    /**
+     * Returns the position of a ticker right after the given operation of the line, whichever ticker that operation
+     * traded.
+     *
+     * @param operation the position of the operation in the line, starting at zero
+     * @param ticker    the ticker, possibly {@code null}
+     * @return the position of the ticker, {@link Position#EMPTY} if it was not traded up to that operation
+     * @throws IndexOutOfBoundsException if there is no such operation
+     */
+    public Position positionAfter(final int operation, final String ticker) {
+        checkIndex(operation);
+
+        final TickerIndex tickerIndex = tickerIndexes.get(ticker);
+        if (tickerIndex == null) return Position.EMPTY;
+
+        final int last = Arrays.binarySearch(tickerIndex.operationIndexes, 0, tickerIndex.size, operation);
+        final int count = last >= 0 ? last + 1 : -last - 1;
+        if (count == 0) return Position.EMPTY;
+
+        final int snapshot = (count - 1) / interval;
+        final Stock stock = new Stock(tickerIndex.taxRegime, tickerIndex.snapshots[snapshot]);
+
+        for (int i = snapshot * interval; i < count; i++) apply(operations[tickerIndex.operationIndexes[i]], stock);
+
+        return stock.snapshot();
+    }
+
+    private int checkIndex(final int operation) {
+        if (operation < 0 || operation >= operations.length) throw new IndexOutOfBoundsException(operation);
+        return operation;
+    }
+}
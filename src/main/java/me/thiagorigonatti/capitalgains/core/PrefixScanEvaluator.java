@@ -0,0 +1,346 @@
+package me.thiagorigonatti.capitalgains.core;
+
+import me.thiagorigonatti.capitalgains.exception.InsufficientSharesException;
+import me.thiagorigonatti.capitalgains.exception.InvalidOperationException;
+import me.thiagorigonatti.capitalgains.exception.ZeroOrNegativeQuantityException;
+
+import java.io.Serial;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Evaluates the operations of a single ticker in parallel, producing exactly the taxes that {@link Stock} would
+ * produce by applying them one after the other.
+ * <p>
+ * The operations are split into blocks evaluated on a {@link ForkJoinPool}, and the state of the position is split
+ * into the parts that can be combined across blocks:
+ * </p>
+ * <ul>
+ *   <li>Shares are a prefix sum of the signed quantities: each block sums its own, the block sums are scanned, and
+ *   each block then derives the shares around every operation, validating it as {@link Stock} would.</li>
+ *   <li>The average cost only changes at the end of a run of buys, to
+ *   {@code (averageCost * sharesBefore + runCost) / sharesAfter}, where the cost of each run is summed in parallel.
+ *   This recurrence is inherently sequential, but it takes one step per run of buys instead of one per operation.</li>
+ *   <li>The accumulated loss goes through one transition per sale, each of the form {@code loss -> max(loss + a, b)}:
+ *   a loss adds to it, a taxable gain subtracts from it down to zero. Such transitions compose into another one of
+ *   the same form, so each block composes its sales, the compositions are scanned to find the loss entering each
+ *   block, and each block then replays its sales from there to compute their taxes.</li>
+ * </ul>
+ *
+ * <p>All amounts are exact {@link BigDecimal} sums and products, so composing them in a different order does not
+ * change any result. When an operation is invalid, the exception {@link Stock} would throw for the first invalid
+ * operation is thrown. No {@link me.thiagorigonatti.capitalgains.jfr.CalculatorEvents} are recorded.</p>
+ *
+ * <p>This class is thread-safe: each evaluation keeps its own state.</p>
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class PrefixScanEvaluator {
+
+    /**
+     * The default number of operations evaluated by one task.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 16_384;
+
+    /**
+     * The default minimum number of operations of a ticker for the parallel evaluation to pay off.
+     */
+    public static final int DEFAULT_MIN_OPERATIONS = 100_000;
+
+    private final TaxRegime taxRegime;
+    private final ForkJoinPool forkJoinPool;
+    private final int blockSize;
+
+    /**
+     * Creates an evaluator running on the common pool with the default block size.
+     *
+     * @param taxRegime the rules applied to sales
+     */
+    public PrefixScanEvaluator(final TaxRegime taxRegime) {
+        this(taxRegime, ForkJoinPool.commonPool(), DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Creates an evaluator.
+     *
+     * @param taxRegime    the rules applied to sales
+     * @param forkJoinPool the pool evaluating the blocks
+     * @param blockSize    the number of operations evaluated by one task
+     * @throws IllegalArgumentException if the block size is not positive
+     */
+    public PrefixScanEvaluator(final TaxRegime taxRegime, final ForkJoinPool forkJoinPool, final int blockSize) {
+        if (blockSize < 1) throw new IllegalArgumentException("The block size must be positive: " + blockSize);
+        this.taxRegime = taxRegime;
+        this.forkJoinPool = forkJoinPool;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Evaluates the operations of one ticker, in order, starting from an empty position. Tickers are ignored.
+     *
+     * @param operations the buy and sell operations of the ticker
+     * @return the tax of each operation, zero for buys
+     * @throws InvalidOperationException       if an operation type is not recognized
+     * @throws ZeroOrNegativeQuantityException if a quantity is less than or equal to zero
+     * @throws InsufficientSharesException     if a sale exceeds the shares held
+     */
+    public BigDecimal[] evaluate(final List<Operation> operations) {
+
+        final int size = operations.size();
+        if (size == 0) return new BigDecimal[0];
+
+        final Evaluation evaluation = new Evaluation(operations.toArray(new Operation[0]));
+
+        forEachBlock(evaluation.blocks, evaluation::sumBlock);
+        evaluation.scanShares();
+        forEachBlock(evaluation.blocks, evaluation::validateBlock);
+        evaluation.throwFirstFailure();
+        evaluation.scanAverageCosts();
+        forEachBlock(evaluation.blocks, evaluation::composeBlock);
+        evaluation.scanLosses();
+        forEachBlock(evaluation.blocks, evaluation::taxBlock);
+
+        return evaluation.taxes;
+    }
+
+    private void forEachBlock(final int blocks, final IntConsumer body) {
+        forkJoinPool.invoke(new BlockAction(0, blocks, body));
+    }
+
+    /**
+     * Applies a body to a range of blocks, splitting the range in halves until each task has a single block.
+     */
+    private static final class BlockAction extends RecursiveAction {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final transient IntConsumer body;
+
+        private BlockAction(final int from, final int to, final IntConsumer body) {
+            this.from = from;
+            this.to = to;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                body.accept(from);
+                return;
+            }
+            final int middle = (from + to) >>> 1;
+            invokeAll(new BlockAction(from, middle, body), new BlockAction(middle, to, body));
+        }
+    }
+
+    /**
+     * The arrays of one evaluation, indexed by operation or by block.
+     */
+    private final class Evaluation {
+
+        private final Operation[] operations;
+        private final int size;
+        private final int blocks;
+        private final boolean[] sells;
+        private final BigDecimal[] amounts;
+        private final BigDecimal[] runCosts;
+        private final long[] shares;
+        private final BigDecimal[] averageCosts;
+        private final BigDecimal[] profits;
+        private final BigDecimal[] taxes;
+        private final long[] blockShares;
+        private final int[] blockFailures;
+        private final BigDecimal[] blockAdds;
+        private final BigDecimal[] blockFloors;
+        private final BigDecimal[] blockLosses;
+
+        private Evaluation(final Operation[] operations) {
+            this.operations = operations;
+            this.size = operations.length;
+            this.blocks = (size + blockSize - 1) / blockSize;
+            this.sells = new boolean[size];
+            this.amounts = new BigDecimal[size];
+            this.runCosts = new BigDecimal[size];
+            this.shares = new long[size];
+            this.averageCosts = new BigDecimal[size];
+            this.profits = new BigDecimal[size];
+            this.taxes = new BigDecimal[size];
+            this.blockShares = new long[blocks + 1];
+            this.blockFailures = new int[blocks];
+            this.blockAdds = new BigDecimal[blocks];
+            this.blockFloors = new BigDecimal[blocks];
+            this.blockLosses = new BigDecimal[blocks];
+            Arrays.fill(blockFailures, size);
+        }
+
+        private int end(final int block) {
+            return Math.min(size, (block + 1) * blockSize);
+        }
+
+        /**
+         * Computes the amount of each operation, the cost of the buys since the last sale within the block, and the
+         * shares relative to the start of the block, stopping at the first operation {@link Stock} would reject
+         * regardless of the shares held.
+         */
+        private void sumBlock(final int block) {
+            long localShares = 0;
+            BigDecimal runCost = BigDecimal.ZERO;
+
+            for (int i = block * blockSize, end = end(block); i < end; i++) {
+                final Operation op = operations[i];
+                final boolean sell = "sell".equals(op.operation());
+
+                if (!sell && !"buy".equals(op.operation()) || op.quantity() <= 0) {
+                    blockFailures[block] = i;
+                    break;
+                }
+
+                sells[i] = sell;
+                amounts[i] = op.unitCost().multiply(BigDecimal.valueOf(op.quantity()));
+
+                if (sell) {
+                    localShares -= op.quantity();
+                    runCost = BigDecimal.ZERO;
+                } else {
+                    localShares += op.quantity();
+                    runCost = runCost.add(amounts[i]);
+                    runCosts[i] = runCost;
+                }
+                shares[i] = localShares;
+            }
+            blockShares[block + 1] = localShares;
+        }
+
+        /**
+         * Turns the block sums into the shares held at the start of each block.
+         */
+        private void scanShares() {
+            for (int block = 0; block < blocks; block++) blockShares[block + 1] += blockShares[block];
+        }
+
+        /**
+         * Makes the shares held after each operation absolute and records the first sale exceeding the shares held.
+         */
+        private void validateBlock(final int block) {
+            final long start = blockShares[block];
+
+            for (int i = block * blockSize, end = Math.min(end(block), blockFailures[block]); i < end; i++) {
+                shares[i] += start;
+                if (sells[i] && shares[i] < 0) {
+                    blockFailures[block] = i;
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Throws the exception {@link Stock} would throw for the first invalid operation, if any.
+         */
+        private void throwFirstFailure() {
+            int failure = size;
+            for (int blockFailure : blockFailures) failure = Math.min(failure, blockFailure);
+            if (failure == size) return;
+
+            final Operation op = operations[failure];
+            if (!"buy".equals(op.operation()) && !"sell".equals(op.operation())) throw new InvalidOperationException(op.operation());
+            if (op.quantity() <= 0) throw new ZeroOrNegativeQuantityException(op.quantity());
+            throw new InsufficientSharesException(op.quantity(), shares[failure] + op.quantity());
+        }
+
+        /**
+         * Computes the average cost at each sale, with one step per run of buys. A run spanning several blocks is
+         * the sum of the run costs at the end of each block it spans.
+         */
+        private void scanAverageCosts() {
+            BigDecimal averageCost = BigDecimal.ZERO;
+            BigDecimal carriedCost = BigDecimal.ZERO;
+            long runStartShares = 0;
+
+            for (int i = 0; i < size; i++) {
+                if (sells[i]) {
+                    averageCosts[i] = averageCost;
+                    continue;
+                }
+
+                if (i == 0 || sells[i - 1]) runStartShares = shares[i] - operations[i].quantity();
+
+                if (i + 1 == size || sells[i + 1]) {
+                    final BigDecimal totalCost = averageCost.multiply(BigDecimal.valueOf(runStartShares)).add(carriedCost).add(runCosts[i]);
+                    averageCost = totalCost.divide(BigDecimal.valueOf(shares[i]), 2, RoundingMode.HALF_EVEN);
+                    carriedCost = BigDecimal.ZERO;
+                } else if ((i + 1) % blockSize == 0) {
+                    carriedCost = carriedCost.add(runCosts[i]);
+                }
+            }
+        }
+
+        /**
+         * Computes the profit of each sale of the block and composes their loss transitions into a single
+         * {@code loss -> max(loss + add, floor)}.
+         */
+        private void composeBlock(final int block) {
+            final BigDecimal threshold = taxRegime.threshold();
+            final boolean carriesLosses = taxRegime.carriesLosses();
+            BigDecimal add = BigDecimal.ZERO;
+            BigDecimal floor = BigDecimal.ZERO;
+
+            for (int i = block * blockSize, end = end(block); i < end; i++) {
+                if (!sells[i]) continue;
+
+                final BigDecimal profit = amounts[i].subtract(averageCosts[i].multiply(BigDecimal.valueOf(operations[i].quantity())));
+                profits[i] = profit;
+
+                if (profit.signum() < 0) {
+                    if (carriesLosses) {
+                        add = add.subtract(profit);
+                        floor = floor.subtract(profit);
+                    }
+                } else if (amounts[i].compareTo(threshold) > 0) {
+                    add = add.subtract(profit);
+                    floor = floor.subtract(profit).max(BigDecimal.ZERO);
+                }
+            }
+            blockAdds[block] = add;
+            blockFloors[block] = floor;
+        }
+
+        /**
+         * Applies the composed transitions in order to find the loss carried into each block.
+         */
+        private void scanLosses() {
+            BigDecimal loss = BigDecimal.ZERO;
+            for (int block = 0; block < blocks; block++) {
+                blockLosses[block] = loss;
+                loss = loss.add(blockAdds[block]).max(blockFloors[block]);
+            }
+        }
+
+        /**
+         * Replays the sales of the block from the loss carried into it, computing their taxes.
+         */
+        private void taxBlock(final int block) {
+            BigDecimal accumulatedLoss = blockLosses[block];
+
+            for (int i = block * blockSize, end = end(block); i < end; i++) {
+                if (!sells[i]) {
+                    taxes[i] = BigDecimal.ZERO;
+                    continue;
+                }
+
+                final TaxRegime.Settlement settlement = taxRegime.settle(amounts[i], profits[i], accumulatedLoss);
+                taxes[i] = settlement.tax();
+                accumulatedLoss = settlement.accumulatedLoss();
+            }
+        }
+    }
+}
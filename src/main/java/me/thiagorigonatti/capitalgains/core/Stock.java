@@ -2,6 +2,7 @@ package me.thiagorigonatti.capitalgains.core;
 
 import me.thiagorigonatti.capitalgains.exception.InsufficientSharesException;
 import me.thiagorigonatti.capitalgains.exception.ZeroOrNegativeQuantityException;
+import me.thiagorigonatti.capitalgains.jfr.CalculatorEvents;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
@@ -31,37 +32,108 @@ public class Stock {
      * Default constructor for the {@code Stock} class.
      * <p>
      * Initializes a new stock instance with zero shares, zero total cost,
-     * and zero accumulated losses. Intended for use when the initial
+     * and zero accumulated losses, taxed under {@link TaxRegime#DEFAULT}. Intended for use when the initial
      * state will be populated through operations (e.g., buy/sell).
      */
     public Stock() {
+        this(TaxRegime.DEFAULT);
     }
 
+    /**
+     * Constructs an empty stock taxed under the given regime.
+     *
+     * @param taxRegime the rules applied to sales
+     */
+    public Stock(final TaxRegime taxRegime) {
+        this.taxRegime = taxRegime;
+    }
+
+    /**
+     * Constructs a stock continuing from a snapshot taken from a plain stock under the same regime, e.g. by a
+     * {@link PositionIndex}.
+     *
+     * @param taxRegime the rules applied to sales
+     * @param position  the snapshot to continue from
+     */
+    Stock(final TaxRegime taxRegime, final Position position) {
+        this.taxRegime = taxRegime;
+        this.totalShares = position.shares();
+        this.totalCost = position.totalCost();
+        this.averageCost = position.averageCost();
+        this.accumulatedLoss = position.accumulatedLoss();
+    }
+
+    private TaxRegime taxRegime;
     private BigDecimal totalCost = BigDecimal.ZERO;
     private long totalShares;
     private BigDecimal averageCost = BigDecimal.ZERO;
     private BigDecimal accumulatedLoss = BigDecimal.ZERO;
 
+    /**
+     * Resets this stock to the state of a newly created instance, so it can be reused for another simulation.
+     * <p>
+     * Subclasses keeping additional state must override this method and call {@code super.reset()}.
+     * </p>
+     */
+    protected void reset() {
+        totalCost = BigDecimal.ZERO;
+        totalShares = 0;
+        averageCost = BigDecimal.ZERO;
+        accumulatedLoss = BigDecimal.ZERO;
+    }
+
+    /**
+     * Returns a snapshot of this position, e.g. to be stored by a {@link PositionIndex}.
+     * <p>
+     * Subclasses tracking the position on their own must override this method together with {@link #shares()}.
+     * Only plain stocks are ever built back from a snapshot.
+     * </p>
+     *
+     * @return the current shares, costs and carried loss
+     */
+    Position snapshot() {
+        return new Position(totalShares, totalCost, averageCost, accumulatedLoss);
+    }
+
+    /**
+     * Returns the regime this stock is taxed under.
+     *
+     * @return the tax regime
+     */
+    protected TaxRegime taxRegime() {
+        return taxRegime;
+    }
+
+    /**
+     * Changes the regime this stock is taxed under, e.g. when a pooled stock is handed to another ticker.
+     *
+     * @param taxRegime the rules applied to later sales
+     */
+    void taxRegime(final TaxRegime taxRegime) {
+        this.taxRegime = taxRegime;
+    }
+
     /**
      * Returns the applicable tax rate for capital gains.
      * <p>
-     * The current rate is fixed at 20% (0.20).
+     * The rate comes from the {@link TaxRegime}, 20% (0.20) by default, and is the same instance on every call.
      *
      * @return the capital gains tax rate as a {@link BigDecimal}
      */
     protected BigDecimal taxRate() {
-        return BigDecimal.valueOf(.20);
+        return taxRegime.rate();
     }
 
     /**
      * Returns the sales threshold under which capital gains are exempt from taxation.
      * <p>
-     * Currently, operations with total sales less than or equal to R$20,000.00 are exempt.
+     * The threshold comes from the {@link TaxRegime}. By default, operations with total sales less than or equal to
+     * R$20,000.00 are exempt.
      *
      * @return the tax exemption threshold as a {@link BigDecimal}
      */
     protected BigDecimal threshold() {
-        return BigDecimal.valueOf(20_000);
+        return taxRegime.threshold();
     }
 
     /**
@@ -81,11 +153,47 @@ public class Stock {
         averageCost = totalCost.divide(BigDecimal.valueOf(totalShares), 2, RoundingMode.HALF_EVEN);
     }
 
+    /**
+     * Returns the number of shares currently held, against which sales are validated.
+     * <p>
+     * Subclasses tracking shares on their own, e.g. in lots, must override this method together with
+     * {@link #buy(long, BigDecimal)} and {@link #release(long)}.
+     * </p>
+     *
+     * @return the number of shares held
+     */
+    protected long shares() {
+        return totalShares;
+    }
+
+    /**
+     * Removes shares being sold from the position and returns their cost basis, which the sale's profit is measured
+     * against.
+     * <p>
+     * By default the cost basis is the weighted average cost, and the cost of the remaining shares is recomputed from
+     * it. Subclasses may choose another accounting method, e.g. the cost of specific lots.
+     * </p>
+     *
+     * @param quantity the number of shares sold, already validated against {@link #shares()}
+     * @return the cost basis of the sold shares
+     */
+    protected BigDecimal release(final long quantity) {
+        final BigDecimal cost = averageCost.multiply(BigDecimal.valueOf(quantity));
+
+        totalShares -= quantity;
+        totalCost = averageCost.multiply(BigDecimal.valueOf(totalShares));
+
+        return cost;
+    }
+
     /**
      * Processes a sell operation, updating shares and calculating the capital gains tax based on profit and thresholds.
      * <p>
-     * If the sale results in a loss, the value is added to {@code accumulatedLoss}. If there's a gain and the total
-     * value of the sale exceeds R$20,000, tax is calculated at 20% on the net profit after subtracting accumulated losses.
+     * The cost basis of the sold shares comes from {@link #release(long)}, the weighted average cost by default.
+     * If the sale results in a loss, the value is added to {@code accumulatedLoss}, unless the regime does not carry
+     * losses. If there's a gain and the total value of the sale exceeds the threshold (R$20,000 by default), tax is
+     * calculated at the regime's rate (20% by default) on the net profit after subtracting accumulated losses, and
+     * rounded as the regime requires.
      *
      * @param quantity the number of shares to sell; must be greater than zero and not exceed current holdings
      * @param unitCost the sale price per share
@@ -95,29 +203,19 @@ public class Stock {
      */
     protected BigDecimal sell(final long quantity, final BigDecimal unitCost) {
         if (quantity <= 0) throw new ZeroOrNegativeQuantityException(quantity);
-        if (quantity > totalShares) throw new InsufficientSharesException(quantity, totalShares);
+        final long shares = shares();
+        if (quantity > shares) throw new InsufficientSharesException(quantity, shares);
 
         final BigDecimal saleTotal = unitCost.multiply(BigDecimal.valueOf(quantity));
-        final BigDecimal cost = averageCost.multiply(BigDecimal.valueOf(quantity));
+        final BigDecimal cost = release(quantity);
         final BigDecimal profit = saleTotal.subtract(cost);
 
-        BigDecimal tax = BigDecimal.ZERO;
+        final TaxRegime.Settlement settlement = taxRegime.settle(saleTotal, profit, accumulatedLoss, threshold(), taxRate());
 
-        if (profit.compareTo(BigDecimal.ZERO) < 0) {
-            accumulatedLoss = accumulatedLoss.add(profit.abs());
-        } else if (saleTotal.compareTo(threshold()) > 0) {
-            if (accumulatedLoss.compareTo(profit) >= 0) {
-                accumulatedLoss = accumulatedLoss.subtract(profit);
-            } else {
-                final BigDecimal taxable = profit.subtract(accumulatedLoss);
-                accumulatedLoss = BigDecimal.ZERO;
-                tax = taxable.multiply(taxRate()).setScale(2, RoundingMode.HALF_EVEN);
-            }
-        }
-
-        totalShares -= quantity;
-        totalCost = averageCost.multiply(BigDecimal.valueOf(totalShares));
+        if (profit.signum() < 0 && taxRegime.carriesLosses()) CalculatorEvents.lossCarried(quantity, unitCost, profit.abs(), settlement.accumulatedLoss());
+        else if (settlement.tax().signum() > 0) CalculatorEvents.taxableSell(quantity, unitCost, profit, accumulatedLoss, settlement.tax());
 
-        return tax;
+        accumulatedLoss = settlement.accumulatedLoss();
+        return settlement.tax();
     }
 }
@@ -1,18 +1,51 @@
 package me.thiagorigonatti.capitalgains.core;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+import me.thiagorigonatti.capitalgains.columnar.ColumnarFormat;
+import me.thiagorigonatti.capitalgains.columnar.ColumnarWriter;
 import me.thiagorigonatti.capitalgains.exception.InvalidOperationException;
+import me.thiagorigonatti.capitalgains.exception.MissingAccountException;
+import me.thiagorigonatti.capitalgains.format.TaxFormatter;
+import me.thiagorigonatti.capitalgains.group.ExternalSorter;
+import me.thiagorigonatti.capitalgains.group.KeyedLine;
+import me.thiagorigonatti.capitalgains.io.BufferTuner;
+import me.thiagorigonatti.capitalgains.io.Checkpoint;
+import me.thiagorigonatti.capitalgains.io.CompressedStreams;
+import me.thiagorigonatti.capitalgains.io.FileFollower;
+import me.thiagorigonatti.capitalgains.io.OffsetLineReader;
+import me.thiagorigonatti.capitalgains.jfr.CalculatorEvents;
+import me.thiagorigonatti.capitalgains.jfr.LineProcessedEvent;
+import me.thiagorigonatti.capitalgains.shard.ShardCoordinator;
 import me.thiagorigonatti.capitalgains.util.ArgParser;
 
 import java.io.*;
 import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 
@@ -24,6 +57,9 @@ import java.util.function.Supplier;
  * customization of behavior such as decimal formatting, predicate-based operation filtering, real-time output
  * flushing, and execution time tracking.</p>
  *
+ * <p>Once built, a single instance can be shared by several threads calling {@code calculate}: per-line state is
+ * kept per thread and the default {@link TaxFormatter} is stateless.</p>
+ *
  * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
  * @version 1.1
  * @since 1.0
@@ -31,9 +67,26 @@ import java.util.function.Supplier;
 
 public class TaxCalculator {
 
+    private static final OperationFilter ACCEPT_ALL = new OperationFilter.Builder().build();
+    static final Supplier<Stock> DEFAULT_STOCK_SUPPLIER = Stock::new;
+
+    /**
+     * The resolver set by {@link Builder#taxedUnder(TaxRegime)}, which gives every ticker the same regime.
+     *
+     * @param taxRegime the regime of every ticker
+     */
+    private record SingleRegime(TaxRegime taxRegime) implements Function<String, TaxRegime> {
+
+        @Override
+        public TaxRegime apply(final String ticker) {
+            return taxRegime;
+        }
+    }
+
     private String[] args;
     private ObjectMapper objectMapper;
     private DecimalFormat decimalFormat;
+    private TaxFormatter taxFormatter;
     private InputStream inputStream;
     private int bufferSizeIn;
     private OutputStream outputStream;
@@ -42,6 +95,33 @@ public class TaxCalculator {
     private boolean timings;
     private Predicate<Operation> operationPredicate;
     private Supplier<? extends Stock> stockSupplier;
+    private boolean compressOutput;
+    private int workerProcesses;
+    private boolean flightRecorderEvents;
+    private Function<String, TaxRegime> taxRegimeResolver;
+    private List<TaxRegime> whatIfRegimes;
+    private boolean columnarOutput;
+    private boolean autoTuneBuffers;
+    private boolean streamLines;
+    private Path inputPath;
+    private Path outputPath;
+    private Path checkpointPath;
+    private Duration checkpointInterval;
+    private boolean resume;
+    private boolean groupByAccount;
+    private long groupMemoryBudget;
+    private Path spillDirectory;
+    private boolean follow;
+    private volatile boolean followStopped;
+    private volatile FileFollower fileFollower;
+    private int parallelScanThreshold;
+    private int accountPartitions;
+    private ObjectReader operationListReader;
+    private final ThreadLocal<LineContext> lineContexts = ThreadLocal.withInitial(LineContext::new);
+    private final LongAdder buyOnlyLines = new LongAdder();
+    private final LongAdder exemptLines = new LongAdder();
+    private final LongAdder fullLines = new LongAdder();
+    private final LongAdder replayedOperations = new LongAdder();
 
     /**
      * Returns the command-line arguments.
@@ -77,10 +157,15 @@ public class TaxCalculator {
      */
     public void setObjectMapper(ObjectMapper objectMapper) {
         this.objectMapper = objectMapper;
+        this.operationListReader = objectMapper.readerForListOf(Operation.class);
     }
 
     /**
-     * Returns the DecimalFormat instance used for formatting numbers.
+     * Returns the DecimalFormat instance describing the output format.
+     * <p>
+     * Taxes are formatted by {@link #getTaxFormatter()}; this instance is only used by it when it was set through
+     * {@link #setDecimalFormat(DecimalFormat)} or {@link Builder#formattedWith(DecimalFormat)}.
+     * </p>
      *
      * @return the decimal format
      */
@@ -89,12 +174,31 @@ public class TaxCalculator {
     }
 
     /**
-     * Sets the DecimalFormat instance.
+     * Sets the DecimalFormat instance, and formats taxes with a thread-safe adapter over a copy of it.
      *
      * @param decimalFormat the decimal format to set
      */
     public void setDecimalFormat(DecimalFormat decimalFormat) {
         this.decimalFormat = decimalFormat;
+        this.taxFormatter = TaxFormatter.of(decimalFormat);
+    }
+
+    /**
+     * Returns the formatter used to write taxes.
+     *
+     * @return the tax formatter
+     */
+    public TaxFormatter getTaxFormatter() {
+        return taxFormatter;
+    }
+
+    /**
+     * Sets the formatter used to write taxes.
+     *
+     * @param taxFormatter the tax formatter to set
+     */
+    public void setTaxFormatter(TaxFormatter taxFormatter) {
+        this.taxFormatter = taxFormatter;
     }
 
     /**
@@ -241,221 +345,1468 @@ public class TaxCalculator {
         this.stockSupplier = stockSupplier;
     }
 
-
     /**
-     * Processes input data line by line from an {@link InputStream}, transforms each line using
-     * the {@code calculate(String)} method, serializes the result to JSON using {@code objectMapper},
-     * and writes it to an {@link OutputStream}.
-     * <p>
-     * The method can optionally flush the output after every line and display the total execution time,
-     * depending on the values of the {@code printEveryLine} and {@code timings} flags.
-     * </p>
+     * Returns whether the output is gzip-compressed.
      *
-     * <p><strong>Additional behavior:</strong></p>
-     * <ul>
-     *   <li>If {@code printEveryLine} is {@code true}, sets the buffer size to 8192 bytes and flushes the output after each line.</li>
-     *   <li>If {@code timings} is {@code true}, writes the total execution time in milliseconds at the end of the output.</li>
-     * </ul>
+     * @return true if the output is compressed, false otherwise
+     */
+    public boolean isCompressOutput() {
+        return compressOutput;
+    }
+
+    /**
+     * Sets whether the output is gzip-compressed.
      *
-     * @throws RuntimeException if an {@link IOException} occurs while reading from or writing to the streams.
+     * @param compressOutput true to compress the output, false otherwise
      */
-    public void run() {
+    public void setCompressOutput(boolean compressOutput) {
+        this.compressOutput = compressOutput;
+    }
 
-        final long startTime = System.currentTimeMillis();
+    /**
+     * Returns the number of worker processes the input lines are sharded across.
+     *
+     * @return the number of worker processes, or a value below 2 to process everything in this JVM
+     */
+    public int getWorkerProcesses() {
+        return workerProcesses;
+    }
 
-        if (printEveryLine) {
-            bufferSizeOut = 8_192;
-        }
+    /**
+     * Sets the number of worker processes the input lines are sharded across.
+     *
+     * @param workerProcesses the number of worker processes
+     */
+    public void setWorkerProcesses(int workerProcesses) {
+        this.workerProcesses = workerProcesses;
+    }
 
-        try (final BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(inputStream), bufferSizeIn); final BufferedWriter bufferedWriter = new BufferedWriter(new OutputStreamWriter(outputStream), bufferSizeOut)) {
+    /**
+     * Returns whether flight recorder events are emitted while running.
+     *
+     * @return {@code true} if events are emitted
+     */
+    public boolean isFlightRecorderEvents() {
+        return flightRecorderEvents;
+    }
 
-            String line;
-            while ((line = bufferedReader.readLine()) != null && !line.trim().isEmpty()) {
-                bufferedWriter.write(this.objectMapper.writeValueAsString(this.calculate(line)));
-                bufferedWriter.newLine();
+    /**
+     * Sets whether flight recorder events are emitted while running, see {@link CalculatorEvents}.
+     *
+     * @param flightRecorderEvents {@code true} to emit events
+     */
+    public void setFlightRecorderEvents(boolean flightRecorderEvents) {
+        this.flightRecorderEvents = flightRecorderEvents;
+    }
 
-                if (printEveryLine) bufferedWriter.flush();
-            }
+    /**
+     * Returns the function choosing the tax regime of each ticker.
+     *
+     * @return the resolver, or {@code null} if stocks keep the regime they were created with
+     */
+    public Function<String, TaxRegime> getTaxRegimeResolver() {
+        return taxRegimeResolver;
+    }
 
-            final var endTime = System.currentTimeMillis();
+    /**
+     * Sets the function choosing the tax regime of each ticker.
+     *
+     * @param taxRegimeResolver the resolver, or {@code null} to keep the regime of each stock
+     */
+    public void setTaxRegimeResolver(Function<String, TaxRegime> taxRegimeResolver) {
+        this.taxRegimeResolver = taxRegimeResolver;
+    }
 
-            if (timings) {
-                bufferedWriter.write("Total time taken: " + (endTime - startTime) + "ms");
-                bufferedWriter.newLine();
-            }
+    /**
+     * Returns the regimes evaluated side by side in what-if mode.
+     *
+     * @return the regimes, or {@code null} if each operation is taxed once
+     */
+    public List<TaxRegime> getWhatIfRegimes() {
+        return whatIfRegimes;
+    }
 
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+    /**
+     * Sets the regimes evaluated side by side in what-if mode, see {@link #calculateWhatIf(String, WhatIfResults)}.
+     *
+     * @param whatIfRegimes the regimes, or {@code null} or empty to tax each operation once
+     */
+    public void setWhatIfRegimes(List<TaxRegime> whatIfRegimes) {
+        this.whatIfRegimes = whatIfRegimes == null || whatIfRegimes.isEmpty() ? null : List.copyOf(whatIfRegimes);
     }
 
+    /**
+     * Returns whether the output is written in the columnar format.
+     *
+     * @return true if the output is columnar, false if it is JSON
+     */
+    public boolean isColumnarOutput() {
+        return columnarOutput;
+    }
 
     /**
-     * Parses a JSON-formatted string representing a list of operations, processes each operation to calculate a tax,
-     * and returns the result as an {@link ArrayNode}. The tax calculation now considers the {@code ticker} field
-     * for each operation, ensuring that tax is calculated separately for different stocks.
-     * <p>
-     * Each operation is processed using the {@code processOperation} method, and the resulting tax is formatted
-     * using {@code decimalFormat} and added to the returned JSON array as an object with a {@code "tax"} field.
-     * </p>
+     * Sets whether the output is written in the columnar format, see {@link ColumnarWriter}.
      *
-     * <p><strong>Filtering:</strong></p>
-     * <ul>
-     *   <li>If {@code operationPredicate} is set, it is used to filter the operations.</li>
-     *   <li>If not set, all operations are processed.</li>
-     * </ul>
+     * @param columnarOutput true to write columnar output, false to write JSON
+     */
+    public void setColumnarOutput(boolean columnarOutput) {
+        this.columnarOutput = columnarOutput;
+    }
+
+    /**
+     * Returns whether buffer sizes and the flush policy are tuned from the first lines of input.
      *
-     * <p><strong>Ticker Logic:</strong></p>
-     * <ul>
-     *   <li>The tax calculation now groups operations by their {@code ticker} value, meaning that each stock's tax
-     *   is calculated independently, considering the operations for that specific stock.</li>
-     *   <li>The operations for the same ticker are accumulated and processed together.</li>
-     * </ul>
+     * @return true if buffers are auto-tuned, false otherwise
+     */
+    public boolean isAutoTuneBuffers() {
+        return autoTuneBuffers;
+    }
+
+    /**
+     * Sets whether buffer sizes and the flush policy are tuned from the first lines of input, see {@link BufferTuner}.
      *
-     * @param line the input JSON string representing a list of operations
-     * @return an {@link ArrayNode} containing one object per operation, each with a formatted {@code "tax"} field
-     * @throws JsonProcessingException if the input string cannot be parsed into a list of {@code Operation} objects
+     * @param autoTuneBuffers true to auto-tune buffers, false to keep the configured sizes
      */
-    protected ArrayNode calculate(final String line) throws JsonProcessingException {
+    public void setAutoTuneBuffers(boolean autoTuneBuffers) {
+        this.autoTuneBuffers = autoTuneBuffers;
+    }
 
-        final List<Operation> operationList = this.objectMapper.readerForListOf(Operation.class).readValue(line);
-        final ArrayNode arrayNode = this.objectMapper.createArrayNode();
-        final Map<String, Stock> stocksByTicker = new HashMap<>();
+    /**
+     * Returns whether lines are parsed and answered incrementally instead of being read whole.
+     *
+     * @return true if lines are streamed, false otherwise
+     */
+    public boolean isStreamLines() {
+        return streamLines;
+    }
 
-        final Predicate<Operation> operationPredicate = this.operationPredicate != null
-                ? this.operationPredicate
-                : operation -> true;
+    /**
+     * Sets whether lines are parsed and answered incrementally instead of being read whole.
+     *
+     * @param streamLines true to stream lines, false to read each line whole
+     */
+    public void setStreamLines(boolean streamLines) {
+        this.streamLines = streamLines;
+    }
 
-        operationList.stream().filter(operationPredicate).forEach(op -> {
-            final Stock stock = stocksByTicker.computeIfAbsent(op.ticker(), key -> this.stockSupplier.get());
-            final BigDecimal taxa = processOperation(op, stock);
-            arrayNode.add(this.objectMapper.createObjectNode().put("tax", this.decimalFormat.format(taxa)));
-        });
+    /**
+     * Returns the file read instead of the input stream.
+     *
+     * @return the input file, or {@code null} to read the input stream
+     */
+    public Path getInputPath() {
+        return inputPath;
+    }
 
-        return arrayNode;
+    /**
+     * Sets the file read instead of the input stream.
+     *
+     * @param inputPath the input file, or {@code null} to read the input stream
+     */
+    public void setInputPath(Path inputPath) {
+        this.inputPath = inputPath;
     }
 
     /**
-     * Processes a single operation on the given {@link Stock} instance, modifying its state accordingly
-     * and returning the calculated tax amount (if applicable).
-     * <p>
-     * Supports the following operations:
-     * </p>
-     * <ul>
-     *   <li><b>"buy"</b> — Updates the stock with the purchased quantity and unit cost. Returns zero tax.</li>
-     *   <li><b>"sell"</b> — Updates the stock based on the sale and returns the calculated tax as a {@link BigDecimal}.</li>
-     * </ul>
+     * Returns the file written instead of the output stream.
      *
-     * @param op    the {@link Operation} to be processed
-     * @param stock the {@link Stock} instance to apply the operation to
-     * @return the calculated tax for the operation, or {@code BigDecimal.ZERO} for a "buy"
-     * @throws InvalidOperationException if the operation type is not recognized
+     * @return the output file, or {@code null} to write to the output stream
      */
-    protected BigDecimal processOperation(final Operation op, final Stock stock) {
-        return switch (op.operation()) {
-            case "buy" -> {
-                stock.buy(op.quantity(), op.unitCost());
-                yield BigDecimal.ZERO;
-            }
-            case "sell" -> stock.sell(op.quantity(), op.unitCost());
-            default -> throw new InvalidOperationException(op.operation());
-        };
+    public Path getOutputPath() {
+        return outputPath;
     }
 
     /**
-     * Constructs a new {@code TaxCalculator} instance using the provided {@link Builder}.
-     * <p>
-     * Initializes all necessary components such as input/output streams, object mapper,
-     * formatting, predicates, and stock supplier. Also parses any provided arguments using
-     * {@link ArgParser}.
+     * Sets the file written instead of the output stream.
      *
-     * @param builder the builder instance containing all configuration and dependencies
+     * @param outputPath the output file, or {@code null} to write to the output stream
      */
-    protected TaxCalculator(final Builder builder) {
-        this.args = builder.args;
-        this.decimalFormat = builder.decimalFormat;
-        this.inputStream = builder.inputStream;
-        this.bufferSizeIn = builder.bufferSizeIn;
-        this.outputStream = builder.outputStream;
-        this.bufferSizeOut = builder.bufferSizeOut;
-        this.objectMapper = builder.objectMapper;
-        this.printEveryLine = builder.printEveryLine;
-        this.timings = builder.timings;
-        this.operationPredicate = builder.operationPredicate;
-        this.stockSupplier = builder.stockSupplier;
+    public void setOutputPath(Path outputPath) {
+        this.outputPath = outputPath;
+    }
 
-        ArgParser.parseArgs(this.args, this);
+    /**
+     * Returns the file progress is checkpointed to.
+     *
+     * @return the checkpoint file, or {@code null} if progress is not recorded
+     */
+    public Path getCheckpointPath() {
+        return checkpointPath;
     }
 
     /**
-     * <p>Builder for new instances of {@code TaxCalculator}.</p>
+     * Sets the file progress is checkpointed to, see {@link Checkpoint}.
+     *
+     * @param checkpointPath the checkpoint file, or {@code null} to not record progress
      */
-    public static class Builder {
+    public void setCheckpointPath(Path checkpointPath) {
+        this.checkpointPath = checkpointPath;
+    }
 
-        /**
-         * <p>Constructs a new {@code Builder} instance, initializing the builder with the provided arguments.</p>
-         *
-         * @param args The array of arguments to initialize the builder.
-         */
-        public Builder(final String[] args) {
-            this();
-            this.args = args;
-        }
+    /**
+     * Returns the time between two checkpoints.
+     *
+     * @return the checkpoint interval
+     */
+    public Duration getCheckpointInterval() {
+        return checkpointInterval;
+    }
 
-        /**
-         * <p>Constructs a new {@code Builder} instance.</p>
-         */
-        public Builder() {
-            this.args = new String[0];
-            final DecimalFormatSymbols decimalFormatSymbols = new DecimalFormatSymbols();
-            decimalFormatSymbols.setDecimalSeparator('.');
-            this.objectMapper = new ObjectMapper();
-            this.decimalFormat = new DecimalFormat("#0.0", decimalFormatSymbols);
-            this.inputStream = System.in;
-            this.bufferSizeIn = 8_192;
-            this.outputStream = System.out;
-            this.bufferSizeOut = 8_192;
-            this.stockSupplier = Stock::new;
-        }
+    /**
+     * Sets the time between two checkpoints.
+     *
+     * @param checkpointInterval the checkpoint interval
+     */
+    public void setCheckpointInterval(Duration checkpointInterval) {
+        this.checkpointInterval = checkpointInterval;
+    }
 
-        private String[] args;
-        private final ObjectMapper objectMapper;
-        private DecimalFormat decimalFormat;
-        private InputStream inputStream;
-        private int bufferSizeIn;
-        private OutputStream outputStream;
-        private int bufferSizeOut;
-        private boolean printEveryLine;
-        private boolean timings;
-        private Predicate<Operation> operationPredicate;
-        private Supplier<? extends Stock> stockSupplier;
+    /**
+     * Returns whether the run resumes from the last checkpoint.
+     *
+     * @return true if the run resumes, false if it starts over
+     */
+    public boolean isResume() {
+        return resume;
+    }
 
+    /**
+     * Sets whether the run resumes from the last checkpoint.
+     *
+     * @param resume true to resume, false to start over
+     */
+    public void setResume(boolean resume) {
+        this.resume = resume;
+    }
 
-        /**
-         * Sets the DecimalFormat to be used for formatting.
-         *
-         * @param decimalFormat the DecimalFormat instance
-         * @return this builder instance
-         */
-        public Builder formattedWith(final DecimalFormat decimalFormat) {
-            this.decimalFormat = decimalFormat;
-            return this;
-        }
+    /**
+     * Returns whether the input is read as unsorted operations, one per line, grouped by account.
+     *
+     * @return true if operations are grouped by account, false if each line is a simulation
+     */
+    public boolean isGroupByAccount() {
+        return groupByAccount;
+    }
 
-        /**
-         * Sets the input stream and input buffer size.
-         *
-         * @param inputStream  the input stream
-         * @param bufferSizeIn the buffer size for reading
-         * @return this builder instance
-         */
-        public Builder from(final InputStream inputStream, final int bufferSizeIn) {
-            this.inputStream = inputStream;
-            this.bufferSizeIn = bufferSizeIn;
-            return this;
-        }
+    /**
+     * Sets whether the input is read as unsorted operations, one per line, grouped by account.
+     *
+     * @param groupByAccount true to group operations by account, false to read each line as a simulation
+     */
+    public void setGroupByAccount(boolean groupByAccount) {
+        this.groupByAccount = groupByAccount;
+    }
 
-        /**
+    /**
+     * Returns the memory budget of account grouping.
+     *
+     * @return the estimated heap, in bytes, buffered operations may take before being spilled to disk
+     */
+    public long getGroupMemoryBudget() {
+        return groupMemoryBudget;
+    }
+
+    /**
+     * Sets the memory budget of account grouping.
+     *
+     * @param groupMemoryBudget the estimated heap, in bytes, buffered operations may take before being spilled to disk
+     */
+    public void setGroupMemoryBudget(long groupMemoryBudget) {
+        this.groupMemoryBudget = groupMemoryBudget;
+    }
+
+    /**
+     * Returns the directory sorted runs are spilled under when grouping by account.
+     *
+     * @return the spill directory, or {@code null} for the default temporary directory
+     */
+    public Path getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    /**
+     * Sets the directory sorted runs are spilled under when grouping by account.
+     *
+     * @param spillDirectory the spill directory, or {@code null} for the default temporary directory
+     */
+    public void setSpillDirectory(Path spillDirectory) {
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * Returns whether the input file is followed as it grows instead of read once.
+     *
+     * @return {@code true} if the calculator keeps processing lines appended to the input file
+     */
+    public boolean isFollow() {
+        return follow;
+    }
+
+    /**
+     * Sets whether the input file is followed as it grows instead of read once.
+     *
+     * @param follow {@code true} to keep processing lines appended to the input file
+     */
+    public void setFollow(boolean follow) {
+        this.follow = follow;
+    }
+
+    /**
+     * Stops following the input file, letting a {@link #run()} in follow mode return after checkpointing the lines
+     * processed so far. May be called from any thread, before or during the run.
+     */
+    public void stopFollowing() {
+        this.followStopped = true;
+        final FileFollower follower = this.fileFollower;
+        if (follower != null) follower.stop();
+    }
+
+    /**
+     * Returns the minimum number of operations of a ticker evaluated by a {@link PrefixScanEvaluator}.
+     *
+     * @return the minimum number of operations, or {@code 0} if tickers are always evaluated sequentially
+     */
+    public int getParallelScanThreshold() {
+        return parallelScanThreshold;
+    }
+
+    /**
+     * Sets the minimum number of operations of a ticker evaluated by a {@link PrefixScanEvaluator}.
+     *
+     * @param parallelScanThreshold the minimum number of operations, or {@code 0} to always evaluate tickers sequentially
+     */
+    public void setParallelScanThreshold(int parallelScanThreshold) {
+        this.parallelScanThreshold = parallelScanThreshold;
+    }
+
+    /**
+     * Returns the number of worker threads that lines tagged with an account are partitioned across.
+     *
+     * @return the number of partitions, or {@code 0} if lines are not tagged with an account
+     */
+    public int getAccountPartitions() {
+        return accountPartitions;
+    }
+
+    /**
+     * Sets the number of worker threads that lines tagged with an account are partitioned across.
+     *
+     * @param accountPartitions the number of partitions, or {@code 0} for anonymous lines
+     */
+    public void setAccountPartitions(int accountPartitions) {
+        this.accountPartitions = accountPartitions;
+    }
+
+    /**
+     * Returns how often the lines calculated so far took each fast path, see {@link #calculate(String, TaxResults)}.
+     *
+     * @return the counters, summed over all threads
+     */
+    public FastPathCounters fastPathCounters() {
+        return new FastPathCounters(buyOnlyLines.sum(), exemptLines.sum(), fullLines.sum(), replayedOperations.sum());
+    }
+
+
+    /**
+     * Processes input data line by line from an {@link InputStream}, transforms each line using
+     * the {@code calculate(String)} method, serializes the result to JSON using {@code objectMapper},
+     * and writes it to an {@link OutputStream}.
+     * <p>
+     * The method can optionally flush the output after every line and display the total execution time,
+     * depending on the values of the {@code printEveryLine} and {@code timings} flags.
+     * </p>
+     *
+     * <p><strong>Additional behavior:</strong></p>
+     * <ul>
+     *   <li>If {@code printEveryLine} is {@code true}, sets the buffer size to 8192 bytes and flushes the output after each line.</li>
+     *   <li>If {@code timings} is {@code true}, writes the total execution time in milliseconds at the end of the output,
+     *   and the {@link FastPathCounters} to the standard error.</li>
+     *   <li>If the input starts with the gzip magic number, it is decompressed on a background thread, see
+     *   {@link CompressedStreams#decoding(InputStream, int)}.</li>
+     *   <li>If {@code compressOutput} is {@code true}, the output is gzip-compressed.</li>
+     *   <li>If {@code flightRecorderEvents} is {@code true}, {@link CalculatorEvents} are switched on for the JVM.</li>
+     *   <li>If {@code workerProcesses} is greater than 1, lines are sharded across that many child JVMs and their
+     *   results merged back in input order, see {@link ShardCoordinator}.</li>
+     *   <li>If {@code whatIfRegimes} is set, each line is written as a {@link WhatIfResults} with one tax column per
+     *   regime instead of a single tax per operation.</li>
+     *   <li>If {@code columnarOutput} is {@code true}, the taxes are written in the binary format of
+     *   {@link ColumnarWriter} instead of JSON, in this JVM and with a single tax per operation, so
+     *   {@code workerProcesses} and {@code whatIfRegimes} do not apply; timings go to the standard error.</li>
+     *   <li>If {@code autoTuneBuffers} is {@code true}, lines written as JSON in this JVM are sampled for up to a
+     *   second and the buffers are then resized, and the flush policy chosen, by a {@link BufferTuner}, which
+     *   treats an {@code outputPath} as a file whatever the output stream is. With {@code timings}, the chosen
+     *   values are logged to the standard error.</li>
+     *   <li>If {@code streamLines} is {@code true}, lines are parsed and answered operation by operation instead of
+     *   being read whole, see {@link #streamAll(Reader, Writer)}.</li>
+     *   <li>If {@code inputPath} or {@code outputPath} is set, that file is used instead of the stream.</li>
+     *   <li>If {@code checkpointPath} is set, progress over the input file is recorded there and can be resumed with
+     *   {@code resume}; the other modes do not apply, see {@link #calculateAllCheckpointed(long)}.</li>
+     *   <li>If {@code follow} is {@code true}, the input file is followed as it grows until
+     *   {@link #stopFollowing()} is called, see {@link #follow(long)}.</li>
+     *   <li>If {@code groupByAccount} is {@code true}, each line is a single operation of some account, and the
+     *   results are written per account, see {@link #groupAll(BufferedReader, BufferedWriter)}.</li>
+     *   <li>If {@code accountPartitions} is greater than 0, each line holds operations of some account, whose positions
+     *   carry over to its next lines, see {@link #partitionAll(BufferedReader, BufferedWriter)}.</li>
+     * </ul>
+     *
+     * @throws RuntimeException if an {@link IOException} occurs while reading from or writing to the streams.
+     */
+    public void run() {
+
+        final long startTime = System.currentTimeMillis();
+
+        if (flightRecorderEvents) CalculatorEvents.setEnabled(true);
+
+        if (printEveryLine) {
+            bufferSizeOut = 8_192;
+        }
+
+        if (follow) {
+            try {
+                follow(startTime);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return;
+        }
+
+        if (checkpointPath != null) {
+            try {
+                calculateAllCheckpointed(startTime);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return;
+        }
+
+        try (final InputStream source = inputPath != null ? Files.newInputStream(inputPath) : inputStream;
+             final OutputStream target = outputPath != null ? Files.newOutputStream(outputPath) : outputStream;
+             final BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(CompressedStreams.decoding(source, bufferSizeIn)), bufferSizeIn)) {
+
+            final OutputStream encodedOutputStream = compressOutput ? CompressedStreams.encoding(target) : target;
+
+            if (columnarOutput) {
+                try (final ColumnarWriter columnarWriter = new ColumnarWriter(new BufferedOutputStream(encodedOutputStream, bufferSizeOut),
+                        ColumnarFormat.DEFAULT_BATCH_SIZE, columnarScale())) {
+                    calculateAllColumnar(bufferedReader, columnarWriter);
+                }
+
+                if (timings) System.err.println("Total time taken: " + (System.currentTimeMillis() - startTime) + "ms");
+                return;
+            }
+
+            try (final BufferedWriter bufferedWriter = new BufferedWriter(new OutputStreamWriter(encodedOutputStream), bufferSizeOut)) {
+
+                if (groupByAccount) {
+                    groupAll(bufferedReader, bufferedWriter);
+                } else if (accountPartitions > 0) {
+                    partitionAll(bufferedReader, bufferedWriter);
+                } else if (workerProcesses > 1) {
+                    new ShardCoordinator(workerProcesses, args, bufferSizeOut, printEveryLine).process(bufferedReader, bufferedWriter);
+                } else if (streamLines && whatIfRegimes == null) {
+                    streamAll(bufferedReader, bufferedWriter);
+                } else {
+                    calculateAll(bufferedReader, bufferedWriter);
+                }
+
+                final var endTime = System.currentTimeMillis();
+
+                if (timings) {
+                    bufferedWriter.write("Total time taken: " + (endTime - startTime) + "ms");
+                    bufferedWriter.newLine();
+                    System.err.println(fastPathCounters());
+                }
+            }
+
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+
+    /**
+     * Calculates every line of the reader in this JVM and writes the results to the writer, one line each.
+     * Reading stops at the end of the input or at the first blank line.
+     *
+     * @param bufferedReader the input lines
+     * @param bufferedWriter the destination of the result lines
+     * @throws IOException if reading, parsing or writing fails
+     */
+    private void calculateAll(BufferedReader bufferedReader, final BufferedWriter bufferedWriter) throws IOException {
+
+        final BufferTuner.OutputTarget outputTarget = this.outputPath != null ? BufferTuner.OutputTarget.FILE : BufferTuner.OutputTarget.of(this.outputStream);
+        BufferTuner bufferTuner = this.autoTuneBuffers ? new BufferTuner(outputTarget) : null;
+        boolean flushEveryLine = printEveryLine;
+
+        JsonGenerator jsonGenerator = newGenerator(bufferTuner == null ? bufferedWriter : bufferTuner.counting(bufferedWriter));
+        final TaxResults taxResults = new TaxResults(this.taxFormatter, 16);
+        final WhatIfResults whatIfResults = this.whatIfRegimes == null ? null : new WhatIfResults(this.taxFormatter, this.whatIfRegimes.size(), 16);
+
+        String line;
+        while ((line = bufferedReader.readLine()) != null && !line.trim().isEmpty()) {
+            writeLine(line, taxResults, whatIfResults, jsonGenerator);
+
+            if (flushEveryLine) jsonGenerator.flush();
+
+            if (bufferTuner != null && bufferTuner.sample(line.length())) {
+                jsonGenerator.close();
+                bufferTuner.tune();
+
+                bufferedReader = new BufferedReader(bufferedReader, bufferTuner.bufferSizeIn());
+                jsonGenerator = newGenerator(new BufferedWriter(bufferedWriter, bufferTuner.bufferSizeOut()));
+                flushEveryLine = printEveryLine || bufferTuner.flushEveryLine();
+
+                if (timings) System.err.println(bufferTuner);
+                bufferTuner = null;
+            }
+        }
+
+        jsonGenerator.close();
+    }
+
+    /**
+     * Calculates every line of the input file in this JVM and writes the results to the output file, recording a
+     * {@link Checkpoint} every {@code checkpointInterval} and at the end. Reading stops at the end of the input or
+     * at the first blank line.
+     * <p>
+     * Before each checkpoint the output is flushed and forced to disk, so the checkpoint never points past output
+     * that could be lost. When resuming, the input is positioned at the checkpointed offset and the output
+     * truncated to the checkpointed length, dropping whatever was written after the last checkpoint, and the run
+     * goes on from there. Without {@code resume}, the output file is truncated and the run starts over.
+     * </p>
+     *
+     * <p>Offsets are those of the files themselves, so the input must not be compressed and {@code compressOutput}
+     * does not apply. Timings go to the standard error so that they are not part of the checkpointed output.</p>
+     *
+     * @param startTime the time the run started, in milliseconds
+     * @throws IOException           if reading, parsing or writing fails
+     * @throws IllegalStateException if the input or output file is not set
+     */
+    private void calculateAllCheckpointed(final long startTime) throws IOException {
+
+        if (this.inputPath == null || this.outputPath == null) throw new IllegalStateException("Checkpoints require an input and an output file.");
+
+        final Checkpoint start = this.resume && Files.exists(this.checkpointPath) ? Checkpoint.read(this.checkpointPath) : Checkpoint.START;
+        final long intervalNanos = this.checkpointInterval.toNanos();
+
+        try (final FileChannel inputChannel = FileChannel.open(this.inputPath, StandardOpenOption.READ);
+             final FileChannel outputChannel = FileChannel.open(this.outputPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+
+            if (outputChannel.size() < start.outputOffset()) throw new IllegalStateException("The output file is shorter than its checkpoint.");
+
+            inputChannel.position(start.inputOffset());
+            outputChannel.truncate(start.outputOffset());
+            outputChannel.position(start.outputOffset());
+
+            final OffsetLineReader offsetLineReader = new OffsetLineReader(inputChannel, this.bufferSizeIn, start.inputOffset());
+            final BufferedWriter bufferedWriter = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(outputChannel), StandardCharsets.UTF_8), this.bufferSizeOut);
+            final JsonGenerator jsonGenerator = newGenerator(bufferedWriter);
+            final TaxResults taxResults = new TaxResults(this.taxFormatter, 16);
+            final WhatIfResults whatIfResults = this.whatIfRegimes == null ? null : new WhatIfResults(this.taxFormatter, this.whatIfRegimes.size(), 16);
+
+            long consumed = start.inputOffset();
+            long lines = start.lines();
+            long lastCheckpoint = System.nanoTime();
+
+            String line;
+            while ((line = offsetLineReader.readLine()) != null && !line.trim().isEmpty()) {
+                writeLine(line, taxResults, whatIfResults, jsonGenerator);
+                consumed = offsetLineReader.offset();
+                lines++;
+
+                if (printEveryLine) jsonGenerator.flush();
+
+                if (System.nanoTime() - lastCheckpoint >= intervalNanos) {
+                    checkpoint(jsonGenerator, outputChannel, consumed, lines, this.checkpointPath);
+                    lastCheckpoint = System.nanoTime();
+                }
+            }
+
+            checkpoint(jsonGenerator, outputChannel, consumed, lines, this.checkpointPath);
+            jsonGenerator.close();
+        }
+
+        if (timings) System.err.println("Total time taken: " + (System.currentTimeMillis() - startTime) + "ms");
+    }
+
+    /**
+     * Follows the input file as it grows, calculating each complete line once it is appended and appending its
+     * results to the output file, until {@link #stopFollowing()} is called or the thread is interrupted.
+     * <p>
+     * Lines are read by a {@link FileFollower}, which sleeps on file change notifications while the input is idle.
+     * Whenever the appended lines have all been processed, the output is flushed, forced to disk and a
+     * {@link Checkpoint} recorded, so results appear as soon as their line is complete and a restarted follower
+     * carries on from the first line not yet written. Long catch-ups are also checkpointed every
+     * {@code checkpointInterval}.
+     * </p>
+     *
+     * <p>The checkpoint goes to {@code checkpointPath}, or next to the output file with a {@code .ckpt} suffix, and is
+     * always resumed from when it exists. Blank lines are skipped rather than ending the input. As with
+     * {@link #calculateAllCheckpointed(long)}, neither file may be compressed, and timings go to the standard
+     * error.</p>
+     *
+     * @param startTime the time the run started, in milliseconds
+     * @throws IOException           if reading, parsing or writing fails
+     * @throws IllegalStateException if the input or output file is not set, or the input file was truncated
+     */
+    private void follow(final long startTime) throws IOException {
+
+        if (this.inputPath == null || this.outputPath == null) throw new IllegalStateException("Following requires an input and an output file.");
+
+        final Path followCheckpointPath = this.checkpointPath != null
+                ? this.checkpointPath
+                : this.outputPath.resolveSibling(this.outputPath.getFileName() + ".ckpt");
+
+        final Checkpoint start = Files.exists(followCheckpointPath) ? Checkpoint.read(followCheckpointPath) : Checkpoint.START;
+        final long intervalNanos = this.checkpointInterval.toNanos();
+
+        try (final FileFollower follower = new FileFollower(this.inputPath, this.bufferSizeIn, start.inputOffset(), FileFollower.DEFAULT_POLL_INTERVAL);
+             final FileChannel outputChannel = FileChannel.open(this.outputPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+
+            this.fileFollower = follower;
+            if (this.followStopped) follower.stop();
+
+            if (outputChannel.size() < start.outputOffset()) throw new IllegalStateException("The output file is shorter than its checkpoint.");
+
+            outputChannel.truncate(start.outputOffset());
+            outputChannel.position(start.outputOffset());
+
+            final BufferedWriter bufferedWriter = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(outputChannel), StandardCharsets.UTF_8), this.bufferSizeOut);
+            final JsonGenerator jsonGenerator = newGenerator(bufferedWriter);
+            final TaxResults taxResults = new TaxResults(this.taxFormatter, 16);
+            final WhatIfResults whatIfResults = this.whatIfRegimes == null ? null : new WhatIfResults(this.taxFormatter, this.whatIfRegimes.size(), 16);
+
+            long lines = start.lines();
+            long lastCheckpoint = System.nanoTime();
+            boolean pending = false;
+
+            try {
+                while (true) {
+                    final String line = follower.poll();
+
+                    if (line == null) {
+                        if (pending) {
+                            checkpoint(jsonGenerator, outputChannel, follower.offset(), lines, followCheckpointPath);
+                            lastCheckpoint = System.nanoTime();
+                            pending = false;
+                        }
+                        if (!follower.await()) break;
+                        continue;
+                    }
+
+                    pending = true;
+                    if (line.trim().isEmpty()) continue;
+
+                    writeLine(line, taxResults, whatIfResults, jsonGenerator);
+                    lines++;
+
+                    if (System.nanoTime() - lastCheckpoint >= intervalNanos) {
+                        checkpoint(jsonGenerator, outputChannel, follower.offset(), lines, followCheckpointPath);
+                        lastCheckpoint = System.nanoTime();
+                        pending = false;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            if (pending) checkpoint(jsonGenerator, outputChannel, follower.offset(), lines, followCheckpointPath);
+            jsonGenerator.close();
+        } finally {
+            this.fileFollower = null;
+        }
+
+        if (timings) System.err.println("Total time taken: " + (System.currentTimeMillis() - startTime) + "ms");
+    }
+
+    /**
+     * Flushes the output and forces it to disk, then records the checkpoint.
+     */
+    private void checkpoint(final JsonGenerator jsonGenerator, final FileChannel outputChannel, final long inputOffset, final long lines, final Path checkpointPath) throws IOException {
+        jsonGenerator.flush();
+        outputChannel.force(false);
+        new Checkpoint(inputOffset, outputChannel.position(), lines).write(checkpointPath);
+    }
+
+    /**
+     * Calculates one line and writes its results followed by a line separator, with one tax column per regime if
+     * {@code whatIfResults} is given.
+     *
+     * @param line          the input JSON string representing a list of operations
+     * @param taxResults    the reusable results of a single-regime line
+     * @param whatIfResults the reusable results of a what-if line, or {@code null}
+     * @param jsonGenerator the destination of the results
+     * @throws IOException if parsing or writing fails
+     */
+    private void writeLine(final String line, final TaxResults taxResults, final WhatIfResults whatIfResults, final JsonGenerator jsonGenerator) throws IOException {
+        if (whatIfResults != null) {
+            whatIfResults.reset(this.taxFormatter);
+            this.calculateWhatIf(line, whatIfResults).writeTo(jsonGenerator);
+        } else {
+            taxResults.reset(this.taxFormatter);
+            this.calculate(line, taxResults).writeTo(jsonGenerator);
+        }
+        jsonGenerator.writeRaw(System.lineSeparator());
+    }
+
+    /**
+     * Reads one operation per line, each with an {@code account} field, groups them by account with an
+     * {@link ExternalSorter} within {@code groupMemoryBudget}, and calculates the operations of each account in input
+     * order. Reading stops at the end of the input or at the first blank line.
+     * <p>
+     * Operations of different accounts may be interleaved in any order, and the input may be far larger than the
+     * heap: once the buffered operations exceed the budget they are sorted and spilled to {@code spillDirectory}, and
+     * the spilled runs are merged back at the end. Each account then gets fresh stocks, exactly as one line of the
+     * default mode would, and is written as soon as its operations are calculated, as one line of the form
+     * {@code {"account":"...","taxes":["...","..."]}}, with accounts in ascending order.
+     * </p>
+     *
+     * @param bufferedReader the input operations
+     * @param bufferedWriter the destination of the result lines
+     * @throws IOException             if reading, parsing, spilling or writing fails
+     * @throws MissingAccountException if an operation has no account
+     */
+    private void groupAll(final BufferedReader bufferedReader, final BufferedWriter bufferedWriter) throws IOException {
+
+        final ObjectReader operationReader = this.objectMapper.readerFor(Operation.class).without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        final LineContext lineContext = this.lineContexts.get();
+        final String zeroTax = this.taxFormatter.format(0L);
+        final String lineSeparator = System.lineSeparator();
+
+        try (final ExternalSorter externalSorter = new ExternalSorter(this.groupMemoryBudget, this.spillDirectory);
+             final JsonGenerator jsonGenerator = newGenerator(bufferedWriter)) {
+
+            long lineNumber = 0;
+            String line;
+            while ((line = bufferedReader.readLine()) != null && !line.trim().isEmpty()) {
+                lineNumber++;
+                final String account = accountOf(line);
+                if (account == null) throw new MissingAccountException(lineNumber);
+                externalSorter.add(account, line);
+            }
+
+            final ExternalSorter.Cursor cursor = externalSorter.sorted();
+            String currentAccount = null;
+
+            while (cursor.hasNext()) {
+                final KeyedLine keyedLine = cursor.next();
+
+                if (!keyedLine.key().equals(currentAccount)) {
+                    if (currentAccount != null) {
+                        jsonGenerator.writeEndArray();
+                        jsonGenerator.writeEndObject();
+                        jsonGenerator.writeRaw(lineSeparator);
+                        if (printEveryLine) jsonGenerator.flush();
+                    }
+                    currentAccount = keyedLine.key();
+                    lineContext.begin(this.stockSupplier, this.taxRegimeResolver);
+                    jsonGenerator.writeStartObject();
+                    jsonGenerator.writeStringField("account", currentAccount);
+                    jsonGenerator.writeArrayFieldStart("taxes");
+                }
+
+                final Operation op = operationReader.readValue(keyedLine.line());
+                if (this.operationPredicate == null || this.operationPredicate.test(op)) {
+                    final BigDecimal tax = processOperation(op, lineContext.stockFor(op.ticker()));
+                    jsonGenerator.writeString(tax.signum() == 0 ? zeroTax : TaxResult.of(tax).format(this.taxFormatter));
+                }
+            }
+
+            if (currentAccount != null) {
+                jsonGenerator.writeEndArray();
+                jsonGenerator.writeEndObject();
+                jsonGenerator.writeRaw(lineSeparator);
+            }
+        }
+    }
+
+    /**
+     * Reads lines of the form {@code {"account":"A1","operations":[...]}} and calculates them on
+     * {@code accountPartitions} worker threads, writing one line per input line, in input order, of the form
+     * {@code {"account":"A1","taxes":["0.0","10000.0"]}}. Reading stops at the end of the input or at the first blank
+     * line.
+     * <p>
+     * Unlike the default mode, the positions of an account carry over from one of its lines to the next for the whole
+     * run. Each account is hashed to one of the {@link AccountPartitions}, whose thread alone holds its stocks, so the
+     * lines of an account are applied in order without locks while accounts are calculated in parallel. This thread
+     * only extracts the account of each line, which is cheapest when {@code account} is the first field, and writes
+     * the results.
+     * </p>
+     *
+     * @param bufferedReader the input lines
+     * @param bufferedWriter the destination of the result lines
+     * @throws IOException             if reading, parsing or writing fails
+     * @throws MissingAccountException if a line has no account
+     */
+    private void partitionAll(final BufferedReader bufferedReader, final BufferedWriter bufferedWriter) throws IOException {
+
+        try (final AccountPartitions partitions = new AccountPartitions(this, this.accountPartitions, bufferedWriter, this.printEveryLine)) {
+
+            long lineNumber = 0;
+            String line;
+            while ((line = bufferedReader.readLine()) != null && !line.trim().isEmpty()) {
+                lineNumber++;
+                final String account = accountOf(line);
+                if (account == null) throw new MissingAccountException(lineNumber);
+                partitions.submit(account, line);
+            }
+
+            partitions.finish();
+        }
+    }
+
+    /**
+     * Returns the {@code account} field of a line holding one object, an operation or a line of operations of an
+     * account, skipping the other fields.
+     *
+     * @param line the input line
+     * @return the account, or {@code null} if the operation has none
+     * @throws IOException if the line is not an object
+     */
+    private String accountOf(final String line) throws IOException {
+        try (final JsonParser jsonParser = this.objectMapper.getFactory().createParser(line)) {
+            if (jsonParser.nextToken() != JsonToken.START_OBJECT) throw new JsonParseException(jsonParser, "Expected an object with an account");
+
+            while (jsonParser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = jsonParser.currentName();
+                final JsonToken value = jsonParser.nextToken();
+                if ("account".equals(field) && value.isScalarValue() && value != JsonToken.VALUE_NULL) return jsonParser.getText();
+                jsonParser.skipChildren();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Calculates every line of the reader in this JVM without ever holding a whole line or its results in memory,
+     * and writes the same output as {@link #calculateAll(BufferedReader, BufferedWriter)}. Reading stops at the end
+     * of the input or at the first blank line.
+     * <p>
+     * One parser runs over the whole input, each line being a root-level array of operations. Operations are
+     * parsed one at a time by the {@link OperationParser}, with the {@link OperationFilter} pushed down when one is
+     * set, and each tax is written as soon as it is calculated, so only the per-ticker positions and the parser and
+     * writer buffers are kept. Memory therefore depends on the number of tickers in a line, not on its length.
+     * </p>
+     *
+     * @param reader the input lines
+     * @param writer the destination of the result lines
+     * @throws IOException if reading, parsing or writing fails
+     */
+    private void streamAll(final Reader reader, final Writer writer) throws IOException {
+
+        final LineContext lineContext = this.lineContexts.get();
+        final OperationParser operationParser = lineContext.operationParser(this.objectMapper.getFactory());
+        final OperationFilter operationFilter = this.operationPredicate instanceof OperationFilter filter ? filter : ACCEPT_ALL;
+        final Predicate<Operation> predicate = this.operationPredicate instanceof OperationFilter ? null : this.operationPredicate;
+        final TaxFormatter formatter = this.taxFormatter;
+        final String zeroTax = formatter.format(0L);
+        final String lineSeparator = System.lineSeparator();
+
+        try (final JsonParser jsonParser = this.objectMapper.getFactory().createParser(reader); final JsonGenerator jsonGenerator = newGenerator(writer)) {
+
+            int lastLineNr = 0;
+            while (jsonParser.nextToken() != null) {
+                if (jsonParser.currentTokenLocation().getLineNr() > lastLineNr + 1) break;
+
+                final LineProcessedEvent event = CalculatorEvents.isEnabled() ? CalculatorEvents.beginLine() : null;
+                final long startOffset = jsonParser.currentTokenLocation().getCharOffset();
+                final int[] operations = {0};
+
+                lineContext.begin(this.stockSupplier, this.taxRegimeResolver);
+                jsonGenerator.writeStartArray();
+
+                try {
+                    operationParser.parseArray(jsonParser, operationFilter, op -> {
+                        if (predicate != null && !predicate.test(op)) return;
+
+                        final BigDecimal tax = processOperation(op, lineContext.stockFor(op.ticker()));
+                        try {
+                            jsonGenerator.writeStartObject();
+                            jsonGenerator.writeStringField("tax", tax.signum() == 0 ? zeroTax : TaxResult.of(tax).format(formatter));
+                            jsonGenerator.writeEndObject();
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        operations[0]++;
+                    });
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                } catch (IOException | RuntimeException e) {
+                    if (event != null) CalculatorEvents.calculationFailed(e, (int) (jsonParser.currentLocation().getCharOffset() - startOffset));
+                    throw e;
+                }
+
+                jsonGenerator.writeEndArray();
+                jsonGenerator.writeRaw(lineSeparator);
+                lastLineNr = jsonParser.currentLocation().getLineNr();
+
+                if (event != null) CalculatorEvents.endLine(event, operations[0], (int) (jsonParser.currentLocation().getCharOffset() - startOffset));
+                if (printEveryLine) jsonGenerator.flush();
+            }
+        }
+    }
+
+    /**
+     * Creates a generator writing root values back to back to the given writer, which it flushes but never closes.
+     *
+     * @param writer the destination of the results
+     * @return a new generator
+     * @throws IOException if the generator cannot be created
+     */
+    private JsonGenerator newGenerator(final Writer writer) throws IOException {
+        return this.objectMapper.writer().createGenerator(writer)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .setRootValueSeparator(null);
+    }
+
+    /**
+     * Returns the number of decimal places of the taxes in columnar output: the largest tax scale of the regime of
+     * the supplied stocks and of the regime set with {@link Builder#taxedUnder(TaxRegime)}. The regimes chosen by any
+     * other resolver are not known before their tickers are traded, so their taxes must fit that scale.
+     *
+     * @return the scale to write taxes with
+     */
+    private int columnarScale() {
+        int scale = stockSupplier.get().taxRegime().taxScale();
+        if (taxRegimeResolver instanceof SingleRegime singleRegime) scale = Math.max(scale, singleRegime.taxRegime().taxScale());
+        return scale;
+    }
+
+    /**
+     * Calculates every line of the reader in this JVM and writes one columnar row per operation, identified by the
+     * position of its line and its position among the results of that line. Reading stops at the end of the input
+     * or at the first blank line.
+     *
+     * @param bufferedReader the input lines
+     * @param columnarWriter the destination of the rows
+     * @throws IOException         if reading, parsing or writing fails
+     * @throws ArithmeticException if a tax has more decimal places than the scale of the writer
+     */
+    private void calculateAllColumnar(final BufferedReader bufferedReader, final ColumnarWriter columnarWriter) throws IOException {
+
+        final LineContext lineContext = this.lineContexts.get();
+        long lineId = 0;
+
+        String line;
+        while ((line = bufferedReader.readLine()) != null && !line.trim().isEmpty()) {
+            final long currentLineId = lineId++;
+            final int[] operationIndex = {0};
+
+            lineContext.begin(this.stockSupplier, this.taxRegimeResolver);
+            forEachOperation(line, lineContext, op -> {
+                final BigDecimal tax = processOperation(op, lineContext.stockFor(op.ticker()));
+                try {
+                    columnarWriter.write(currentLineId, operationIndex[0]++, op.ticker(), tax);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            if (printEveryLine) columnarWriter.flush();
+        }
+    }
+
+    /**
+     * Returns a new {@link TaxProcessor} that applies operations one by one, with the stock supplier, predicate and
+     * {@link #processOperation(Operation, Stock)} of this calculator, keeping the position of each ticker for the
+     * whole stream.
+     *
+     * @return a new processor, to be subscribed to a single publisher of operations
+     */
+    public TaxProcessor processor() {
+        return new TaxProcessor(this, this.stockSupplier, this.taxRegimeResolver, this.operationPredicate);
+    }
+
+    /**
+     * Returns a new {@link LinePublisher} publishing the {@link TaxResults} of each line of the configured input
+     * stream, read on demand on the given executor.
+     *
+     * @param executor the executor reading and calculating lines
+     * @return a new publisher, to be subscribed by a single subscriber
+     */
+    public LinePublisher publisher(final Executor executor) {
+        return new LinePublisher(this, this.inputStream, this.bufferSizeIn, executor);
+    }
+
+    /**
+     * Parses a JSON-formatted string representing a list of operations, processes each operation to calculate a tax,
+     * and returns the result as {@link TaxResults}. The tax calculation now considers the {@code ticker} field
+     * for each operation, ensuring that tax is calculated separately for different stocks.
+     * <p>
+     * Each operation is processed using the {@code processOperation} method, and the resulting tax is stored unformatted.
+     * Formatting with {@code taxFormatter} only happens when a tax is read or when the results are serialized, each
+     * one becoming an object with a {@code "tax"} field in a JSON array. Zero-tax entries share one pre-formatted value.
+     * </p>
+     *
+     * <p><strong>Filtering:</strong></p>
+     * <ul>
+     *   <li>If {@code operationPredicate} is an {@link OperationFilter}, it is evaluated by the parser on the raw
+     *   tokens, so operations that do not match are skipped instead of being deserialized first.</li>
+     *   <li>If {@code operationPredicate} is any other predicate, it is used to filter the deserialized operations.</li>
+     *   <li>If not set, all operations are processed.</li>
+     * </ul>
+     *
+     * <p><strong>Ticker Logic:</strong></p>
+     * <ul>
+     *   <li>The tax calculation now groups operations by their {@code ticker} value, meaning that each stock's tax
+     *   is calculated independently, considering the operations for that specific stock.</li>
+     *   <li>The operations for the same ticker are accumulated and processed together.</li>
+     * </ul>
+     *
+     * @param line the input JSON string representing a list of operations
+     * @return the {@link TaxResults} with one tax per processed operation
+     * @throws JsonProcessingException if the input string cannot be parsed into a list of {@code Operation} objects
+     */
+    protected TaxResults calculate(final String line) throws JsonProcessingException {
+        return calculate(line, new TaxResults(this.taxFormatter, 16));
+    }
+
+    /**
+     * Same as {@link #calculate(String)}, but appends the taxes to the given {@link TaxResults}, so that a caller
+     * processing many lines can reuse one instance.
+     * <p>
+     * The map of stocks by ticker, the parser scratch buffers and, with the default supplier, the {@link Stock}
+     * instances themselves come from a per-thread {@link LineContext} and are reset and reused from one line to the
+     * next, so steady-state processing of small lines allocates little more than the parsed operations.
+     * </p>
+     *
+     * <p>When {@link CalculatorEvents} are enabled, e.g. with {@code -jfr}, the line is recorded as a
+     * {@link LineProcessedEvent}, and a failure as a {@code CalculationFailedEvent} before being rethrown.</p>
+     *
+     * <p>If {@code parallelScanThreshold} is set, each ticker with at least that many operations in the line is
+     * evaluated by a {@link PrefixScanEvaluator} on the common pool, as a plain {@link Stock} under the regime of the
+     * {@code taxRegimeResolver}, or {@link TaxRegime#DEFAULT} without one. The other tickers go through the stocks as
+     * usual. Like the fast path below, the scan is only used where it computes what the stocks would: with the
+     * default stock supplier, without {@link CalculatorEvents}, and not by subclasses.</p>
+     *
+     * <p>Otherwise, each line starts on the fast path of a {@link LineClassifier}: buys, and sells whose total does
+     * not exceed the threshold, are only validated and answered with a zero tax, since no such operation can be
+     * taxed. The first sell above the threshold replays the operations absorbed so far on the stocks and the rest of
+     * the line is calculated in full. Buy-only and exempt lines therefore skip the average-cost and loss arithmetic
+     * entirely, which is counted in {@link #fastPathCounters()}. The fast path is only taken with the default stock
+     * supplier, without {@link CalculatorEvents}, and not by subclasses, which may override
+     * {@link #processOperation(Operation, Stock)}.</p>
+     *
+     * @param line       the input JSON string representing a list of operations
+     * @param taxResults the results to append to
+     * @return the given {@code taxResults}
+     * @throws JsonProcessingException if the input string cannot be parsed into a list of {@code Operation} objects
+     */
+    protected TaxResults calculate(final String line, final TaxResults taxResults) throws JsonProcessingException {
+
+        if (!CalculatorEvents.isEnabled()) return calculateLine(line, taxResults);
+
+        final LineProcessedEvent event = CalculatorEvents.beginLine();
+        final int operationsBefore = taxResults.size();
+        try {
+            calculateLine(line, taxResults);
+        } catch (JsonProcessingException | RuntimeException e) {
+            CalculatorEvents.calculationFailed(e, line.length());
+            throw e;
+        }
+        CalculatorEvents.endLine(event, taxResults.size() - operationsBefore, line.length());
+        return taxResults;
+    }
+
+    private TaxResults calculateLine(final String line, final TaxResults taxResults) throws JsonProcessingException {
+
+        final LineContext lineContext = this.lineContexts.get();
+        lineContext.begin(this.stockSupplier, this.taxRegimeResolver);
+
+        final boolean plainStocks = this.stockSupplier == DEFAULT_STOCK_SUPPLIER && getClass() == TaxCalculator.class && !CalculatorEvents.isEnabled();
+
+        if (this.parallelScanThreshold > 0 && plainStocks) {
+            final List<Operation> operations = new ArrayList<>();
+            forEachOperation(line, lineContext, operations::add);
+
+            if (operations.size() >= this.parallelScanThreshold) return calculateScanned(operations, lineContext, taxResults);
+
+            for (Operation op : operations) taxResults.add(processOperation(op, lineContext.stockFor(op.ticker())));
+            return taxResults;
+        }
+
+        if (!plainStocks) {
+            forEachOperation(line, lineContext, op -> taxResults.add(processOperation(op, lineContext.stockFor(op.ticker()))));
+            return taxResults;
+        }
+
+        final LineClassifier lineClassifier = lineContext.lineClassifier();
+        lineClassifier.begin(this.taxRegimeResolver);
+
+        forEachOperation(line, lineContext, op -> {
+            if (!lineClassifier.isFallenBack()) {
+                if (lineClassifier.absorb(op)) {
+                    taxResults.add(BigDecimal.ZERO);
+                    return;
+                }
+                lineClassifier.fallBack();
+                for (int i = 0; i < lineClassifier.size(); i++) {
+                    final Operation absorbed = lineClassifier.get(i);
+                    processOperation(absorbed, lineContext.stockFor(absorbed.ticker()));
+                }
+            }
+            taxResults.add(processOperation(op, lineContext.stockFor(op.ticker())));
+        });
+
+        if (lineClassifier.isFallenBack()) {
+            fullLines.increment();
+            replayedOperations.add(lineClassifier.size());
+        } else if (lineClassifier.hasSells()) {
+            exemptLines.increment();
+        } else {
+            buyOnlyLines.increment();
+        }
+
+        return taxResults;
+    }
+
+    /**
+     * Evaluates each ticker with at least {@code parallelScanThreshold} operations with a {@link PrefixScanEvaluator}
+     * and the other tickers with their stocks, then appends the taxes in line order.
+     * <p>
+     * Tickers are independent, so evaluating them one after the other gives the same taxes as the line order. If any
+     * operation is invalid, the line is replayed in order with fresh stocks, so that the exception thrown is the one
+     * of the first invalid operation of the line.
+     * </p>
+     *
+     * @param operations  the accepted operations of the line
+     * @param lineContext the per-thread state holding the stocks
+     * @param taxResults  the results to append to
+     * @return the given {@code taxResults}
+     */
+    private TaxResults calculateScanned(final List<Operation> operations, final LineContext lineContext, final TaxResults taxResults) {
+
+        final int size = operations.size();
+        final Map<String, Integer> groupsByTicker = new HashMap<>();
+        final int[] groups = new int[size];
+        int[] groupSizes = new int[8];
+
+        for (int i = 0; i < size; i++) {
+            final int group = groupsByTicker.computeIfAbsent(operations.get(i).ticker(), ticker -> groupsByTicker.size());
+            if (group == groupSizes.length) groupSizes = Arrays.copyOf(groupSizes, group << 1);
+            groups[i] = group;
+            groupSizes[group]++;
+        }
+
+        final int[][] indexesByGroup = new int[groupsByTicker.size()][];
+        for (int group = 0; group < indexesByGroup.length; group++) indexesByGroup[group] = new int[groupSizes[group]];
+        Arrays.fill(groupSizes, 0);
+        for (int i = 0; i < size; i++) indexesByGroup[groups[i]][groupSizes[groups[i]]++] = i;
+
+        final BigDecimal[] taxes = new BigDecimal[size];
+        try {
+            for (int[] indexes : indexesByGroup) {
+                final String ticker = operations.get(indexes[0]).ticker();
+
+                if (indexes.length >= this.parallelScanThreshold) {
+                    final List<Operation> tickerOperations = new ArrayList<>(indexes.length);
+                    for (int index : indexes) tickerOperations.add(operations.get(index));
+
+                    final TaxRegime taxRegime = this.taxRegimeResolver != null ? this.taxRegimeResolver.apply(ticker) : TaxRegime.DEFAULT;
+                    final BigDecimal[] tickerTaxes = new PrefixScanEvaluator(taxRegime).evaluate(tickerOperations);
+                    for (int i = 0; i < indexes.length; i++) taxes[indexes[i]] = tickerTaxes[i];
+                } else {
+                    final Stock stock = lineContext.stockFor(ticker);
+                    for (int index : indexes) taxes[index] = processOperation(operations.get(index), stock);
+                }
+            }
+        } catch (RuntimeException e) {
+            lineContext.begin(this.stockSupplier, this.taxRegimeResolver);
+            for (Operation op : operations) taxResults.add(processOperation(op, lineContext.stockFor(op.ticker())));
+            throw e;
+        }
+
+        for (BigDecimal tax : taxes) taxResults.add(tax);
+        return taxResults;
+    }
+
+    /**
+     * Parses the line and builds a {@link PositionIndex} over its operations, answering the position of any ticker
+     * right after any operation by replaying at most {@link PositionIndex#DEFAULT_INTERVAL} operations.
+     *
+     * @param line the input JSON string representing a list of operations
+     * @return the index of the operations accepted by {@code operationPredicate}
+     * @throws JsonProcessingException if the input string cannot be parsed into a list of {@code Operation} objects
+     * @see #index(String, int)
+     */
+    public PositionIndex index(final String line) throws JsonProcessingException {
+        return index(line, PositionIndex.DEFAULT_INTERVAL);
+    }
+
+    /**
+     * Parses the line and builds a {@link PositionIndex} over its operations, with a snapshot of each ticker every
+     * {@code interval} of its operations.
+     * <p>
+     * Operations are filtered by {@code operationPredicate} as when calculating, and each ticker is taxed under the
+     * regime of the {@code taxRegimeResolver}, or {@link TaxRegime#DEFAULT} without one. The stock supplier is not
+     * used, since positions are snapshots of plain {@link Stock} instances.
+     * </p>
+     *
+     * @param line     the input JSON string representing a list of operations
+     * @param interval the number of operations of a ticker between two snapshots
+     * @return the index of the operations accepted by {@code operationPredicate}
+     * @throws JsonProcessingException if the input string cannot be parsed into a list of {@code Operation} objects
+     */
+    public PositionIndex index(final String line, final int interval) throws JsonProcessingException {
+        final List<Operation> operations = new ArrayList<>();
+        forEachOperation(line, this.lineContexts.get(), operations::add);
+        return PositionIndex.build(operations, this.taxRegimeResolver, interval);
+    }
+
+    /**
+     * Parses the line once and evaluates every operation under each of the {@code whatIfRegimes} side by side,
+     * appending one row with one tax per regime to the given {@link WhatIfResults}.
+     * <p>
+     * Each ticker is tracked by a single {@link WhatIfPosition}: shares and average cost are computed once, since they
+     * do not depend on the regime, and only the carried loss is kept per regime. Taxes therefore match those of
+     * separate runs with {@link Builder#taxedUnder(TaxRegime)} for each regime. The stock supplier and the regime
+     * resolver are not used in this mode; the predicate filters operations as usual.
+     * </p>
+     *
+     * @param line          the input JSON string representing a list of operations
+     * @param whatIfResults the table to append to, with one column per regime
+     * @return the given {@code whatIfResults}
+     * @throws JsonProcessingException   if the input string cannot be parsed into a list of {@code Operation} objects
+     * @throws IllegalStateException     if no what-if regimes are set
+     * @throws InvalidOperationException if an operation type is not recognized
+     */
+    protected WhatIfResults calculateWhatIf(final String line, final WhatIfResults whatIfResults) throws JsonProcessingException {
+
+        if (this.whatIfRegimes == null) throw new IllegalStateException("No what-if regimes are set.");
+
+        final TaxRegime[] taxRegimes = this.whatIfRegimes.toArray(new TaxRegime[0]);
+        final BigDecimal[] taxes = new BigDecimal[taxRegimes.length];
+        final Map<String, WhatIfPosition> positionsByTicker = new HashMap<>();
+
+        forEachOperation(line, this.lineContexts.get(), op -> {
+            final WhatIfPosition position = positionsByTicker.computeIfAbsent(op.ticker(), ticker -> new WhatIfPosition(taxRegimes));
+            switch (op.operation()) {
+                case "buy" -> {
+                    position.buy(op.quantity(), op.unitCost());
+                    whatIfResults.addZeroRow();
+                }
+                case "sell" -> {
+                    position.sell(op.quantity(), op.unitCost(), taxes);
+                    whatIfResults.addRow(taxes);
+                }
+                default -> throw new InvalidOperationException(op.operation());
+            }
+        });
+
+        return whatIfResults;
+    }
+
+    /**
+     * Parses the line and passes each operation accepted by {@code operationPredicate} to the action, in order.
+     *
+     * @param line        the input JSON string representing a list of operations
+     * @param lineContext the per-thread state holding the parser
+     * @param action      applied to each accepted operation
+     * @throws JsonProcessingException if the input string cannot be parsed into a list of {@code Operation} objects
+     */
+    private void forEachOperation(final String line, final LineContext lineContext, final Consumer<Operation> action) throws JsonProcessingException {
+
+        if (this.operationPredicate instanceof OperationFilter operationFilter) {
+            try {
+                lineContext.operationParser(this.objectMapper.getFactory()).parse(line, operationFilter, action);
+            } catch (JsonProcessingException e) {
+                throw e;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return;
+        }
+
+        final List<Operation> operationList = this.operationListReader.readValue(line);
+
+        for (Operation op : operationList) {
+            if (this.operationPredicate == null || this.operationPredicate.test(op)) {
+                action.accept(op);
+            }
+        }
+    }
+
+    /**
+     * Processes a single operation on the given {@link Stock} instance, modifying its state accordingly
+     * and returning the calculated tax amount (if applicable).
+     * <p>
+     * Supports the following operations:
+     * </p>
+     * <ul>
+     *   <li><b>"buy"</b> — Updates the stock with the purchased quantity and unit cost. Returns zero tax.</li>
+     *   <li><b>"sell"</b> — Updates the stock based on the sale and returns the calculated tax as a {@link BigDecimal}.</li>
+     * </ul>
+     *
+     * @param op    the {@link Operation} to be processed
+     * @param stock the {@link Stock} instance to apply the operation to
+     * @return the calculated tax for the operation, or {@code BigDecimal.ZERO} for a "buy"
+     * @throws InvalidOperationException if the operation type is not recognized
+     */
+    protected BigDecimal processOperation(final Operation op, final Stock stock) {
+        return switch (op.operation()) {
+            case "buy" -> {
+                stock.buy(op.quantity(), op.unitCost());
+                yield BigDecimal.ZERO;
+            }
+            case "sell" -> stock.sell(op.quantity(), op.unitCost());
+            default -> throw new InvalidOperationException(op.operation());
+        };
+    }
+
+    /**
+     * Constructs a new {@code TaxCalculator} instance using the provided {@link Builder}.
+     * <p>
+     * Initializes all necessary components such as input/output streams, object mapper,
+     * formatting, predicates, and stock supplier. Also parses any provided arguments using
+     * {@link ArgParser}.
+     *
+     * @param builder the builder instance containing all configuration and dependencies
+     */
+    protected TaxCalculator(final Builder builder) {
+        this.args = builder.args;
+        this.decimalFormat = builder.decimalFormat;
+        this.taxFormatter = builder.taxFormatter;
+        this.inputStream = builder.inputStream;
+        this.bufferSizeIn = builder.bufferSizeIn;
+        this.outputStream = builder.outputStream;
+        this.bufferSizeOut = builder.bufferSizeOut;
+        this.objectMapper = builder.objectMapper;
+        this.operationListReader = builder.objectMapper.readerForListOf(Operation.class);
+        this.printEveryLine = builder.printEveryLine;
+        this.timings = builder.timings;
+        this.operationPredicate = builder.operationPredicate;
+        this.stockSupplier = builder.stockSupplier;
+        this.compressOutput = builder.compressOutput;
+        this.workerProcesses = builder.workerProcesses;
+        this.flightRecorderEvents = builder.flightRecorderEvents;
+        this.taxRegimeResolver = builder.taxRegimeResolver;
+        this.whatIfRegimes = builder.whatIfRegimes;
+        this.columnarOutput = builder.columnarOutput;
+        this.autoTuneBuffers = builder.autoTuneBuffers;
+        this.streamLines = builder.streamLines;
+        this.inputPath = builder.inputPath;
+        this.outputPath = builder.outputPath;
+        this.checkpointPath = builder.checkpointPath;
+        this.checkpointInterval = builder.checkpointInterval;
+        this.resume = builder.resume;
+        this.groupByAccount = builder.groupByAccount;
+        this.groupMemoryBudget = builder.groupMemoryBudget;
+        this.spillDirectory = builder.spillDirectory;
+        this.follow = builder.follow;
+        this.parallelScanThreshold = builder.parallelScanThreshold;
+        this.accountPartitions = builder.accountPartitions;
+
+        ArgParser.parseArgs(this.args, this);
+    }
+
+    /**
+     * <p>Builder for new instances of {@code TaxCalculator}.</p>
+     */
+    public static class Builder {
+
+        /**
+         * <p>Constructs a new {@code Builder} instance, initializing the builder with the provided arguments.</p>
+         *
+         * @param args The array of arguments to initialize the builder.
+         */
+        public Builder(final String[] args) {
+            this();
+            this.args = args;
+        }
+
+        /**
+         * <p>Constructs a new {@code Builder} instance.</p>
+         */
+        public Builder() {
+            this.args = new String[0];
+            final DecimalFormatSymbols decimalFormatSymbols = new DecimalFormatSymbols();
+            decimalFormatSymbols.setDecimalSeparator('.');
+            this.objectMapper = new ObjectMapper();
+            this.decimalFormat = new DecimalFormat("#0.0", decimalFormatSymbols);
+            this.taxFormatter = TaxFormatter.oneDecimal();
+            this.inputStream = System.in;
+            this.bufferSizeIn = 8_192;
+            this.outputStream = System.out;
+            this.bufferSizeOut = 8_192;
+            this.stockSupplier = DEFAULT_STOCK_SUPPLIER;
+            this.checkpointInterval = Duration.ofSeconds(10);
+            this.groupMemoryBudget = 64L * 1_024 * 1_024;
+        }
+
+        private String[] args;
+        private final ObjectMapper objectMapper;
+        private DecimalFormat decimalFormat;
+        private TaxFormatter taxFormatter;
+        private InputStream inputStream;
+        private int bufferSizeIn;
+        private OutputStream outputStream;
+        private int bufferSizeOut;
+        private boolean printEveryLine;
+        private boolean timings;
+        private Predicate<Operation> operationPredicate;
+        private Supplier<? extends Stock> stockSupplier;
+        private boolean compressOutput;
+        private int workerProcesses;
+        private boolean flightRecorderEvents;
+        private Function<String, TaxRegime> taxRegimeResolver;
+        private List<TaxRegime> whatIfRegimes;
+        private boolean columnarOutput;
+        private boolean autoTuneBuffers;
+        private boolean streamLines;
+        private Path inputPath;
+        private Path outputPath;
+        private Path checkpointPath;
+        private Duration checkpointInterval;
+        private boolean resume;
+        private boolean groupByAccount;
+        private long groupMemoryBudget;
+        private Path spillDirectory;
+        private boolean follow;
+        private int parallelScanThreshold;
+        private int accountPartitions;
+
+
+        /**
+         * Sets the DecimalFormat to be used for formatting, through a thread-safe adapter over a copy of it.
+         * <p>
+         * This is a compatibility path: the default {@link TaxFormatter#oneDecimal()} produces the same output as
+         * the default {@code #0.0} pattern without going through {@link DecimalFormat}.
+         * </p>
+         *
+         * @param decimalFormat the DecimalFormat instance
+         * @return this builder instance
+         */
+        public Builder formattedWith(final DecimalFormat decimalFormat) {
+            this.decimalFormat = decimalFormat;
+            this.taxFormatter = TaxFormatter.of(decimalFormat);
+            return this;
+        }
+
+        /**
+         * Sets the formatter used to write taxes.
+         *
+         * @param taxFormatter the TaxFormatter instance
+         * @return this builder instance
+         */
+        public Builder formattedWith(final TaxFormatter taxFormatter) {
+            this.taxFormatter = taxFormatter;
+            return this;
+        }
+
+        /**
+         * Sets the input stream and input buffer size.
+         *
+         * @param inputStream  the input stream
+         * @param bufferSizeIn the buffer size for reading
+         * @return this builder instance
+         */
+        public Builder from(final InputStream inputStream, final int bufferSizeIn) {
+            this.inputStream = inputStream;
+            this.bufferSizeIn = bufferSizeIn;
+            return this;
+        }
+
+        /**
          * Sets the output stream and output buffer size.
          *
          * @param outputStream  the output stream
@@ -492,6 +1843,10 @@ public class TaxCalculator {
 
         /**
          * Sets a predicate to filter operations that should be considered.
+         * <p>
+         * When the predicate is an {@link OperationFilter}, it is evaluated by the parser on the raw tokens and
+         * non-matching operations are never materialized. Any other predicate is applied after deserialization.
+         * </p>
          *
          * @param operationPredicate the predicate to apply
          * @return this builder instance
@@ -503,6 +1858,10 @@ public class TaxCalculator {
 
         /**
          * Sets the supplier responsible for creating Stock instances.
+         * <p>
+         * The supplier is called once per ticker per line, and the stocks it returns are never reset or reused by the
+         * calculator; only the stocks of the default supplier are pooled from one line to the next.
+         * </p>
          *
          * @param stockSupplier the stock supplier
          * @return this builder instance
@@ -512,6 +1871,239 @@ public class TaxCalculator {
             return this;
         }
 
+        /**
+         * Specifies whether the output should be gzip-compressed, as independent members that can be decompressed in parallel.
+         *
+         * @param compressOutput true to compress the output, false otherwise
+         * @return this builder instance
+         */
+        public Builder compressOutput(final boolean compressOutput) {
+            this.compressOutput = compressOutput;
+            return this;
+        }
+
+        /**
+         * Sets the number of worker processes the input lines are sharded across. Workers are child JVMs running this
+         * application with the command-line arguments of this calculator, see {@link ShardCoordinator}; settings
+         * made programmatically, such as a stock supplier or a predicate, do not reach them.
+         *
+         * @param workerProcesses the number of worker processes
+         * @return this builder instance
+         */
+        public Builder shardedAcross(final int workerProcesses) {
+            this.workerProcesses = workerProcesses;
+            return this;
+        }
+
+        /**
+         * Specifies whether flight recorder events are emitted while running. Events are JVM-wide and only recorded
+         * by a running recording, e.g. one started with {@code -XX:StartFlightRecording}.
+         *
+         * @param flightRecorderEvents {@code true} to emit events
+         * @return this builder instance
+         */
+        public Builder flightRecorderEvents(final boolean flightRecorderEvents) {
+            this.flightRecorderEvents = flightRecorderEvents;
+            return this;
+        }
+
+        /**
+         * Sets the function choosing the tax regime of each ticker, e.g. by asset class. It is called with the
+         * ticker, possibly {@code null}, whenever a line first trades it.
+         *
+         * @param taxRegimeResolver the resolver, or {@code null} to keep the regime of each stock
+         * @return this builder instance
+         */
+        public Builder taxedUnder(final Function<String, TaxRegime> taxRegimeResolver) {
+            this.taxRegimeResolver = taxRegimeResolver;
+            return this;
+        }
+
+        /**
+         * Sets the tax regime of every ticker. The regime is shared by all stocks, so any number of calculators can
+         * run under different regimes side by side.
+         *
+         * @param taxRegime the rules applied to sales
+         * @return this builder instance
+         */
+        public Builder taxedUnder(final TaxRegime taxRegime) {
+            Objects.requireNonNull(taxRegime);
+            this.taxRegimeResolver = new SingleRegime(taxRegime);
+            return this;
+        }
+
+        /**
+         * Evaluates every operation under each of the given regimes side by side, writing one tax column per regime
+         * instead of a single tax, see {@link TaxCalculator#calculateWhatIf(String, WhatIfResults)}.
+         *
+         * @param whatIfRegimes the regimes, in column order; none to tax each operation once
+         * @return this builder instance
+         */
+        public Builder whatIf(final TaxRegime... whatIfRegimes) {
+            this.whatIfRegimes = whatIfRegimes.length == 0 ? null : List.of(whatIfRegimes);
+            return this;
+        }
+
+        /**
+         * Specifies whether the output is written in the compact columnar format of {@link ColumnarWriter} instead
+         * of JSON.
+         *
+         * @param columnarOutput true to write columnar output, false to write JSON
+         * @return this builder instance
+         */
+        public Builder columnarOutput(final boolean columnarOutput) {
+            this.columnarOutput = columnarOutput;
+            return this;
+        }
+
+        /**
+         * Specifies whether buffer sizes and the flush policy are tuned from the first lines of input.
+         *
+         * @param autoTuneBuffers true to auto-tune buffers, false to keep the configured sizes
+         * @return this builder instance
+         */
+        public Builder autoTuneBuffers(final boolean autoTuneBuffers) {
+            this.autoTuneBuffers = autoTuneBuffers;
+            return this;
+        }
+
+        /**
+         * Specifies whether lines are parsed and answered incrementally, keeping memory independent of line length.
+         *
+         * @param streamLines true to stream lines, false to read each line whole
+         * @return this builder instance
+         */
+        public Builder streamLines(final boolean streamLines) {
+            this.streamLines = streamLines;
+            return this;
+        }
+
+        /**
+         * Reads the input from the given file instead of an input stream, which checkpoints require.
+         *
+         * @param inputPath the input file, or {@code null} to read the input stream
+         * @return this builder instance
+         */
+        public Builder from(final Path inputPath) {
+            this.inputPath = inputPath;
+            return this;
+        }
+
+        /**
+         * Writes the output to the given file instead of an output stream, which checkpoints require.
+         *
+         * @param outputPath the output file, or {@code null} to write to the output stream
+         * @return this builder instance
+         */
+        public Builder dumpTo(final Path outputPath) {
+            this.outputPath = outputPath;
+            return this;
+        }
+
+        /**
+         * Periodically records progress to the given file, so that an interrupted run can be resumed, see
+         * {@link Checkpoint}. Requires an input and an output file.
+         *
+         * @param checkpointPath the checkpoint file, or {@code null} to not record progress
+         * @return this builder instance
+         */
+        public Builder checkpointedTo(final Path checkpointPath) {
+            this.checkpointPath = checkpointPath;
+            return this;
+        }
+
+        /**
+         * Sets the time between two checkpoints, ten seconds by default.
+         *
+         * @param checkpointInterval the checkpoint interval
+         * @return this builder instance
+         */
+        public Builder checkpointEvery(final Duration checkpointInterval) {
+            this.checkpointInterval = checkpointInterval;
+            return this;
+        }
+
+        /**
+         * Specifies whether the run resumes from the last checkpoint instead of starting over.
+         *
+         * @param resume true to resume, false to start over
+         * @return this builder instance
+         */
+        public Builder resume(final boolean resume) {
+            this.resume = resume;
+            return this;
+        }
+
+        /**
+         * Specifies whether the input is read as unsorted operations, one per line, grouped by their {@code account} field.
+         *
+         * @param groupByAccount true to group operations by account, false to read each line as a simulation
+         * @return this builder instance
+         */
+        public Builder groupByAccount(final boolean groupByAccount) {
+            this.groupByAccount = groupByAccount;
+            return this;
+        }
+
+        /**
+         * Sets the memory budget of account grouping, 64 megabytes by default.
+         *
+         * @param groupMemoryBudget the estimated heap, in bytes, buffered operations may take before being spilled to disk
+         * @return this builder instance
+         */
+        public Builder groupMemoryBudget(final long groupMemoryBudget) {
+            this.groupMemoryBudget = groupMemoryBudget;
+            return this;
+        }
+
+        /**
+         * Sets the directory sorted runs are spilled under when grouping by account.
+         *
+         * @param spillDirectory the spill directory, or {@code null} for the default temporary directory
+         * @return this builder instance
+         */
+        public Builder spillTo(final Path spillDirectory) {
+            this.spillDirectory = spillDirectory;
+            return this;
+        }
+
+        /**
+         * Sets whether the input file is followed as it grows, processing each appended line and persisting the
+         * read offset.
+         *
+         * @param follow {@code true} to keep processing lines appended to the input file
+         * @return this builder instance
+         */
+        public Builder follow(final boolean follow) {
+            this.follow = follow;
+            return this;
+        }
+
+        /**
+         * Evaluates every ticker with at least the given number of operations in a line with a
+         * {@link PrefixScanEvaluator}, see {@link TaxCalculator#calculate(String, TaxResults)}. It has no effect with
+         * another stock supplier, since the scan only knows the average-cost arithmetic of {@link Stock}.
+         *
+         * @param parallelScanThreshold the minimum number of operations, or {@code 0} to always evaluate tickers sequentially
+         * @return this builder instance
+         */
+        public Builder parallelScan(final int parallelScanThreshold) {
+            this.parallelScanThreshold = parallelScanThreshold;
+            return this;
+        }
+
+        /**
+         * Tags every line with an account whose positions carry over from one line to the next, and partitions the
+         * accounts across the given number of worker threads, see {@link TaxCalculator#run()}.
+         *
+         * @param accountPartitions the number of partitions, or {@code 0} for anonymous lines
+         * @return this builder instance
+         */
+        public Builder partitionedByAccount(final int accountPartitions) {
+            this.accountPartitions = accountPartitions;
+            return this;
+        }
+
         /**
          * Builds and returns a new instance of {@link TaxCalculator} with the configured options.
          *
@@ -0,0 +1,245 @@
+package me.thiagorigonatti.capitalgains.core;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Flow;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * {@link Flow.Processor} that turns a stream of {@link Operation}s into a stream of {@link TaxResult}s, one per
+ * accepted operation, in order.
+ * <p>
+ * The whole stream is a single simulation: the position of every ticker is kept in its own {@link Stock} for as long
+ * as the subscription lasts, so operations can arrive one by one, e.g. from a message consumer, instead of as a
+ * complete line.
+ * </p>
+ *
+ * <p>Backpressure is demand-driven: every item requested by the subscriber is requested from the upstream
+ * publisher, and nothing is buffered. An operation rejected by the calculator's predicate is replaced by a request
+ * for one more. A failure while processing an operation, such as selling more shares than held, cancels the upstream
+ * subscription and is signalled through {@link Flow.Subscriber#onError(Throwable)}.</p>
+ *
+ * <p>Instances are obtained from {@link TaxCalculator#processor()}, subscribe to exactly one publisher and accept
+ * exactly one subscriber.</p>
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class TaxProcessor implements Flow.Processor<Operation, TaxResult> {
+
+    private final TaxCalculator taxCalculator;
+    private final Supplier<? extends Stock> stockSupplier;
+    private final Function<String, TaxRegime> taxRegimeResolver;
+    private final Predicate<Operation> operationPredicate;
+    private final Map<String, Stock> stocksByTicker = new HashMap<>();
+    private final Object lock = new Object();
+
+    private Flow.Subscription upstream;
+    private Flow.Subscriber<? super TaxResult> downstream;
+    private long pendingDemand;
+    private boolean upstreamCompleted;
+    private Throwable upstreamError;
+    private volatile boolean done;
+
+    /**
+     * Creates a processor applying the operations with the given calculator.
+     *
+     * @param taxCalculator      the calculator whose {@code processOperation} computes each tax
+     * @param stockSupplier      the supplier of the stock of each new ticker
+     * @param taxRegimeResolver  the regime of each new ticker, or {@code null} to keep the regime of each stock
+     * @param operationPredicate the predicate operations must match to be processed, or {@code null} for all
+     */
+    TaxProcessor(final TaxCalculator taxCalculator, final Supplier<? extends Stock> stockSupplier,
+                 final Function<String, TaxRegime> taxRegimeResolver, final Predicate<Operation> operationPredicate) {
+        this.taxCalculator = taxCalculator;
+        this.stockSupplier = stockSupplier;
+        this.taxRegimeResolver = taxRegimeResolver;
+        this.operationPredicate = operationPredicate;
+    }
+
+    /**
+     * Subscribes the consumer of the taxes. Only one subscriber is accepted; others receive an
+     * {@link IllegalStateException}.
+     *
+     * @param subscriber the subscriber
+     */
+    @Override
+    public void subscribe(final Flow.Subscriber<? super TaxResult> subscriber) {
+        Objects.requireNonNull(subscriber);
+
+        synchronized (lock) {
+            if (downstream == null) {
+                downstream = subscriber;
+            } else {
+                subscriber.onSubscribe(CancelledSubscription.INSTANCE);
+                subscriber.onError(new IllegalStateException("TaxProcessor accepts a single subscriber."));
+                return;
+            }
+        }
+
+        subscriber.onSubscribe(new DownstreamSubscription());
+
+        final boolean completed;
+        final Throwable error;
+        synchronized (lock) {
+            completed = upstreamCompleted;
+            error = upstreamError;
+        }
+        if (error != null) terminate(error);
+        else if (completed) complete();
+    }
+
+    /**
+     * Receives the upstream subscription and requests any demand already signalled by the subscriber.
+     *
+     * @param subscription the upstream subscription
+     */
+    @Override
+    public void onSubscribe(final Flow.Subscription subscription) {
+        final long demand;
+        synchronized (lock) {
+            if (upstream != null) {
+                subscription.cancel();
+                return;
+            }
+            upstream = subscription;
+            demand = pendingDemand;
+            pendingDemand = 0;
+        }
+        if (done) subscription.cancel();
+        else if (demand > 0) subscription.request(demand);
+    }
+
+    /**
+     * Applies the operation to the stock of its ticker and emits the resulting tax.
+     *
+     * @param operation the next operation
+     */
+    @Override
+    public void onNext(final Operation operation) {
+        if (done) return;
+
+        if (operationPredicate != null && !operationPredicate.test(operation)) {
+            upstream.request(1);
+            return;
+        }
+
+        final BigDecimal tax;
+        try {
+            final Stock stock = stocksByTicker.computeIfAbsent(operation.ticker(), this::newStock);
+            tax = taxCalculator.processOperation(operation, stock);
+        } catch (RuntimeException e) {
+            upstream.cancel();
+            terminate(e);
+            return;
+        }
+
+        downstream.onNext(TaxResult.of(tax));
+    }
+
+    private Stock newStock(final String ticker) {
+        final Stock stock = stockSupplier.get();
+        if (taxRegimeResolver != null) stock.taxRegime(taxRegimeResolver.apply(ticker));
+        return stock;
+    }
+
+    /**
+     * Forwards the upstream failure to the subscriber.
+     *
+     * @param throwable the failure
+     */
+    @Override
+    public void onError(final Throwable throwable) {
+        synchronized (lock) {
+            if (downstream == null) {
+                upstreamError = throwable;
+                return;
+            }
+        }
+        terminate(throwable);
+    }
+
+    /**
+     * Completes the subscriber once every operation was processed.
+     */
+    @Override
+    public void onComplete() {
+        synchronized (lock) {
+            if (downstream == null) {
+                upstreamCompleted = true;
+                return;
+            }
+        }
+        complete();
+    }
+
+    private void terminate(final Throwable throwable) {
+        if (done) return;
+        done = true;
+        downstream.onError(throwable);
+    }
+
+    private void complete() {
+        if (done) return;
+        done = true;
+        downstream.onComplete();
+    }
+
+    private final class DownstreamSubscription implements Flow.Subscription {
+
+        @Override
+        public void request(final long n) {
+            if (done) return;
+
+            if (n <= 0) {
+                final Flow.Subscription subscription;
+                synchronized (lock) {
+                    subscription = upstream;
+                }
+                if (subscription != null) subscription.cancel();
+                terminate(new IllegalArgumentException("Requested " + n + " items; demand must be positive."));
+                return;
+            }
+
+            final Flow.Subscription subscription;
+            synchronized (lock) {
+                if (upstream == null) {
+                    pendingDemand = pendingDemand + n < 0 ? Long.MAX_VALUE : pendingDemand + n;
+                    return;
+                }
+                subscription = upstream;
+            }
+            subscription.request(n);
+        }
+
+        @Override
+        public void cancel() {
+            final Flow.Subscription subscription;
+            synchronized (lock) {
+                subscription = upstream;
+            }
+            done = true;
+            if (subscription != null) subscription.cancel();
+        }
+    }
+
+    /**
+     * Subscription handed to rejected subscribers.
+     */
+    enum CancelledSubscription implements Flow.Subscription {
+        INSTANCE;
+
+        @Override
+        public void request(final long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package me.thiagorigonatti.capitalgains.core;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Objects;
+
+/**
+ * Immutable set of rules under which sales are taxed: the tax rate, the exemption threshold, how taxes are rounded
+ * and whether losses are carried forward to offset later profits.
+ * <p>
+ * A regime is resolved once, when it is built, into the constants used on every sale, including scaled
+ * {@code long} forms of the rate and threshold, so any number of {@link Stock} instances can share it without
+ * allocating per call. Several regimes can be used side by side, e.g. one per asset class through
+ * {@link TaxCalculator.Builder#taxedUnder(java.util.function.Function)}.
+ * </p>
+ *
+ * <p>This class is thread-safe.</p>
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public final class TaxRegime {
+
+    /**
+     * Scale of {@link #rateBasisPoints()}.
+     */
+    public static final int RATE_SCALE = 4;
+
+    /**
+     * Scale of {@link #thresholdCents()}.
+     */
+    public static final int THRESHOLD_SCALE = 2;
+
+    /**
+     * The default regime: 20% on the profit of sales above R$20,000.00, rounded half-even to cents, with losses
+     * carried forward.
+     */
+    public static final TaxRegime DEFAULT = new Builder().build();
+
+    private final String name;
+    private final BigDecimal rate;
+    private final BigDecimal threshold;
+    private final RoundingMode roundingMode;
+    private final int taxScale;
+    private final boolean carryLosses;
+    private final long rateBasisPoints;
+    private final long thresholdCents;
+
+    private TaxRegime(final Builder builder) {
+        this.name = builder.name;
+        this.rate = builder.rate;
+        this.threshold = builder.threshold;
+        this.roundingMode = builder.roundingMode;
+        this.taxScale = builder.taxScale;
+        this.carryLosses = builder.carryLosses;
+
+        try {
+            this.rateBasisPoints = rate.setScale(RATE_SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+            this.thresholdCents = threshold.setScale(THRESHOLD_SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("The rate must have at most " + RATE_SCALE + " decimal places and the threshold at most "
+                    + THRESHOLD_SCALE + ", both within the range of a long.", e);
+        }
+    }
+
+    /**
+     * Returns the name of this regime.
+     *
+     * @return the name, for reports and logs
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Returns the tax rate applied to taxable profit.
+     *
+     * @return the rate, e.g. {@code 0.20} for 20%
+     */
+    public BigDecimal rate() {
+        return rate;
+    }
+
+    /**
+     * Returns the sales total up to which profits are exempt.
+     *
+     * @return the exemption threshold
+     */
+    public BigDecimal threshold() {
+        return threshold;
+    }
+
+    /**
+     * Returns the rounding mode applied to taxes.
+     *
+     * @return the rounding mode
+     */
+    public RoundingMode roundingMode() {
+        return roundingMode;
+    }
+
+    /**
+     * Returns the number of decimal places taxes are rounded to.
+     *
+     * @return the tax scale
+     */
+    public int taxScale() {
+        return taxScale;
+    }
+
+    /**
+     * Returns whether losses are carried forward to offset the profit of later taxable sales.
+     *
+     * @return {@code true} if losses are carried forward
+     */
+    public boolean carriesLosses() {
+        return carryLosses;
+    }
+
+    /**
+     * Returns the rate as an unscaled {@code long} with scale {@link #RATE_SCALE}.
+     *
+     * @return the rate in basis points, e.g. {@code 2000} for 20%
+     */
+    public long rateBasisPoints() {
+        return rateBasisPoints;
+    }
+
+    /**
+     * Returns the threshold as an unscaled {@code long} with scale {@link #THRESHOLD_SCALE}.
+     *
+     * @return the threshold in cents
+     */
+    public long thresholdCents() {
+        return thresholdCents;
+    }
+
+    /**
+     * Rounds a tax amount as this regime requires.
+     *
+     * @param tax the unrounded tax
+     * @return the tax with scale {@link #taxScale()}
+     */
+    public BigDecimal round(final BigDecimal tax) {
+        return tax.setScale(taxScale, roundingMode);
+    }
+
+    /**
+     * Settles a sale under this regime, from its profit and the loss carried into it.
+     * <p>
+     * A loss is added to the carried loss if this regime carries losses. The profit of a sale above the threshold is
+     * first offset by the carried loss, and what is left is taxed at the rate. A sale up to the threshold leaves the
+     * carried loss untouched.
+     * </p>
+     *
+     * @param saleTotal       the total value of the sale
+     * @param profit          the sale total minus the cost basis of the shares sold, negative for a loss
+     * @param accumulatedLoss the loss carried into the sale
+     * @return the tax due on the sale and the loss carried past it
+     */
+    public Settlement settle(final BigDecimal saleTotal, final BigDecimal profit, final BigDecimal accumulatedLoss) {
+        return settle(saleTotal, profit, accumulatedLoss, threshold, rate);
+    }
+
+    /**
+     * Same as {@link #settle(BigDecimal, BigDecimal, BigDecimal)}, with the threshold and rate given by the caller,
+     * e.g. a {@link Stock} whose {@link Stock#threshold()} or {@link Stock#taxRate()} is overridden.
+     *
+     * @param saleTotal       the total value of the sale
+     * @param profit          the sale total minus the cost basis of the shares sold, negative for a loss
+     * @param accumulatedLoss the loss carried into the sale
+     * @param threshold       the sales total up to which profits are exempt
+     * @param rate            the rate applied to taxable profit
+     * @return the tax due on the sale and the loss carried past it
+     */
+    public Settlement settle(final BigDecimal saleTotal, final BigDecimal profit, final BigDecimal accumulatedLoss,
+                             final BigDecimal threshold, final BigDecimal rate) {
+        if (profit.signum() < 0) return new Settlement(BigDecimal.ZERO, carryLosses ? accumulatedLoss.subtract(profit) : accumulatedLoss);
+        if (saleTotal.compareTo(threshold) <= 0) return new Settlement(BigDecimal.ZERO, accumulatedLoss);
+        if (accumulatedLoss.compareTo(profit) >= 0) return new Settlement(BigDecimal.ZERO, accumulatedLoss.subtract(profit));
+        return new Settlement(round(profit.subtract(accumulatedLoss).multiply(rate)), BigDecimal.ZERO);
+    }
+
+    /**
+     * Outcome of {@link TaxRegime#settle(BigDecimal, BigDecimal, BigDecimal) settling} a sale.
+     *
+     * @param tax             the tax due on the sale, rounded as the regime requires
+     * @param accumulatedLoss the loss carried into later sales
+     */
+    public record Settlement(BigDecimal tax, BigDecimal accumulatedLoss) {
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        return o instanceof TaxRegime other
+                && rate.compareTo(other.rate) == 0
+                && threshold.compareTo(other.threshold) == 0
+                && roundingMode == other.roundingMode
+                && taxScale == other.taxScale
+                && carryLosses == other.carryLosses;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(rateBasisPoints, thresholdCents, roundingMode, taxScale, carryLosses);
+    }
+
+    @Override
+    public String toString() {
+        return name + "{rate=" + rate.toPlainString() + ", threshold=" + threshold.toPlainString() + ", rounding=" + roundingMode
+                + ", scale=" + taxScale + ", carryLosses=" + carryLosses + "}";
+    }
+
+    /**
+     * <p>Builder for new instances of {@code TaxRegime}.</p>
+     */
+    public static class Builder {
+
+        /**
+         * <p>Constructs a new {@code Builder} with the rules of {@link TaxRegime#DEFAULT}.</p>
+         */
+        public Builder() {
+        }
+
+        private String name = "default";
+        private BigDecimal rate = new BigDecimal("0.20");
+        private BigDecimal threshold = new BigDecimal("20000.00");
+        private RoundingMode roundingMode = RoundingMode.HALF_EVEN;
+        private int taxScale = 2;
+        private boolean carryLosses = true;
+
+        /**
+         * Sets the name of the regime.
+         *
+         * @param name the name
+         * @return this builder instance
+         */
+        public Builder name(final String name) {
+            this.name = Objects.requireNonNull(name);
+            return this;
+        }
+
+        /**
+         * Sets the tax rate applied to taxable profit.
+         *
+         * @param rate the rate, between 0 and 1 with at most four decimal places
+         * @return this builder instance
+         */
+        public Builder rate(final BigDecimal rate) {
+            if (rate.signum() < 0 || rate.compareTo(BigDecimal.ONE) > 0) throw new IllegalArgumentException("The rate must be between 0 and 1: " + rate);
+            this.rate = rate;
+            return this;
+        }
+
+        /**
+         * Sets the sales total up to which profits are exempt.
+         *
+         * @param threshold the threshold, not negative and with at most two decimal places
+         * @return this builder instance
+         */
+        public Builder threshold(final BigDecimal threshold) {
+            if (threshold.signum() < 0) throw new IllegalArgumentException("The threshold must not be negative: " + threshold);
+            this.threshold = threshold;
+            return this;
+        }
+
+        /**
+         * Sets how taxes are rounded.
+         *
+         * @param taxScale     the number of decimal places
+         * @param roundingMode the rounding mode
+         * @return this builder instance
+         */
+        public Builder rounding(final int taxScale, final RoundingMode roundingMode) {
+            this.taxScale = taxScale;
+            this.roundingMode = Objects.requireNonNull(roundingMode);
+            return this;
+        }
+
+        /**
+         * Specifies whether losses are carried forward to offset the profit of later taxable sales.
+         *
+         * @param carryLosses true to carry losses forward, false to forget them
+         * @return this builder instance
+         */
+        public Builder carryLosses(final boolean carryLosses) {
+            this.carryLosses = carryLosses;
+            return this;
+        }
+
+        /**
+         * Builds and returns a new instance of {@link TaxRegime}, precomputing its constants.
+         *
+         * @return a new TaxRegime instance
+         * @throws IllegalArgumentException if the rate or threshold has too many decimal places
+         */
+        public TaxRegime build() {
+            return new TaxRegime(this);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package me.thiagorigonatti.capitalgains.core;
+
+import me.thiagorigonatti.capitalgains.format.TaxFormatter;
+
+import java.math.BigDecimal;
+import java.text.DecimalFormat;
+
+/**
+ * Immutable view over the tax due for a single operation.
+ * <p>
+ * Taxes produced by {@link Stock} are rounded to two decimal places, so the amount is kept as an unscaled
+ * {@code long} (cents) and only turned into a {@link BigDecimal} or a formatted {@link String} when it is read.
+ * Amounts that cannot be represented that way (e.g. produced by a {@link Stock} subclass with a different scale)
+ * are kept as the original {@link BigDecimal}.
+ * </p>
+ *
+ * <p>Zero-tax results, the most common case since every "buy" is tax-free, share the {@link #ZERO} constant.</p>
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public final class TaxResult {
+
+    /**
+     * Scale of the unscaled {@code long} representation of a tax amount.
+     */
+    public static final int SCALE = 2;
+
+    /**
+     * Shared result for operations with no tax due.
+     */
+    public static final TaxResult ZERO = new TaxResult(0L, null);
+
+    private final long unscaledTax;
+    private final BigDecimal exactTax;
+
+    private TaxResult(final long unscaledTax, final BigDecimal exactTax) {
+        this.unscaledTax = unscaledTax;
+        this.exactTax = exactTax;
+    }
+
+    /**
+     * Returns a result for the given tax amount, reusing {@link #ZERO} when no tax is due.
+     *
+     * @param tax the tax amount
+     * @return the corresponding result
+     */
+    public static TaxResult of(final BigDecimal tax) {
+        if (tax.signum() == 0) return ZERO;
+        return isCompact(tax) ? new TaxResult(tax.unscaledValue().longValue(), null) : new TaxResult(0L, tax);
+    }
+
+    /**
+     * Returns a result for a tax amount already expressed as an unscaled {@code long} with scale {@link #SCALE}.
+     *
+     * @param unscaledTax the tax amount in cents
+     * @return the corresponding result
+     */
+    public static TaxResult ofUnscaled(final long unscaledTax) {
+        return unscaledTax == 0L ? ZERO : new TaxResult(unscaledTax, null);
+    }
+
+    /**
+     * Tells whether the given amount can be stored as an unscaled {@code long} with scale {@link #SCALE}.
+     *
+     * @param tax the tax amount
+     * @return {@code true} if the amount has scale {@link #SCALE} and fits in a {@code long}
+     */
+    static boolean isCompact(final BigDecimal tax) {
+        return tax.scale() == SCALE && tax.precision() <= 18;
+    }
+
+    /**
+     * Returns the tax amount.
+     *
+     * @return the tax as a {@link BigDecimal}
+     */
+    public BigDecimal tax() {
+        return exactTax != null ? exactTax : BigDecimal.valueOf(unscaledTax, SCALE);
+    }
+
+    /**
+     * Returns whether no tax is due.
+     *
+     * @return {@code true} if the tax amount is zero
+     */
+    public boolean isZero() {
+        return exactTax == null && unscaledTax == 0L;
+    }
+
+    /**
+     * Formats the tax amount with the given {@link TaxFormatter}, passing it the unscaled amount when possible.
+     *
+     * @param taxFormatter the formatter to apply
+     * @return the formatted tax
+     */
+    public String format(final TaxFormatter taxFormatter) {
+        return exactTax != null ? taxFormatter.format(exactTax) : taxFormatter.format(unscaledTax);
+    }
+
+    /**
+     * Formats the tax amount with the given {@link DecimalFormat}.
+     *
+     * @param decimalFormat the format to apply
+     * @return the formatted tax
+     */
+    public String format(final DecimalFormat decimalFormat) {
+        return decimalFormat.format(tax());
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        return o instanceof TaxResult other && tax().compareTo(other.tax()) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return tax().stripTrailingZeros().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return tax().toPlainString();
+    }
+}
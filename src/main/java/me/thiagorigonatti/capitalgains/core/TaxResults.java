@@ -0,0 +1,186 @@
+package me.thiagorigonatti.capitalgains.core;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import me.thiagorigonatti.capitalgains.format.TaxFormatter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * Primitive-backed list of the taxes calculated for one input line.
+ * <p>
+ * Taxes are stored as unscaled {@code long} values (see {@link TaxResult#SCALE}) and are only formatted when a value
+ * is read through {@link #formatted(int)} or when the whole list is serialized by Jackson, which produces the same
+ * output as before: a JSON array with one {@code {"tax":"..."}} object per operation.
+ * </p>
+ *
+ * <p>Zero-tax entries are written using a single pre-formatted constant instead of being formatted one by one.
+ * Formatting goes through a {@link TaxFormatter}, which receives the unscaled amounts directly.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class TaxResults extends JsonSerializable.Base {
+
+    private TaxFormatter taxFormatter;
+    private String zeroTax;
+    private long[] unscaledTaxes;
+    private BigDecimal[] exactTaxes;
+    private int size;
+
+    /**
+     * Creates an empty result list.
+     *
+     * @param taxFormatter     the formatter applied when a tax is read or serialized
+     * @param expectedCapacity the expected number of operations
+     */
+    public TaxResults(final TaxFormatter taxFormatter, final int expectedCapacity) {
+        this.taxFormatter = taxFormatter;
+        this.zeroTax = taxFormatter.format(0L);
+        this.unscaledTaxes = new long[Math.max(expectedCapacity, 1)];
+    }
+
+    /**
+     * Empties this list so it can be reused for another line, keeping its arrays.
+     *
+     * @param taxFormatter the formatter applied when a tax is read or serialized
+     */
+    public void reset(final TaxFormatter taxFormatter) {
+        if (this.taxFormatter != taxFormatter) {
+            this.taxFormatter = taxFormatter;
+            this.zeroTax = taxFormatter.format(0L);
+        }
+        this.size = 0;
+    }
+
+    /**
+     * Appends the tax calculated for the next operation.
+     *
+     * @param tax the tax amount
+     */
+    public void add(final BigDecimal tax) {
+        ensureCapacity();
+
+        final boolean compact = tax.signum() == 0 || TaxResult.isCompact(tax);
+
+        if (!compact && exactTaxes == null) exactTaxes = new BigDecimal[unscaledTaxes.length];
+        if (exactTaxes != null) exactTaxes[size] = compact ? null : tax;
+
+        unscaledTaxes[size++] = compact && tax.signum() != 0 ? tax.unscaledValue().longValue() : 0L;
+    }
+
+    private void ensureCapacity() {
+        if (size < unscaledTaxes.length) return;
+
+        final int newLength = unscaledTaxes.length << 1;
+        unscaledTaxes = Arrays.copyOf(unscaledTaxes, newLength);
+        if (exactTaxes != null) exactTaxes = Arrays.copyOf(exactTaxes, newLength);
+    }
+
+    /**
+     * Returns the number of taxes in this list.
+     *
+     * @return the number of operations processed
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns whether the tax at the given position is zero.
+     *
+     * @param index the position of the operation
+     * @return {@code true} if no tax is due
+     */
+    public boolean isZero(final int index) {
+        checkIndex(index);
+        return unscaledTaxes[index] == 0L && (exactTaxes == null || exactTaxes[index] == null);
+    }
+
+    /**
+     * Returns the tax at the given position.
+     *
+     * @param index the position of the operation
+     * @return the tax as a {@link BigDecimal}
+     */
+    public BigDecimal tax(final int index) {
+        return get(index).tax();
+    }
+
+    /**
+     * Returns a view over the tax at the given position.
+     *
+     * @param index the position of the operation
+     * @return the tax result, {@link TaxResult#ZERO} when no tax is due
+     */
+    public TaxResult get(final int index) {
+        checkIndex(index);
+        if (exactTaxes != null && exactTaxes[index] != null) return TaxResult.of(exactTaxes[index]);
+        return TaxResult.ofUnscaled(unscaledTaxes[index]);
+    }
+
+    /**
+     * Returns the tax at the given position, formatted on demand.
+     *
+     * @param index the position of the operation
+     * @return the formatted tax
+     */
+    public String formatted(final int index) {
+        checkIndex(index);
+        if (exactTaxes != null && exactTaxes[index] != null) return taxFormatter.format(exactTaxes[index]);
+        return unscaledTaxes[index] == 0L ? zeroTax : taxFormatter.format(unscaledTaxes[index]);
+    }
+
+    private void checkIndex(final int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+    }
+
+    /**
+     * Writes this list as a JSON array of {@code {"tax":"..."}} objects.
+     *
+     * @param gen      the generator to write to
+     * @param provider the serializer provider
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void serialize(final JsonGenerator gen, final SerializerProvider provider) throws IOException {
+        writeTo(gen);
+    }
+
+    /**
+     * Writes this list as a JSON array of {@code {"tax":"..."}} objects, without going through an
+     * {@link com.fasterxml.jackson.databind.ObjectMapper}.
+     *
+     * @param gen the generator to write to
+     * @throws IOException if writing fails
+     */
+    public void writeTo(final JsonGenerator gen) throws IOException {
+        gen.writeStartArray(this, size);
+        for (int i = 0; i < size; i++) {
+            gen.writeStartObject();
+            gen.writeStringField("tax", formatted(i));
+            gen.writeEndObject();
+        }
+        gen.writeEndArray();
+    }
+
+    /**
+     * Writes this list ignoring type information, as it is never serialized polymorphically.
+     *
+     * @param gen      the generator to write to
+     * @param provider the serializer provider
+     * @param typeSer  the type serializer, ignored
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void serializeWithType(final JsonGenerator gen, final SerializerProvider provider, final TypeSerializer typeSer) throws IOException {
+        serialize(gen, provider);
+    }
+}
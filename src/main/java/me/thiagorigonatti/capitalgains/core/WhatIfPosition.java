@@ -0,0 +1,83 @@
+package me.thiagorigonatti.capitalgains.core;
+
+import me.thiagorigonatti.capitalgains.exception.InsufficientSharesException;
+import me.thiagorigonatti.capitalgains.exception.ZeroOrNegativeQuantityException;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+
+/**
+ * Position of one ticker evaluated under several {@link TaxRegime}s at once.
+ * <p>
+ * Shares, total cost and average cost do not depend on the regime, so they are tracked once, exactly as in
+ * {@link Stock}. Only the loss carried forward does, and it is stored column-wise, one entry per regime. A sale
+ * therefore computes its total, cost and profit once and then runs one cheap comparison pass per regime.
+ * </p>
+ *
+ * <p>This class is not thread-safe.</p>
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+final class WhatIfPosition {
+
+    private final TaxRegime[] taxRegimes;
+    private final BigDecimal[] accumulatedLosses;
+    private BigDecimal totalCost = BigDecimal.ZERO;
+    private long totalShares;
+    private BigDecimal averageCost = BigDecimal.ZERO;
+
+    /**
+     * Creates an empty position.
+     *
+     * @param taxRegimes the regimes to evaluate, one column each
+     */
+    WhatIfPosition(final TaxRegime[] taxRegimes) {
+        this.taxRegimes = taxRegimes;
+        this.accumulatedLosses = new BigDecimal[taxRegimes.length];
+        Arrays.fill(accumulatedLosses, BigDecimal.ZERO);
+    }
+
+    /**
+     * Processes a buy operation, increasing the number of shares and updating the average cost.
+     *
+     * @param quantity the number of shares to buy; must be greater than zero
+     * @param unitCost the cost per share
+     * @throws ZeroOrNegativeQuantityException if the quantity is less than or equal to zero
+     */
+    void buy(final long quantity, final BigDecimal unitCost) {
+        if (quantity <= 0) throw new ZeroOrNegativeQuantityException(quantity);
+
+        totalCost = totalCost.add(unitCost.multiply(BigDecimal.valueOf(quantity)));
+        totalShares += quantity;
+        averageCost = totalCost.divide(BigDecimal.valueOf(totalShares), 2, RoundingMode.HALF_EVEN);
+    }
+
+    /**
+     * Processes a sell operation under every regime.
+     *
+     * @param quantity the number of shares to sell; must be greater than zero and not exceed current holdings
+     * @param unitCost the sale price per share
+     * @param taxes    receives the tax due under each regime, in regime order
+     * @throws ZeroOrNegativeQuantityException if the quantity is less than or equal to zero
+     * @throws InsufficientSharesException     if attempting to sell more shares than currently owned
+     */
+    void sell(final long quantity, final BigDecimal unitCost, final BigDecimal[] taxes) {
+        if (quantity <= 0) throw new ZeroOrNegativeQuantityException(quantity);
+        if (quantity > totalShares) throw new InsufficientSharesException(quantity, totalShares);
+
+        final BigDecimal saleTotal = unitCost.multiply(BigDecimal.valueOf(quantity));
+        final BigDecimal profit = saleTotal.subtract(averageCost.multiply(BigDecimal.valueOf(quantity)));
+
+        for (int k = 0; k < taxRegimes.length; k++) {
+            final TaxRegime.Settlement settlement = taxRegimes[k].settle(saleTotal, profit, accumulatedLosses[k]);
+            taxes[k] = settlement.tax();
+            accumulatedLosses[k] = settlement.accumulatedLoss();
+        }
+
+        totalShares -= quantity;
+        totalCost = averageCost.multiply(BigDecimal.valueOf(totalShares));
+    }
+}
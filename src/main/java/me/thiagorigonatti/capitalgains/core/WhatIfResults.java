@@ -0,0 +1,198 @@
+package me.thiagorigonatti.capitalgains.core;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import me.thiagorigonatti.capitalgains.format.TaxFormatter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * Primitive-backed table of the taxes calculated for one input line under several {@link TaxRegime}s: one row per
+ * operation and one column per regime.
+ * <p>
+ * Like {@link TaxResults}, taxes are stored as unscaled {@code long} values with scale {@link TaxResult#SCALE}, row
+ * after row, and only formatted when read or serialized. A line is serialized as a JSON array with one
+ * {@code {"taxes":["...","..."]}} object per operation, the columns in regime order.
+ * </p>
+ *
+ * <p>This class is not thread-safe.</p>
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class WhatIfResults extends JsonSerializable.Base {
+
+    private final int columns;
+    private TaxFormatter taxFormatter;
+    private String zeroTax;
+    private long[] unscaledTaxes;
+    private BigDecimal[] exactTaxes;
+    private int rows;
+
+    /**
+     * Creates an empty table.
+     *
+     * @param taxFormatter the formatter applied when a tax is read or serialized
+     * @param columns      the number of regimes
+     * @param expectedRows the expected number of operations
+     */
+    public WhatIfResults(final TaxFormatter taxFormatter, final int columns, final int expectedRows) {
+        if (columns < 1) throw new IllegalArgumentException("At least one regime is required.");
+        this.columns = columns;
+        this.taxFormatter = taxFormatter;
+        this.zeroTax = taxFormatter.format(0L);
+        this.unscaledTaxes = new long[Math.max(expectedRows, 1) * columns];
+    }
+
+    /**
+     * Empties this table so it can be reused for another line, keeping its arrays.
+     *
+     * @param taxFormatter the formatter applied when a tax is read or serialized
+     */
+    public void reset(final TaxFormatter taxFormatter) {
+        if (this.taxFormatter != taxFormatter) {
+            this.taxFormatter = taxFormatter;
+            this.zeroTax = taxFormatter.format(0L);
+        }
+        this.rows = 0;
+        if (exactTaxes != null) Arrays.fill(exactTaxes, null);
+    }
+
+    /**
+     * Appends a row of zero taxes, as produced by a buy.
+     */
+    public void addZeroRow() {
+        ensureCapacity();
+        Arrays.fill(unscaledTaxes, rows * columns, (rows + 1) * columns, 0L);
+        rows++;
+    }
+
+    /**
+     * Appends the taxes of the next operation, one per regime.
+     *
+     * @param taxes the tax under each regime, in regime order
+     */
+    public void addRow(final BigDecimal[] taxes) {
+        ensureCapacity();
+
+        final int offset = rows * columns;
+        for (int k = 0; k < columns; k++) {
+            final BigDecimal tax = taxes[k];
+            final boolean compact = tax.signum() == 0 || TaxResult.isCompact(tax);
+
+            if (!compact && exactTaxes == null) exactTaxes = new BigDecimal[unscaledTaxes.length];
+            if (exactTaxes != null) exactTaxes[offset + k] = compact ? null : tax;
+
+            unscaledTaxes[offset + k] = compact && tax.signum() != 0 ? tax.unscaledValue().longValue() : 0L;
+        }
+        rows++;
+    }
+
+    private void ensureCapacity() {
+        if ((rows + 1) * columns <= unscaledTaxes.length) return;
+
+        final int newLength = unscaledTaxes.length << 1;
+        unscaledTaxes = Arrays.copyOf(unscaledTaxes, newLength);
+        if (exactTaxes != null) exactTaxes = Arrays.copyOf(exactTaxes, newLength);
+    }
+
+    /**
+     * Returns the number of operations in this table.
+     *
+     * @return the number of rows
+     */
+    public int rows() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of regimes in this table.
+     *
+     * @return the number of columns
+     */
+    public int columns() {
+        return columns;
+    }
+
+    /**
+     * Returns the tax of an operation under a regime.
+     *
+     * @param row    the position of the operation
+     * @param column the position of the regime
+     * @return the tax as a {@link BigDecimal}
+     */
+    public BigDecimal tax(final int row, final int column) {
+        final int index = index(row, column);
+        if (exactTaxes != null && exactTaxes[index] != null) return exactTaxes[index];
+        return TaxResult.ofUnscaled(unscaledTaxes[index]).tax();
+    }
+
+    /**
+     * Returns the tax of an operation under a regime, formatted on demand.
+     *
+     * @param row    the position of the operation
+     * @param column the position of the regime
+     * @return the formatted tax
+     */
+    public String formatted(final int row, final int column) {
+        final int index = index(row, column);
+        if (exactTaxes != null && exactTaxes[index] != null) return taxFormatter.format(exactTaxes[index]);
+        return unscaledTaxes[index] == 0L ? zeroTax : taxFormatter.format(unscaledTaxes[index]);
+    }
+
+    private int index(final int row, final int column) {
+        if (row < 0 || row >= rows) throw new IndexOutOfBoundsException(row);
+        if (column < 0 || column >= columns) throw new IndexOutOfBoundsException(column);
+        return row * columns + column;
+    }
+
+    /**
+     * Writes this table as a JSON array of {@code {"taxes":[...]}} objects.
+     *
+     * @param gen      the generator to write to
+     * @param provider the serializer provider
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void serialize(final JsonGenerator gen, final SerializerProvider provider) throws IOException {
+        writeTo(gen);
+    }
+
+    /**
+     * Writes this table as a JSON array of {@code {"taxes":[...]}} objects, without going through an
+     * {@link com.fasterxml.jackson.databind.ObjectMapper}.
+     *
+     * @param gen the generator to write to
+     * @throws IOException if writing fails
+     */
+    public void writeTo(final JsonGenerator gen) throws IOException {
+        gen.writeStartArray(this, rows);
+        for (int row = 0; row < rows; row++) {
+            gen.writeStartObject();
+            gen.writeFieldName("taxes");
+            gen.writeStartArray(null, columns);
+            for (int column = 0; column < columns; column++) gen.writeString(formatted(row, column));
+            gen.writeEndArray();
+            gen.writeEndObject();
+        }
+        gen.writeEndArray();
+    }
+
+    /**
+     * Writes this table ignoring type information, as it is never serialized polymorphically.
+     *
+     * @param gen      the generator to write to
+     * @param provider the serializer provider
+     * @param typeSer  the type serializer, ignored
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void serializeWithType(final JsonGenerator gen, final SerializerProvider provider, final TypeSerializer typeSer) throws IOException {
+        serialize(gen, provider);
+    }
+}
@@ -0,0 +1,24 @@
+package me.thiagorigonatti.capitalgains.exception;
+
+import java.text.MessageFormat;
+
+/**
+ * Exception thrown when an operation read for account grouping, or a line read for account partitioning, has no
+ * account.
+ * <p>
+ * This {@link RuntimeException} is used to stop the run instead of silently mixing the operation into the
+ * position of another account.
+ * </p>
+ *
+ */
+public class MissingAccountException extends RuntimeException {
+
+    /**
+     * Constructs a {@code MissingAccountException} with a detailed error message.
+     *
+     * @param lineNumber the number of the input line, starting at 1
+     */
+    public MissingAccountException(long lineNumber) {
+        super(MessageFormat.format("Missing `account` field on line `{0}`.", String.valueOf(lineNumber)));
+    }
+}
@@ -0,0 +1,23 @@
+package me.thiagorigonatti.capitalgains.exception;
+
+import java.text.MessageFormat;
+
+/**
+ * Exception thrown when the input is recognized as compressed with a format the application cannot decode.
+ * <p>
+ * This {@link RuntimeException} is used to fail fast with a clear message instead of parsing compressed
+ * bytes as JSON.
+ * </p>
+ *
+ */
+public class UnsupportedCompressionException extends RuntimeException {
+
+    /**
+     * Constructs an {@code UnsupportedCompressionException} with a detailed error message.
+     *
+     * @param format the name of the detected compression format
+     */
+    public UnsupportedCompressionException(String format) {
+        super(MessageFormat.format("Input is compressed with `{0}`, which is not supported. Supported formats: `gzip`.", format));
+    }
+}
@@ -0,0 +1,24 @@
+package me.thiagorigonatti.capitalgains.exception;
+
+import java.text.MessageFormat;
+
+/**
+ * Exception thrown when a worker process of a sharded run fails.
+ * <p>
+ * This {@link RuntimeException} is used to stop the whole run instead of writing output in which the lines of
+ * the failed shard would be missing.
+ * </p>
+ *
+ */
+public class WorkerProcessException extends RuntimeException {
+
+    /**
+     * Constructs a {@code WorkerProcessException} with a detailed error message.
+     *
+     * @param shard    the index of the failed worker
+     * @param exitCode the exit code of the worker process
+     */
+    public WorkerProcessException(int shard, int exitCode) {
+        super(MessageFormat.format("Worker process `{0}` failed with exit code `{1}`.", shard, exitCode));
+    }
+}
@@ -0,0 +1,48 @@
+package me.thiagorigonatti.capitalgains.format;
+
+import java.math.BigDecimal;
+import java.text.DecimalFormat;
+
+/**
+ * Compatibility formatter delegating to a {@link DecimalFormat}.
+ * <p>
+ * {@link DecimalFormat} is not thread-safe, so every thread formats with its own clone of the configured format
+ * instead of sharing one instance behind a lock.
+ * </p>
+ *
+ * <p>This class is thread-safe.</p>
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+final class DecimalFormatTaxFormatter implements TaxFormatter {
+
+    private final DecimalFormat prototype;
+    private final ThreadLocal<DecimalFormat> decimalFormats;
+
+    /**
+     * Creates a formatter from a copy of the given format.
+     *
+     * @param decimalFormat the format to apply
+     */
+    DecimalFormatTaxFormatter(final DecimalFormat decimalFormat) {
+        this.prototype = (DecimalFormat) decimalFormat.clone();
+        this.decimalFormats = ThreadLocal.withInitial(() -> (DecimalFormat) prototype.clone());
+    }
+
+    @Override
+    public String format(final long unscaledTax) {
+        return format(BigDecimal.valueOf(unscaledTax, 2));
+    }
+
+    @Override
+    public String format(final BigDecimal tax) {
+        return decimalFormats.get().format(tax);
+    }
+
+    @Override
+    public String toString() {
+        return prototype.toPattern();
+    }
+}
@@ -0,0 +1,71 @@
+package me.thiagorigonatti.capitalgains.format;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Stateless formatter for the {@code #0.0} pattern.
+ * <p>
+ * Amounts in cents are rounded to one decimal place with {@link RoundingMode#HALF_EVEN} using integer arithmetic and
+ * written straight into a {@code char} array, so no {@link BigDecimal} or {@link java.text.DecimalFormat} is involved.
+ * The output matches {@code new DecimalFormat("#0.0")} with a {@code '.'} decimal separator, including the
+ * {@code "-0.0"} it produces for negative amounts that round to zero.
+ * </p>
+ *
+ * <p>This class is thread-safe.</p>
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+final class OneDecimalTaxFormatter implements TaxFormatter {
+
+    /**
+     * The shared instance.
+     */
+    static final OneDecimalTaxFormatter INSTANCE = new OneDecimalTaxFormatter();
+
+    // Sign, 18 integer digits of Long.MAX_VALUE / 100, separator and one decimal.
+    private static final int MAX_LENGTH = 21;
+
+    private OneDecimalTaxFormatter() {
+    }
+
+    @Override
+    public String format(final long unscaledTax) {
+        if (unscaledTax == Long.MIN_VALUE) return format(BigDecimal.valueOf(unscaledTax, 2));
+
+        final long cents = Math.abs(unscaledTax);
+        final long remainder = cents % 10;
+        long tenths = cents / 10;
+        if (remainder > 5 || remainder == 5 && (tenths & 1) == 1) tenths++;
+
+        final char[] chars = new char[MAX_LENGTH];
+        int position = MAX_LENGTH;
+
+        chars[--position] = (char) ('0' + tenths % 10);
+        chars[--position] = '.';
+
+        long units = tenths / 10;
+        do {
+            chars[--position] = (char) ('0' + units % 10);
+            units /= 10;
+        } while (units != 0);
+
+        if (unscaledTax < 0) chars[--position] = '-';
+
+        return new String(chars, position, MAX_LENGTH - position);
+    }
+
+    @Override
+    public String format(final BigDecimal tax) {
+        final BigDecimal rounded = tax.setScale(1, RoundingMode.HALF_EVEN);
+        final String plain = rounded.toPlainString();
+        return tax.signum() < 0 && rounded.signum() == 0 ? "-" + plain : plain;
+    }
+
+    @Override
+    public String toString() {
+        return "#0.0";
+    }
+}
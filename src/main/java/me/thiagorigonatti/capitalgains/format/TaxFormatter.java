@@ -0,0 +1,58 @@
+package me.thiagorigonatti.capitalgains.format;
+
+import java.math.BigDecimal;
+import java.text.DecimalFormat;
+
+/**
+ * Turns a calculated tax amount into the text written in the {@code "tax"} field of the output.
+ * <p>
+ * Taxes are usually rounded to two decimal places and stored as unscaled {@code long} values (cents), so
+ * implementations get them as such through {@link #format(long)} and only receive a {@link BigDecimal} for amounts
+ * that do not fit that representation.
+ * </p>
+ *
+ * <p>Implementations must be thread-safe, so that a single calculator can be shared across threads.</p>
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public interface TaxFormatter {
+
+    /**
+     * Formats a tax amount expressed in cents, i.e. as an unscaled value with scale 2.
+     *
+     * @param unscaledTax the tax amount in cents
+     * @return the formatted tax
+     */
+    String format(long unscaledTax);
+
+    /**
+     * Formats a tax amount of any scale.
+     *
+     * @param tax the tax amount
+     * @return the formatted tax
+     */
+    String format(BigDecimal tax);
+
+    /**
+     * Returns the default formatter, equivalent to a {@link DecimalFormat} with pattern {@code #0.0}, a {@code '.'}
+     * decimal separator and {@link java.math.RoundingMode#HALF_EVEN} rounding, but lock-free and allocation-light.
+     *
+     * @return the shared default formatter
+     */
+    static TaxFormatter oneDecimal() {
+        return OneDecimalTaxFormatter.INSTANCE;
+    }
+
+    /**
+     * Returns a formatter producing exactly what the given {@link DecimalFormat} produces. The format is copied, so
+     * later changes to it are not seen, and each thread formats with its own copy.
+     *
+     * @param decimalFormat the format to apply
+     * @return a thread-safe formatter backed by copies of {@code decimalFormat}
+     */
+    static TaxFormatter of(final DecimalFormat decimalFormat) {
+        return new DecimalFormatTaxFormatter(decimalFormat);
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * This package contains the formatters used by the application to turn calculated tax amounts into the text
+ * written to the output, including a fast, thread-safe default and an adapter for {@link java.text.DecimalFormat}.
+ */
+package me.thiagorigonatti.capitalgains.format;
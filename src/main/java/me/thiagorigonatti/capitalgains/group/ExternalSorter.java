@@ -0,0 +1,333 @@
+package me.thiagorigonatti.capitalgains.group;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts lines by key, keeping the input order within a key, using no more than a memory budget.
+ * <p>
+ * Lines are buffered until their estimated size reaches the budget; the buffer is then sorted and spilled to a
+ * temporary file as a sorted run. {@link #sorted()} merges the runs on disk with what is left in memory through a
+ * priority queue, reading each run through a buffer that shares the budget, so any number of lines can be
+ * sorted as long as the disk can hold them. Nothing is written to disk when everything fits in the budget.
+ * </p>
+ * <p>
+ * At most {@value #MAX_FAN_IN} runs are open at once: when more were spilled, groups of that many are first merged
+ * into intermediate runs, in as many passes as needed, so neither file descriptors nor the per-run buffers grow with
+ * the input.
+ * </p>
+ *
+ * <p>This class is not thread-safe. Closing it deletes the spilled runs.</p>
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class ExternalSorter implements Closeable {
+
+    private static final Comparator<KeyedLine> ORDER = KeyedLine::compareTo;
+    private static final int MIN_RUN_BUFFER = 4_096;
+
+    /**
+     * The largest number of runs merged at once.
+     */
+    static final int MAX_FAN_IN = 64;
+
+    private final long memoryBudget;
+    private final Path spillDirectory;
+    private final List<KeyedLine> buffer = new ArrayList<>();
+    private final List<Path> runs = new ArrayList<>();
+    private final List<Closeable> openRuns = new ArrayList<>();
+    private Path runDirectory;
+    private long bufferedSize;
+    private long sequence;
+    private int spilledRuns;
+    private int createdRuns;
+
+    /**
+     * Creates a sorter.
+     *
+     * @param memoryBudget   the estimated heap, in bytes, the buffered lines may take before being spilled
+     * @param spillDirectory the directory sorted runs are spilled under, or {@code null} for the default temporary
+     *                       directory
+     * @throws IllegalArgumentException if the budget is not positive
+     */
+    public ExternalSorter(final long memoryBudget, final Path spillDirectory) {
+        if (memoryBudget < 1) throw new IllegalArgumentException("The memory budget must be positive: " + memoryBudget);
+        this.memoryBudget = memoryBudget;
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * Adds a line, spilling the buffered lines to disk if they exceed the budget.
+     *
+     * @param key  the grouping key
+     * @param line the line
+     * @throws IOException if a run cannot be spilled
+     */
+    public void add(final String key, final String line) throws IOException {
+        final KeyedLine keyedLine = new KeyedLine(key, sequence++, line);
+        buffer.add(keyedLine);
+        bufferedSize += keyedLine.estimatedSize();
+
+        if (bufferedSize >= memoryBudget) spill();
+    }
+
+    /**
+     * Returns the number of runs spilled to disk so far.
+     *
+     * @return the number of spilled runs
+     */
+    public int spilledRuns() {
+        return spilledRuns;
+    }
+
+    /**
+     * Returns the number of runs the cursor of {@link #sorted()} reads from.
+     *
+     * @return the number of runs open for the final merge
+     */
+    int mergedRuns() {
+        return openRuns.size();
+    }
+
+    private void spill() throws IOException {
+        buffer.sort(ORDER);
+
+        final Path run = newRun();
+        runs.add(run);
+        spilledRuns++;
+
+        try (final DataOutputStream dataOutputStream = newRunOutput(run)) {
+            for (KeyedLine keyedLine : buffer) write(dataOutputStream, keyedLine);
+        }
+
+        buffer.clear();
+        bufferedSize = 0;
+    }
+
+    private Path newRun() throws IOException {
+        if (runDirectory == null) {
+            runDirectory = spillDirectory == null ? Files.createTempDirectory("capital-gains-sort") : Files.createTempDirectory(spillDirectory, "capital-gains-sort");
+        }
+        return runDirectory.resolve("run-" + createdRuns++);
+    }
+
+    private static DataOutputStream newRunOutput(final Path run) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), 1 << 16));
+    }
+
+    private static void write(final DataOutputStream dataOutputStream, final KeyedLine keyedLine) throws IOException {
+        write(dataOutputStream, keyedLine.key());
+        dataOutputStream.writeLong(keyedLine.sequence());
+        write(dataOutputStream, keyedLine.line());
+    }
+
+    private static void write(final DataOutputStream dataOutputStream, final String string) throws IOException {
+        final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        dataOutputStream.writeInt(bytes.length);
+        dataOutputStream.write(bytes);
+    }
+
+    private static String read(final DataInputStream dataInputStream) throws IOException {
+        return new String(dataInputStream.readNBytes(dataInputStream.readInt()), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns a cursor over every line added, ordered by key and then by input position. No line may be added
+     * afterwards.
+     *
+     * @return the cursor, valid until this sorter is closed
+     * @throws IOException if the spilled runs cannot be opened
+     */
+    public Cursor sorted() throws IOException {
+        buffer.sort(ORDER);
+
+        while (runs.size() > MAX_FAN_IN) mergePass();
+
+        final PriorityQueue<Source> sources = open(runs);
+        final Source inMemory = new MemorySource(buffer);
+        if (inMemory.advance()) sources.add(inMemory);
+
+        return new Cursor(sources);
+    }
+
+    /**
+     * Merges each group of {@value #MAX_FAN_IN} runs into one intermediate run, deleting the merged runs.
+     *
+     * @throws IOException if a run cannot be read, written or deleted
+     */
+    private void mergePass() throws IOException {
+        final List<Path> merged = new ArrayList<>();
+
+        for (int from = 0; from < runs.size(); from += MAX_FAN_IN) {
+            final List<Path> group = runs.subList(from, Math.min(runs.size(), from + MAX_FAN_IN));
+            if (group.size() == 1) {
+                merged.add(group.get(0));
+                continue;
+            }
+
+            final Path run = newRun();
+            try (final DataOutputStream dataOutputStream = newRunOutput(run)) {
+                final Cursor cursor = new Cursor(open(group));
+                while (cursor.hasNext()) write(dataOutputStream, cursor.next());
+            } finally {
+                closeOpenRuns();
+            }
+            for (Path path : group) Files.delete(path);
+            merged.add(run);
+        }
+
+        runs.clear();
+        runs.addAll(merged);
+    }
+
+    /**
+     * Opens the given runs, each through a buffer taking an equal share of the budget.
+     *
+     * @param runsToOpen the runs to merge
+     * @return the queue of the runs that are not empty, ordered by their first line
+     * @throws IOException if a run cannot be opened or read
+     */
+    private PriorityQueue<Source> open(final List<Path> runsToOpen) throws IOException {
+        final PriorityQueue<Source> sources = new PriorityQueue<>((a, b) -> ORDER.compare(a.head, b.head));
+        final int runBuffer = (int) Math.max(MIN_RUN_BUFFER, Math.min(1 << 20, memoryBudget / (runsToOpen.size() + 1)));
+
+        for (Path run : runsToOpen) {
+            final RunSource runSource = new RunSource(new DataInputStream(new BufferedInputStream(Files.newInputStream(run), runBuffer)));
+            openRuns.add(runSource);
+            if (runSource.advance()) sources.add(runSource);
+        }
+        return sources;
+    }
+
+    private void closeOpenRuns() throws IOException {
+        for (Closeable openRun : openRuns) openRun.close();
+        openRuns.clear();
+    }
+
+    /**
+     * Deletes the spilled runs.
+     *
+     * @throws IOException if a run cannot be closed or deleted
+     */
+    @Override
+    public void close() throws IOException {
+        closeOpenRuns();
+        if (runDirectory != null) {
+            for (int run = 0; run < createdRuns; run++) Files.deleteIfExists(runDirectory.resolve("run-" + run));
+            Files.deleteIfExists(runDirectory);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Cursor over the merged lines, in key order.
+     */
+    public static final class Cursor {
+
+        private final PriorityQueue<Source> sources;
+
+        private Cursor(final PriorityQueue<Source> sources) {
+            this.sources = sources;
+        }
+
+        /**
+         * Tells whether more lines are left.
+         *
+         * @return {@code true} if {@link #next()} returns a line
+         */
+        public boolean hasNext() {
+            return !sources.isEmpty();
+        }
+
+        /**
+         * Returns the next line in key order.
+         *
+         * @return the next line
+         * @throws IOException            if a spilled run cannot be read
+         * @throws NoSuchElementException if no line is left
+         */
+        public KeyedLine next() throws IOException {
+            final Source source = sources.poll();
+            if (source == null) throw new NoSuchElementException();
+
+            final KeyedLine next = source.head;
+            if (source.advance()) sources.add(source);
+            return next;
+        }
+    }
+
+    /**
+     * Sorted source of lines being merged, exposing its smallest line not yet returned.
+     */
+    private abstract static class Source {
+
+        KeyedLine head;
+
+        /**
+         * Moves to the next line.
+         *
+         * @return {@code false} once the source is exhausted
+         * @throws IOException if reading fails
+         */
+        abstract boolean advance() throws IOException;
+    }
+
+    private static final class MemorySource extends Source {
+
+        private final List<KeyedLine> lines;
+        private int position;
+
+        private MemorySource(final List<KeyedLine> lines) {
+            this.lines = lines;
+        }
+
+        @Override
+        boolean advance() {
+            if (position == lines.size()) return false;
+            head = lines.get(position);
+            lines.set(position++, null);
+            return true;
+        }
+    }
+
+    private static final class RunSource extends Source implements Closeable {
+
+        private final DataInputStream dataInputStream;
+
+        private RunSource(final DataInputStream dataInputStream) {
+            this.dataInputStream = dataInputStream;
+        }
+
+        @Override
+        boolean advance() throws IOException {
+            final String key;
+            try {
+                key = read(dataInputStream);
+            } catch (EOFException e) {
+                return false;
+            }
+            head = new KeyedLine(key, dataInputStream.readLong(), read(dataInputStream));
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            dataInputStream.close();
+        }
+    }
+}
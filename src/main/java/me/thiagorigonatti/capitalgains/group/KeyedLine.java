@@ -0,0 +1,34 @@
+package me.thiagorigonatti.capitalgains.group;
+
+/**
+ * Input line tagged with the key it is grouped by and its position in the input.
+ *
+ * @param key      the grouping key, such as an account
+ * @param sequence the position of the line in the input, which orders the lines of a key
+ * @param line     the line itself
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public record KeyedLine(String key, long sequence, String line) {
+
+    /**
+     * Returns an estimate of the heap taken by this record and its strings.
+     *
+     * @return the estimated size, in bytes
+     */
+    long estimatedSize() {
+        return 96L + 2L * (key.length() + line.length());
+    }
+
+    /**
+     * Compares two lines by key, then by input position.
+     *
+     * @param other the other line
+     * @return a negative number, zero or a positive number as this line sorts before, with or after the other
+     */
+    int compareTo(final KeyedLine other) {
+        final int byKey = key.compareTo(other.key);
+        return byKey != 0 ? byKey : Long.compare(sequence, other.sequence);
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * This package contains the out-of-core grouping used to process unsorted, one-operation-per-line exports: an
+ * external merge sort that keeps a memory budget by spilling sorted runs to disk and merging them back by key.
+ */
+package me.thiagorigonatti.capitalgains.group;
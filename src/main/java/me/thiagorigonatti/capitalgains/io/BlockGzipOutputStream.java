@@ -0,0 +1,142 @@
+package me.thiagorigonatti.capitalgains.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Output stream that writes gzip data as a sequence of independent members of at most 64 KB each.
+ * <p>
+ * Every member carries the {@code BC} extra subfield defined by the BGZF format, holding the compressed size of the
+ * member. Any gzip tool reads the result as a regular multi-member file, while {@link PipelinedGzipInputStream}
+ * uses the subfield to find member boundaries without inflating and decodes members in parallel.
+ * </p>
+ *
+ * <p>{@link #flush()} closes the current member, so flushed data is immediately decodable downstream.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class BlockGzipOutputStream extends OutputStream {
+
+    /**
+     * Maximum number of uncompressed bytes per member, chosen so that a member always fits in 64 KB even when its
+     * content is incompressible.
+     */
+    public static final int BLOCK_SIZE = 65_280;
+
+    private static final int HEADER_SIZE = 18;
+    private static final int TRAILER_SIZE = 8;
+
+    private final OutputStream outputStream;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private final CRC32 crc32 = new CRC32();
+    private final byte[] buffer = new byte[BLOCK_SIZE];
+    private final byte[] block = new byte[65_536];
+    private int count;
+    private boolean closed;
+
+    /**
+     * Creates a stream writing compressed members to the given stream.
+     *
+     * @param outputStream the destination of the compressed bytes
+     */
+    public BlockGzipOutputStream(final OutputStream outputStream) {
+        this.outputStream = outputStream;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        if (count == buffer.length) writeBlock();
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(final byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (count == buffer.length) writeBlock();
+            final int n = Math.min(length, buffer.length - count);
+            System.arraycopy(bytes, offset, buffer, count, n);
+            count += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    /**
+     * Writes the pending bytes as a complete member and flushes the underlying stream.
+     *
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void flush() throws IOException {
+        if (count > 0) writeBlock();
+        outputStream.flush();
+    }
+
+    /**
+     * Writes the pending bytes, the empty end-of-file member and closes the underlying stream.
+     *
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+
+        try {
+            if (count > 0) writeBlock();
+            writeBlock();
+        } finally {
+            deflater.end();
+            outputStream.close();
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        deflater.reset();
+        deflater.setInput(buffer, 0, count);
+        deflater.finish();
+
+        int size = HEADER_SIZE;
+        while (!deflater.finished()) {
+            if (size == block.length - TRAILER_SIZE) throw new IOException("Compressed block exceeds 64 KB");
+            size += deflater.deflate(block, size, block.length - TRAILER_SIZE - size);
+        }
+
+        crc32.reset();
+        crc32.update(buffer, 0, count);
+
+        block[0] = 0x1f;
+        block[1] = (byte) 0x8b;
+        block[2] = Deflater.DEFLATED;
+        block[3] = 4;
+        putInt(block, 4, 0);
+        block[8] = 0;
+        block[9] = (byte) 0xff;
+        putShort(block, 10, 6);
+        block[12] = 'B';
+        block[13] = 'C';
+        putShort(block, 14, 2);
+        putShort(block, 16, size + TRAILER_SIZE - 1);
+        putInt(block, size, (int) crc32.getValue());
+        putInt(block, size + 4, count);
+
+        outputStream.write(block, 0, size + TRAILER_SIZE);
+        count = 0;
+    }
+
+    private static void putShort(final byte[] bytes, final int offset, final int value) {
+        bytes[offset] = (byte) value;
+        bytes[offset + 1] = (byte) (value >>> 8);
+    }
+
+    private static void putInt(final byte[] bytes, final int offset, final int value) {
+        putShort(bytes, offset, value);
+        putShort(bytes, offset + 2, value >>> 16);
+    }
+}
@@ -0,0 +1,274 @@
+package me.thiagorigonatti.capitalgains.io;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chooses read and write buffer sizes and a flush policy from what the first lines of a run look like.
+ * <p>
+ * During a short sampling window the caller reports each line it reads, and the characters it writes go through
+ * {@link #counting(Writer)}. Once the window closes, {@link #tune()} sizes each buffer to hold about
+ * {@link #TARGET_MILLIS} milliseconds of the measured throughput, and at least {@link #MIN_LINES} average lines, rounded
+ * up to a power of two between {@link #MIN_BUFFER_SIZE} and {@link #MAX_BUFFER_SIZE}. The output target then
+ * adjusts the result:
+ * </p>
+ * <ul>
+ *   <li>{@link OutputTarget#TERMINAL}: a small buffer flushed after every line, so results show up as typed.</li>
+ *   <li>{@link OutputTarget#PIPE}: a buffer no larger than the usual pipe capacity of 64 KiB, flushed when full.</li>
+ *   <li>{@link OutputTarget#FILE} and {@link OutputTarget#STREAM}: the measured size, flushed when full.</li>
+ * </ul>
+ *
+ * <p>This class is not thread-safe.</p>
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class BufferTuner {
+
+    /**
+     * The smallest buffer size chosen, matching the default of the JDK readers and writers.
+     */
+    public static final int MIN_BUFFER_SIZE = 8 * 1_024;
+
+    /**
+     * The largest buffer size chosen.
+     */
+    public static final int MAX_BUFFER_SIZE = 4 * 1_024 * 1_024;
+
+    /**
+     * The number of milliseconds of throughput a buffer is sized to hold.
+     */
+    public static final int TARGET_MILLIS = 10;
+
+    /**
+     * The minimum number of average lines a buffer is sized to hold.
+     */
+    public static final int MIN_LINES = 16;
+
+    private static final int PIPE_CAPACITY = 64 * 1_024;
+
+    /**
+     * Where the output ends up, which decides how eagerly it is flushed.
+     */
+    public enum OutputTarget {
+
+        /**
+         * An interactive terminal.
+         */
+        TERMINAL,
+
+        /**
+         * A pipe or socket read by another process.
+         */
+        PIPE,
+
+        /**
+         * A regular file.
+         */
+        FILE,
+
+        /**
+         * Any other stream, such as one set programmatically.
+         */
+        STREAM;
+
+        /**
+         * Detects the target of the given stream. Only the standard output can be told apart, through
+         * {@code /proc/self/fd/1} where available and {@link System#console()} otherwise; any other stream is a
+         * {@link #STREAM}.
+         *
+         * @param outputStream the stream the results are written to
+         * @return the detected target
+         */
+        public static OutputTarget of(final OutputStream outputStream) {
+            if (outputStream != System.out) return STREAM;
+
+            try {
+                final Path path = Path.of("/proc/self/fd/1");
+                if (Files.exists(path)) {
+                    final String target = Files.readSymbolicLink(path).toString();
+                    if (target.startsWith("pipe:") || target.startsWith("socket:")) return PIPE;
+                    if (target.startsWith("/dev/pts/") || target.startsWith("/dev/tty")) return TERMINAL;
+                    if (Files.isRegularFile(Path.of(target))) return FILE;
+                    return STREAM;
+                }
+            } catch (IOException | UnsupportedOperationException | SecurityException e) {
+                // fall back to the console check below
+            }
+
+            return System.console() != null ? TERMINAL : STREAM;
+        }
+    }
+
+    private final OutputTarget outputTarget;
+    private final long sampleNanos;
+    private final long sampleChars;
+    private final long startTime;
+    private long lines;
+    private long inputChars;
+    private long outputChars;
+    private boolean tuned;
+    private int bufferSizeIn;
+    private int bufferSizeOut;
+    private boolean flushEveryLine;
+
+    /**
+     * Creates a tuner sampling for one second or four megabytes of input, whichever comes first, starting now.
+     *
+     * @param outputTarget where the output ends up
+     */
+    public BufferTuner(final OutputTarget outputTarget) {
+        this(outputTarget, TimeUnit.SECONDS.toNanos(1), 4 * 1_024 * 1_024);
+    }
+
+    /**
+     * Creates a tuner with the given sampling window, starting now.
+     *
+     * @param outputTarget where the output ends up
+     * @param sampleNanos  the maximum duration of the sampling window
+     * @param sampleChars  the maximum number of input characters sampled
+     */
+    public BufferTuner(final OutputTarget outputTarget, final long sampleNanos, final long sampleChars) {
+        this.outputTarget = outputTarget;
+        this.sampleNanos = sampleNanos;
+        this.sampleChars = sampleChars;
+        this.startTime = System.nanoTime();
+    }
+
+    /**
+     * Returns a writer that counts the characters written through it into this tuner while sampling.
+     *
+     * @param writer the writer of the results
+     * @return a counting writer delegating to {@code writer}
+     */
+    public Writer counting(final Writer writer) {
+        return new FilterWriter(writer) {
+            @Override
+            public void write(final int c) throws IOException {
+                outputChars++;
+                super.write(c);
+            }
+
+            @Override
+            public void write(final char[] chars, final int offset, final int length) throws IOException {
+                outputChars += length;
+                super.write(chars, offset, length);
+            }
+
+            @Override
+            public void write(final String string, final int offset, final int length) throws IOException {
+                outputChars += length;
+                super.write(string, offset, length);
+            }
+        };
+    }
+
+    /**
+     * Records a line read during the sampling window.
+     *
+     * @param lineLength the number of characters of the line
+     * @return {@code true} once the sampling window is over and {@link #tune()} should be called
+     */
+    public boolean sample(final int lineLength) {
+        lines++;
+        inputChars += lineLength + 1;
+        return inputChars >= sampleChars || System.nanoTime() - startTime >= sampleNanos;
+    }
+
+    /**
+     * Chooses the buffer sizes and flush policy from the lines sampled so far. The output written through
+     * {@link #counting(Writer)} must have been flushed beforehand to be fully accounted for.
+     */
+    public void tune() {
+        final double seconds = Math.max(System.nanoTime() - startTime, 1L) / 1e9;
+        final double linesOrOne = Math.max(lines, 1);
+
+        this.bufferSizeIn = bufferSize(inputChars / linesOrOne, inputChars / seconds);
+
+        final int measuredOut = bufferSize(outputChars / linesOrOne, outputChars / seconds);
+        this.bufferSizeOut = switch (outputTarget) {
+            case TERMINAL -> MIN_BUFFER_SIZE;
+            case PIPE -> Math.min(measuredOut, PIPE_CAPACITY);
+            case FILE, STREAM -> measuredOut;
+        };
+        this.flushEveryLine = outputTarget == OutputTarget.TERMINAL;
+        this.tuned = true;
+    }
+
+    /**
+     * Returns the size of a buffer holding {@link #TARGET_MILLIS} milliseconds of throughput and at least
+     * {@link #MIN_LINES} lines, rounded up to a power of two between {@link #MIN_BUFFER_SIZE} and
+     * {@link #MAX_BUFFER_SIZE}.
+     *
+     * @param charsPerLine   the average line length
+     * @param charsPerSecond the throughput
+     * @return the buffer size, in characters
+     */
+    static int bufferSize(final double charsPerLine, final double charsPerSecond) {
+        final double wanted = Math.max(charsPerSecond * TARGET_MILLIS / 1_000, charsPerLine * MIN_LINES);
+        if (!(wanted > MIN_BUFFER_SIZE)) return MIN_BUFFER_SIZE;
+        if (wanted >= MAX_BUFFER_SIZE) return MAX_BUFFER_SIZE;
+        return Integer.highestOneBit((int) Math.ceil(wanted) - 1) << 1;
+    }
+
+    /**
+     * Returns where the output ends up.
+     *
+     * @return the output target
+     */
+    public OutputTarget outputTarget() {
+        return outputTarget;
+    }
+
+    /**
+     * Returns the chosen input buffer size.
+     *
+     * @return the input buffer size, in characters
+     * @throws IllegalStateException if {@link #tune()} was not called
+     */
+    public int bufferSizeIn() {
+        checkTuned();
+        return bufferSizeIn;
+    }
+
+    /**
+     * Returns the chosen output buffer size.
+     *
+     * @return the output buffer size, in characters
+     * @throws IllegalStateException if {@link #tune()} was not called
+     */
+    public int bufferSizeOut() {
+        checkTuned();
+        return bufferSizeOut;
+    }
+
+    /**
+     * Returns whether the output should be flushed after every line.
+     *
+     * @return {@code true} to flush every line, {@code false} to flush when the buffer is full
+     * @throws IllegalStateException if {@link #tune()} was not called
+     */
+    public boolean flushEveryLine() {
+        checkTuned();
+        return flushEveryLine;
+    }
+
+    private void checkTuned() {
+        if (!tuned) throw new IllegalStateException("The buffers are not tuned yet.");
+    }
+
+    @Override
+    public String toString() {
+        if (!tuned) return "BufferTuner[sampling, lines=" + lines + "]";
+        return String.format(Locale.ROOT, "Auto-tuned buffers: in=%d out=%d flush=%s target=%s (sampled %d lines, %.0f chars/line)",
+                bufferSizeIn, bufferSizeOut, flushEveryLine ? "every line" : "when full", outputTarget,
+                lines, inputChars / (double) Math.max(lines, 1));
+    }
+}
@@ -0,0 +1,102 @@
+package me.thiagorigonatti.capitalgains.io;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Consistent point of a batch run: how much of the input was consumed and how much output it produced.
+ * <p>
+ * A checkpoint is only written once the output up to {@code outputOffset} has been forced to disk, so after a
+ * crash the run can seek the input to {@code inputOffset}, truncate the output to {@code outputOffset} and go on
+ * as if it had never stopped. It is stored as a single line of text, {@code input output lines}, written to a
+ * temporary sibling file that is forced to disk and then atomically renamed over the previous checkpoint.
+ * </p>
+ *
+ * @param inputOffset  the number of input bytes consumed
+ * @param outputOffset the number of output bytes written
+ * @param lines        the number of lines processed
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public record Checkpoint(long inputOffset, long outputOffset, long lines) {
+
+    /**
+     * The checkpoint of a run that has not processed anything yet.
+     */
+    public static final Checkpoint START = new Checkpoint(0L, 0L, 0L);
+
+    /**
+     * Validates the offsets and line count.
+     *
+     * @param inputOffset  the number of input bytes consumed
+     * @param outputOffset the number of output bytes written
+     * @param lines        the number of lines processed
+     * @throws IllegalArgumentException if any value is negative
+     */
+    public Checkpoint {
+        if (inputOffset < 0 || outputOffset < 0 || lines < 0) throw new IllegalArgumentException("Negative checkpoint: " + inputOffset + " " + outputOffset + " " + lines);
+    }
+
+    /**
+     * Reads the checkpoint stored in the given file.
+     *
+     * @param path the checkpoint file
+     * @return the stored checkpoint
+     * @throws IOException if the file cannot be read or is not a checkpoint
+     */
+    public static Checkpoint read(final Path path) throws IOException {
+        final String[] fields = Files.readString(path, StandardCharsets.US_ASCII).trim().split(" ");
+        try {
+            if (fields.length != 3) throw new NumberFormatException();
+            return new Checkpoint(Long.parseLong(fields[0]), Long.parseLong(fields[1]), Long.parseLong(fields[2]));
+        } catch (IllegalArgumentException e) {
+            throw new StreamCorruptedException("Not a checkpoint: " + path);
+        }
+    }
+
+    /**
+     * Atomically replaces the checkpoint stored in the given file with this one, forcing it to disk.
+     *
+     * @param path the checkpoint file
+     * @throws IOException if the checkpoint cannot be written
+     */
+    public void write(final Path path) throws IOException {
+        final Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        final byte[] content = (inputOffset + " " + outputOffset + " " + lines + "\n").getBytes(StandardCharsets.US_ASCII);
+
+        try (final FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining()) channel.write(buffer);
+            channel.force(true);
+        }
+
+        try {
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        forceDirectory(path.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Forces the rename to disk by syncing the directory, where the platform allows opening one.
+     */
+    private static void forceDirectory(final Path directory) {
+        if (directory == null) return;
+        try (final FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException | UnsupportedOperationException e) {
+            // not supported on every platform; the rename itself is still atomic
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package me.thiagorigonatti.capitalgains.io;
+
+import me.thiagorigonatti.capitalgains.exception.UnsupportedCompressionException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+
+/**
+ * Utility class that detects compressed input by its magic bytes and wraps streams for transparent
+ * compression and decompression.
+ * <p>
+ * Supported formats:
+ * <ul>
+ *   <li><b>gzip</b>: decoded natively by {@link PipelinedGzipInputStream}, including multi-member files.</li>
+ *   <li><b>zstd</b>: detected only, an {@link UnsupportedCompressionException} is thrown since the JDK ships
+ *   no decoder for it.</li>
+ * </ul>
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class CompressedStreams {
+
+    /**
+     * Private constructor to prevent instantiation of this utility class.
+     *
+     * @throws AssertionError always, as this class should not be instantiated
+     */
+    private CompressedStreams() {
+        throw new AssertionError("Instantiation of utility class...");
+    }
+
+    private static final byte[] GZIP_MAGIC = {(byte) 0x1f, (byte) 0x8b};
+    private static final byte[] ZSTD_MAGIC = {(byte) 0x28, (byte) 0xb5, (byte) 0x2f, (byte) 0xfd};
+
+    /**
+     * Returns a stream that yields the decompressed content of the given stream if it starts with a known magic
+     * number, or the content as is otherwise.
+     * <p>
+     * Bytes are only read while they still match a magic number, so a plain-text interactive input is never
+     * blocked on waiting for more bytes than the user typed.
+     * </p>
+     *
+     * @param inputStream the possibly compressed input
+     * @param bufferSize  the size of the chunks handed over by the decompressing thread
+     * @return the decoded input
+     * @throws IOException                     if reading the magic bytes fails
+     * @throws UnsupportedCompressionException if the input is compressed with an unsupported format
+     */
+    public static InputStream decoding(final InputStream inputStream, final int bufferSize) throws IOException {
+
+        final PushbackInputStream pushbackInputStream = new PushbackInputStream(inputStream, ZSTD_MAGIC.length);
+        final byte[] head = new byte[ZSTD_MAGIC.length];
+        int length = 0;
+
+        while (length < head.length && !matches(GZIP_MAGIC, head, length) && (isPrefix(GZIP_MAGIC, head, length) || isPrefix(ZSTD_MAGIC, head, length))) {
+            final int read = pushbackInputStream.read();
+            if (read < 0) break;
+            head[length++] = (byte) read;
+        }
+
+        pushbackInputStream.unread(head, 0, length);
+
+        if (matches(GZIP_MAGIC, head, length)) {
+            return new PipelinedGzipInputStream(pushbackInputStream, bufferSize, Runtime.getRuntime().availableProcessors());
+        }
+
+        if (matches(ZSTD_MAGIC, head, length)) {
+            throw new UnsupportedCompressionException("zstd");
+        }
+
+        return pushbackInputStream;
+    }
+
+    /**
+     * Returns a stream that gzip-compresses everything written to the given stream, as independent members
+     * that {@link PipelinedGzipInputStream} can decode in parallel.
+     *
+     * @param outputStream the destination of the compressed bytes
+     * @return the compressing stream
+     */
+    public static OutputStream encoding(final OutputStream outputStream) {
+        return new BlockGzipOutputStream(outputStream);
+    }
+
+    private static boolean matches(final byte[] magic, final byte[] head, final int length) {
+        return length == magic.length && isPrefix(magic, head, length);
+    }
+
+    private static boolean isPrefix(final byte[] magic, final byte[] head, final int length) {
+        if (length > magic.length) return false;
+        for (int i = 0; i < length; i++) {
+            if (magic[i] != head[i]) return false;
+        }
+        return true;
+    }
+}
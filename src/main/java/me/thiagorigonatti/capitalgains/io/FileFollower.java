@@ -0,0 +1,201 @@
+package me.thiagorigonatti.capitalgains.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Follows a file that is being appended to, returning each complete UTF-8 line once it has been fully written.
+ * <p>
+ * Lines end with {@code \n} or {@code \r\n}. Bytes after the last terminator are an incomplete line: they are kept
+ * until the rest of the line is appended, and never returned on their own. {@link #offset()} is the byte offset of
+ * the first line not yet returned, so a follower created at that offset later carries on from the same line.
+ * </p>
+ *
+ * <p>Between appends, {@link #await()} blocks on a {@link WatchService} registered on the file's directory, and
+ * also checks the file size every poll interval, for file systems whose changes are not reported. An idle follower
+ * therefore only wakes up once per interval.</p>
+ *
+ * <p>This class is not thread-safe, except for {@link #stop()}, which may be called from any thread.</p>
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class FileFollower implements Closeable {
+
+    /**
+     * The default interval at which the file size is checked when no change is reported.
+     */
+    public static final Duration DEFAULT_POLL_INTERVAL = Duration.ofSeconds(1);
+
+    private final Path path;
+    private final FileChannel channel;
+    private final WatchService watchService;
+    private final ByteBuffer buffer;
+    private final long pollIntervalMillis;
+    private byte[] line = new byte[256];
+    private int length;
+    private long offset;
+    private long position;
+    private volatile boolean stopped;
+
+    /**
+     * Opens a follower over the given file.
+     *
+     * @param path         the file to follow
+     * @param bufferSize   the number of bytes read from the file at a time
+     * @param offset       the offset of the first line to return
+     * @param pollInterval the interval at which the file size is checked when no change is reported
+     * @throws IOException if the file cannot be opened
+     */
+    public FileFollower(final Path path, final int bufferSize, final long offset, final Duration pollInterval) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.watchService = watch(path.toAbsolutePath().getParent());
+        this.buffer = ByteBuffer.allocate(Math.max(bufferSize, 1)).flip();
+        this.pollIntervalMillis = Math.max(1, pollInterval.toMillis());
+        this.offset = offset;
+        this.position = offset;
+    }
+
+    /**
+     * Registers a watch service on the directory, or returns {@code null} if changes cannot be watched, in which case
+     * the follower only polls.
+     */
+    private static WatchService watch(final Path directory) {
+        if (directory == null) return null;
+
+        WatchService watchService = null;
+        try {
+            watchService = directory.getFileSystem().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            return watchService;
+        } catch (IOException | UnsupportedOperationException e) {
+            if (watchService != null) {
+                try {
+                    watchService.close();
+                } catch (IOException ignored) {
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Returns the offset of the first byte not yet returned as part of a line.
+     *
+     * @return the offset of the next complete line
+     */
+    public long offset() {
+        return offset;
+    }
+
+    /**
+     * Returns the next complete line if one has been written, without waiting.
+     *
+     * @return the line without its terminator, or {@code null} if no complete line is available yet
+     * @throws IOException           if reading fails
+     * @throws IllegalStateException if the file was truncated below the bytes already read
+     */
+    public String poll() throws IOException {
+        while (true) {
+            if (!buffer.hasRemaining() && !fill()) return null;
+
+            final byte[] bytes = buffer.array();
+            final int start = buffer.position();
+            final int limit = buffer.limit();
+            int end = start;
+            while (end < limit && bytes[end] != '\n') end++;
+
+            final int chunk = end - start;
+            if (line.length < length + chunk) line = Arrays.copyOf(line, Math.max(line.length << 1, length + chunk));
+            System.arraycopy(bytes, start, line, length, chunk);
+            length += chunk;
+
+            if (end < limit) {
+                buffer.position(end + 1);
+                offset += length + 1;
+                final int lineLength = length > 0 && line[length - 1] == '\r' ? length - 1 : length;
+                length = 0;
+                return new String(line, 0, lineLength, StandardCharsets.UTF_8);
+            }
+            buffer.position(limit);
+        }
+    }
+
+    private boolean fill() throws IOException {
+        final long size = channel.size();
+        if (size < position) throw new IllegalStateException("The followed file was truncated: " + path);
+        if (size == position) return false;
+
+        buffer.clear();
+        final int read = channel.read(buffer, position);
+        buffer.flip();
+        if (read <= 0) return false;
+
+        position += read;
+        return true;
+    }
+
+    /**
+     * Waits until the file may have changed: until a change is reported, the poll interval elapses, or the follower
+     * is stopped.
+     *
+     * @return {@code false} if the follower was stopped, {@code true} otherwise
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public boolean await() throws InterruptedException {
+        if (stopped) return false;
+
+        if (watchService == null) {
+            Thread.sleep(pollIntervalMillis);
+        } else {
+            try {
+                final WatchKey watchKey = watchService.poll(pollIntervalMillis, TimeUnit.MILLISECONDS);
+                if (watchKey != null) {
+                    watchKey.pollEvents();
+                    watchKey.reset();
+                }
+            } catch (ClosedWatchServiceException e) {
+                return false;
+            }
+        }
+        return !stopped;
+    }
+
+    /**
+     * Stops following, waking up a thread blocked in {@link #await()}.
+     */
+    public void stop() {
+        stopped = true;
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Stops following and closes the file.
+     *
+     * @throws IOException if closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        stop();
+        channel.close();
+    }
+}
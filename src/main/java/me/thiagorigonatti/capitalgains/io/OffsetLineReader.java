@@ -0,0 +1,117 @@
+package me.thiagorigonatti.capitalgains.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads UTF-8 lines from a channel while keeping track of the byte offset of the next line, which a
+ * {@link java.io.BufferedReader} hides behind its character buffer.
+ * <p>
+ * Lines end with {@code \n} or {@code \r\n}; the terminator is not part of the returned line but is counted in
+ * {@link #offset()}. A last line without a terminator is returned as is.
+ * </p>
+ *
+ * <p>This class is not thread-safe.</p>
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class OffsetLineReader implements Closeable {
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer;
+    private byte[] line = new byte[256];
+    private long offset;
+    private boolean endOfInput;
+
+    /**
+     * Creates a reader over a channel already positioned at the given offset.
+     *
+     * @param channel    the source of the lines
+     * @param bufferSize the number of bytes read from the channel at a time
+     * @param offset     the offset of the channel's position in the input
+     */
+    public OffsetLineReader(final ReadableByteChannel channel, final int bufferSize, final long offset) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(Math.max(bufferSize, 1)).flip();
+        this.offset = offset;
+    }
+
+    /**
+     * Returns the offset of the first byte not yet returned as part of a line.
+     *
+     * @return the offset of the next line
+     */
+    public long offset() {
+        return offset;
+    }
+
+    /**
+     * Reads the next line.
+     *
+     * @return the line without its terminator, or {@code null} at the end of the input
+     * @throws IOException if reading fails
+     */
+    public String readLine() throws IOException {
+        int length = 0;
+
+        while (true) {
+            if (!buffer.hasRemaining()) {
+                if (endOfInput || !fill()) {
+                    if (length == 0) return null;
+                    return decode(length);
+                }
+            }
+
+            final byte[] bytes = buffer.array();
+            final int start = buffer.position();
+            final int limit = buffer.limit();
+            int end = start;
+            while (end < limit && bytes[end] != '\n') end++;
+
+            final int chunk = end - start;
+            if (line.length < length + chunk) line = Arrays.copyOf(line, Math.max(line.length << 1, length + chunk));
+            System.arraycopy(bytes, start, line, length, chunk);
+            length += chunk;
+            offset += chunk;
+
+            if (end < limit) {
+                buffer.position(end + 1);
+                offset++;
+                if (length > 0 && line[length - 1] == '\r') length--;
+                return decode(length);
+            }
+            buffer.position(limit);
+        }
+    }
+
+    private String decode(final int length) {
+        return new String(line, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private boolean fill() throws IOException {
+        buffer.clear();
+        int read;
+        do {
+            read = channel.read(buffer);
+        } while (read == 0);
+        buffer.flip();
+        if (read < 0) endOfInput = true;
+        return read > 0;
+    }
+
+    /**
+     * Closes the underlying channel.
+     *
+     * @throws IOException if closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,317 @@
+package me.thiagorigonatti.capitalgains.io;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.PushbackInputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Input stream that decompresses gzip data on a background thread, pipelined with whoever consumes it.
+ * <p>
+ * Decompressed bytes are handed over in chunks through a bounded queue, so decompression overlaps with the
+ * calculation instead of competing with it for the same thread. Members written in the BGZF layout (see
+ * {@link BlockGzipOutputStream}) announce their compressed size, so their boundaries are known without inflating
+ * them and they are decoded in parallel, block by block, and reassembled in order. Any other member, including
+ * plain multi-member gzip, is decoded sequentially on the background thread, reading each member up to its trailer
+ * and then the header of the next, until the end of the input.
+ * </p>
+ *
+ * <p>This class is not thread-safe; a single consumer is expected.</p>
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class PipelinedGzipInputStream extends InputStream {
+
+    private static final byte[] END = new byte[0];
+    private static final int BLOCK_HEADER_SIZE = 18;
+    private static final int MAX_CHUNK_SIZE = 1 << 20;
+    private static final int INPUT_SIZE = 1 << 16;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private final InputStream source;
+    private final int chunkSize;
+    private final int parallelism;
+    private final BlockingQueue<byte[]> chunks;
+    private final Thread decoder;
+    private volatile Throwable failure;
+    private byte[] chunk = END;
+    private int position;
+    private boolean finished;
+
+    /**
+     * Creates a stream decoding the given gzip data and starts its background decoder thread.
+     *
+     * @param source      the compressed input, positioned at the first member header
+     * @param chunkSize   the preferred size of the decompressed chunks, capped at 1 MB
+     * @param parallelism the number of threads used to inflate BGZF members
+     */
+    public PipelinedGzipInputStream(final InputStream source, final int chunkSize, final int parallelism) {
+        this.source = source;
+        this.chunkSize = Math.max(1, Math.min(chunkSize, MAX_CHUNK_SIZE));
+        this.parallelism = Math.max(1, parallelism);
+        this.chunks = new ArrayBlockingQueue<>(this.parallelism * 2 + 2);
+        this.decoder = Thread.ofPlatform().name("gzip-decoder").daemon().start(this::decode);
+    }
+
+    private void decode() {
+        try {
+            final BufferedInputStream in = new BufferedInputStream(source, 1 << 17);
+            decodeBlocks(in);
+            decodeSequentially(in);
+        } catch (Throwable t) {
+            failure = t;
+        } finally {
+            try {
+                chunks.put(END);
+            } catch (InterruptedException ignored) {
+                // the consumer closed the stream and is no longer waiting
+            }
+        }
+    }
+
+    /**
+     * Decodes consecutive BGZF members in parallel until the end of the input or the first other member.
+     */
+    private void decodeBlocks(final BufferedInputStream in) throws IOException, InterruptedException, ExecutionException {
+
+        final ExecutorService inflaters = Executors.newFixedThreadPool(parallelism, Thread.ofPlatform().name("gzip-inflater-", 0).daemon().factory());
+        final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+
+        try {
+            byte[] block;
+            while ((block = readBlock(in)) != null) {
+                final byte[] member = block;
+                pending.add(inflaters.submit(() -> inflate(member)));
+                if (pending.size() >= parallelism * 2) offer(pending.poll().get());
+            }
+            while (!pending.isEmpty()) offer(pending.poll().get());
+        } finally {
+            inflaters.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads a whole BGZF member, or returns {@code null} leaving the input untouched if the next member is not one.
+     */
+    private static byte[] readBlock(final BufferedInputStream in) throws IOException {
+
+        in.mark(BLOCK_HEADER_SIZE);
+        final byte[] header = in.readNBytes(BLOCK_HEADER_SIZE);
+
+        final boolean bgzf = header.length == BLOCK_HEADER_SIZE
+                && (header[0] & 0xff) == 0x1f && (header[1] & 0xff) == 0x8b && header[2] == 8 && (header[3] & 4) != 0
+                && unsignedShort(header, 10) == 6 && header[12] == 'B' && header[13] == 'C' && unsignedShort(header, 14) == 2;
+
+        if (!bgzf) {
+            in.reset();
+            return null;
+        }
+
+        final byte[] block = Arrays.copyOf(header, unsignedShort(header, 16) + 1);
+        final int length = block.length - BLOCK_HEADER_SIZE;
+        if (in.readNBytes(block, BLOCK_HEADER_SIZE, length) != length) throw new EOFException("Truncated gzip block");
+        return block;
+    }
+
+    private static byte[] inflate(final byte[] block) throws IOException {
+        try (final GZIPInputStream gzipInputStream = new GZIPInputStream(new ByteArrayInputStream(block), block.length)) {
+            return gzipInputStream.readAllBytes();
+        }
+    }
+
+    /**
+     * Decodes the remaining members one after the other until the end of the input. Member boundaries are found by
+     * inflating each member to its end and reading its trailer, never by asking the source whether more bytes are
+     * available, so members arriving late over a pipe are not mistaken for the end of the input.
+     */
+    private void decodeSequentially(final InputStream in) throws IOException, InterruptedException {
+
+        final PushbackInputStream members = new PushbackInputStream(in, INPUT_SIZE);
+        final Inflater inflater = new Inflater(true);
+        final CRC32 crc = new CRC32();
+        final byte[] input = new byte[INPUT_SIZE];
+        byte[] buffer = new byte[chunkSize];
+        int filled = 0;
+
+        try {
+            while (readMemberHeader(members)) {
+                inflater.reset();
+                crc.reset();
+                int read = 0;
+
+                while (!inflater.finished()) {
+                    if (inflater.needsInput()) {
+                        read = members.read(input, 0, input.length);
+                        if (read < 0) throw new EOFException("Unexpected end of gzip member");
+                        inflater.setInput(input, 0, read);
+                    }
+
+                    final int inflated;
+                    try {
+                        inflated = inflater.inflate(buffer, filled, buffer.length - filled);
+                    } catch (DataFormatException e) {
+                        throw new ZipException("Invalid gzip data: " + e.getMessage());
+                    }
+                    if (inflated == 0 && inflater.needsDictionary()) throw new ZipException("Unexpected gzip dictionary");
+
+                    crc.update(buffer, filled, inflated);
+                    filled += inflated;
+                    if (filled == buffer.length) {
+                        offer(buffer);
+                        buffer = new byte[chunkSize];
+                        filled = 0;
+                    }
+                }
+
+                final int remaining = inflater.getRemaining();
+                if (remaining > 0) members.unread(input, read - remaining, remaining);
+                readMemberTrailer(members, crc.getValue(), inflater.getBytesWritten());
+            }
+
+            offer(Arrays.copyOf(buffer, filled));
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Reads the header of the next member, skipping its optional fields.
+     *
+     * @return {@code false} at the end of the input, {@code true} if a member follows
+     */
+    private static boolean readMemberHeader(final InputStream in) throws IOException {
+
+        final int first = in.read();
+        if (first < 0) return false;
+
+        final byte[] header = new byte[10];
+        header[0] = (byte) first;
+        readFully(in, header, 1, header.length - 1);
+        if ((header[0] & 0xff) != 0x1f || (header[1] & 0xff) != 0x8b) throw new ZipException("Not in gzip format");
+        if (header[2] != 8) throw new ZipException("Unsupported gzip compression method: " + header[2]);
+
+        final int flags = header[3] & 0xff;
+        if ((flags & FEXTRA) != 0) {
+            final byte[] length = new byte[2];
+            readFully(in, length, 0, 2);
+            skipFully(in, unsignedShort(length, 0));
+        }
+        if ((flags & FNAME) != 0) skipZeroTerminated(in);
+        if ((flags & FCOMMENT) != 0) skipZeroTerminated(in);
+        if ((flags & FHCRC) != 0) skipFully(in, 2);
+        return true;
+    }
+
+    /**
+     * Reads the trailer of a member and checks it against what was inflated.
+     */
+    private static void readMemberTrailer(final InputStream in, final long crc, final long size) throws IOException {
+
+        final byte[] trailer = new byte[8];
+        readFully(in, trailer, 0, trailer.length);
+
+        final long expectedCrc = unsignedShort(trailer, 0) | (long) unsignedShort(trailer, 2) << 16;
+        final long expectedSize = unsignedShort(trailer, 4) | (long) unsignedShort(trailer, 6) << 16;
+        if (expectedCrc != crc) throw new ZipException("Corrupt gzip trailer: CRC mismatch");
+        if (expectedSize != (size & 0xffffffffL)) throw new ZipException("Corrupt gzip trailer: size mismatch");
+    }
+
+    private static void readFully(final InputStream in, final byte[] bytes, final int offset, final int length) throws IOException {
+        if (in.readNBytes(bytes, offset, length) != length) throw new EOFException("Unexpected end of gzip member");
+    }
+
+    private static void skipFully(final InputStream in, final int length) throws IOException {
+        for (int i = 0; i < length; i++) {
+            if (in.read() < 0) throw new EOFException("Unexpected end of gzip member");
+        }
+    }
+
+    private static void skipZeroTerminated(final InputStream in) throws IOException {
+        int read;
+        do {
+            read = in.read();
+            if (read < 0) throw new EOFException("Unexpected end of gzip member");
+        } while (read != 0);
+    }
+
+    private void offer(final byte[] bytes) throws InterruptedException {
+        if (bytes.length > 0) chunks.put(bytes);
+    }
+
+    private static int unsignedShort(final byte[] bytes, final int offset) {
+        return (bytes[offset] & 0xff) | (bytes[offset + 1] & 0xff) << 8;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!nextChunk()) return -1;
+        return chunk[position++] & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] bytes, final int offset, final int length) throws IOException {
+        if (length == 0) return 0;
+        if (!nextChunk()) return -1;
+
+        final int n = Math.min(length, chunk.length - position);
+        System.arraycopy(chunk, position, bytes, offset, n);
+        position += n;
+        return n;
+    }
+
+    private boolean nextChunk() throws IOException {
+        if (position < chunk.length) return true;
+        if (finished) return false;
+
+        try {
+            chunk = chunks.take();
+            position = 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for decompressed data");
+        }
+
+        if (chunk == END) {
+            finished = true;
+            if (failure != null) throw new IOException("Failed to decompress gzip input", failure);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Stops the background decoder and closes the compressed source.
+     *
+     * @throws IOException if closing the source fails
+     */
+    @Override
+    public void close() throws IOException {
+        finished = true;
+        chunk = END;
+        position = 0;
+        decoder.interrupt();
+        source.close();
+    }
+}
@@ -0,0 +1,6 @@
+/**
+ * This package contains the stream-level building blocks used by the application to read its input and
+ * write its output, such as transparent compression and decompression of the data flowing through
+ * the calculator.
+ */
+package me.thiagorigonatti.capitalgains.io;
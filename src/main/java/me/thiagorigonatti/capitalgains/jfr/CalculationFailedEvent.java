@@ -0,0 +1,35 @@
+package me.thiagorigonatti.capitalgains.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event emitted when the calculation of a line throws an exception.
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+@Name("me.thiagorigonatti.capitalgains.CalculationFailed")
+@Label("Calculation Failed")
+@Category({"Capital Gains"})
+@Description("Exception thrown while calculating the taxes of one input line")
+public final class CalculationFailedEvent extends jdk.jfr.Event {
+
+    @Label("Exception Class")
+    Class<?> exceptionClass;
+
+    @Label("Message")
+    String message;
+
+    @Label("Line Length")
+    @Description("Length of the line in characters, which is its size in bytes for ASCII input")
+    @DataAmount
+    int length;
+
+    CalculationFailedEvent() {
+    }
+}
@@ -0,0 +1,133 @@
+package me.thiagorigonatti.capitalgains.jfr;
+
+import java.math.BigDecimal;
+
+/**
+ * Entry point for emitting the calculator's flight recorder events.
+ * <p>
+ * Emission is off by default and switched on with {@link #setEnabled(boolean)}, e.g. by the {@code -jfr} flag. While
+ * off, every method returns after reading one static field, without allocating an event, so the calls can stay on the
+ * hot path. While on, events are still only committed if a recording has them enabled, for example when the JVM is
+ * started with {@code -XX:StartFlightRecording}.
+ * </p>
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class CalculatorEvents {
+
+    private static volatile boolean enabled;
+
+    /**
+     * Private constructor to prevent instantiation of this utility class.
+     *
+     * @throws AssertionError always, as this class should not be instantiated
+     */
+    private CalculatorEvents() {
+        throw new AssertionError("Instantiation of utility class...");
+    }
+
+    /**
+     * Returns whether events are emitted.
+     *
+     * @return {@code true} if emission is on
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Switches the emission of events on or off for the whole JVM.
+     *
+     * @param enabled {@code true} to emit events
+     */
+    public static void setEnabled(final boolean enabled) {
+        CalculatorEvents.enabled = enabled;
+    }
+
+    /**
+     * Starts timing a line.
+     *
+     * @return the started event, or {@code null} if it would not be recorded
+     */
+    public static LineProcessedEvent beginLine() {
+        if (!enabled) return null;
+        final LineProcessedEvent event = new LineProcessedEvent();
+        if (!event.isEnabled()) return null;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends and commits an event started with {@link #beginLine()}.
+     *
+     * @param event      the event, possibly {@code null}
+     * @param operations the number of operations processed
+     * @param length     the length of the line
+     */
+    public static void endLine(final LineProcessedEvent event, final int operations, final int length) {
+        if (event == null) return;
+        event.end();
+        if (!event.shouldCommit()) return;
+        event.operations = operations;
+        event.length = length;
+        event.commit();
+    }
+
+    /**
+     * Records a sale with tax due.
+     *
+     * @param quantity   the number of shares sold
+     * @param unitCost   the sale price per share
+     * @param profit     the profit before offsetting losses
+     * @param offsetLoss the accumulated loss deducted from the profit
+     * @param tax        the tax due
+     */
+    public static void taxableSell(final long quantity, final BigDecimal unitCost, final BigDecimal profit, final BigDecimal offsetLoss, final BigDecimal tax) {
+        if (!enabled) return;
+        final TaxableSellEvent event = new TaxableSellEvent();
+        if (!event.shouldCommit()) return;
+        event.quantity = quantity;
+        event.unitCost = unitCost.doubleValue();
+        event.profit = profit.doubleValue();
+        event.offsetLoss = offsetLoss.doubleValue();
+        event.tax = tax.doubleValue();
+        event.commit();
+    }
+
+    /**
+     * Records a sale at a loss.
+     *
+     * @param quantity        the number of shares sold
+     * @param unitCost        the sale price per share
+     * @param loss            the loss of the sale
+     * @param accumulatedLoss the loss carried forward after the sale
+     */
+    public static void lossCarried(final long quantity, final BigDecimal unitCost, final BigDecimal loss, final BigDecimal accumulatedLoss) {
+        if (!enabled) return;
+        final LossCarriedEvent event = new LossCarriedEvent();
+        if (!event.shouldCommit()) return;
+        event.quantity = quantity;
+        event.unitCost = unitCost.doubleValue();
+        event.loss = loss.doubleValue();
+        event.accumulatedLoss = accumulatedLoss.doubleValue();
+        event.commit();
+    }
+
+    /**
+     * Records an exception thrown while calculating a line.
+     *
+     * @param exception the exception
+     * @param length    the length of the line
+     */
+    public static void calculationFailed(final Exception exception, final int length) {
+        if (!enabled) return;
+        final CalculationFailedEvent event = new CalculationFailedEvent();
+        if (!event.shouldCommit()) return;
+        event.exceptionClass = exception.getClass();
+        event.message = exception.getMessage();
+        event.length = length;
+        event.commit();
+    }
+}
@@ -0,0 +1,33 @@
+package me.thiagorigonatti.capitalgains.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event spanning the calculation of one input line.
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+@Name("me.thiagorigonatti.capitalgains.LineProcessed")
+@Label("Line Processed")
+@Category({"Capital Gains"})
+@Description("Calculation of the taxes of one input line")
+public final class LineProcessedEvent extends jdk.jfr.Event {
+
+    @Label("Operations")
+    @Description("Number of operations processed")
+    int operations;
+
+    @Label("Line Length")
+    @Description("Length of the line in characters, which is its size in bytes for ASCII input")
+    @DataAmount
+    int length;
+
+    LineProcessedEvent() {
+    }
+}
@@ -0,0 +1,37 @@
+package me.thiagorigonatti.capitalgains.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event emitted when a sale at a loss adds to the loss carried forward to later sales.
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+@Name("me.thiagorigonatti.capitalgains.LossCarried")
+@Label("Loss Carried Forward")
+@Category({"Capital Gains"})
+@Description("Sale at a loss whose amount is carried forward to offset later profits")
+public final class LossCarriedEvent extends jdk.jfr.Event {
+
+    @Label("Quantity")
+    long quantity;
+
+    @Label("Unit Cost")
+    double unitCost;
+
+    @Label("Loss")
+    @Description("Loss of the sale")
+    double loss;
+
+    @Label("Accumulated Loss")
+    @Description("Loss carried forward after the sale")
+    double accumulatedLoss;
+
+    LossCarriedEvent() {
+    }
+}
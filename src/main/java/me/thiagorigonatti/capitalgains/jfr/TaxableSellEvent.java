@@ -0,0 +1,40 @@
+package me.thiagorigonatti.capitalgains.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event emitted when a sale results in tax due.
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+@Name("me.thiagorigonatti.capitalgains.TaxableSell")
+@Label("Taxable Sell")
+@Category({"Capital Gains"})
+@Description("Sale whose profit, after offsetting accumulated losses, is taxed")
+public final class TaxableSellEvent extends jdk.jfr.Event {
+
+    @Label("Quantity")
+    long quantity;
+
+    @Label("Unit Cost")
+    double unitCost;
+
+    @Label("Profit")
+    @Description("Profit of the sale before offsetting accumulated losses")
+    double profit;
+
+    @Label("Offset Loss")
+    @Description("Accumulated loss deducted from the profit")
+    double offsetLoss;
+
+    @Label("Tax")
+    double tax;
+
+    TaxableSellEvent() {
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * This package contains the Java Flight Recorder events emitted by the calculator, which describe the shape of the
+ * input and the tax decisions taken so that latency in a recording can be correlated with what was being processed.
+ */
+package me.thiagorigonatti.capitalgains.jfr;
@@ -0,0 +1,262 @@
+package me.thiagorigonatti.capitalgains.shard;
+
+import me.thiagorigonatti.capitalgains.CapitalGainsCalculator;
+import me.thiagorigonatti.capitalgains.exception.WorkerProcessException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Pattern;
+
+/**
+ * Runs the calculation across several worker processes and merges their outputs in input order.
+ * <p>
+ * Every input line is an independent simulation, so lines are dealt round-robin to {@code N} child JVMs running
+ * {@link CapitalGainsCalculator} from the same class path (e.g. the application jar): line {@code i} goes to worker
+ * {@code i % N} through its standard input. Each worker writes exactly one output line per input line, in order, so
+ * the coordinator restores the original order by reading the workers' standard outputs in the same round-robin
+ * sequence.
+ * </p>
+ *
+ * <p>Feeding happens on a separate thread, and each worker's standard output is drained by a thread of its own, so
+ * a worker never stops reading its input because its output pipe is full while the merge waits on another worker.
+ * The feeder runs at most {@value #LINES_IN_FLIGHT_PER_WORKER} lines per worker ahead of the merge, which bounds the
+ * results held in memory; before waiting, it flushes every worker's input, and workers flush every result line, so
+ * the line the merge waits for is always on its way, however uneven the sizes of the lines.</p>
+ *
+ * <p>Workers receive the command-line arguments of the coordinator except the ones it handles itself: sharding,
+ * timings, output compression, input and output files, checkpoints, following and flushing, which workers always
+ * do after every line. Their standard error is inherited. If a worker exits with a non-zero code, the others are
+ * destroyed and a {@link WorkerProcessException} is thrown.</p>
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class ShardCoordinator {
+
+    /**
+     * Arguments applied by the coordinator and therefore not forwarded to workers. File, checkpoint and follow flags
+     * belong to the coordinator too, since workers must read their standard input and write their standard output.
+     */
+    private static final Pattern COORDINATOR_ARGS = Pattern.compile("^(?i)(-mp\\d+|-t|-gzo|-pel|-resume|-follow|-(in|out|ckpt)=.*)$");
+
+    /**
+     * The number of lines per worker that may be fed ahead of the oldest result not yet written.
+     */
+    static final int LINES_IN_FLIGHT_PER_WORKER = 256;
+
+    /**
+     * Marks the end of the results of a worker in its queue.
+     */
+    private static final String END_OF_RESULTS = new String();
+
+    private final int workers;
+    private final List<String> command;
+    private final int bufferSize;
+    private final boolean flushEveryLine;
+
+    /**
+     * Creates a coordinator starting the given number of workers of this application.
+     *
+     * @param workers        the number of worker processes
+     * @param args           the command-line arguments of the coordinator
+     * @param bufferSize     the size of the buffers of the pipes to and from each worker
+     * @param flushEveryLine whether every line is flushed to its worker and to the output as soon as it is available
+     */
+    public ShardCoordinator(final int workers, final String[] args, final int bufferSize, final boolean flushEveryLine) {
+        this(workers, workerCommand(args), bufferSize, flushEveryLine);
+    }
+
+    /**
+     * Creates a coordinator starting the given number of workers with an explicit command.
+     *
+     * @param workers        the number of worker processes
+     * @param command        the command starting one worker, which must read lines from its standard input and
+     *                       write one result line per input line to its standard output, flushing it
+     * @param bufferSize     the size of the buffers of the pipes to and from each worker
+     * @param flushEveryLine whether every line is flushed to its worker and to the output as soon as it is available
+     */
+    public ShardCoordinator(final int workers, final List<String> command, final int bufferSize, final boolean flushEveryLine) {
+        if (workers < 1) throw new IllegalArgumentException("At least one worker process is required.");
+        this.workers = workers;
+        this.command = List.copyOf(command);
+        this.bufferSize = bufferSize;
+        this.flushEveryLine = flushEveryLine;
+    }
+
+    /**
+     * Builds the command starting a worker JVM: the running Java executable, its heap and {@code -XX} options, the
+     * current class path and {@link CapitalGainsCalculator} with the forwarded arguments and {@code -pel}.
+     *
+     * @param args the command-line arguments of the coordinator
+     * @return the command starting one worker
+     */
+    public static List<String> workerCommand(final String[] args) {
+        final List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+
+        for (String jvmArg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (jvmArg.startsWith("-X")) command.add(jvmArg);
+        }
+
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(CapitalGainsCalculator.class.getName());
+
+        for (String arg : args) {
+            if (!COORDINATOR_ARGS.matcher(arg).matches()) command.add(arg);
+        }
+        command.add("-pel");
+        return command;
+    }
+
+    /**
+     * Shards the lines of the reader across the workers and writes their results to the writer in input order.
+     * Reading stops at the end of the input or at the first blank line.
+     *
+     * @param input  the input lines
+     * @param output the destination of the result lines
+     * @throws IOException             if reading the input, writing the output or talking to a worker fails
+     * @throws WorkerProcessException if a worker exits with a non-zero code
+     */
+    public void process(final BufferedReader input, final BufferedWriter output) throws IOException {
+
+        final List<Process> processes = new ArrayList<>(workers);
+        try {
+            for (int i = 0; i < workers; i++) {
+                processes.add(new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start());
+            }
+
+            final Semaphore linesInFlight = new Semaphore(workers * LINES_IN_FLIGHT_PER_WORKER);
+            final Feeder feeder = new Feeder(input, processes, linesInFlight);
+            final Thread feederThread = Thread.ofPlatform().name("shard-feeder").daemon().start(feeder);
+
+            final List<Drainer> drainers = new ArrayList<>(workers);
+            for (int i = 0; i < workers; i++) {
+                final Drainer drainer = new Drainer(processes.get(i));
+                Thread.ofPlatform().name("shard-drainer-" + i).daemon().start(drainer);
+                drainers.add(drainer);
+            }
+
+            int shard = 0;
+            String result;
+            while ((result = drainers.get(shard).results.take()) != END_OF_RESULTS) {
+                output.write(result);
+                output.newLine();
+                if (flushEveryLine) output.flush();
+                linesInFlight.release();
+                shard = (shard + 1) % workers;
+            }
+
+            // The first worker to run out of results is either done with its shard or has failed.
+            awaitWorker(processes, shard);
+            if (drainers.get(shard).failure != null) throw drainers.get(shard).failure;
+            for (int i = 0; i < workers; i++) awaitWorker(processes, i);
+            feederThread.join();
+
+            if (feeder.failure != null) throw feeder.failure;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for worker processes.", e);
+        } finally {
+            for (Process process : processes) process.destroyForcibly();
+        }
+    }
+
+    private static void awaitWorker(final List<Process> processes, final int shard) throws InterruptedException {
+        final int exitCode = processes.get(shard).waitFor();
+        if (exitCode != 0) throw new WorkerProcessException(shard, exitCode);
+    }
+
+    /**
+     * Reads the result lines of one worker as soon as they are written, so its output pipe never fills up.
+     */
+    private final class Drainer implements Runnable {
+
+        private final Process process;
+        private final BlockingQueue<String> results = new LinkedBlockingQueue<>();
+        private volatile IOException failure;
+
+        private Drainer(final Process process) {
+            this.process = process;
+        }
+
+        @Override
+        public void run() {
+            try (final BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()), bufferSize)) {
+                String result;
+                while ((result = reader.readLine()) != null) results.add(result);
+            } catch (IOException e) {
+                failure = e;
+            } finally {
+                results.add(END_OF_RESULTS);
+            }
+        }
+    }
+
+    /**
+     * Deals the input lines round-robin to the workers' standard inputs, then closes them. A permit is taken for
+     * every line and given back once its result is written; when none is left, the inputs are flushed first.
+     */
+    private final class Feeder implements Runnable {
+
+        private final BufferedReader input;
+        private final List<Process> processes;
+        private final Semaphore linesInFlight;
+        private volatile IOException failure;
+
+        private Feeder(final BufferedReader input, final List<Process> processes, final Semaphore linesInFlight) {
+            this.input = input;
+            this.processes = processes;
+            this.linesInFlight = linesInFlight;
+        }
+
+        @Override
+        public void run() {
+            final List<BufferedWriter> shards = new ArrayList<>(workers);
+            for (Process process : processes) {
+                shards.add(new BufferedWriter(new OutputStreamWriter(process.getOutputStream()), bufferSize));
+            }
+
+            try {
+                String line;
+                long index = 0;
+                while ((line = input.readLine()) != null && !line.trim().isEmpty()) {
+                    if (!linesInFlight.tryAcquire()) {
+                        for (BufferedWriter shard : shards) shard.flush();
+                        linesInFlight.acquire();
+                    }
+
+                    final BufferedWriter shard = shards.get((int) (index++ % workers));
+                    shard.write(line);
+                    shard.newLine();
+                    if (flushEveryLine) shard.flush();
+                }
+            } catch (IOException e) {
+                failure = e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = new IOException("Interrupted while feeding worker processes.", e);
+            } finally {
+                for (BufferedWriter shard : shards) {
+                    try {
+                        shard.close();
+                    } catch (IOException e) {
+                        if (failure == null) failure = e;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * This package contains the coordinator that scales the application across processes, sharding the input lines
+ * over child JVMs and merging their outputs back into the original order.
+ */
+package me.thiagorigonatti.capitalgains.shard;
@@ -1,7 +1,14 @@
 package me.thiagorigonatti.capitalgains.util;
 
+import me.thiagorigonatti.capitalgains.core.PrefixScanEvaluator;
 import me.thiagorigonatti.capitalgains.core.TaxCalculator;
+import me.thiagorigonatti.capitalgains.core.TaxRegime;
 
+import java.math.BigDecimal;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -13,6 +20,24 @@ import java.util.regex.Pattern;
  * <ul>
  *   <li><b>-pel</b>: Enables printing of the tax result for every line (Print Every Line).</li>
  *   <li><b>-t</b>: Enables timing measurements for the execution.</li>
+ *   <li><b>-gzo</b>: Compresses the output with gzip.</li>
+ *   <li><b>-auto</b>: Tunes the buffer sizes and the flush policy from the first lines of input.</li>
+ *   <li><b>-stream</b>: Parses and answers each line operation by operation, never holding a whole line.</li>
+ *   <li><b>-in=&lt;file&gt;</b>: Reads the input from a file instead of the standard input.</li>
+ *   <li><b>-out=&lt;file&gt;</b>: Writes the output to a file instead of the standard output.</li>
+ *   <li><b>-ckpt=&lt;file&gt;</b>: Records progress over the input and output files to a checkpoint file.</li>
+ *   <li><b>-resume</b>: Resumes from the last checkpoint instead of starting over.</li>
+ *   <li><b>-scan[&lt;n&gt;]</b>: Evaluates tickers with at least n operations in a line (100000 by default) in parallel.</li>
+ *   <li><b>-follow</b>: Follows the input file as it grows, appending results to the output file.</li>
+ *   <li><b>-group</b>: Reads one operation per line and groups them by their account field.</li>
+ *   <li><b>-gmem&lt;size&gt;&lt;unit&gt;</b>: Sets the memory budget of account grouping (e.g., -gmem256m).</li>
+ *   <li><b>-acc[&lt;n&gt;]</b>: Reads lines tagged with an account, carrying positions over, on n threads (one per core
+ *   by default).</li>
+ *   <li><b>-col</b>: Writes the output in the compact binary columnar format instead of JSON.</li>
+ *   <li><b>-jfr</b>: Emits Java Flight Recorder events for lines, taxable sales, carried losses and failures.</li>
+ *   <li><b>-mp&lt;n&gt;</b>: Shards the input lines across n worker processes (e.g., -mp4).</li>
+ *   <li><b>-whatif=&lt;rate&gt;:&lt;threshold&gt;[:nocarry],...</b>: Evaluates each line under several tax regimes
+ *   at once, writing one tax column per regime (e.g., -whatif=0.20:20000,0.15:35000:nocarry).</li>
  *   <li><b>-bsi&lt;size&gt;&lt;unit&gt;</b>: Sets the input buffer size (e.g., -bsi512k, -bsi1m).</li>
  *   <li><b>-bso&lt;size&gt;&lt;unit&gt;</b>: Sets the output buffer size (e.g., -bso1m, -bso2g).</li>
  * </ul>
@@ -44,6 +69,41 @@ public class ArgParser {
     private static final Pattern pattern = Pattern
             .compile("^(?i)((?<arg>-bsi|-bso)(?<size>\\d{1,3})(?<exp>[kmg]))$");
 
+    /**
+     * Regular expression pattern used to match and extract the number of worker processes.
+     * Supported forms: <code>-mp2</code>, <code>-mp16</code>, etc.
+     */
+    private static final Pattern workerProcessesPattern = Pattern
+            .compile("^(?i)-mp(?<workers>\\d{1,3})$");
+
+    /**
+     * Regular expression pattern used to match and extract the minimum number of operations of a ticker evaluated in
+     * parallel. Supported forms: <code>-scan</code>, <code>-scan50000</code>, etc.
+     */
+    private static final Pattern parallelScanPattern = Pattern
+            .compile("^(?i)-scan(?<operations>[1-9]\\d{0,8})?$");
+
+    /**
+     * Regular expression pattern used to match and extract the memory budget of account grouping.
+     * Supported forms: <code>-gmem512m</code>, <code>-gmem2g</code>, etc.
+     */
+    private static final Pattern groupMemoryPattern = Pattern
+            .compile("^(?i)-gmem(?<size>\\d{1,3})(?<exp>[kmg])$");
+
+    /**
+     * Regular expression pattern used to match and extract the number of account partitions.
+     * Supported forms: <code>-acc</code>, <code>-acc8</code>, etc.
+     */
+    private static final Pattern accountPartitionsPattern = Pattern
+            .compile("^(?i)-acc(?<partitions>[1-9]\\d{0,2})?$");
+
+    /**
+     * Regular expression pattern used to match one regime of the what-if argument.
+     * Supported forms: <code>0.20:20000</code>, <code>0.15:35000.50:nocarry</code>, etc.
+     */
+    private static final Pattern whatIfRegimePattern = Pattern
+            .compile("^(?i)(?<rate>\\d+(\\.\\d+)?):(?<threshold>\\d+(\\.\\d+)?)(?<nocarry>:nocarry)?$");
+
     /**
      * Parses the given command-line arguments and applies the corresponding configuration
      * to the provided {@link TaxCalculator} instance.
@@ -61,6 +121,108 @@ public class ArgParser {
             } else if (arg.equalsIgnoreCase("-t")) {
                 taxCalculator.setTimings(true);
 
+            } else if (arg.equalsIgnoreCase("-gzo")) {
+                taxCalculator.setCompressOutput(true);
+
+            } else if (arg.equalsIgnoreCase("-auto")) {
+                taxCalculator.setAutoTuneBuffers(true);
+
+            } else if (arg.equalsIgnoreCase("-stream")) {
+                taxCalculator.setStreamLines(true);
+
+            } else if (arg.equalsIgnoreCase("-resume")) {
+                taxCalculator.setResume(true);
+
+            } else if (arg.toLowerCase().startsWith("-in=")) {
+                taxCalculator.setInputPath(path(arg, "-in="));
+
+            } else if (arg.toLowerCase().startsWith("-out=")) {
+                taxCalculator.setOutputPath(path(arg, "-out="));
+
+            } else if (arg.toLowerCase().startsWith("-ckpt=")) {
+                taxCalculator.setCheckpointPath(path(arg, "-ckpt="));
+
+            } else if (arg.toLowerCase().startsWith("-scan")) {
+                Matcher matcher = parallelScanPattern.matcher(arg);
+
+                if (matcher.matches()) {
+                    taxCalculator.setParallelScanThreshold(matcher.group("operations") == null
+                            ? PrefixScanEvaluator.DEFAULT_MIN_OPERATIONS
+                            : Integer.parseInt(matcher.group("operations")));
+                } else {
+                    System.err.println("Invalid argument: " + arg);
+                    System.exit(1);
+                }
+
+            } else if (arg.equalsIgnoreCase("-follow")) {
+                taxCalculator.setFollow(true);
+
+            } else if (arg.equalsIgnoreCase("-group")) {
+                taxCalculator.setGroupByAccount(true);
+
+            } else if (arg.toLowerCase().startsWith("-gmem")) {
+                Matcher matcher = groupMemoryPattern.matcher(arg);
+
+                if (matcher.matches()) {
+                    char c = matcher.group("exp").toLowerCase().charAt(0);
+                    int exp = c == 'g' ? 3 : c == 'm' ? 2 : 1;
+                    taxCalculator.setGroupMemoryBudget((long) Math.pow(1_024, exp) * Integer.parseInt(matcher.group("size")));
+                } else {
+                    System.err.println("Invalid argument: " + arg);
+                    System.exit(1);
+                }
+
+            } else if (arg.toLowerCase().startsWith("-acc")) {
+                Matcher matcher = accountPartitionsPattern.matcher(arg);
+
+                if (matcher.matches()) {
+                    taxCalculator.setAccountPartitions(matcher.group("partitions") == null
+                            ? Runtime.getRuntime().availableProcessors()
+                            : Integer.parseInt(matcher.group("partitions")));
+                } else {
+                    System.err.println("Invalid argument: " + arg);
+                    System.exit(1);
+                }
+
+            } else if (arg.equalsIgnoreCase("-col")) {
+                taxCalculator.setColumnarOutput(true);
+
+            } else if (arg.equalsIgnoreCase("-jfr")) {
+                taxCalculator.setFlightRecorderEvents(true);
+
+            } else if (arg.toLowerCase().startsWith("-mp")) {
+                Matcher matcher = workerProcessesPattern.matcher(arg);
+
+                if (matcher.matches()) {
+                    taxCalculator.setWorkerProcesses(Integer.parseInt(matcher.group("workers")));
+                } else {
+                    System.err.println("Invalid argument: " + arg);
+                    System.exit(1);
+                }
+
+            } else if (arg.toLowerCase().startsWith("-whatif=")) {
+                final List<TaxRegime> taxRegimes = new ArrayList<>();
+
+                try {
+                    for (String regime : arg.substring("-whatif=".length()).split(",")) {
+                        Matcher matcher = whatIfRegimePattern.matcher(regime);
+
+                        if (!matcher.matches()) throw new IllegalArgumentException(regime);
+
+                        taxRegimes.add(new TaxRegime.Builder()
+                                .name(regime)
+                                .rate(new BigDecimal(matcher.group("rate")))
+                                .threshold(new BigDecimal(matcher.group("threshold")))
+                                .carryLosses(matcher.group("nocarry") == null)
+                                .build());
+                    }
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Invalid argument: " + arg);
+                    System.exit(1);
+                }
+
+                taxCalculator.setWhatIfRegimes(taxRegimes);
+
             } else if (arg.toLowerCase().startsWith("-bs")) {
                 Matcher matcher = pattern.matcher(arg);
 
@@ -87,4 +249,23 @@ public class ArgParser {
             }
         }
     }
+
+    /**
+     * Returns the path given after the prefix of a file argument, exiting if it is empty or invalid.
+     *
+     * @param arg    the argument
+     * @param prefix the flag and its equals sign
+     * @return the path
+     */
+    private static Path path(final String arg, final String prefix) {
+        final String value = arg.substring(prefix.length());
+        try {
+            if (!value.isBlank()) return Path.of(value);
+        } catch (InvalidPathException e) {
+            // reported below
+        }
+        System.err.println("Invalid argument: " + arg);
+        System.exit(1);
+        return null;
+    }
 }
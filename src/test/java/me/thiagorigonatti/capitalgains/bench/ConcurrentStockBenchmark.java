@@ -0,0 +1,166 @@
+package me.thiagorigonatti.capitalgains.bench;
+
+import me.thiagorigonatti.capitalgains.core.ConcurrentStock;
+import me.thiagorigonatti.capitalgains.core.Stock;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Compares the lock-free {@link ConcurrentStock} with a {@link Stock} whose operations are synchronized, under the
+ * same contended workload.
+ * <p>
+ * Each producer thread alternately buys and sells back its own quantity on one shared stock, all of them released at
+ * once, and the report gives the elapsed time of each implementation. Results depend on the machine and the number of
+ * cores, so they are reported rather than asserted.
+ * </p>
+ *
+ * <p>It can be run from Gradle with, for example:</p>
+ * <pre>{@code ./gradlew concurrentStockBenchmark -Pargs="threads=8 operations=50000"}</pre>
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class ConcurrentStockBenchmark {
+
+    /**
+     * Private constructor to prevent instantiation of this utility class.
+     *
+     * @throws AssertionError always, as this class should not be instantiated
+     */
+    private ConcurrentStockBenchmark() {
+        throw new AssertionError("Instantiation of utility class...");
+    }
+
+    /**
+     * A stock shared by the producer threads.
+     */
+    private interface SharedStock {
+
+        void buy(long quantity, BigDecimal unitCost);
+
+        BigDecimal sell(long quantity, BigDecimal unitCost);
+    }
+
+    /**
+     * The lock-free stock under measurement.
+     */
+    private static final class LockFreeStock extends ConcurrentStock implements SharedStock {
+    }
+
+    /**
+     * Baseline that serializes every operation on the stock monitor.
+     */
+    private static final class SynchronizedStock extends Stock implements SharedStock {
+
+        @Override
+        public synchronized void buy(final long quantity, final BigDecimal unitCost) {
+            super.buy(quantity, unitCost);
+        }
+
+        @Override
+        public synchronized BigDecimal sell(final long quantity, final BigDecimal unitCost) {
+            return super.sell(quantity, unitCost);
+        }
+    }
+
+    /**
+     * Elapsed times of both implementations under the same workload.
+     *
+     * @param threads           the number of producer threads
+     * @param operations        the number of buys and sells over all threads
+     * @param lockFreeNanos     the elapsed time of {@link ConcurrentStock}, in nanoseconds
+     * @param synchronizedNanos the elapsed time of the synchronized baseline, in nanoseconds
+     */
+    public record Report(int threads, long operations, long lockFreeNanos, long synchronizedNanos) {
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "ConcurrentStock: %d threads x %d ops, lock-free %.1f ms, synchronized %.1f ms",
+                    threads, operations, lockFreeNanos / 1e6, synchronizedNanos / 1e6);
+        }
+    }
+
+    /**
+     * Warms up both implementations, then measures each of them once.
+     *
+     * @param threads    the number of producer threads
+     * @param operations the number of buy and sell pairs per thread
+     * @param warmups    the number of warm-up rounds, each a tenth of the measured workload
+     * @return the elapsed times
+     * @throws InterruptedException if interrupted while waiting for the producers
+     * @throws ExecutionException   if a producer fails
+     */
+    public static Report measure(final int threads, final int operations, final int warmups) throws InterruptedException, ExecutionException {
+        for (int warmup = 0; warmup < warmups; warmup++) {
+            hammer(LockFreeStock::new, threads, operations / 10);
+            hammer(SynchronizedStock::new, threads, operations / 10);
+        }
+
+        final long lockFree = hammer(LockFreeStock::new, threads, operations);
+        final long synchronizedBaseline = hammer(SynchronizedStock::new, threads, operations);
+        return new Report(threads, operations * 2L * threads, lockFree, synchronizedBaseline);
+    }
+
+    /**
+     * Makes each thread alternately buy and sell back a quantity on one shared stock.
+     *
+     * @param stockSupplier supplies the shared stock
+     * @param threads       the number of producer threads
+     * @param operations    the number of buy and sell pairs per thread
+     * @return the elapsed time in nanoseconds
+     */
+    private static long hammer(final Supplier<? extends SharedStock> stockSupplier, final int threads, final int operations) throws InterruptedException, ExecutionException {
+        final SharedStock stock = stockSupplier.get();
+        final ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<?>> futures = new ArrayList<>();
+
+        try {
+            for (int t = 0; t < threads; t++) {
+                final long quantity = t + 1;
+                futures.add(executorService.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < operations; i++) {
+                        stock.buy(quantity, BigDecimal.TEN);
+                        stock.sell(quantity, BigDecimal.TEN);
+                    }
+                    return null;
+                }));
+            }
+
+            final long startTime = System.nanoTime();
+            start.countDown();
+            for (Future<?> future : futures) future.get();
+            return System.nanoTime() - startTime;
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs the benchmark from {@code key=value} arguments and prints its report. Keys: {@code threads} (at least two
+     * by default), {@code operations} (buy and sell pairs per thread) and {@code warmups}.
+     *
+     * @param args the {@code key=value} arguments
+     * @throws Exception if a producer fails
+     */
+    public static void main(final String[] args) throws Exception {
+        final Map<String, String> options = LoadTestHarness.options(args);
+        final int threads = Integer.parseInt(options.getOrDefault("threads", String.valueOf(Math.max(2, Runtime.getRuntime().availableProcessors()))));
+        final int operations = Integer.parseInt(options.getOrDefault("operations", "50000"));
+        final int warmups = Integer.parseInt(options.getOrDefault("warmups", "2"));
+
+        System.out.println(measure(threads, operations, warmups));
+    }
+}
@@ -0,0 +1,235 @@
+package me.thiagorigonatti.capitalgains.bench;
+
+import me.thiagorigonatti.capitalgains.core.TaxCalculator;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * Runs {@link TaxCalculator} end to end over a workload and reports throughput, allocation rate and GC time.
+ * <p>
+ * The workload is held in memory and the output is discarded, so the measurement covers parsing, calculation,
+ * formatting and serialization without disk I/O. Allocations are those of the calculating thread, as reported by
+ * {@link com.sun.management.ThreadMXBean#getCurrentThreadAllocatedBytes()}; GC counts and times are summed over
+ * every collector of the JVM.
+ * </p>
+ *
+ * <p>It can be run from Gradle with, for example:</p>
+ * <pre>{@code ./gradlew loadTest -Pargs="lines=10000 operations=500 iterations=5"}</pre>
+ * <p>or against a file produced by {@link WorkloadGenerator} with {@code in=workload.txt}. Calculator flags can be
+ * passed with {@code calculatorArgs=-bsi1m,-bso1m}.</p>
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class LoadTestHarness {
+
+    /**
+     * Private constructor to prevent instantiation of this utility class.
+     *
+     * @throws AssertionError always, as this class should not be instantiated
+     */
+    private LoadTestHarness() {
+        throw new AssertionError("Instantiation of utility class...");
+    }
+
+    /**
+     * Measurements of one or more runs over the same workload.
+     *
+     * @param lines          the number of lines processed
+     * @param operations     the number of operations processed
+     * @param bytes          the number of input bytes processed
+     * @param elapsedNanos   the wall-clock time spent, in nanoseconds
+     * @param allocatedBytes the bytes allocated by the calculating thread
+     * @param gcCount        the number of garbage collections
+     * @param gcMillis       the time spent in garbage collection, in milliseconds
+     */
+    public record Report(long lines, long operations, long bytes, long elapsedNanos, long allocatedBytes, long gcCount, long gcMillis) {
+
+        /**
+         * Returns the number of lines processed per second.
+         *
+         * @return the line throughput
+         */
+        public double linesPerSecond() {
+            return lines * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * Returns the number of operations processed per second.
+         *
+         * @return the operation throughput
+         */
+        public double operationsPerSecond() {
+            return operations * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * Returns the number of input megabytes processed per second.
+         *
+         * @return the byte throughput
+         */
+        public double megabytesPerSecond() {
+            return bytes * 1e9 / elapsedNanos / (1 << 20);
+        }
+
+        /**
+         * Returns the average number of bytes allocated per operation.
+         *
+         * @return the allocation per operation
+         */
+        public double allocatedBytesPerOperation() {
+            return operations == 0 ? 0 : (double) allocatedBytes / operations;
+        }
+
+        /**
+         * Returns the allocation rate in megabytes per second.
+         *
+         * @return the allocation rate
+         */
+        public double allocationRateMegabytesPerSecond() {
+            return allocatedBytes * 1e9 / elapsedNanos / (1 << 20);
+        }
+
+        /**
+         * Adds the measurements of another run to this one.
+         *
+         * @param other the other run
+         * @return the combined measurements
+         */
+        public Report plus(final Report other) {
+            return new Report(lines + other.lines, operations + other.operations, bytes + other.bytes,
+                    elapsedNanos + other.elapsedNanos, allocatedBytes + other.allocatedBytes,
+                    gcCount + other.gcCount, gcMillis + other.gcMillis);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "lines=%d operations=%d time=%.1fms throughput=%.0f lines/s %.0f ops/s %.2f MB/s allocation=%.1f B/op %.1f MB/s gc=%d (%dms)",
+                    lines, operations, elapsedNanos / 1e6, linesPerSecond(), operationsPerSecond(), megabytesPerSecond(),
+                    allocatedBytesPerOperation(), allocationRateMegabytesPerSecond(), gcCount, gcMillis);
+        }
+    }
+
+    /**
+     * Runs the calculator once over the workload and measures it.
+     *
+     * @param workload      the input lines as UTF-8 bytes
+     * @param configuration applied to the builder before building the calculator, e.g. to set a stock supplier
+     * @return the measurements of the run
+     */
+    public static Report measure(final byte[] workload, final UnaryOperator<TaxCalculator.Builder> configuration) {
+
+        final TaxCalculator taxCalculator = configuration.apply(new TaxCalculator.Builder()
+                .from(new ByteArrayInputStream(workload), 1 << 16)
+                .dumpTo(OutputStream.nullOutputStream(), 1 << 16)).build();
+
+        final com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long gcCountBefore = gcCount();
+        final long gcMillisBefore = gcMillis();
+        final long allocatedBefore = threadMXBean.getCurrentThreadAllocatedBytes();
+        final long startTime = System.nanoTime();
+
+        taxCalculator.run();
+
+        final long elapsedNanos = System.nanoTime() - startTime;
+        final long allocatedBytes = threadMXBean.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+        return new Report(count(workload, "\n"), count(workload, "\"operation\""), workload.length, elapsedNanos,
+                allocatedBytes, gcCount() - gcCountBefore, gcMillis() - gcMillisBefore);
+    }
+
+    /**
+     * Runs the calculator over the workload a number of times after warming up, and combines the measured runs.
+     *
+     * @param workload      the input lines as UTF-8 bytes
+     * @param warmups       the number of runs discarded to let the JIT compile the hot paths
+     * @param iterations    the number of measured runs
+     * @param configuration applied to the builder before building each calculator
+     * @return the combined measurements of the measured runs
+     */
+    public static Report measure(final byte[] workload, final int warmups, final int iterations, final UnaryOperator<TaxCalculator.Builder> configuration) {
+        for (int i = 0; i < warmups; i++) measure(workload, configuration);
+
+        Report report = new Report(0, 0, 0, 0, 0, 0, 0);
+        for (int i = 0; i < iterations; i++) report = report.plus(measure(workload, configuration));
+        return report;
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionCount).filter(c -> c > 0).sum();
+    }
+
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).filter(t -> t > 0).sum();
+    }
+
+    private static long count(final byte[] bytes, final String token) {
+        final byte[] pattern = token.getBytes();
+        long count = 0;
+        outer:
+        for (int i = 0; i <= bytes.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (bytes[i + j] != pattern[j]) continue outer;
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Parses {@code key=value} arguments.
+     *
+     * @param args the arguments
+     * @return the options by key, in argument order
+     */
+    static Map<String, String> options(final String[] args) {
+        final Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            final int separator = arg.indexOf('=');
+            if (separator <= 0) throw new IllegalArgumentException("Expected key=value but got: " + arg);
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        return options;
+    }
+
+    /**
+     * Runs the load test from {@code key=value} arguments and prints the report. Keys: {@code in} (a workload file,
+     * otherwise one is generated from the {@link WorkloadGenerator} keys), {@code warmups}, {@code iterations} and
+     * {@code calculatorArgs} (comma-separated calculator flags).
+     *
+     * @param args the {@code key=value} arguments
+     * @throws IOException if the workload file cannot be read
+     */
+    public static void main(final String[] args) throws IOException {
+        final Map<String, String> options = options(args);
+
+        final byte[] workload = options.containsKey("in")
+                ? Files.readAllBytes(Path.of(options.get("in")))
+                : WorkloadGenerator.Builder.from(options).build().generate();
+
+        final String[] calculatorArgs = options.getOrDefault("calculatorArgs", "").isBlank()
+                ? new String[0]
+                : options.get("calculatorArgs").split(",");
+
+        final Report report = measure(workload,
+                Integer.parseInt(options.getOrDefault("warmups", "3")),
+                Integer.parseInt(options.getOrDefault("iterations", "5")),
+                builder -> new TaxCalculator.Builder(calculatorArgs)
+                        .from(new ByteArrayInputStream(workload), 1 << 16)
+                        .dumpTo(OutputStream.nullOutputStream(), 1 << 16));
+
+        System.out.println(report);
+    }
+}
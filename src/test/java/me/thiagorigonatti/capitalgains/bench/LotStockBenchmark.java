@@ -0,0 +1,122 @@
+package me.thiagorigonatti.capitalgains.bench;
+
+import me.thiagorigonatti.capitalgains.core.AverageCostStock;
+import me.thiagorigonatti.capitalgains.core.FifoStock;
+import me.thiagorigonatti.capitalgains.core.LifoStock;
+import me.thiagorigonatti.capitalgains.core.LotStock;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
+
+/**
+ * Measures the latency of single sales on {@link LotStock} implementations as the number of queued lots grows.
+ * <p>
+ * For each depth, a stock is filled with that many lots, then each measured sale is preceded by an unmeasured buy of
+ * the same size, so the queue stays at the same depth while sales keep splitting and emptying lots. Each sale is
+ * timed on its own and the report gives percentiles in nanoseconds, so a cost growing with the depth of the queue
+ * would show as percentiles growing from one depth to the next.
+ * </p>
+ *
+ * <p>It can be run from Gradle with, for example:</p>
+ * <pre>{@code ./gradlew lotBenchmark -Pargs="depths=1000,1000000,4000000 sells=200000"}</pre>
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class LotStockBenchmark {
+
+    /**
+     * Private constructor to prevent instantiation of this utility class.
+     *
+     * @throws AssertionError always, as this class should not be instantiated
+     */
+    private LotStockBenchmark() {
+        throw new AssertionError("Instantiation of utility class...");
+    }
+
+    /**
+     * Sale latencies of one stock implementation at one queue depth.
+     *
+     * @param method the accounting method
+     * @param depth  the number of lots queued
+     * @param lots   the number of lots queued after the measured sales
+     * @param p50    the median latency, in nanoseconds
+     * @param p99    the 99th percentile latency, in nanoseconds
+     * @param p999   the 99.9th percentile latency, in nanoseconds
+     * @param mean   the mean latency, in nanoseconds
+     */
+    public record Report(String method, int depth, int lots, long p50, long p99, long p999, double mean) {
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-8s depth=%-9d lots=%-9d p50=%dns p99=%dns p99.9=%dns mean=%.1fns",
+                    method, depth, lots, p50, p99, p999, mean);
+        }
+    }
+
+    /**
+     * Fills a stock with lots, then times sales while keeping the queue at the same depth.
+     *
+     * @param method        the name of the accounting method
+     * @param stockSupplier creates the stock
+     * @param depth         the number of lots to queue before measuring
+     * @param sells         the number of sales to time
+     * @param seed          the seed of the random quantities and prices
+     * @return the latencies of the sales
+     */
+    public static Report measure(final String method, final Supplier<? extends LotStock> stockSupplier, final int depth, final int sells, final long seed) {
+        final SplittableRandom random = new SplittableRandom(seed);
+        final LotStock stock = stockSupplier.get();
+        final BigDecimal[] prices = new BigDecimal[1_024];
+        for (int i = 0; i < prices.length; i++) prices[i] = BigDecimal.valueOf(1_000 + random.nextLong(9_000), 2);
+
+        for (int i = 0; i < depth; i++) stock.buy(100, prices[i & (prices.length - 1)]);
+
+        final long[] latencies = new long[sells];
+        for (int i = 0; i < sells; i++) {
+            final long quantity = 1 + random.nextLong(250);
+            stock.buy(quantity, prices[random.nextInt(prices.length)]);
+
+            final BigDecimal price = prices[random.nextInt(prices.length)];
+            final long start = System.nanoTime();
+            stock.sell(quantity, price);
+            latencies[i] = System.nanoTime() - start;
+        }
+
+        Arrays.sort(latencies);
+        return new Report(method, depth, stock.lots(), percentile(latencies, .5), percentile(latencies, .99),
+                percentile(latencies, .999), Arrays.stream(latencies).average().orElse(0));
+    }
+
+    private static long percentile(final long[] sorted, final double percentile) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * percentile))];
+    }
+
+    /**
+     * Runs the benchmark from {@code key=value} arguments and prints one report per method and depth. Keys:
+     * {@code depths} (comma-separated lot counts), {@code sells}, {@code warmups} (sales run before each measurement)
+     * and {@code seed}.
+     *
+     * @param args the {@code key=value} arguments
+     */
+    public static void main(final String[] args) {
+        final Map<String, String> options = LoadTestHarness.options(args);
+        final int[] depths = Arrays.stream(options.getOrDefault("depths", "1000,100000,1000000,4000000").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        final int sells = Integer.parseInt(options.getOrDefault("sells", "200000"));
+        final int warmups = Integer.parseInt(options.getOrDefault("warmups", "200000"));
+        final long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+
+        final Map<String, Supplier<? extends LotStock>> methods = Map.of("fifo", FifoStock::new, "lifo", LifoStock::new, "average", AverageCostStock::new);
+
+        for (String method : new String[]{"fifo", "lifo", "average"}) {
+            measure(method, methods.get(method), 1_000, warmups, seed);
+            for (int depth : depths) System.out.println(measure(method, methods.get(method), depth, sells, seed));
+        }
+    }
+}
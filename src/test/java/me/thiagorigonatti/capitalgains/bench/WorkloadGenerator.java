@@ -0,0 +1,291 @@
+package me.thiagorigonatti.capitalgains.bench;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Generates reproducible synthetic input lines for the calculator.
+ * <p>
+ * Every line is an independent simulation: a JSON array of buy and sell operations spread over a configurable
+ * number of tickers. Prices follow a random walk with configurable volatility, sales never exceed the shares held,
+ * and a configurable share of the sales is sized above the exemption threshold so that they are taxable.
+ * The same seed and parameters always produce the same bytes.
+ * </p>
+ *
+ * <p>It can be run from Gradle with, for example:</p>
+ * <pre>{@code ./gradlew generateWorkload -Pargs="lines=10000 operations=500 tickers=20 out=workload.txt"}</pre>
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class WorkloadGenerator {
+
+    private final long seed;
+    private final int lines;
+    private final int operationsPerLine;
+    private final int tickers;
+    private final double buyRatio;
+    private final double volatility;
+    private final double taxableSellShare;
+    private final BigDecimal threshold;
+
+    private WorkloadGenerator(final Builder builder) {
+        this.seed = builder.seed;
+        this.lines = builder.lines;
+        this.operationsPerLine = builder.operationsPerLine;
+        this.tickers = builder.tickers;
+        this.buyRatio = builder.buyRatio;
+        this.volatility = builder.volatility;
+        this.taxableSellShare = builder.taxableSellShare;
+        this.threshold = builder.threshold;
+    }
+
+    /**
+     * Writes the whole workload, one line per simulation, to the given stream. The stream is flushed, not closed.
+     *
+     * @param outputStream the destination of the generated lines
+     * @throws IOException if writing fails
+     */
+    public void generate(final OutputStream outputStream) throws IOException {
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), 1 << 16);
+        final SplittableRandom random = new SplittableRandom(seed);
+        final StringBuilder line = new StringBuilder(operationsPerLine * 72);
+
+        for (int i = 0; i < lines; i++) {
+            line.setLength(0);
+            appendLine(random.split(), line);
+            writer.append(line).append('\n');
+        }
+        writer.flush();
+    }
+
+    /**
+     * Generates the workload in memory.
+     *
+     * @return the generated lines as UTF-8 bytes
+     */
+    public byte[] generate() {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try {
+            generate(outputStream);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private void appendLine(final SplittableRandom random, final StringBuilder line) {
+
+        final double[] prices = new double[tickers];
+        final long[] shares = new long[tickers];
+        final double thresholdValue = threshold.doubleValue();
+
+        for (int t = 0; t < tickers; t++) prices[t] = 10 + random.nextDouble() * 490;
+
+        line.append('[');
+        for (int i = 0; i < operationsPerLine; i++) {
+            final int t = random.nextInt(tickers);
+            prices[t] = Math.max(0.01, prices[t] * Math.exp(volatility * random.nextGaussian()));
+            final BigDecimal unitCost = BigDecimal.valueOf(prices[t]).setScale(2, RoundingMode.HALF_EVEN).max(new BigDecimal("0.01"));
+            final double price = unitCost.doubleValue();
+
+            final boolean buy = shares[t] == 0 || random.nextDouble() < buyRatio;
+            final long quantity;
+
+            if (buy) {
+                quantity = Math.max(1, (long) Math.ceil((0.5 + random.nextDouble() * 1.5) * thresholdValue * 1.5 / price));
+                shares[t] += quantity;
+            } else if (random.nextDouble() < taxableSellShare) {
+                final long needed = (long) Math.floor(thresholdValue / price) + 1;
+                quantity = Math.min(shares[t], needed + random.nextLong(Math.max(1, needed / 2)));
+                shares[t] -= quantity;
+            } else {
+                final long exempt = Math.max(1, (long) Math.floor(thresholdValue / price * random.nextDouble()));
+                quantity = Math.min(shares[t], exempt);
+                shares[t] -= quantity;
+            }
+
+            if (i > 0) line.append(',');
+            line.append("{\"operation\":\"").append(buy ? "buy" : "sell").append('"');
+            if (tickers > 1) line.append(",\"ticker\":\"").append(ticker(t)).append('"');
+            line.append(",\"unit-cost\":").append(unitCost.toPlainString());
+            line.append(",\"quantity\":").append(quantity).append('}');
+        }
+        line.append(']');
+    }
+
+    private static String ticker(final int index) {
+        return String.format(Locale.ROOT, "T%04d", index);
+    }
+
+    /**
+     * Generates a workload from {@code key=value} arguments and writes it to the file given by {@code out}, or to the
+     * standard output. Keys: {@code seed}, {@code lines}, {@code operations}, {@code tickers}, {@code buyRatio},
+     * {@code volatility}, {@code taxableSellShare}.
+     *
+     * @param args the {@code key=value} arguments
+     * @throws IOException if writing fails
+     */
+    public static void main(final String[] args) throws IOException {
+        final Map<String, String> options = LoadTestHarness.options(args);
+        final WorkloadGenerator generator = Builder.from(options).build();
+
+        if (options.containsKey("out")) {
+            try (final OutputStream outputStream = Files.newOutputStream(Path.of(options.get("out")))) {
+                generator.generate(outputStream);
+            }
+        } else {
+            generator.generate(System.out);
+        }
+    }
+
+    /**
+     * <p>Builder for new instances of {@code WorkloadGenerator}.</p>
+     */
+    public static class Builder {
+
+        /**
+         * <p>Constructs a new {@code Builder} with defaults: seed 42, 1,000 lines of 100 operations over 10 tickers,
+         * 60% buys, 2% volatility and 30% of sales above the threshold.</p>
+         */
+        public Builder() {
+        }
+
+        private long seed = 42;
+        private int lines = 1_000;
+        private int operationsPerLine = 100;
+        private int tickers = 10;
+        private double buyRatio = .6;
+        private double volatility = .02;
+        private double taxableSellShare = .3;
+        private BigDecimal threshold = BigDecimal.valueOf(20_000);
+
+        /**
+         * Creates a builder from {@code key=value} options, keeping the defaults for missing keys.
+         *
+         * @param options the options by key
+         * @return a new builder
+         */
+        public static Builder from(final Map<String, String> options) {
+            final Builder builder = new Builder();
+            if (options.containsKey("seed")) builder.seed(Long.parseLong(options.get("seed")));
+            if (options.containsKey("lines")) builder.lines(Integer.parseInt(options.get("lines")));
+            if (options.containsKey("operations")) builder.operationsPerLine(Integer.parseInt(options.get("operations")));
+            if (options.containsKey("tickers")) builder.tickers(Integer.parseInt(options.get("tickers")));
+            if (options.containsKey("buyRatio")) builder.buyRatio(Double.parseDouble(options.get("buyRatio")));
+            if (options.containsKey("volatility")) builder.volatility(Double.parseDouble(options.get("volatility")));
+            if (options.containsKey("taxableSellShare")) builder.taxableSellShare(Double.parseDouble(options.get("taxableSellShare")));
+            return builder;
+        }
+
+        /**
+         * Sets the seed of the random generator.
+         *
+         * @param seed the seed
+         * @return this builder instance
+         */
+        public Builder seed(final long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Sets the number of lines to generate.
+         *
+         * @param lines the number of lines
+         * @return this builder instance
+         */
+        public Builder lines(final int lines) {
+            this.lines = lines;
+            return this;
+        }
+
+        /**
+         * Sets the number of operations in each line.
+         *
+         * @param operationsPerLine the number of operations per line
+         * @return this builder instance
+         */
+        public Builder operationsPerLine(final int operationsPerLine) {
+            this.operationsPerLine = operationsPerLine;
+            return this;
+        }
+
+        /**
+         * Sets the number of distinct tickers per line; with a single ticker the field is omitted.
+         *
+         * @param tickers the ticker cardinality
+         * @return this builder instance
+         */
+        public Builder tickers(final int tickers) {
+            this.tickers = Math.max(1, tickers);
+            return this;
+        }
+
+        /**
+         * Sets the probability of an operation being a buy when shares are available to sell.
+         *
+         * @param buyRatio the buy probability, between 0 and 1
+         * @return this builder instance
+         */
+        public Builder buyRatio(final double buyRatio) {
+            this.buyRatio = buyRatio;
+            return this;
+        }
+
+        /**
+         * Sets the standard deviation of the logarithmic price change between two operations on the same ticker.
+         *
+         * @param volatility the price volatility
+         * @return this builder instance
+         */
+        public Builder volatility(final double volatility) {
+            this.volatility = volatility;
+            return this;
+        }
+
+        /**
+         * Sets the share of sales sized so that their total exceeds the threshold, when enough shares are held.
+         *
+         * @param taxableSellShare the share of taxable sales, between 0 and 1
+         * @return this builder instance
+         */
+        public Builder taxableSellShare(final double taxableSellShare) {
+            this.taxableSellShare = taxableSellShare;
+            return this;
+        }
+
+        /**
+         * Sets the exemption threshold used to size sales, matching {@code Stock.threshold()} by default.
+         *
+         * @param threshold the exemption threshold
+         * @return this builder instance
+         */
+        public Builder threshold(final BigDecimal threshold) {
+            this.threshold = threshold;
+            return this;
+        }
+
+        /**
+         * Builds and returns a new instance of {@link WorkloadGenerator} with the configured options.
+         *
+         * @return a new WorkloadGenerator instance
+         */
+        public WorkloadGenerator build() {
+            return new WorkloadGenerator(this);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package me.thiagorigonatti.capitalgains.bench;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link WorkloadGenerator} and {@link LoadTestHarness}, ensuring workloads are reproducible and
+ * valid input for the calculator.
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class WorkloadGeneratorTest {
+
+    /**
+     * Default constructor for WorkloadGeneratorTest.
+     */
+    public WorkloadGeneratorTest() {
+    }
+
+    /**
+     * Test case for reproducibility. Verifies that the same seed produces the same bytes and another seed does not.
+     */
+    @Test
+    public void givenSameSeed_whenGenerating_thenWorkloadIsIdentical() {
+
+        final WorkloadGenerator.Builder builder = new WorkloadGenerator.Builder().lines(50).operationsPerLine(40).tickers(5);
+
+        assertArrayEquals(builder.seed(1).build().generate(), builder.seed(1).build().generate());
+        assertFalse(Arrays.equals(builder.seed(1).build().generate(), builder.seed(2).build().generate()));
+    }
+
+    /**
+     * Test case for validity. Verifies that a generated workload runs end to end without errors and that the
+     * harness accounts for every line and operation.
+     */
+    @Test
+    public void givenGeneratedWorkload_whenMeasured_thenEveryLineAndOperationIsProcessed() {
+
+        final byte[] workload = new WorkloadGenerator.Builder().lines(100).operationsPerLine(50).tickers(3).taxableSellShare(.5).build().generate();
+
+        final LoadTestHarness.Report report = LoadTestHarness.measure(workload, builder -> builder);
+
+        assertEquals(100, report.lines());
+        assertEquals(5_000, report.operations());
+        assertTrue(report.elapsedNanos() > 0);
+    }
+}
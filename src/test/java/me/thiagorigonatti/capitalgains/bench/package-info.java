@@ -0,0 +1,5 @@
+/**
+ * This package contains the tooling used to measure the application at production scale, such as the
+ * seed-based synthetic workload generator and the end-to-end load-test harness.
+ */
+package me.thiagorigonatti.capitalgains.bench;
@@ -0,0 +1,141 @@
+package me.thiagorigonatti.capitalgains.columnar;
+
+import me.thiagorigonatti.capitalgains.bench.WorkloadGenerator;
+import me.thiagorigonatti.capitalgains.core.TaxCalculator;
+import me.thiagorigonatti.capitalgains.core.TaxRegime;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the {@link ColumnarWriter} and {@link ColumnarReader} classes, ensuring that rows survive a round
+ * trip across batches and that the calculator's columnar output carries the same taxes as its JSON output.
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class ColumnarTest {
+
+    /**
+     * Default constructor for ColumnarTest.
+     */
+    public ColumnarTest() {
+    }
+
+    /**
+     * Test case for rows spanning several batches. Verifies that every column and every ticker, including a missing
+     * one, is read back as written.
+     *
+     * @throws IOException if writing or reading fails
+     */
+    @Test
+    public void givenRowsAcrossBatches_whenReadingBack_thenEveryColumnIsPreserved() throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final String[] tickers = {"PETR4", null, "VALE3", "ITSA4", "PETR4"};
+
+        try (final ColumnarWriter columnarWriter = new ColumnarWriter(outputStream, 2, 2)) {
+            for (int row = 0; row < tickers.length; row++) {
+                columnarWriter.write(row / 2, row % 2, tickers[row], BigDecimal.valueOf(row * 125, 2));
+            }
+        }
+
+        try (final ColumnarReader columnarReader = new ColumnarReader(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            assertEquals(2, columnarReader.batchSize());
+            assertEquals(2, columnarReader.scale());
+
+            final ColumnarBatch batch = new ColumnarBatch();
+            int row = 0;
+            while (columnarReader.next(batch)) {
+                for (int i = 0; i < batch.size(); i++, row++) {
+                    assertEquals(row / 2, batch.lineIds()[i]);
+                    assertEquals(row % 2, batch.operationIndexes()[i]);
+                    assertEquals(tickers[row], columnarReader.ticker(batch.tickerIds()[i]));
+                    assertEquals(row * 125L, batch.unscaledTaxes()[i]);
+                    assertEquals(BigDecimal.valueOf(row * 125, 2), batch.tax(i));
+                }
+            }
+            assertEquals(tickers.length, row);
+            assertFalse(columnarReader.next(batch));
+        }
+    }
+
+    /**
+     * Test case for a generated workload. Verifies that the columnar output of the calculator holds, row by row, the
+     * taxes of its JSON output.
+     *
+     * @throws IOException if reading fails
+     */
+    @Test
+    public void givenWorkload_whenRunningColumnar_thenTaxesMatchJsonOutput() throws IOException {
+        final byte[] workload = new WorkloadGenerator.Builder().lines(20).operationsPerLine(300).tickers(8).build().generate();
+
+        final ByteArrayOutputStream json = new ByteArrayOutputStream();
+        new TaxCalculator.Builder().from(new ByteArrayInputStream(workload), 8_192).dumpTo(json, 8_192).build().run();
+        final String[] expected = Arrays.stream(json.toString(StandardCharsets.UTF_8).split("\"tax\":\""))
+                .skip(1).map(tax -> tax.substring(0, tax.indexOf('"'))).toArray(String[]::new);
+
+        final ByteArrayOutputStream columnar = new ByteArrayOutputStream();
+        new TaxCalculator.Builder(new String[]{"-col"}).from(new ByteArrayInputStream(workload), 8_192).dumpTo(columnar, 8_192).build().run();
+
+        try (final ColumnarReader columnarReader = new ColumnarReader(new ByteArrayInputStream(columnar.toByteArray()))) {
+            final ColumnarBatch batch = new ColumnarBatch();
+            long lastLineId = 0;
+            int row = 0;
+            while (columnarReader.next(batch)) {
+                for (int i = 0; i < batch.size(); i++, row++) {
+                    assertEquals(new BigDecimal(expected[row]).setScale(1), batch.tax(i).setScale(1, RoundingMode.HALF_EVEN));
+                    assertTrue(batch.lineIds()[i] >= lastLineId);
+                    assertTrue(columnarReader.ticker(batch.tickerIds()[i]).startsWith("T"));
+                    lastLineId = batch.lineIds()[i];
+                }
+            }
+            assertEquals(expected.length, row);
+            assertEquals(19, lastLineId);
+        }
+    }
+
+    /**
+     * Test case for a calculator whose regime rounds taxes to four decimal places. Verifies that the columnar output
+     * is written with that scale and holds the unrounded tax.
+     *
+     * @throws IOException if reading fails
+     */
+    @Test
+    public void givenRegimeWithFourDecimalPlaces_whenRunningColumnar_thenTaxesKeepTheirScale() throws IOException {
+        final byte[] input = """
+                [{"operation":"buy", "unit-cost":10.00, "quantity": 10000},{"operation":"sell", "unit-cost":20.0000001, "quantity": 5000}]
+                """.getBytes(StandardCharsets.UTF_8);
+
+        final ByteArrayOutputStream columnar = new ByteArrayOutputStream();
+        new TaxCalculator.Builder(new String[]{"-col"})
+                .taxedUnder(new TaxRegime.Builder().rounding(4, RoundingMode.HALF_EVEN).build())
+                .from(new ByteArrayInputStream(input), 8_192).dumpTo(columnar, 8_192).build().run();
+
+        try (final ColumnarReader columnarReader = new ColumnarReader(new ByteArrayInputStream(columnar.toByteArray()))) {
+            final ColumnarBatch batch = new ColumnarBatch();
+            assertEquals(4, columnarReader.scale());
+            assertTrue(columnarReader.next(batch));
+            assertEquals(2, batch.size());
+            assertEquals(new BigDecimal("10000.0001"), batch.tax(1));
+        }
+    }
+
+    /**
+     * Test case for input that is not a columnar file. Verifies that the reader rejects it.
+     */
+    @Test
+    public void givenJsonInput_whenOpeningReader_thenStreamCorruptedExceptionIsThrown() {
+        assertThrows(StreamCorruptedException.class,
+                () -> new ColumnarReader(new ByteArrayInputStream("[{\"tax\":\"0.0\"}]".getBytes(StandardCharsets.UTF_8))));
+    }
+}
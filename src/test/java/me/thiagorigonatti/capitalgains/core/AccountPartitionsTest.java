@@ -0,0 +1,118 @@
+package me.thiagorigonatti.capitalgains.core;
+
+import me.thiagorigonatti.capitalgains.bench.WorkloadGenerator;
+import me.thiagorigonatti.capitalgains.exception.InsufficientSharesException;
+import me.thiagorigonatti.capitalgains.exception.MissingAccountException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static me.thiagorigonatti.capitalgains.core.TaxCalculatorRunner.run;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the account-partitioned mode of {@link TaxCalculator}, ensuring that the positions of each account
+ * carry over from one of its lines to the next, whatever partition it lands on, and that results keep the input order.
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class AccountPartitionsTest {
+
+    /**
+     * Default constructor for AccountPartitionsTest.
+     */
+    public AccountPartitionsTest() {
+    }
+
+    /**
+     * Test case for the histories of several accounts cut into lines of random length and interleaved, with more
+     * lines in flight than the partitions accept at once. Verifies that, with one or several partitions, each line
+     * gets the slice of taxes its account would get with its whole history on one line, in input order.
+     */
+    @Test
+    public void givenInterleavedAccountLines_whenPartitioning_thenEachLineContinuesItsAccount() {
+        final int accounts = 12;
+        final String[] histories = new String(new WorkloadGenerator.Builder().lines(accounts).operationsPerLine(300).tickers(3).build().generate(),
+                StandardCharsets.UTF_8).split("\n");
+
+        final List<String[]> operations = new ArrayList<>();
+        final List<String[]> taxes = new ArrayList<>();
+        for (String history : histories) {
+            operations.add(history.substring(2, history.length() - 2).split("\\},\\{"));
+            taxes.add(run(new TaxCalculator.Builder(), history + "\n").trim()
+                    .replaceAll("\\{\"tax\":(\"[^\"]*\")}", "$1")
+                    .replaceAll("^\\[|]$", "").split(","));
+        }
+
+        final StringBuilder input = new StringBuilder();
+        final StringBuilder expected = new StringBuilder();
+        final int[] next = new int[accounts];
+        final SplittableRandom random = new SplittableRandom(23);
+        int remaining = accounts;
+
+        while (remaining > 0) {
+            final int account = random.nextInt(accounts);
+            if (next[account] == operations.get(account).length) continue;
+
+            final int end = Math.min(operations.get(account).length, next[account] + 1 + random.nextInt(4));
+            input.append("{\"account\":\"A").append(account).append("\",\"operations\":[");
+            expected.append("{\"account\":\"A").append(account).append("\",\"taxes\":[");
+            for (int i = next[account]; i < end; i++) {
+                final String separator = i > next[account] ? "," : "";
+                input.append(separator).append('{').append(operations.get(account)[i]).append('}');
+                expected.append(separator).append(taxes.get(account)[i]);
+            }
+            input.append("]}\n");
+            expected.append("]}").append(System.lineSeparator());
+
+            next[account] = end;
+            if (end == operations.get(account).length) remaining--;
+        }
+
+        assertTrue(input.length() > 0 && expected.toString().split(System.lineSeparator()).length > 2 * AccountPartitions.LINES_IN_FLIGHT_PER_PARTITION);
+        assertEquals(expected.toString(), run(new TaxCalculator.Builder().partitionedByAccount(1), input.toString()));
+        assertEquals(expected.toString(), run(new TaxCalculator.Builder().partitionedByAccount(2), input.toString()));
+        assertEquals(expected.toString(), run(new TaxCalculator.Builder().partitionedByAccount(5), input.toString()));
+    }
+
+    /**
+     * Test case for a sale in a later line of an account than its purchase, with another account in between.
+     * Verifies that the sale is taxed against the carried position and the other account is unaffected.
+     */
+    @Test
+    public void givenPurchaseAndSaleOnDifferentLines_whenPartitioning_thenPositionCarriesOver() {
+        final String input = """
+                {"account":"A1","operations":[{"operation":"buy","unit-cost":10.00,"quantity":10000}]}
+                {"account":"B2","operations":[{"operation":"buy","unit-cost":30.00,"quantity":10000}]}
+                {"account":"A1","operations":[{"operation":"sell","unit-cost":20.00,"quantity":5000}]}
+                {"account":"B2","operations":[{"operation":"sell","unit-cost":20.00,"quantity":5000}]}
+                """;
+
+        assertEquals(String.join(System.lineSeparator(),
+                        "{\"account\":\"A1\",\"taxes\":[\"0.0\"]}",
+                        "{\"account\":\"B2\",\"taxes\":[\"0.0\"]}",
+                        "{\"account\":\"A1\",\"taxes\":[\"10000.0\"]}",
+                        "{\"account\":\"B2\",\"taxes\":[\"0.0\"]}", ""),
+                run(new TaxCalculator.Builder().partitionedByAccount(3), input));
+    }
+
+    /**
+     * Test case for a line without an account and for a sale exceeding the carried position. Verifies that a
+     * {@link MissingAccountException} and an {@link InsufficientSharesException} are thrown.
+     */
+    @Test
+    public void givenMissingAccountOrInvalidSale_whenPartitioning_thenExceptionIsThrown() {
+        assertThrows(MissingAccountException.class, () -> run(new TaxCalculator.Builder().partitionedByAccount(2),
+                "{\"account\":\"A1\",\"operations\":[]}\n{\"operations\":[]}\n"));
+        assertThrows(InsufficientSharesException.class, () -> run(new TaxCalculator.Builder().partitionedByAccount(2), """
+                {"account":"A1","operations":[{"operation":"buy","unit-cost":10.00,"quantity":100}]}
+                {"account":"A1","operations":[{"operation":"sell","unit-cost":10.00,"quantity":100}]}
+                {"account":"A1","operations":[{"operation":"sell","unit-cost":10.00,"quantity":1}]}
+                """));
+    }
+}
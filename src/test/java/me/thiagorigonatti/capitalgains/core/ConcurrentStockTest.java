@@ -0,0 +1,153 @@
+package me.thiagorigonatti.capitalgains.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the {@link ConcurrentStock} class, ensuring it matches {@link Stock} when used sequentially and
+ * stays consistent under many concurrent producers. Its throughput against a synchronized baseline is measured by
+ * {@link me.thiagorigonatti.capitalgains.bench.ConcurrentStockBenchmark}.
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class ConcurrentStockTest {
+
+    /**
+     * Default constructor for ConcurrentStockTest.
+     */
+    public ConcurrentStockTest() {
+    }
+
+    /**
+     * Test case for sequential use. Verifies that a random history produces exactly the taxes of {@link Stock}.
+     */
+    @Test
+    public void givenRandomHistory_whenAppliedSequentially_thenTaxesMatchStock() {
+
+        final Random random = new Random(7);
+        final Stock stock = new Stock();
+        final ConcurrentStock concurrentStock = new ConcurrentStock();
+        long shares = 0;
+
+        for (int i = 0; i < 10_000; i++) {
+            final BigDecimal unitCost = BigDecimal.valueOf(100 + random.nextInt(9_900), 2);
+
+            if (shares == 0 || random.nextBoolean()) {
+                final long quantity = 1 + random.nextInt(5_000);
+                stock.buy(quantity, unitCost);
+                concurrentStock.buy(quantity, unitCost);
+                shares += quantity;
+            } else {
+                final long quantity = 1 + random.nextLong(shares);
+                assertEquals(stock.sell(quantity, unitCost), concurrentStock.sell(quantity, unitCost));
+                shares -= quantity;
+            }
+        }
+
+        assertEquals(shares, concurrentStock.state().totalShares());
+    }
+
+    /**
+     * Test case for the position views inherited from {@link Stock}. Verifies that the shares and snapshots follow
+     * the latest state, and that releasing shares updates it.
+     */
+    @Test
+    public void givenRandomHistory_whenReadingPosition_thenViewsFollowLatestState() {
+
+        final Random random = new Random(11);
+        final Stock stock = new Stock();
+        final ConcurrentStock concurrentStock = new ConcurrentStock();
+
+        for (int i = 0; i < 1_000; i++) {
+            final BigDecimal unitCost = BigDecimal.valueOf(100 + random.nextInt(9_900), 2);
+
+            if (stock.shares() == 0 || random.nextBoolean()) {
+                final long quantity = 1 + random.nextInt(5_000);
+                stock.buy(quantity, unitCost);
+                concurrentStock.buy(quantity, unitCost);
+            } else {
+                final long quantity = 1 + random.nextLong(stock.shares());
+                stock.sell(quantity, unitCost);
+                concurrentStock.sell(quantity, unitCost);
+            }
+
+            assertEquals(stock.shares(), concurrentStock.shares());
+            assertEquals(stock.snapshot(), concurrentStock.snapshot());
+        }
+
+        final long shares = concurrentStock.shares();
+        assertEquals(stock.release(shares), concurrentStock.release(shares));
+        assertEquals(0L, concurrentStock.state().totalShares());
+        assertEquals(stock.snapshot(), concurrentStock.snapshot());
+    }
+
+    /**
+     * Test case for many producers sharing one stock. Verifies that no update is lost: every thread buys and then
+     * sells back the same quantities, so the position must end empty, and no sale ever sees fewer shares than the
+     * producer itself bought.
+     *
+     * @throws Exception if a producer fails
+     */
+    @Test
+    public void givenManyProducers_whenBuyingAndSellingConcurrently_thenNoUpdateIsLost() throws Exception {
+
+        final ConcurrentStock concurrentStock = new ConcurrentStock();
+
+        final long elapsed = hammer(() -> concurrentStock, 8, 20_000);
+
+        assertEquals(0L, concurrentStock.state().totalShares());
+        assertEquals(0, BigDecimal.ZERO.compareTo(concurrentStock.state().accumulatedLoss()));
+        assertTrue(elapsed > 0);
+    }
+
+    /**
+     * Makes each thread alternately buy and sell back a quantity on one shared stock.
+     *
+     * @param stockSupplier supplies the shared stock
+     * @param threads       the number of producer threads
+     * @param operations    the number of buy and sell pairs per thread
+     * @return the elapsed time in nanoseconds
+     * @throws Exception if a producer fails
+     */
+    private static long hammer(final Supplier<? extends Stock> stockSupplier, final int threads, final int operations) throws Exception {
+
+        final Stock stock = stockSupplier.get();
+        final ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<?>> futures = new ArrayList<>();
+
+        try {
+            for (int t = 0; t < threads; t++) {
+                final long quantity = t + 1;
+                futures.add(executorService.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < operations; i++) {
+                        stock.buy(quantity, BigDecimal.TEN);
+                        assertEquals(BigDecimal.ZERO, stock.sell(quantity, BigDecimal.TEN));
+                    }
+                    return null;
+                }));
+            }
+
+            final long startTime = System.nanoTime();
+            start.countDown();
+            for (Future<?> future : futures) future.get();
+            return System.nanoTime() - startTime;
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+}
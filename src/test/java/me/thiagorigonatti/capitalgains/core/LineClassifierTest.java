@@ -0,0 +1,134 @@
+package me.thiagorigonatti.capitalgains.core;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import me.thiagorigonatti.capitalgains.exception.InsufficientSharesException;
+import me.thiagorigonatti.capitalgains.exception.InvalidOperationException;
+import me.thiagorigonatti.capitalgains.exception.ZeroOrNegativeQuantityException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Differential test class for the fast paths of {@link LineClassifier}, ensuring that lines answered without stock
+ * arithmetic, and lines replayed once a taxable sell shows up, get the taxes and the errors of the full calculation.
+ * <p>
+ * The full calculation is obtained with a stock supplier other than the default one, which disables the fast paths.
+ * </p>
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class LineClassifierTest {
+
+    private static final TaxRegime LOW_THRESHOLD = new TaxRegime.Builder().threshold(new BigDecimal("500.00")).build();
+
+    /**
+     * Default constructor for LineClassifierTest.
+     */
+    public LineClassifierTest() {
+    }
+
+    /**
+     * Test case for random lines of buy-only, exempt and taxable shapes over many tickers, some under a lower
+     * threshold. Verifies that every tax matches the full calculation.
+     *
+     * @throws JsonProcessingException if a line cannot be parsed
+     */
+    @Test
+    public void givenRandomLines_whenCalculatingWithFastPaths_thenTaxesMatchFullCalculation() throws JsonProcessingException {
+        final SplittableRandom random = new SplittableRandom(17);
+        final TaxCalculator fast = new TaxCalculator.Builder().taxedUnder(ticker -> ticker.endsWith("7") ? LOW_THRESHOLD : TaxRegime.DEFAULT).build();
+        final TaxCalculator full = new TaxCalculator.Builder().taxedUnder(fast.getTaxRegimeResolver()).with(Stock::new).build();
+
+        for (int i = 0; i < 2_000; i++) {
+            final String line = randomLine(random, 1 + random.nextInt(60), 1 + random.nextInt(20), random.nextInt(3));
+            final TaxResults expected = full.calculate(line);
+            final TaxResults actual = fast.calculate(line);
+
+            assertEquals(expected.size(), actual.size());
+            for (int j = 0; j < expected.size(); j++) assertEquals(expected.tax(j), actual.tax(j), line);
+        }
+
+        final FastPathCounters counters = fast.fastPathCounters();
+        assertEquals(2_000, counters.buyOnlyLines() + counters.exemptLines() + counters.fullLines());
+        assertTrue(counters.buyOnlyLines() > 0 && counters.exemptLines() > 0 && counters.fullLines() > 0, counters.toString());
+        assertEquals(new FastPathCounters(0, 0, 0, 0), full.fastPathCounters());
+    }
+
+    /**
+     * Test case for invalid operations while on the fast path. Verifies that the exceptions and their messages are
+     * those of the full calculation.
+     */
+    @Test
+    public void givenInvalidOperationsOnFastPath_whenCalculating_thenErrorsMatchFullCalculation() {
+        final TaxCalculator fast = new TaxCalculator.Builder().build();
+        final TaxCalculator full = new TaxCalculator.Builder().with(Stock::new).build();
+
+        assertSameError(InsufficientSharesException.class, fast, full, """
+                [{"operation":"buy", "unit-cost":10.00, "quantity": 100},
+                {"operation":"sell", "unit-cost":10.00, "quantity": 101}]""");
+        assertSameError(ZeroOrNegativeQuantityException.class, fast, full, """
+                [{"operation":"buy", "unit-cost":10.00, "quantity": 0}]""");
+        assertSameError(InvalidOperationException.class, fast, full, """
+                [{"operation":"buy", "unit-cost":10.00, "quantity": 100},
+                {"operation":"hold", "unit-cost":10.00, "quantity": 100}]""");
+    }
+
+    private static void assertSameError(final Class<? extends RuntimeException> type, final TaxCalculator fast, final TaxCalculator full, final String line) {
+        final RuntimeException expected = assertThrows(type, () -> full.calculate(line));
+        final RuntimeException actual = assertThrows(type, () -> fast.calculate(line));
+        assertEquals(expected.getMessage(), actual.getMessage());
+    }
+
+    /**
+     * Test case for one line of each shape. Verifies the counter of each fast path and the replayed operations.
+     *
+     * @throws JsonProcessingException if a line cannot be parsed
+     */
+    @Test
+    public void givenOneLineOfEachShape_whenCalculating_thenEachCounterFiresOnce() throws JsonProcessingException {
+        final TaxCalculator taxCalculator = new TaxCalculator.Builder().build();
+
+        taxCalculator.calculate("""
+                [{"operation":"buy", "unit-cost":10.00, "quantity": 100},
+                {"operation":"buy", "unit-cost":20.00, "quantity": 100}]""");
+        taxCalculator.calculate("""
+                [{"operation":"buy", "unit-cost":10.00, "quantity": 1000},
+                {"operation":"sell", "unit-cost":5.00, "quantity": 1000}]""");
+        final TaxResults taxResults = taxCalculator.calculate("""
+                [{"operation":"buy", "unit-cost":10.00, "quantity": 10000},
+                {"operation":"sell", "unit-cost":5.00, "quantity": 1000},
+                {"operation":"sell", "unit-cost":30.00, "quantity": 5000}]""");
+
+        assertEquals(new BigDecimal("19000.00"), taxResults.tax(2));
+        assertEquals(new FastPathCounters(1, 1, 1, 2), taxCalculator.fastPathCounters());
+    }
+
+    /**
+     * Builds a line of buys and sells over the given number of tickers, with sale totals mostly under the default
+     * threshold for {@code shape} 0, buys only for {@code shape} 1, and any totals otherwise.
+     */
+    private static String randomLine(final SplittableRandom random, final int operations, final int tickers, final int shape) {
+        final long[] shares = new long[tickers];
+        final StringBuilder line = new StringBuilder("[");
+
+        for (int i = 0; i < operations; i++) {
+            final int ticker = random.nextInt(tickers);
+            final boolean buy = shape == 1 || shares[ticker] == 0 || random.nextDouble() < 0.4;
+            final long quantity = 1 + random.nextLong(buy ? 2_000 : shares[ticker]);
+            final long maxCents = shape == 0 && !buy ? Math.max(1, 2_000_000 / quantity) : 10_000;
+            final BigDecimal unitCost = BigDecimal.valueOf(1 + random.nextLong(maxCents), 2);
+
+            shares[ticker] += buy ? quantity : -quantity;
+            if (i > 0) line.append(',');
+            line.append(String.format(Locale.ROOT, "{\"operation\":\"%s\",\"unit-cost\":%s,\"quantity\":%d,\"ticker\":\"T%d\"}",
+                    buy ? "buy" : "sell", unitCost.toPlainString(), quantity, ticker));
+        }
+        return line.append(']').toString();
+    }
+}
@@ -0,0 +1,164 @@
+package me.thiagorigonatti.capitalgains.core;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import me.thiagorigonatti.capitalgains.exception.InsufficientSharesException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link LotQueue} and the {@link LotStock} family, ensuring each accounting method measures sales
+ * against the right lots, partially consumed lots are kept, and the average-cost variant matches {@link Stock}.
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class LotStockTest {
+
+    /**
+     * Default constructor for LotStockTest.
+     */
+    public LotStockTest() {
+    }
+
+    /**
+     * Test case for two lots bought at different prices and a sale spanning both. Verifies the tax of each accounting
+     * method and the lot left behind.
+     */
+    @Test
+    public void givenTwoLots_whenSellingAcrossThem_thenEachMethodUsesItsOwnCostBasis() {
+        final LotStock fifo = new FifoStock();
+        final LotStock lifo = new LifoStock();
+        final LotStock average = new AverageCostStock();
+
+        for (LotStock stock : new LotStock[]{fifo, lifo, average}) {
+            stock.buy(1_000, new BigDecimal("10.00"));
+            stock.buy(1_000, new BigDecimal("20.00"));
+        }
+
+        assertEquals(new BigDecimal("5000.00"), fifo.sell(1_500, new BigDecimal("30.00")));
+        assertEquals(new BigDecimal("4000.00"), lifo.sell(1_500, new BigDecimal("30.00")));
+        assertEquals(new BigDecimal("4500.00"), average.sell(1_500, new BigDecimal("30.00")));
+
+        assertEquals(1, fifo.lots());
+        assertEquals(1, lifo.lots());
+        assertEquals(500, fifo.shares());
+        assertEquals(new BigDecimal("4000.00"), fifo.sell(500, new BigDecimal("60.00")));
+        assertEquals(new BigDecimal("5000.00"), lifo.sell(500, new BigDecimal("60.00")));
+    }
+
+    /**
+     * Test case for random adds and takes from both ends, wrapping around and growing the ring buffers. Verifies every
+     * cost against a queue of one entry per share.
+     */
+    @Test
+    public void givenRandomAddsAndTakes_whenComparedWithNaiveQueue_thenCostsMatch() {
+        final SplittableRandom random = new SplittableRandom(5);
+        final LotQueue lotQueue = new LotQueue();
+        final ArrayDeque<BigDecimal> naive = new ArrayDeque<>();
+
+        for (int i = 0; i < 20_000; i++) {
+            if (naive.isEmpty() || random.nextDouble() < 0.5) {
+                final long quantity = 1 + random.nextLong(5);
+                final BigDecimal unitCost = BigDecimal.valueOf(1 + random.nextLong(10_000), random.nextInt(4));
+                lotQueue.add(quantity, unitCost);
+                for (int j = 0; j < quantity; j++) naive.addLast(unitCost);
+            } else {
+                final long quantity = 1 + random.nextLong(naive.size());
+                final boolean oldest = random.nextBoolean();
+                BigDecimal expected = BigDecimal.ZERO;
+                for (int j = 0; j < quantity; j++) expected = expected.add(oldest ? naive.pollFirst() : naive.pollLast());
+
+                final BigDecimal actual = oldest ? lotQueue.takeFirst(quantity) : lotQueue.takeLast(quantity);
+                assertEquals(0, expected.compareTo(actual));
+            }
+            assertEquals(naive.size(), lotQueue.shares());
+        }
+    }
+
+    /**
+     * Test case for a random history. Verifies that {@link AverageCostStock} produces exactly the taxes of
+     * {@link Stock}.
+     */
+    @Test
+    public void givenRandomHistory_whenUsingAverageCost_thenTaxesMatchStock() {
+        final SplittableRandom random = new SplittableRandom(9);
+        final TaxRegime taxRegime = new TaxRegime.Builder().threshold(BigDecimal.ZERO).build();
+        final Stock stock = new Stock(taxRegime);
+        final AverageCostStock average = new AverageCostStock(taxRegime);
+
+        for (int i = 0; i < 50_000; i++) {
+            final BigDecimal unitCost = BigDecimal.valueOf(1 + random.nextLong(10_000), 2);
+            if (stock.shares() == 0 || random.nextDouble() < 0.5) {
+                final long quantity = 1 + random.nextLong(1_000);
+                stock.buy(quantity, unitCost);
+                average.buy(quantity, unitCost);
+            } else {
+                final long quantity = 1 + random.nextLong(stock.shares());
+                assertEquals(stock.sell(quantity, unitCost), average.sell(quantity, unitCost));
+            }
+        }
+    }
+
+    /**
+     * Test case for lots bought at unit costs whose unscaled value does not fit in a {@code long}, mixed with ordinary
+     * ones. Verifies that the costs of the lots sold stay exact.
+     */
+    @Test
+    public void givenUnitCostsWiderThanLong_whenSellingLots_thenCostsAreExact() {
+        final LotStock fifo = new FifoStock();
+        final BigDecimal wide = new BigDecimal("123456789012345678901.25");
+
+        fifo.buy(2, new BigDecimal("10.00"));
+        fifo.buy(2, wide);
+        fifo.buy(2, new BigDecimal("20.00"));
+
+        assertEquals(new BigDecimal("20.00").add(wide.multiply(BigDecimal.valueOf(2))), fifo.release(4));
+        assertEquals(new BigDecimal("40.00"), fifo.release(2));
+    }
+
+    /**
+     * Test case for snapshots of lot stocks. Verifies that the shares and cost come from the lots left, that the
+     * average-cost variant reports the same position as {@link Stock}.
+     */
+    @Test
+    public void givenLotsLeftAfterSale_whenTakingSnapshot_thenPositionComesFromLots() {
+        final Stock stock = new Stock();
+        final LotStock fifo = new FifoStock();
+        final LotStock average = new AverageCostStock();
+
+        for (Stock s : new Stock[]{stock, fifo, average}) {
+            s.buy(1_000, new BigDecimal("10.00"));
+            s.buy(1_000, new BigDecimal("20.00"));
+            s.sell(1_500, new BigDecimal("5.00"));
+        }
+
+        assertEquals(new Position(500, new BigDecimal("10000.00"), new BigDecimal("20.00"), new BigDecimal("12500.00")), fifo.snapshot());
+        assertEquals(stock.snapshot(), average.snapshot());
+    }
+
+    /**
+     * Test case for a calculator using FIFO lots over two lines. Verifies the taxes and that the stocks of the
+     * second line start without the lots of the first.
+     *
+     * @throws JsonProcessingException if a line cannot be parsed
+     */
+    @Test
+    public void givenFifoSupplier_whenCalculatingLines_thenLotsAreUsedAndReset() throws JsonProcessingException {
+        final TaxCalculator taxCalculator = new TaxCalculator.Builder().with(FifoStock::new).build();
+        final String line = """
+                [{"operation":"buy", "unit-cost":10.00, "quantity": 1000},
+                {"operation":"buy", "unit-cost":20.00, "quantity": 1000},
+                {"operation":"sell", "unit-cost":30.00, "quantity": 1500}]""";
+
+        assertEquals(new BigDecimal("5000.00"), taxCalculator.calculate(line).tax(2));
+        assertEquals(new BigDecimal("5000.00"), taxCalculator.calculate(line).tax(2));
+        assertThrows(InsufficientSharesException.class,
+                () -> taxCalculator.calculate("[{\"operation\":\"sell\", \"unit-cost\":30.00, \"quantity\": 500}]"));
+    }
+}
@@ -0,0 +1,224 @@
+package me.thiagorigonatti.capitalgains.core;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import me.thiagorigonatti.capitalgains.bench.LoadTestHarness;
+import me.thiagorigonatti.capitalgains.bench.WorkloadGenerator;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Performance regression gate, checking allocation and throughput against the production budgets stored in
+ * {@code performance-baselines.properties}.
+ * <p>
+ * Allocations are measured per operation with {@link com.sun.management.ThreadMXBean#getCurrentThreadAllocatedBytes()}
+ * after a warm-up, for {@link Stock#buy(long, BigDecimal)}, {@link Stock#sell(long, BigDecimal)}, a small line through
+ * {@link TaxCalculator#calculate(String, TaxResults)}, with and without parser pushdown, and a full run over a
+ * synthetic workload. Throughput is measured on the same run with {@link LoadTestHarness}. An allocation fails when it exceeds its budget by more than
+ * {@code allocation.tolerance}, and a throughput fails when it falls below its baseline by more than
+ * {@code throughput.tolerance}.
+ * </p>
+ *
+ * <p>Every measurement is appended to {@code performance-report.txt} in the directory given by the
+ * {@code performance.reportDir} system property, whether it passes or not. Any key of the baselines can be
+ * overridden with a system property of the same name prefixed by {@code performance.}, which the
+ * {@code performanceTest} Gradle task forwards from project properties, e.g.
+ * {@code ./gradlew performanceTest -Pperformance.throughput.tolerance=0.8} on a slower machine.</p>
+ *
+ * <p>These tests are tagged {@code performance}, so they run with {@code ./gradlew performanceTest} and not with
+ * {@code ./gradlew test}, in a JVM of their own: the stock subclasses loaded by other tests change what the JIT
+ * compiles, and with it what is allocated.</p>
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+@Tag("performance")
+public class PerformanceBudgetTest {
+
+    private static final String BASELINES = "/performance-baselines.properties";
+    private static final String LINE = "[{\"operation\":\"buy\", \"unit-cost\":10.00, \"quantity\": 10000},{\"operation\":\"sell\", \"unit-cost\":20.00, \"quantity\": 5000},{\"operation\":\"sell\", \"unit-cost\":5.00, \"quantity\": 5000}]";
+    private static final int WARMUP_OPERATIONS = 200_000;
+    private static final int MEASURED_OPERATIONS = 100_000;
+
+    private final Properties baselines = loadBaselines();
+
+    /**
+     * Default constructor for PerformanceBudgetTest.
+     */
+    public PerformanceBudgetTest() {
+    }
+
+    private static Properties loadBaselines() {
+        try (InputStream inputStream = PerformanceBudgetTest.class.getResourceAsStream(BASELINES)) {
+            if (inputStream == null) throw new IllegalStateException("Missing " + BASELINES);
+            final Properties properties = new Properties();
+            properties.load(inputStream);
+            return properties;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private double baseline(final String key) {
+        final String value = System.getProperty("performance." + key, baselines.getProperty(key));
+        if (value == null) throw new IllegalStateException("Missing baseline: " + key);
+        return Double.parseDouble(value);
+    }
+
+    private static com.sun.management.ThreadMXBean threadMXBean() {
+        final com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threadMXBean.isThreadAllocatedMemorySupported()) fail("Thread allocation measurement is not supported");
+        if (!threadMXBean.isThreadAllocatedMemoryEnabled()) threadMXBean.setThreadAllocatedMemoryEnabled(true);
+        return threadMXBean;
+    }
+
+    /**
+     * Checks that an allocation does not exceed its budget plus the allocation tolerance, reporting it either way.
+     */
+    private void assertAllocationWithinBudget(final String key, final double bytesPerOperation) {
+        final double budget = baseline(key);
+        final double limit = budget * (1 + baseline("allocation.tolerance"));
+        final boolean passed = bytesPerOperation <= limit;
+        report(String.format(Locale.ROOT, "%-5s %-36s measured=%.1f B/op budget=%.1f B/op limit=%.1f B/op",
+                passed ? "PASS" : "FAIL", key, bytesPerOperation, budget, limit));
+        assertTrue(passed, String.format(Locale.ROOT, "%s allocated %.1f bytes per operation, over the limit of %.1f", key, bytesPerOperation, limit));
+    }
+
+    /**
+     * Checks that a throughput is not below its baseline minus the throughput tolerance, reporting it either way.
+     */
+    private void assertThroughputWithinBudget(final String key, final double operationsPerSecond) {
+        final double budget = baseline(key);
+        final double limit = budget * (1 - baseline("throughput.tolerance"));
+        final boolean passed = operationsPerSecond >= limit;
+        report(String.format(Locale.ROOT, "%-5s %-36s measured=%.0f ops/s baseline=%.0f ops/s limit=%.0f ops/s",
+                passed ? "PASS" : "FAIL", key, operationsPerSecond, budget, limit));
+        assertTrue(passed, String.format(Locale.ROOT, "%s processed %.0f operations per second, under the limit of %.0f", key, operationsPerSecond, limit));
+    }
+
+    private static void report(final String entry) {
+        System.out.println(entry);
+
+        final String reportDir = System.getProperty("performance.reportDir");
+        if (reportDir == null) return;
+
+        try {
+            final Path directory = Files.createDirectories(Path.of(reportDir));
+            Files.writeString(directory.resolve("performance-report.txt"), entry + System.lineSeparator(),
+                    StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Test case for buys and sells on a single stock. Verifies that, once warmed up, each of them allocates within
+     * its budget.
+     */
+    @Test
+    public void givenWarmedUpStock_whenBuyingAndSelling_thenAllocationPerOperationIsWithinBudget() {
+        final com.sun.management.ThreadMXBean threadMXBean = threadMXBean();
+        final BigDecimal[] prices = new BigDecimal[256];
+        for (int i = 0; i < prices.length; i++) prices[i] = BigDecimal.valueOf(1_000 + 37L * i, 2);
+
+        final Stock stock = new Stock();
+        long buyBytes = 0;
+        long sellBytes = 0;
+
+        for (int round = 0; round < 2; round++) {
+            final int operations = round == 0 ? WARMUP_OPERATIONS : MEASURED_OPERATIONS;
+
+            final long beforeBuys = threadMXBean.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < operations; i++) stock.buy(100, prices[i & (prices.length - 1)]);
+            final long beforeSells = threadMXBean.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < operations; i++) stock.sell(100, prices[(i * 7) & (prices.length - 1)]);
+            final long afterSells = threadMXBean.getCurrentThreadAllocatedBytes();
+
+            buyBytes = beforeSells - beforeBuys;
+            sellBytes = afterSells - beforeSells;
+        }
+
+        assertAllocationWithinBudget("stock.buy.allocatedBytes", (double) buyBytes / MEASURED_OPERATIONS);
+        assertAllocationWithinBudget("stock.sell.allocatedBytes", (double) sellBytes / MEASURED_OPERATIONS);
+    }
+
+    /**
+     * Calculates {@link #LINE} after a warm-up, reusing the results, and returns the bytes allocated per operation.
+     */
+    private static double allocatedBytesPerOperation(final TaxCalculator taxCalculator) throws JsonProcessingException {
+        final com.sun.management.ThreadMXBean threadMXBean = threadMXBean();
+        final TaxResults taxResults = new TaxResults(taxCalculator.getTaxFormatter(), 16);
+        final int lines = MEASURED_OPERATIONS / 3;
+
+        for (int i = 0; i < WARMUP_OPERATIONS / 3; i++) {
+            taxResults.reset(taxCalculator.getTaxFormatter());
+            taxCalculator.calculate(LINE, taxResults);
+        }
+
+        final long before = threadMXBean.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < lines; i++) {
+            taxResults.reset(taxCalculator.getTaxFormatter());
+            taxCalculator.calculate(LINE, taxResults);
+        }
+        final long allocated = threadMXBean.getCurrentThreadAllocatedBytes() - before;
+
+        assertEquals(3, taxResults.size());
+        assertEquals(new BigDecimal("10000.00"), taxResults.tax(1));
+        return (double) allocated / (lines * 3L);
+    }
+
+    /**
+     * Test case for small lines calculated one at a time. Verifies that, once warmed up, the allocation per
+     * operation of parsing and taxing a line is within its budget, far below the map, stocks, reader and list a
+     * line used to allocate.
+     *
+     * @throws JsonProcessingException if a line cannot be parsed
+     */
+    @Test
+    public void givenWarmedUpCalculator_whenCalculatingLines_thenAllocationPerOperationIsWithinBudget() throws JsonProcessingException {
+        assertAllocationWithinBudget("calculate.allocatedBytes", allocatedBytesPerOperation(new TaxCalculator.Builder().build()));
+    }
+
+    /**
+     * Test case for small lines calculated one at a time with parser pushdown. Verifies that the pooled parser
+     * buffers keep the allocation per operation within its budget as well.
+     *
+     * @throws JsonProcessingException if a line cannot be parsed
+     */
+    @Test
+    public void givenOperationFilter_whenCalculatingLines_thenAllocationPerOperationIsWithinBudget() throws JsonProcessingException {
+        assertAllocationWithinBudget("calculate.pushdown.allocatedBytes", allocatedBytesPerOperation(new TaxCalculator.Builder()
+                .onlyFor(new OperationFilter.Builder().operations("buy", "sell").build())
+                .build()));
+    }
+
+    /**
+     * Test case for a full run over a synthetic workload. Verifies that its allocation per operation and its
+     * throughput are within their budgets.
+     */
+    @Test
+    public void givenSyntheticWorkload_whenRunningEndToEnd_thenAllocationAndThroughputAreWithinBudget() {
+        threadMXBean();
+        final byte[] workload = new WorkloadGenerator.Builder().lines(2_000).operationsPerLine(100).build().generate();
+
+        final LoadTestHarness.Report report = LoadTestHarness.measure(workload, 3, 5, UnaryOperator.identity());
+
+        assertAllocationWithinBudget("run.allocatedBytes", report.allocatedBytesPerOperation());
+        assertThroughputWithinBudget("run.operationsPerSecond", report.operationsPerSecond());
+    }
+}
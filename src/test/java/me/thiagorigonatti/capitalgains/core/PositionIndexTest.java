@@ -0,0 +1,126 @@
+package me.thiagorigonatti.capitalgains.core;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Differential test class for {@link PositionIndex}, ensuring the position restored from a snapshot and replayed up to
+ * any operation equals the position of a stock replaying the whole line.
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class PositionIndexTest {
+
+    private static final String[] TICKERS = {"ABC", "XYZ", "QWE"};
+
+    /**
+     * Default constructor for PositionIndexTest.
+     */
+    public PositionIndexTest() {
+    }
+
+    /**
+     * Test case for a random multi-ticker line indexed with several intervals. Verifies that the position of every
+     * ticker after every operation equals the one of a stock replaying the line from the start.
+     */
+    @Test
+    public void givenRandomLine_whenQueryingEveryOperation_thenPositionsMatchFullReplay() {
+        final List<Operation> operations = randomOperations(new SplittableRandom(11), 3_000);
+
+        final Map<String, Stock> stocks = new HashMap<>();
+        final List<Map<String, Position>> expected = new ArrayList<>();
+        for (Operation op : operations) {
+            final Stock stock = stocks.computeIfAbsent(op.ticker(), ticker -> new Stock());
+            if (op.operation().equals("buy")) stock.buy(op.quantity(), op.unitCost());
+            else stock.sell(op.quantity(), op.unitCost());
+
+            final Map<String, Position> positions = new HashMap<>();
+            stocks.forEach((ticker, s) -> positions.put(ticker, s.snapshot()));
+            expected.add(positions);
+        }
+
+        for (int interval : new int[]{1, 7, 64}) {
+            final PositionIndex positionIndex = PositionIndex.build(operations, null, interval);
+            assertEquals(operations.size(), positionIndex.size());
+
+            for (int i = 0; i < operations.size(); i++) {
+                assertEquals(expected.get(i).get(operations.get(i).ticker()), positionIndex.positionAfter(i));
+                for (String ticker : TICKERS) {
+                    assertEquals(expected.get(i).getOrDefault(ticker, Position.EMPTY), positionIndex.positionAfter(i, ticker));
+                }
+            }
+        }
+    }
+
+    /**
+     * Test case for queries about a ticker before its first trade, a ticker never traded and operations out of
+     * bounds. Verifies the empty position and the exceptions.
+     */
+    @Test
+    public void givenUntradedTickerOrBadIndex_whenQuerying_thenEmptyOrThrows() {
+        final List<Operation> operations = List.of(
+                new Operation("buy", new BigDecimal("10.00"), 100, "ABC"),
+                new Operation("buy", new BigDecimal("20.00"), 100, "XYZ"));
+        final PositionIndex positionIndex = PositionIndex.build(operations, null, 4);
+
+        assertEquals(Position.EMPTY, positionIndex.positionAfter(0, "XYZ"));
+        assertEquals(Position.EMPTY, positionIndex.positionAfter(1, "QWE"));
+        assertEquals(100, positionIndex.positionAfter(1, "XYZ").shares());
+        assertThrows(IndexOutOfBoundsException.class, () -> positionIndex.positionAfter(2));
+        assertThrows(IndexOutOfBoundsException.class, () -> positionIndex.operation(-1));
+        assertThrows(IllegalArgumentException.class, () -> PositionIndex.build(operations, null, 0));
+    }
+
+    /**
+     * Test case for a calculator indexing a line. Verifies the carried loss and the holdings after a losing sale and
+     * after the sale that offsets it.
+     *
+     * @throws JsonProcessingException if the line cannot be parsed
+     */
+    @Test
+    public void givenCalculator_whenIndexingLine_thenLossesAreCarried() throws JsonProcessingException {
+        final PositionIndex positionIndex = new TaxCalculator.Builder().build().index("""
+                [{"operation":"buy", "unit-cost":10.00, "quantity": 10000},
+                {"operation":"sell", "unit-cost":5.00, "quantity": 5000},
+                {"operation":"sell", "unit-cost":20.00, "quantity": 3000}]""", 2);
+
+        assertEquals(5_000, positionIndex.positionAfter(1).shares());
+        assertEquals(0, new BigDecimal("25000").compareTo(positionIndex.positionAfter(1).accumulatedLoss()));
+        assertEquals(2_000, positionIndex.positionAfter(2).shares());
+        assertEquals(0, BigDecimal.ZERO.compareTo(positionIndex.positionAfter(2).accumulatedLoss()));
+        assertEquals(0, new BigDecimal("10").compareTo(positionIndex.positionAfter(2).averageCost()));
+    }
+
+    private static List<Operation> randomOperations(final SplittableRandom random, final int count) {
+        final Map<String, Long> shares = new HashMap<>();
+        final List<Operation> operations = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            final String ticker = TICKERS[random.nextInt(TICKERS.length)];
+            final long held = shares.getOrDefault(ticker, 0L);
+            final BigDecimal unitCost = BigDecimal.valueOf(1 + random.nextLong(5_000), 2);
+
+            if (held == 0 || random.nextDouble() < 0.5) {
+                final long quantity = 1 + random.nextLong(1_000);
+                shares.put(ticker, held + quantity);
+                operations.add(new Operation("buy", unitCost, quantity, ticker));
+            } else {
+                final long quantity = 1 + random.nextLong(held);
+                shares.put(ticker, held - quantity);
+                operations.add(new Operation("sell", unitCost, quantity, ticker));
+            }
+        }
+        return operations;
+    }
+}
@@ -0,0 +1,158 @@
+package me.thiagorigonatti.capitalgains.core;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import me.thiagorigonatti.capitalgains.bench.WorkloadGenerator;
+import me.thiagorigonatti.capitalgains.exception.InsufficientSharesException;
+import me.thiagorigonatti.capitalgains.exception.ZeroOrNegativeQuantityException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import static me.thiagorigonatti.capitalgains.core.TaxCalculatorRunner.run;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Differential test class for {@link PrefixScanEvaluator}, ensuring the parallel evaluation of a ticker produces
+ * exactly the taxes, and the exceptions, of applying its operations to a {@link Stock} one after the other.
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class PrefixScanEvaluatorTest {
+
+    /**
+     * Default constructor for PrefixScanEvaluatorTest.
+     */
+    public PrefixScanEvaluatorTest() {
+    }
+
+    /**
+     * Test case for random histories evaluated with block sizes small enough for runs of buys and carried losses to
+     * span many blocks, under several regimes. Verifies that every tax equals the sequential one.
+     */
+    @Test
+    public void givenRandomHistories_whenEvaluatingWithSmallBlocks_thenTaxesMatchSequentialStock() {
+        final TaxRegime[] taxRegimes = {
+                TaxRegime.DEFAULT,
+                new TaxRegime.Builder().carryLosses(false).build(),
+                new TaxRegime.Builder().rate(new BigDecimal("0.15")).threshold(BigDecimal.ZERO).rounding(2, RoundingMode.UP).build()
+        };
+
+        for (long seed = 1; seed <= 6; seed++) {
+            final List<Operation> operations = history(seed, 20_000);
+            for (TaxRegime taxRegime : taxRegimes) {
+                final BigDecimal[] expected = sequential(operations, taxRegime);
+                for (int blockSize : new int[]{1, 7, 64, 1_000}) {
+                    assertArrayEquals(expected, new PrefixScanEvaluator(taxRegime, ForkJoinPool.commonPool(), blockSize).evaluate(operations),
+                            "seed=" + seed + " regime=" + taxRegime + " blockSize=" + blockSize);
+                }
+            }
+        }
+    }
+
+    /**
+     * Test case for a history of millions of operations on a single ticker. Verifies that every tax equals the
+     * sequential one.
+     */
+    @Test
+    public void givenMultiMillionOperationHistory_whenEvaluating_thenTaxesMatchSequentialStock() {
+        final List<Operation> operations = history(42, 2_000_000);
+
+        assertArrayEquals(sequential(operations, TaxRegime.DEFAULT), new PrefixScanEvaluator(TaxRegime.DEFAULT).evaluate(operations));
+    }
+
+    /**
+     * Test case for histories with an invalid operation after others that are also invalid in a later block.
+     * Verifies that the exception of the first invalid operation is thrown, with the same message as {@link Stock}.
+     */
+    @Test
+    public void givenInvalidOperations_whenEvaluating_thenFirstFailureOfStockIsThrown() {
+        final List<Operation> oversold = new ArrayList<>(history(3, 5_000));
+        oversold.add(2_000, new Operation("sell", BigDecimal.TEN, Long.MAX_VALUE / 2, null));
+        oversold.add(4_000, new Operation("buy", BigDecimal.TEN, 0, null));
+
+        final InsufficientSharesException expected = assertThrows(InsufficientSharesException.class, () -> sequential(oversold, TaxRegime.DEFAULT));
+        final InsufficientSharesException actual = assertThrows(InsufficientSharesException.class,
+                () -> new PrefixScanEvaluator(TaxRegime.DEFAULT, ForkJoinPool.commonPool(), 100).evaluate(oversold));
+        assertEquals(expected.getMessage(), actual.getMessage());
+
+        final List<Operation> zeroQuantity = new ArrayList<>(history(3, 5_000));
+        zeroQuantity.add(3_000, new Operation("sell", BigDecimal.TEN, 0, null));
+        assertThrows(ZeroOrNegativeQuantityException.class, () -> new PrefixScanEvaluator(TaxRegime.DEFAULT, ForkJoinPool.commonPool(), 100).evaluate(zeroQuantity));
+    }
+
+    /**
+     * Test case for a calculator evaluating large tickers with the parallel scan. Verifies that its output is the
+     * same as the sequential calculator's.
+     */
+    @Test
+    public void givenParallelScan_whenCalculating_thenOutputMatchesSequentialCalculator() {
+        final byte[] workload = new WorkloadGenerator.Builder().lines(20).operationsPerLine(3_000).tickers(3).build().generate();
+
+        assertEquals(run(new TaxCalculator.Builder(), workload), run(new TaxCalculator.Builder().parallelScan(500), workload));
+    }
+
+    /**
+     * Test case for the parallel scan combined with a stock supplier other than the default one. Verifies that the
+     * supplier's accounting method still decides the tax, however many operations the ticker has in the line.
+     *
+     * @throws JsonProcessingException if the line cannot be parsed
+     */
+    @Test
+    public void givenFifoSupplier_whenCalculatingWithParallelScan_thenSupplierArithmeticIsKept() throws JsonProcessingException {
+        final String line = """
+                [{"operation":"buy", "unit-cost":10.00, "quantity": 10000},
+                {"operation":"buy", "unit-cost":30.00, "quantity": 10000},
+                {"operation":"sell", "unit-cost":40.00, "quantity": 10000}]""";
+
+        assertEquals(new BigDecimal("60000.00"), new TaxCalculator.Builder().with(FifoStock::new).build().calculate(line).tax(2));
+        assertEquals(new BigDecimal("60000.00"), new TaxCalculator.Builder().with(FifoStock::new).parallelScan(2).build().calculate(line).tax(2));
+    }
+
+    /**
+     * Generates a random single-ticker history of profitable and losing sales, regularly selling every share.
+     */
+    private static List<Operation> history(final long seed, final int size) {
+        final SplittableRandom random = new SplittableRandom(seed);
+        final List<Operation> operations = new ArrayList<>(size);
+        double price = 50;
+        long shares = 0;
+
+        for (int i = 0; i < size; i++) {
+            price = Math.max(0.01, price * Math.exp(0.05 * random.nextGaussian()));
+            final BigDecimal unitCost = BigDecimal.valueOf(price).setScale(2, RoundingMode.HALF_EVEN).max(new BigDecimal("0.01"));
+
+            if (shares == 0 || random.nextDouble() < 0.55) {
+                final long quantity = 1 + random.nextLong(1_000);
+                operations.add(new Operation("buy", unitCost, quantity, null));
+                shares += quantity;
+            } else {
+                final long quantity = random.nextDouble() < 0.1 ? shares : 1 + random.nextLong(shares);
+                operations.add(new Operation("sell", unitCost, quantity, null));
+                shares -= quantity;
+            }
+        }
+        return operations;
+    }
+
+    private static BigDecimal[] sequential(final List<Operation> operations, final TaxRegime taxRegime) {
+        final Stock stock = new Stock(taxRegime);
+        final BigDecimal[] taxes = new BigDecimal[operations.size()];
+        for (int i = 0; i < taxes.length; i++) {
+            final Operation op = operations.get(i);
+            if ("buy".equals(op.operation())) {
+                stock.buy(op.quantity(), op.unitCost());
+                taxes[i] = BigDecimal.ZERO;
+            } else {
+                taxes[i] = stock.sell(op.quantity(), op.unitCost());
+            }
+        }
+        return taxes;
+    }
+}
@@ -0,0 +1,157 @@
+package me.thiagorigonatti.capitalgains.core;
+
+import me.thiagorigonatti.capitalgains.bench.WorkloadGenerator;
+import me.thiagorigonatti.capitalgains.exception.InvalidOperationException;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static me.thiagorigonatti.capitalgains.core.TaxCalculatorRunner.run;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the streaming mode of {@link TaxCalculator}, ensuring that lines parsed and answered operation by
+ * operation produce exactly the output of lines read whole.
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class StreamLinesTest {
+
+    /**
+     * Default constructor for StreamLinesTest.
+     */
+    public StreamLinesTest() {
+    }
+
+    /**
+     * Test case for a generated workload, unfiltered, filtered by an {@link OperationFilter} and by a plain predicate.
+     * Verifies that streaming produces the same output as reading each line whole.
+     */
+    @Test
+    public void givenWorkload_whenStreaming_thenOutputMatchesWholeLines() {
+        final byte[] workload = new WorkloadGenerator.Builder().lines(30).operationsPerLine(400).tickers(6).build().generate();
+        final OperationFilter operationFilter = new OperationFilter.Builder().tickers("T0001", "T0003").build();
+
+        assertEquals(run(new TaxCalculator.Builder(), workload), run(new TaxCalculator.Builder().streamLines(true), workload));
+        assertEquals(run(new TaxCalculator.Builder().onlyFor(operationFilter), workload),
+                run(new TaxCalculator.Builder().onlyFor(operationFilter).streamLines(true), workload));
+        assertEquals(run(new TaxCalculator.Builder().onlyFor(op -> !"T0002".equals(op.ticker())), workload),
+                run(new TaxCalculator.Builder().onlyFor(op -> !"T0002".equals(op.ticker())).streamLines(true), workload));
+    }
+
+    /**
+     * Test case for a blank line in the middle of the input. Verifies that streaming stops there, as reading whole
+     * lines does.
+     */
+    @Test
+    public void givenBlankLine_whenStreaming_thenReadingStops() {
+        final byte[] input = """
+                [{"operation":"buy", "unit-cost":10.00, "quantity": 10000}]
+                [{"operation":"buy", "unit-cost":10.00, "quantity": 10000},
+                {"operation":"sell", "unit-cost":20.00, "quantity": 5000}]
+                   \s
+                [{"operation":"buy", "unit-cost":10.00, "quantity": 10000}]
+                """.getBytes(StandardCharsets.UTF_8);
+
+        final String output = run(new TaxCalculator.Builder().streamLines(true), input);
+
+        assertEquals("[{\"tax\":\"0.0\"}]" + System.lineSeparator() + "[{\"tax\":\"0.0\"},{\"tax\":\"10000.0\"}]" + System.lineSeparator(), output);
+    }
+
+    /**
+     * Test case for one line of 200,000 operations produced on the fly. Verifies that every operation is answered
+     * without the line ever existing as a whole.
+     */
+    @Test
+    public void givenGiganticLine_whenStreaming_thenEveryOperationIsAnswered() {
+        final int operations = 200_000;
+        final CountingOutputStream outputStream = new CountingOutputStream();
+
+        new TaxCalculator.Builder()
+                .from(new GiganticLine(operations), 8_192)
+                .dumpTo(outputStream, 8_192)
+                .streamLines(true)
+                .build()
+                .run();
+
+        assertEquals(operations / 2, outputStream.taxes - outputStream.zeroTaxes);
+        assertEquals(operations, outputStream.taxes);
+    }
+
+    /**
+     * Test case for an unknown operation type. Verifies that streaming rejects it as reading whole lines does.
+     */
+    @Test
+    public void givenUnknownOperation_whenStreaming_thenInvalidOperationExceptionIsThrown() {
+        final byte[] input = "[{\"operation\":\"short\", \"unit-cost\":10.00, \"quantity\": 100}]\n".getBytes(StandardCharsets.UTF_8);
+
+        assertThrows(InvalidOperationException.class, () -> run(new TaxCalculator.Builder().streamLines(true), input));
+    }
+
+    /**
+     * Input stream yielding a single line of alternating buys and taxable sells of one ticker, generated on demand.
+     */
+    private static final class GiganticLine extends InputStream {
+
+        private static final byte[] BUY = "{\"operation\":\"buy\",\"unit-cost\":10.00,\"quantity\":10000}".getBytes(StandardCharsets.UTF_8);
+        private static final byte[] SELL = "{\"operation\":\"sell\",\"unit-cost\":20.00,\"quantity\":10000}".getBytes(StandardCharsets.UTF_8);
+
+        private final int operations;
+        private int operation = -1;
+        private byte[] chunk = {'['};
+        private int position;
+
+        private GiganticLine(final int operations) {
+            this.operations = operations;
+        }
+
+        @Override
+        public int read() {
+            if (position == chunk.length) {
+                if (++operation > operations) return -1;
+                chunk = operation == operations ? new byte[]{']', '\n'} : operation % 2 == 0 ? BUY : SELL;
+                position = 0;
+                if (operation > 0 && operation < operations) return ',';
+            }
+            return chunk[position++];
+        }
+    }
+
+    /**
+     * Output stream counting the taxes written, and those that are zero, without keeping the output.
+     */
+    private static final class CountingOutputStream extends OutputStream {
+
+        private static final byte[] TAX = "\"tax\":\"".getBytes(StandardCharsets.UTF_8);
+
+        private int matched;
+        private boolean inTax;
+        private boolean zero;
+        private long taxes;
+        private long zeroTaxes;
+
+        @Override
+        public void write(final int b) {
+            if (inTax) {
+                if (b == '"') {
+                    inTax = false;
+                    taxes++;
+                    if (zero) zeroTaxes++;
+                } else if (b != '0' && b != '.') {
+                    zero = false;
+                }
+                return;
+            }
+            matched = b == TAX[matched] ? matched + 1 : b == TAX[0] ? 1 : 0;
+            if (matched == TAX.length) {
+                matched = 0;
+                inTax = true;
+                zero = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package me.thiagorigonatti.capitalgains.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Test fixture running a {@link TaxCalculator} end to end over in-memory input, as the command line does over the
+ * standard streams, and returning what it writes.
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public final class TaxCalculatorRunner {
+
+    private static final int BUFFER_SIZE = 8_192;
+
+    private TaxCalculatorRunner() {
+    }
+
+    /**
+     * Runs the calculator configured by the builder over the given input and returns its output.
+     *
+     * @param builder the builder, configured except for its input and output
+     * @param input   the input bytes
+     * @return the output bytes
+     */
+    public static byte[] runBytes(final TaxCalculator.Builder builder, final byte[] input) {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        builder.from(new ByteArrayInputStream(input), BUFFER_SIZE).dumpTo(outputStream, BUFFER_SIZE).build().run();
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Runs the calculator configured by the builder over the given input and returns its output as UTF-8 text.
+     *
+     * @param builder the builder, configured except for its input and output
+     * @param input   the input bytes
+     * @return the output as a string
+     */
+    public static String run(final TaxCalculator.Builder builder, final byte[] input) {
+        return new String(runBytes(builder, input), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Runs the calculator configured by the builder over the given UTF-8 input and returns its output.
+     *
+     * @param builder the builder, configured except for its input and output
+     * @param input   the input lines
+     * @return the output as a string
+     */
+    public static String run(final TaxCalculator.Builder builder, final String input) {
+        return run(builder, input.getBytes(StandardCharsets.UTF_8));
+    }
+}
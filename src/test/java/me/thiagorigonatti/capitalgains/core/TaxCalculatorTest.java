@@ -1,5 +1,6 @@
 package me.thiagorigonatti.capitalgains.core;
 
+import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import me.thiagorigonatti.capitalgains.exception.InsufficientSharesException;
@@ -12,6 +13,11 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -350,4 +356,219 @@ public class TaxCalculatorTest {
         assertEquals(BigDecimal.valueOf(1_000).setScale(1, RoundingMode.HALF_EVEN), getTax(input, 3));
         assertEquals(BigDecimal.valueOf(1_000).setScale(1, RoundingMode.HALF_EVEN), getTax(input, 4));
     }
+
+    /**
+     * Test case for the lazy result view returned by {@code calculate}. It verifies that zero-tax entries share
+     * the {@link TaxResult#ZERO} constant and that taxes are only formatted when read.
+     *
+     * @throws JsonProcessingException if there is an error processing the JSON input
+     */
+    @Test
+    public void givenBuyAndTaxableSell_whenCalculating_thenResultsAreLazyAndZeroIsShared() throws JsonProcessingException {
+
+        final String input = """
+                [{"operation":"buy", "unit-cost":10.00, "quantity": 10000},{"operation":"sell", "unit-cost":20.00, "quantity": 5000}]
+                """;
+
+        final TaxResults taxResults = taxCalculator.calculate(input);
+
+        assertEquals(2, taxResults.size());
+        assertTrue(taxResults.isZero(0));
+        assertSame(TaxResult.ZERO, taxResults.get(0));
+        assertEquals(0, new BigDecimal("10000.00").compareTo(taxResults.tax(1)));
+        assertEquals("10000.0", taxResults.formatted(1));
+        assertEquals("[{\"tax\":\"0.0\"},{\"tax\":\"10000.0\"}]", taxCalculator.getObjectMapper().writeValueAsString(taxResults));
+    }
+
+    /**
+     * Test case for a declarative {@link OperationFilter} pushed down into the parser. It verifies that the taxes
+     * match the ones obtained with an equivalent arbitrary predicate, and that rejected operations are never
+     * materialized, so an unparseable unit cost on a filtered-out ticker is ignored.
+     *
+     * @throws JsonProcessingException if there is an error processing the JSON input
+     */
+    @Test
+    public void givenOperationFilter_whenCalculatingTax_thenNonMatchingOperationsAreSkippedByTheParser() throws JsonProcessingException {
+
+        final String input = """
+                [{"operation":"buy", "ticker":"MANU", "unit-cost":250.00, "quantity":1000},{"operation":"buy", "ticker":"AAPL","unit-cost":750.00, "quantity":1000},{"operation":"sell", "ticker":"MANU", "unit-cost":210.00, "quantity":500},{"operation":"sell", "ticker":"MANU", "unit-cost":300.00, "quantity":500},{"operation":"sell", "unit-cost":"n/a", "ticker":"AAPL", "quantity":1000}]
+                """;
+
+        final OperationFilter operationFilter = new OperationFilter.Builder().tickers("MANU").build();
+
+        final TaxResults pushedDown = new TaxCalculator.Builder().onlyFor(operationFilter).build().calculate(input);
+        final TaxResults fallback = new TaxCalculator.Builder().onlyFor(op -> "MANU".equals(op.ticker())).build()
+                .calculate(input.replace("\"n/a\"", "755.00"));
+
+        assertEquals(3, pushedDown.size());
+        assertEquals(fallback.size(), pushedDown.size());
+        for (int i = 0; i < pushedDown.size(); i++) {
+            assertEquals(fallback.formatted(i), pushedDown.formatted(i));
+        }
+        assertEquals("1000.0", pushedDown.formatted(2));
+
+        final OperationFilter sellsOnly = new OperationFilter.Builder().operations("sell").quantityBetween(1, 500).build();
+        assertTrue(sellsOnly.test(new Operation("sell", BigDecimal.TEN, 500, null)));
+        assertFalse(sellsOnly.test(new Operation("sell", BigDecimal.TEN, 501, null)));
+        assertFalse(sellsOnly.test(new Operation("buy", BigDecimal.TEN, 1, null)));
+    }
+
+    /**
+     * Test case for an operation without a quantity and a pushed-down {@link OperationFilter} with a quantity range
+     * excluding zero. Verifies that the parser rejects it like {@link OperationFilter#test(Operation)} does.
+     *
+     * @throws JsonProcessingException if there is an error processing the JSON input
+     */
+    @Test
+    public void givenOperationWithoutQuantity_whenFilteringByQuantity_thenPushdownAndFallbackAgree() throws JsonProcessingException {
+
+        final String input = """
+                [{"operation":"buy", "unit-cost":10.00, "quantity":100},{"operation":"buy", "unit-cost":10.00},{"operation":"sell", "unit-cost":20.00, "quantity":100}]
+                """;
+
+        final OperationFilter operationFilter = new OperationFilter.Builder().quantityBetween(1, 500).build();
+
+        final TaxResults pushedDown = new TaxCalculator.Builder().onlyFor(operationFilter).build().calculate(input);
+        final TaxResults fallback = new TaxCalculator.Builder().onlyFor(operationFilter::test).build().calculate(input);
+
+        assertEquals(2, fallback.size());
+        assertEquals(fallback.size(), pushedDown.size());
+        for (int i = 0; i < pushedDown.size(); i++) {
+            assertEquals(fallback.formatted(i), pushedDown.formatted(i));
+        }
+    }
+
+    /**
+     * Test case for an operation accepted by a pushed-down {@link OperationFilter} with an unparseable unit cost or
+     * quantity. Verifies that a {@link JsonParseException} naming the field is thrown, as for any other malformed line.
+     */
+    @Test
+    public void givenOperationFilter_whenAcceptedOperationHasInvalidNumber_thenJsonParseExceptionIsThrown() {
+
+        final TaxCalculator taxCalculator = new TaxCalculator.Builder().onlyFor(new OperationFilter.Builder().tickers("MANU").build()).build();
+
+        final JsonParseException unitCost = assertThrows(JsonParseException.class, () -> taxCalculator.calculate("""
+                [{"operation":"buy", "ticker":"MANU", "unit-cost":"n/a", "quantity":1000}]"""));
+        final JsonParseException quantity = assertThrows(JsonParseException.class, () -> taxCalculator.calculate("""
+                [{"operation":"buy", "ticker":"MANU", "unit-cost":250.00, "quantity":"many"}]"""));
+
+        assertTrue(unitCost.getMessage().startsWith("Invalid value for field \"unit-cost\": \"n/a\""), unitCost.getMessage());
+        assertTrue(quantity.getMessage().startsWith("Invalid value for field \"quantity\": \"many\""), quantity.getMessage());
+        assertNotNull(unitCost.getLocation());
+    }
+
+    /**
+     * Test case for sharing one calculator. Verifies that many threads calling {@code calculate} on the same instance
+     * get the same formatted taxes as a single thread.
+     *
+     * @throws Exception if a calculation fails
+     */
+    @Test
+    public void givenSharedCalculator_whenCalculatingFromManyThreads_thenResultsMatchSingleThread() throws Exception {
+        final TaxCalculator taxCalculator = new TaxCalculator.Builder().build();
+        final String line = """
+                [{"operation":"buy", "ticker":"AAA", "unit-cost":10.00, "quantity": 10000},
+                {"operation":"buy", "ticker":"BBB", "unit-cost":7.33, "quantity": 9000},
+                {"operation":"sell", "ticker":"AAA", "unit-cost":20.07, "quantity": 5000},
+                {"operation":"sell", "ticker":"BBB", "unit-cost":12.91, "quantity": 4000},
+                {"operation":"sell", "ticker":"AAA", "unit-cost":5.00, "quantity": 5000}]""";
+
+        final TaxResults expected = taxCalculator.calculate(line);
+
+        final ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executorService.submit(() -> {
+                    for (int i = 0; i < 5_000; i++) {
+                        final TaxResults actual = taxCalculator.calculate(line);
+                        assertEquals(expected.size(), actual.size());
+                        for (int j = 0; j < expected.size(); j++) assertEquals(expected.formatted(j), actual.formatted(j));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) future.get();
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Test case for stock reuse. Verifies that a stock returned to the pool behaves like a new one on the next line.
+     *
+     * @throws JsonProcessingException if a line cannot be parsed
+     */
+    @Test
+    public void givenStocksReusedAcrossLines_whenCalculating_thenEachLineStartsFromAnEmptyPosition() throws JsonProcessingException {
+        final TaxCalculator taxCalculator = new TaxCalculator.Builder().build();
+
+        final TaxResults first = taxCalculator.calculate("[{\"operation\":\"buy\", \"unit-cost\":10.00, \"quantity\": 10000},{\"operation\":\"sell\", \"unit-cost\":5.00, \"quantity\": 5000}]");
+        final TaxResults second = taxCalculator.calculate("[{\"operation\":\"buy\", \"unit-cost\":10.00, \"quantity\": 10000},{\"operation\":\"sell\", \"unit-cost\":20.00, \"quantity\": 5000}]");
+
+        assertTrue(first.isZero(1));
+        assertEquals(new BigDecimal("10000.00"), second.tax(1));
+    }
+
+    /**
+     * Test case for {@link Stock#reset()}. Verifies that a reset stock holds no shares and no carried loss.
+     */
+    @Test
+    public void givenTradedStock_whenReset_thenItBehavesLikeANewStock() {
+        final Stock stock = new Stock();
+        stock.buy(10_000, new BigDecimal("10.00"));
+        stock.sell(5_000, new BigDecimal("5.00"));
+
+        stock.reset();
+
+        assertThrows(InsufficientSharesException.class, () -> stock.sell(1, new BigDecimal("10.00")));
+        stock.buy(10_000, new BigDecimal("10.00"));
+        assertEquals(new BigDecimal("10000.00"), stock.sell(5_000, new BigDecimal("20.00")));
+    }
+
+    /**
+     * Test case for a user supplier across lines. Verifies that a subclass without a {@code reset()} override gets a
+     * new instance for every line, and that an instance the supplier shares between lines is never reset.
+     *
+     * @throws JsonProcessingException if a line cannot be parsed
+     */
+    @Test
+    public void givenUserSupplier_whenCalculatingLines_thenItsStocksAreNeitherPooledNorReset() throws JsonProcessingException {
+        final List<CountingStock> created = new ArrayList<>();
+        final TaxCalculator counting = new TaxCalculator.Builder().with(() -> {
+            final CountingStock stock = new CountingStock();
+            created.add(stock);
+            return stock;
+        }).build();
+        final String buy = "[{\"operation\":\"buy\", \"unit-cost\":10.00, \"quantity\": 10000}]";
+
+        counting.calculate(buy);
+        counting.calculate(buy);
+
+        assertEquals(2, created.size());
+        assertEquals(1, created.get(0).buys);
+        assertEquals(1, created.get(1).buys);
+
+        final Stock shared = new Stock();
+        final TaxCalculator sharing = new TaxCalculator.Builder().with(() -> shared).build();
+
+        sharing.calculate(buy);
+        final TaxResults sale = sharing.calculate("[{\"operation\":\"sell\", \"unit-cost\":20.00, \"quantity\": 5000}]");
+
+        assertEquals(new BigDecimal("10000.00"), sale.tax(0));
+    }
+
+    /**
+     * Stock counting its purchases, without overriding {@link Stock#reset()}.
+     */
+    private static final class CountingStock extends Stock {
+
+        private int buys;
+
+        @Override
+        protected void buy(final long quantity, final BigDecimal unitCost) {
+            buys++;
+            super.buy(quantity, unitCost);
+        }
+    }
 }
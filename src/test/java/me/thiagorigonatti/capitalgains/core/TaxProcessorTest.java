@@ -0,0 +1,254 @@
+package me.thiagorigonatti.capitalgains.core;
+
+import me.thiagorigonatti.capitalgains.exception.InsufficientSharesException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the {@link TaxProcessor} and {@link LinePublisher} classes, driving them with in-memory publishers
+ * and subscribers to check results, backpressure and failure propagation.
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class TaxProcessorTest {
+
+    private static final String LINE = """
+            [{"operation":"buy", "ticker":"AAA", "unit-cost":10.00, "quantity": 10000},
+            {"operation":"buy", "ticker":"BBB", "unit-cost":20.00, "quantity": 10000},
+            {"operation":"sell", "ticker":"AAA", "unit-cost":5.00, "quantity": 5000},
+            {"operation":"sell", "ticker":"BBB", "unit-cost":25.00, "quantity": 5000},
+            {"operation":"sell", "ticker":"AAA", "unit-cost":20.00, "quantity": 3000}]""";
+
+    /**
+     * Default constructor for TaxProcessorTest.
+     */
+    public TaxProcessorTest() {
+    }
+
+    /**
+     * Synchronous publisher of a fixed list of items that records how many were requested.
+     */
+    private static class ListPublisher<T> implements Flow.Publisher<T> {
+
+        private final List<T> items;
+        private long requested;
+        private boolean cancelled;
+
+        private ListPublisher(final List<T> items) {
+            this.items = items;
+        }
+
+        @Override
+        public void subscribe(final Flow.Subscriber<? super T> subscriber) {
+            final Iterator<T> iterator = items.iterator();
+            subscriber.onSubscribe(new Flow.Subscription() {
+
+                private long demand;
+                private boolean emitting;
+
+                @Override
+                public void request(final long n) {
+                    requested += n;
+                    demand += n;
+                    if (emitting) return;
+                    emitting = true;
+                    while (demand > 0 && iterator.hasNext() && !cancelled) {
+                        demand--;
+                        subscriber.onNext(iterator.next());
+                    }
+                    emitting = false;
+                    if (!iterator.hasNext() && !cancelled) {
+                        cancelled = true;
+                        subscriber.onComplete();
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled = true;
+                }
+            });
+        }
+    }
+
+    /**
+     * Subscriber requesting a fixed number of items up front, and then one more after each item if asked to.
+     */
+    private static class CollectingSubscriber<T> implements Flow.Subscriber<T> {
+
+        private final long initialDemand;
+        private final boolean requestMore;
+        private final List<T> items = new ArrayList<>();
+        private final CompletableFuture<List<T>> result = new CompletableFuture<>();
+        private Flow.Subscription subscription;
+
+        private CollectingSubscriber(final long initialDemand, final boolean requestMore) {
+            this.initialDemand = initialDemand;
+            this.requestMore = requestMore;
+        }
+
+        @Override
+        public void onSubscribe(final Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(initialDemand);
+        }
+
+        @Override
+        public void onNext(final T item) {
+            items.add(item);
+            if (requestMore) subscription.request(1);
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            result.complete(items);
+        }
+    }
+
+    private static List<Operation> operations(final TaxCalculator taxCalculator) throws Exception {
+        return taxCalculator.getObjectMapper().readerForListOf(Operation.class).readValue(LINE);
+    }
+
+    /**
+     * Test case for streaming operations through a processor. Verifies that the taxes emitted one by one match the
+     * taxes calculated for the whole line.
+     *
+     * @throws Exception if the stream fails
+     */
+    @Test
+    public void givenOperationsFromSubmissionPublisher_whenProcessed_thenTaxesMatchLineCalculation() throws Exception {
+        final TaxCalculator taxCalculator = new TaxCalculator.Builder().build();
+        final TaxResults expected = taxCalculator.calculate(LINE);
+
+        final TaxProcessor taxProcessor = taxCalculator.processor();
+        final CollectingSubscriber<TaxResult> subscriber = new CollectingSubscriber<>(1, true);
+        taxProcessor.subscribe(subscriber);
+
+        try (final SubmissionPublisher<Operation> publisher = new SubmissionPublisher<>()) {
+            publisher.subscribe(taxProcessor);
+            for (Operation operation : operations(taxCalculator)) publisher.submit(operation);
+        }
+
+        final List<TaxResult> taxes = subscriber.result.get(10, TimeUnit.SECONDS);
+        assertEquals(expected.size(), taxes.size());
+        for (int i = 0; i < taxes.size(); i++) assertEquals(expected.get(i), taxes.get(i));
+        assertEquals(TaxResult.of(new BigDecimal("1000.00")), taxes.get(4));
+    }
+
+    /**
+     * Test case for backpressure. Verifies that the processor requests from upstream only what the subscriber asked
+     * for, plus one for each operation rejected by the predicate.
+     *
+     * @throws Exception if the operations cannot be parsed
+     */
+    @Test
+    public void givenLimitedDemand_whenProcessing_thenUpstreamIsAskedOnlyForWhatIsNeeded() throws Exception {
+        final TaxCalculator taxCalculator = new TaxCalculator.Builder().onlyFor(op -> "AAA".equals(op.ticker())).build();
+        final ListPublisher<Operation> publisher = new ListPublisher<>(operations(taxCalculator));
+
+        final TaxProcessor taxProcessor = taxCalculator.processor();
+        final CollectingSubscriber<TaxResult> subscriber = new CollectingSubscriber<>(2, false);
+        taxProcessor.subscribe(subscriber);
+        publisher.subscribe(taxProcessor);
+
+        assertEquals(2, subscriber.items.size());
+        assertEquals(3, publisher.requested);
+        assertFalse(subscriber.result.isDone());
+
+        subscriber.subscription.request(1);
+
+        assertEquals(List.of(TaxResult.ZERO, TaxResult.ZERO, TaxResult.of(new BigDecimal("1000.00"))), subscriber.items);
+        assertEquals(5, publisher.requested);
+        assertTrue(subscriber.result.isDone());
+    }
+
+    /**
+     * Test case for a failing operation. Verifies that the failure reaches the subscriber and cancels the upstream.
+     */
+    @Test
+    public void givenSellWithoutShares_whenProcessing_thenErrorIsSignalledAndUpstreamCancelled() {
+        final TaxCalculator taxCalculator = new TaxCalculator.Builder().build();
+        final ListPublisher<Operation> publisher = new ListPublisher<>(List.of(
+                new Operation("sell", BigDecimal.TEN, 10, null),
+                new Operation("buy", BigDecimal.TEN, 10, null)));
+
+        final TaxProcessor taxProcessor = taxCalculator.processor();
+        final CollectingSubscriber<TaxResult> subscriber = new CollectingSubscriber<>(Long.MAX_VALUE, false);
+        taxProcessor.subscribe(subscriber);
+        publisher.subscribe(taxProcessor);
+
+        assertTrue(publisher.cancelled);
+        assertTrue(subscriber.items.isEmpty());
+        final Exception exception = assertThrows(Exception.class, subscriber.result::join);
+        assertInstanceOf(InsufficientSharesException.class, exception.getCause());
+    }
+
+    /**
+     * Test case for the line publisher. Verifies that every line is published on demand as the results
+     * {@link TaxCalculator#calculate(String)} gives for it, stopping at the first blank line.
+     *
+     * @throws Exception if the stream fails
+     */
+    @Test
+    public void givenInputLines_whenPublished_thenEachLineBecomesItsTaxResults() throws Exception {
+        final String secondLine = "[{\"operation\":\"buy\", \"unit-cost\":10.00, \"quantity\": 100},{\"operation\":\"sell\", \"unit-cost\":15.00, \"quantity\": 50}]";
+        final String input = LINE.replace("\n", "") + "\n" + secondLine + "\n\n" + secondLine + "\n";
+
+        final TaxCalculator taxCalculator = new TaxCalculator.Builder()
+                .from(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), 1_024)
+                .build();
+
+        final ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            final CollectingSubscriber<TaxResults> subscriber = new CollectingSubscriber<>(1, true);
+            taxCalculator.publisher(executorService).subscribe(subscriber);
+
+            final List<TaxResults> lines = subscriber.result.get(10, TimeUnit.SECONDS);
+            assertEquals(2, lines.size());
+
+            final TaxResults[] expected = {taxCalculator.calculate(LINE), taxCalculator.calculate(secondLine)};
+            for (int l = 0; l < expected.length; l++) {
+                assertEquals(expected[l].size(), lines.get(l).size());
+                for (int i = 0; i < expected[l].size(); i++) assertEquals(expected[l].formatted(i), lines.get(l).formatted(i));
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Test case for a second subscriber. Verifies that it is rejected with an error.
+     */
+    @Test
+    public void givenSecondSubscriber_whenSubscribing_thenItIsRejected() {
+        final TaxProcessor taxProcessor = new TaxCalculator.Builder().build().processor();
+        taxProcessor.subscribe(new CollectingSubscriber<>(1, false));
+
+        final CollectingSubscriber<TaxResult> second = new CollectingSubscriber<>(1, false);
+        taxProcessor.subscribe(second);
+
+        final Exception exception = assertThrows(Exception.class, second.result::join);
+        assertInstanceOf(IllegalStateException.class, exception.getCause());
+    }
+}
@@ -0,0 +1,143 @@
+package me.thiagorigonatti.capitalgains.core;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the {@link TaxRegime} class, ensuring its precomputed constants, the rules it configures and the
+ * use of several regimes side by side.
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class TaxRegimeTest {
+
+    private static final String LOSS_THEN_GAIN = """
+            [{"operation":"buy", "ticker":"PETR4", "unit-cost":10.00, "quantity": 10000},
+            {"operation":"sell", "ticker":"PETR4", "unit-cost":5.00, "quantity": 5000},
+            {"operation":"sell", "ticker":"PETR4", "unit-cost":20.00, "quantity": 3000},
+            {"operation":"buy", "ticker":"HGLG11", "unit-cost":100.00, "quantity": 100},
+            {"operation":"sell", "ticker":"HGLG11", "unit-cost":110.00, "quantity": 100}]""";
+
+    /**
+     * Default constructor for TaxRegimeTest.
+     */
+    public TaxRegimeTest() {
+    }
+
+    /**
+     * Test case for the default regime. Verifies its scaled constants and that stocks return the same precomputed
+     * instances on every call.
+     */
+    @Test
+    public void givenDefaultRegime_whenReadingConstants_thenTheyArePrecomputedAndShared() {
+        assertEquals(2_000, TaxRegime.DEFAULT.rateBasisPoints());
+        assertEquals(2_000_000, TaxRegime.DEFAULT.thresholdCents());
+
+        final Stock first = new Stock();
+        final Stock second = new Stock();
+        assertSame(first.taxRate(), second.taxRate());
+        assertSame(first.threshold(), first.threshold());
+        assertSame(TaxRegime.DEFAULT, first.taxRegime());
+    }
+
+    /**
+     * Test case for two calculators under different regimes. Verifies that each applies its own rate and threshold.
+     *
+     * @throws JsonProcessingException if the line cannot be parsed
+     */
+    @Test
+    public void givenTwoRegimes_whenCalculatingSideBySide_thenEachAppliesItsOwnRules() throws JsonProcessingException {
+        final TaxRegime reduced = new TaxRegime.Builder().name("reduced").rate(new BigDecimal("0.15")).threshold(new BigDecimal("35000")).build();
+
+        final TaxResults byDefault = new TaxCalculator.Builder().build().calculate(LOSS_THEN_GAIN);
+        final TaxResults byReduced = new TaxCalculator.Builder().taxedUnder(reduced).build().calculate(LOSS_THEN_GAIN);
+
+        assertEquals(new BigDecimal("1000.00"), byDefault.tax(2));
+        assertEquals(new BigDecimal("750.00"), byReduced.tax(2));
+        assertTrue(byDefault.isZero(4));
+        assertTrue(byReduced.isZero(4));
+    }
+
+    /**
+     * Test case for regimes per asset class. Verifies that real estate funds (tickers ending in 11) are taxed with no
+     * exemption while stocks keep the default rules.
+     *
+     * @throws JsonProcessingException if the line cannot be parsed
+     */
+    @Test
+    public void givenRegimePerAssetClass_whenCalculating_thenEachTickerUsesItsRegime() throws JsonProcessingException {
+        final TaxRegime realEstateFunds = new TaxRegime.Builder().name("fii").threshold(BigDecimal.ZERO).build();
+
+        final TaxResults taxResults = new TaxCalculator.Builder()
+                .taxedUnder(ticker -> ticker != null && ticker.endsWith("11") ? realEstateFunds : TaxRegime.DEFAULT)
+                .build()
+                .calculate(LOSS_THEN_GAIN);
+
+        assertEquals(new BigDecimal("1000.00"), taxResults.tax(2));
+        assertEquals(new BigDecimal("200.00"), taxResults.tax(4));
+    }
+
+    /**
+     * Test case for a regime without loss carry. Verifies that an earlier loss no longer reduces the tax.
+     *
+     * @throws JsonProcessingException if the line cannot be parsed
+     */
+    @Test
+    public void givenRegimeWithoutLossCarry_whenCalculating_thenLossesDoNotOffsetGains() throws JsonProcessingException {
+        final TaxRegime noCarry = new TaxRegime.Builder().carryLosses(false).build();
+
+        final TaxResults taxResults = new TaxCalculator.Builder().taxedUnder(noCarry).build().calculate(LOSS_THEN_GAIN);
+
+        assertEquals(new BigDecimal("6000.00"), taxResults.tax(2));
+    }
+
+    /**
+     * Test case for rounding. Verifies that the regime's scale and rounding mode are applied to the tax.
+     */
+    @Test
+    public void givenRoundingRule_whenSelling_thenTaxIsRoundedAsConfigured() {
+        final TaxRegime roundedUp = new TaxRegime.Builder().rounding(0, RoundingMode.UP).build();
+        final Stock stock = new Stock(roundedUp);
+        stock.buy(10_000, new BigDecimal("10.00"));
+
+        assertEquals(new BigDecimal("5001"), stock.sell(1_000, new BigDecimal("35.0025")));
+    }
+
+    /**
+     * Test case for invalid constants. Verifies that a rate or threshold that cannot be scaled exactly is rejected.
+     */
+    @Test
+    public void givenTooPreciseConstants_whenBuilding_thenThrowIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> new TaxRegime.Builder().rate(new BigDecimal("0.123456")).build());
+        assertThrows(IllegalArgumentException.class, () -> new TaxRegime.Builder().threshold(new BigDecimal("0.001")).build());
+        assertThrows(IllegalArgumentException.class, () -> new TaxRegime.Builder().rate(new BigDecimal("1.5")));
+    }
+
+    /**
+     * Test case for settling sales directly. Verifies that a loss is carried only when the regime carries losses, that
+     * a sale up to the threshold keeps the carried loss, and that a taxable profit is offset by it before the rate.
+     */
+    @Test
+    public void givenCarriedLoss_whenSettlingSales_thenTaxAndLossFollowTheRules() {
+        final TaxRegime forgetful = new TaxRegime.Builder().carryLosses(false).build();
+        final BigDecimal loss = new BigDecimal("1000.00");
+
+        assertEquals(new TaxRegime.Settlement(BigDecimal.ZERO, new BigDecimal("1500.00")),
+                TaxRegime.DEFAULT.settle(new BigDecimal("30000.00"), new BigDecimal("-500.00"), loss));
+        assertEquals(new TaxRegime.Settlement(BigDecimal.ZERO, loss),
+                forgetful.settle(new BigDecimal("30000.00"), new BigDecimal("-500.00"), loss));
+        assertEquals(new TaxRegime.Settlement(BigDecimal.ZERO, loss),
+                TaxRegime.DEFAULT.settle(new BigDecimal("20000.00"), new BigDecimal("5000.00"), loss));
+        assertEquals(new TaxRegime.Settlement(BigDecimal.ZERO, new BigDecimal("400.00")),
+                TaxRegime.DEFAULT.settle(new BigDecimal("30000.00"), new BigDecimal("600.00"), loss));
+        assertEquals(new TaxRegime.Settlement(new BigDecimal("800.00"), BigDecimal.ZERO),
+                TaxRegime.DEFAULT.settle(new BigDecimal("30000.00"), new BigDecimal("5000.00"), loss));
+    }
+}
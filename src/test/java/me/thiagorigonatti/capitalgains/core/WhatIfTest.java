@@ -0,0 +1,118 @@
+package me.thiagorigonatti.capitalgains.core;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import me.thiagorigonatti.capitalgains.bench.WorkloadGenerator;
+import me.thiagorigonatti.capitalgains.exception.InvalidOperationException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the what-if mode of {@link TaxCalculator}, ensuring that evaluating several {@link TaxRegime}s in a
+ * single pass produces the same taxes as one run per regime.
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class WhatIfTest {
+
+    private static final TaxRegime REDUCED = new TaxRegime.Builder().name("reduced").rate(new BigDecimal("0.15")).threshold(new BigDecimal("35000")).build();
+    private static final TaxRegime NO_EXEMPTION = new TaxRegime.Builder().name("no-exemption").threshold(BigDecimal.ZERO).build();
+    private static final TaxRegime NO_CARRY = new TaxRegime.Builder().name("no-carry").carryLosses(false).rounding(0, RoundingMode.UP).build();
+
+    /**
+     * Default constructor for WhatIfTest.
+     */
+    public WhatIfTest() {
+    }
+
+    /**
+     * Test case for generated lines with several tickers. Verifies that every column equals the taxes of a separate
+     * calculator running under that column's regime.
+     *
+     * @throws JsonProcessingException if a line cannot be parsed
+     */
+    @Test
+    public void givenGeneratedLines_whenCalculatingWhatIf_thenEachColumnMatchesASeparateRun() throws JsonProcessingException {
+        final TaxRegime[] taxRegimes = {TaxRegime.DEFAULT, REDUCED, NO_EXEMPTION, NO_CARRY};
+        final String workload = new String(new WorkloadGenerator.Builder().lines(50).operationsPerLine(200).tickers(5).build().generate(), StandardCharsets.UTF_8);
+
+        final TaxCalculator whatIf = new TaxCalculator.Builder().whatIf(taxRegimes).build();
+
+        for (String line : workload.split("\n")) {
+            final WhatIfResults whatIfResults = whatIf.calculateWhatIf(line, new WhatIfResults(whatIf.getTaxFormatter(), taxRegimes.length, 16));
+
+            for (int column = 0; column < taxRegimes.length; column++) {
+                final TaxResults taxResults = new TaxCalculator.Builder().taxedUnder(taxRegimes[column]).build().calculate(line);
+
+                assertEquals(taxResults.size(), whatIfResults.rows());
+                for (int row = 0; row < taxResults.size(); row++) {
+                    assertEquals(0, taxResults.tax(row).compareTo(whatIfResults.tax(row, column)), taxRegimes[column] + " row " + row);
+                    assertEquals(taxResults.formatted(row), whatIfResults.formatted(row, column));
+                }
+            }
+        }
+    }
+
+    /**
+     * Test case for a loss followed by a gain. Verifies that the loss is offset only in the column that carries it.
+     *
+     * @throws JsonProcessingException if the line cannot be parsed
+     */
+    @Test
+    public void givenLossThenGain_whenCalculatingWhatIf_thenLossIsCarriedPerColumn() throws JsonProcessingException {
+        final String line = """
+                [{"operation":"buy", "unit-cost":10.00, "quantity": 10000},
+                {"operation":"sell", "unit-cost":5.00, "quantity": 5000},
+                {"operation":"sell", "unit-cost":20.00, "quantity": 3000}]""";
+
+        final TaxCalculator taxCalculator = new TaxCalculator.Builder().whatIf(TaxRegime.DEFAULT, NO_CARRY).build();
+        final WhatIfResults whatIfResults = taxCalculator.calculateWhatIf(line, new WhatIfResults(taxCalculator.getTaxFormatter(), 2, 1));
+
+        assertEquals(3, whatIfResults.rows());
+        assertEquals(2, whatIfResults.columns());
+        assertEquals(0, whatIfResults.tax(1, 0).signum());
+        assertEquals(0, whatIfResults.tax(1, 1).signum());
+        assertEquals(new BigDecimal("1000.00"), whatIfResults.tax(2, 0));
+        assertEquals(0, new BigDecimal("6000").compareTo(whatIfResults.tax(2, 1)));
+    }
+
+    /**
+     * Test case for the {@code -whatif} argument. Verifies that each operation is written with one tax per regime.
+     */
+    @Test
+    public void givenWhatIfArgument_whenRunning_thenEachOperationHasOneTaxPerRegime() {
+        final String input = """
+                [{"operation":"buy", "unit-cost":10.00, "quantity": 10000},{"operation":"sell", "unit-cost":20.00, "quantity": 5000}]
+                """;
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        new TaxCalculator.Builder(new String[]{"-whatif=0.20:20000,0.15:60000"})
+                .from(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), 8_192)
+                .dumpTo(outputStream, 8_192)
+                .build()
+                .run();
+
+        assertEquals("[{\"taxes\":[\"0.0\",\"0.0\"]},{\"taxes\":[\"10000.0\",\"7500.0\"]}]" + System.lineSeparator(),
+                outputStream.toString(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Test case for an unknown operation type. Verifies that it is rejected as in the single-regime mode.
+     */
+    @Test
+    public void givenUnknownOperation_whenCalculatingWhatIf_thenInvalidOperationExceptionIsThrown() {
+        final TaxCalculator taxCalculator = new TaxCalculator.Builder().whatIf(TaxRegime.DEFAULT, REDUCED).build();
+
+        assertThrows(InvalidOperationException.class, () -> taxCalculator.calculateWhatIf(
+                "[{\"operation\":\"short\", \"unit-cost\":10.00, \"quantity\": 100}]",
+                new WhatIfResults(taxCalculator.getTaxFormatter(), 2, 1)));
+    }
+}
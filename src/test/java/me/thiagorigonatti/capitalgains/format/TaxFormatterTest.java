@@ -0,0 +1,111 @@
+package me.thiagorigonatti.capitalgains.format;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link TaxFormatter}, ensuring the default formatter matches the {@code #0.0} {@link DecimalFormat}
+ * it replaces and that both formatters can be used from many threads at once.
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class TaxFormatterTest {
+
+    /**
+     * Default constructor for TaxFormatterTest.
+     */
+    public TaxFormatterTest() {
+    }
+
+    private static DecimalFormat oneDecimalFormat() {
+        final DecimalFormatSymbols decimalFormatSymbols = new DecimalFormatSymbols();
+        decimalFormatSymbols.setDecimalSeparator('.');
+        return new DecimalFormat("#0.0", decimalFormatSymbols);
+    }
+
+    /**
+     * Test case for the default formatter on unscaled amounts. Verifies that ties, negative amounts, zero and the
+     * {@code long} extremes are formatted exactly like {@code #0.0}.
+     */
+    @Test
+    public void givenUnscaledAmounts_whenFormattingWithOneDecimal_thenOutputMatchesDecimalFormat() {
+        final DecimalFormat decimalFormat = oneDecimalFormat();
+        final TaxFormatter taxFormatter = TaxFormatter.oneDecimal();
+
+        final long[] edgeCases = {0, 1, 4, 5, 6, 15, 25, 35, 95, 99, 100, 105, 115, 1_000_000, -1, -4, -5, -6, -15, -105,
+                Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE - 5, Long.MIN_VALUE + 5};
+        for (long cents : edgeCases) {
+            assertEquals(decimalFormat.format(BigDecimal.valueOf(cents, 2)), taxFormatter.format(cents), "cents=" + cents);
+        }
+
+        final Random random = new Random(32);
+        for (int i = 0; i < 100_000; i++) {
+            final long cents = i % 2 == 0 ? random.nextLong() : random.nextInt(10_000_000) - 1_000;
+            assertEquals(decimalFormat.format(BigDecimal.valueOf(cents, 2)), taxFormatter.format(cents), "cents=" + cents);
+        }
+    }
+
+    /**
+     * Test case for the default formatter on amounts of other scales. Verifies that the output matches {@code #0.0}.
+     */
+    @Test
+    public void givenBigDecimalAmounts_whenFormattingWithOneDecimal_thenOutputMatchesDecimalFormat() {
+        final DecimalFormat decimalFormat = oneDecimalFormat();
+        final TaxFormatter taxFormatter = TaxFormatter.oneDecimal();
+
+        for (String amount : new String[]{"0", "5", "0.05", "0.15", "0.25", "-0.04", "-0.05", "-0.06", "1.2345", "1.25000001",
+                "123456789012345678901234567890.45", "-3.75", "1E+3", "0.000"}) {
+            final BigDecimal tax = new BigDecimal(amount);
+            assertEquals(decimalFormat.format(tax), taxFormatter.format(tax), "amount=" + amount);
+        }
+    }
+
+    /**
+     * Test case for the {@link DecimalFormat} adapter. Verifies that it formats like the wrapped format, is not
+     * affected by later changes to it, and gives correct results when shared by many threads.
+     *
+     * @throws Exception if a formatting task fails
+     */
+    @Test
+    public void givenDecimalFormatAdapter_whenSharedAcrossThreads_thenOutputMatchesDecimalFormat() throws Exception {
+        final DecimalFormat decimalFormat = new DecimalFormat("#,##0.00");
+        final TaxFormatter taxFormatter = TaxFormatter.of(decimalFormat);
+        final DecimalFormat reference = (DecimalFormat) decimalFormat.clone();
+        decimalFormat.applyPattern("#0");
+
+        final ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                final long seed = t;
+                futures.add(executorService.submit(() -> {
+                    final Random random = new Random(seed);
+                    for (int i = 0; i < 20_000; i++) {
+                        final long cents = random.nextInt(100_000_000);
+                        final String expected;
+                        synchronized (reference) {
+                            expected = reference.format(BigDecimal.valueOf(cents, 2));
+                        }
+                        assertEquals(expected, taxFormatter.format(cents));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) future.get();
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+}
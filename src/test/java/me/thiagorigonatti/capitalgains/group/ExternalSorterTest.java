@@ -0,0 +1,183 @@
+package me.thiagorigonatti.capitalgains.group;
+
+import me.thiagorigonatti.capitalgains.bench.WorkloadGenerator;
+import me.thiagorigonatti.capitalgains.core.TaxCalculator;
+import me.thiagorigonatti.capitalgains.exception.MissingAccountException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+import static me.thiagorigonatti.capitalgains.core.TaxCalculatorRunner.run;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link ExternalSorter} and the account grouping of {@link TaxCalculator}, ensuring spilled runs are
+ * merged back in key and input order, and that interleaved accounts are calculated as if each had its own line.
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class ExternalSorterTest {
+
+    private Path directory;
+
+    /**
+     * Default constructor for ExternalSorterTest.
+     */
+    public ExternalSorterTest() {
+    }
+
+    /**
+     * Creates the directory runs are spilled under.
+     *
+     * @throws IOException if the directory cannot be created
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("external-sorter-test");
+    }
+
+    /**
+     * Deletes the directory runs are spilled under.
+     *
+     * @throws IOException if a file cannot be deleted
+     */
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (final Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) Files.delete(path);
+        }
+    }
+
+    /**
+     * Test case for a sorter whose budget holds only a few lines. Verifies that it spills, that lines come back sorted
+     * by key and in input order within a key, and that closing it deletes every run.
+     *
+     * @throws IOException if a run cannot be written or read
+     */
+    @Test
+    public void givenTinyBudget_whenSorting_thenRunsAreMergedStablyAndDeleted() throws IOException {
+        final SplittableRandom random = new SplittableRandom(7);
+        final List<KeyedLine> expected = new ArrayList<>();
+
+        try (final ExternalSorter externalSorter = new ExternalSorter(2_048, directory)) {
+            for (int i = 0; i < 1_000; i++) {
+                final String key = "ação-" + random.nextInt(20);
+                final String line = "line " + i;
+                externalSorter.add(key, line);
+                expected.add(new KeyedLine(key, i, line));
+            }
+            expected.sort(Comparator.comparing(KeyedLine::key).thenComparingLong(KeyedLine::sequence));
+
+            assertTrue(externalSorter.spilledRuns() > 1);
+
+            final ExternalSorter.Cursor cursor = externalSorter.sorted();
+            for (KeyedLine keyedLine : expected) {
+                assertTrue(cursor.hasNext());
+                final KeyedLine actual = cursor.next();
+                assertEquals(keyedLine.key(), actual.key());
+                assertEquals(keyedLine.line(), actual.line());
+            }
+            assertFalse(cursor.hasNext());
+        }
+
+        try (final Stream<Path> paths = Files.list(directory)) {
+            assertEquals(0, paths.count());
+        }
+    }
+
+    /**
+     * Test case for a sorter spilling every line, leaving several times more runs than it merges at once. Verifies
+     * that the runs are merged in passes, that lines still come back sorted and stable, and that closing the sorter
+     * deletes the intermediate runs too.
+     *
+     * @throws IOException if a run cannot be written or read
+     */
+    @Test
+    public void givenMoreRunsThanFanIn_whenSorting_thenRunsAreMergedInPasses() throws IOException {
+        final SplittableRandom random = new SplittableRandom(13);
+        final List<KeyedLine> expected = new ArrayList<>();
+        final int lines = ExternalSorter.MAX_FAN_IN * 3 + 5;
+
+        try (final ExternalSorter externalSorter = new ExternalSorter(1, directory)) {
+            for (int i = 0; i < lines; i++) {
+                final String key = "key-" + random.nextInt(50);
+                final String line = "line " + i;
+                externalSorter.add(key, line);
+                expected.add(new KeyedLine(key, i, line));
+            }
+            expected.sort(Comparator.comparing(KeyedLine::key).thenComparingLong(KeyedLine::sequence));
+
+            assertEquals(lines, externalSorter.spilledRuns());
+
+            final ExternalSorter.Cursor cursor = externalSorter.sorted();
+            assertTrue(externalSorter.mergedRuns() <= ExternalSorter.MAX_FAN_IN);
+            for (KeyedLine keyedLine : expected) {
+                assertTrue(cursor.hasNext());
+                final KeyedLine actual = cursor.next();
+                assertEquals(keyedLine.key(), actual.key());
+                assertEquals(keyedLine.line(), actual.line());
+            }
+            assertFalse(cursor.hasNext());
+        }
+
+        try (final Stream<Path> paths = Files.list(directory)) {
+            assertEquals(0, paths.count());
+        }
+    }
+
+    /**
+     * Test case for the operations of several accounts interleaved line by line and grouped with a budget small
+     * enough to spill. Verifies that each account is calculated exactly as its operations would be on one line.
+     *
+     * @throws IOException if the input cannot be split into operations
+     */
+    @Test
+    public void givenInterleavedAccounts_whenGrouping_thenEachAccountMatchesItsOwnLine() throws IOException {
+        final String[] lines = new String(new WorkloadGenerator.Builder().lines(5).operationsPerLine(40).tickers(2).build().generate(),
+                StandardCharsets.UTF_8).split("\n");
+
+        final List<List<String>> operations = new ArrayList<>();
+        for (String line : lines) operations.add(List.of(line.substring(2, line.length() - 2).split("\\},\\{")));
+
+        final StringBuilder input = new StringBuilder();
+        final int[] next = new int[lines.length];
+        final SplittableRandom random = new SplittableRandom(11);
+        for (int remaining = lines.length * 40; remaining > 0; remaining--) {
+            int account;
+            do account = random.nextInt(lines.length); while (next[account] == operations.get(account).size());
+            input.append("{\"account\":\"A").append(account).append("\",").append(operations.get(account).get(next[account]++)).append("}\n");
+        }
+
+        final StringBuilder expected = new StringBuilder();
+        for (int account = 0; account < lines.length; account++) {
+            final String taxes = run(new TaxCalculator.Builder(), lines[account] + "\n")
+                    .replaceAll("\\{\"tax\":(\"[^\"]*\")}", "$1").trim();
+            expected.append("{\"account\":\"A").append(account).append("\",\"taxes\":").append(taxes).append("}").append(System.lineSeparator());
+        }
+
+        assertEquals(expected.toString(), run(new TaxCalculator.Builder().groupByAccount(true).groupMemoryBudget(4_096).spillTo(directory), input.toString()));
+    }
+
+    /**
+     * Test case for an operation without an account. Verifies that a {@link MissingAccountException} is thrown.
+     */
+    @Test
+    public void givenOperationWithoutAccount_whenGrouping_thenMissingAccountExceptionIsThrown() {
+        final String input = "{\"account\":\"A1\",\"operation\":\"buy\",\"unit-cost\":10.00,\"quantity\":100}\n"
+                + "{\"operation\":\"buy\",\"unit-cost\":10.00,\"quantity\":100}\n";
+
+        assertThrows(MissingAccountException.class, () -> run(new TaxCalculator.Builder().groupByAccount(true).spillTo(directory), input));
+    }
+}
@@ -0,0 +1,144 @@
+package me.thiagorigonatti.capitalgains.io;
+
+import me.thiagorigonatti.capitalgains.bench.WorkloadGenerator;
+import me.thiagorigonatti.capitalgains.core.TaxCalculator;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link BufferTuner}, ensuring buffer sizes follow the sampled line length and throughput within
+ * their bounds, that the flush policy follows the output target, and that auto-tuning never changes the output.
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class BufferTunerTest {
+
+    /**
+     * Default constructor for BufferTunerTest.
+     */
+    public BufferTunerTest() {
+    }
+
+    /**
+     * Test case for sizing. Verifies that sizes hold the larger of the throughput target and the minimum lines, are
+     * powers of two, and stay within bounds.
+     */
+    @Test
+    public void givenLineLengthAndThroughput_whenSizing_thenPowerOfTwoWithinBounds() {
+        assertEquals(BufferTuner.MIN_BUFFER_SIZE, BufferTuner.bufferSize(100, 100_000));
+        assertEquals(32 * 1_024, BufferTuner.bufferSize(2_000, 100_000));
+        assertEquals(1_024 * 1_024, BufferTuner.bufferSize(100, 80_000_000));
+        assertEquals(BufferTuner.MAX_BUFFER_SIZE, BufferTuner.bufferSize(10_000_000, 1e12));
+        assertEquals(BufferTuner.MIN_BUFFER_SIZE, BufferTuner.bufferSize(0, 0));
+    }
+
+    /**
+     * Test case for the output targets. Verifies that a terminal is flushed every line with a small buffer, a pipe
+     * is capped at its capacity and any other stream uses the measured size, holding at least the minimum lines.
+     *
+     * @throws IOException if writing fails
+     */
+    @Test
+    public void givenOutputTargets_whenTuning_thenFlushPolicyFollowsTarget() throws IOException {
+        final BufferTuner terminal = sampled(BufferTuner.OutputTarget.TERMINAL);
+        final BufferTuner pipe = sampled(BufferTuner.OutputTarget.PIPE);
+        final BufferTuner stream = sampled(BufferTuner.OutputTarget.STREAM);
+
+        assertTrue(terminal.flushEveryLine());
+        assertEquals(BufferTuner.MIN_BUFFER_SIZE, terminal.bufferSizeOut());
+        assertFalse(pipe.flushEveryLine());
+        assertEquals(64 * 1_024, pipe.bufferSizeOut());
+        assertFalse(stream.flushEveryLine());
+        assertTrue(stream.bufferSizeOut() >= 32 * 1_024);
+        assertEquals(1, Integer.bitCount(stream.bufferSizeOut()));
+        assertTrue(stream.bufferSizeIn() >= 16 * 1_024);
+        assertTrue(stream.bufferSizeIn() <= stream.bufferSizeOut());
+        assertEquals(BufferTuner.OutputTarget.STREAM, BufferTuner.OutputTarget.of(new ByteArrayOutputStream()));
+    }
+
+    /**
+     * Test case for reading the tuned values too early. Verifies that an {@link IllegalStateException} is thrown.
+     */
+    @Test
+    public void givenUntunedTuner_whenReadingSizes_thenIllegalStateExceptionIsThrown() {
+        assertThrows(IllegalStateException.class, () -> new BufferTuner(BufferTuner.OutputTarget.FILE).bufferSizeIn());
+    }
+
+    /**
+     * Test case for a workload larger than the sampling window. Verifies that resizing the buffers mid-run produces
+     * the same output as the configured sizes.
+     */
+    @Test
+    public void givenLargeWorkload_whenAutoTuning_thenOutputIsUnchanged() {
+        final byte[] workload = new WorkloadGenerator.Builder().lines(240).operationsPerLine(1_000).tickers(4).build().generate();
+
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        new TaxCalculator.Builder().from(new ByteArrayInputStream(workload), 8_192).dumpTo(expected, 8_192).build().run();
+
+        final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        new TaxCalculator.Builder(new String[]{"-auto"}).from(new ByteArrayInputStream(workload), 8_192).dumpTo(actual, 8_192).build().run();
+
+        assertTrue(workload.length > 4 * 1_024 * 1_024);
+        assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+    }
+
+    /**
+     * Test case for auto-tuning while writing to an output file. Verifies that the tuner targets a file, whatever
+     * the standard output is connected to.
+     *
+     * @throws IOException if the output file cannot be created or deleted
+     */
+    @Test
+    public void givenOutputFile_whenAutoTuning_thenTargetIsFile() throws IOException {
+        final byte[] workload = new WorkloadGenerator.Builder().lines(240).operationsPerLine(1_000).tickers(4).build().generate();
+        final Path output = Files.createTempFile("buffer-tuner-test", ".txt");
+        final ByteArrayOutputStream log = new ByteArrayOutputStream();
+        final PrintStream err = System.err;
+
+        try {
+            System.setErr(new PrintStream(log, true, StandardCharsets.UTF_8));
+            new TaxCalculator.Builder(new String[]{"-auto", "-t"}).from(new ByteArrayInputStream(workload), 8_192).dumpTo(output).build().run();
+        } finally {
+            System.setErr(err);
+            Files.delete(output);
+        }
+
+        assertTrue(log.toString(StandardCharsets.UTF_8).contains("target=FILE"), log.toString(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Samples a fixed window of 1,000 lines of 1,000 characters producing 2,000 characters each, with the time
+     * window so long that only the character count closes it.
+     *
+     * @param outputTarget where the output ends up
+     * @return the tuned tuner
+     * @throws IOException if writing fails
+     */
+    private static BufferTuner sampled(final BufferTuner.OutputTarget outputTarget) throws IOException {
+        final BufferTuner bufferTuner = new BufferTuner(outputTarget, Long.MAX_VALUE, 1_000L * 1_001);
+        final Writer writer = bufferTuner.counting(new StringWriter());
+        final String output = "x".repeat(2_000);
+
+        boolean done = false;
+        while (!done) {
+            writer.write(output);
+            done = bufferTuner.sample(1_000);
+        }
+        writer.flush();
+        bufferTuner.tune();
+        return bufferTuner;
+    }
+}
@@ -0,0 +1,176 @@
+package me.thiagorigonatti.capitalgains.io;
+
+import me.thiagorigonatti.capitalgains.bench.WorkloadGenerator;
+import me.thiagorigonatti.capitalgains.core.TaxCalculator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link Checkpoint} and {@link OffsetLineReader}, ensuring checkpoints are stored atomically, line
+ * offsets are exact, and that a checkpointed run resumed after a crash produces the output of an uninterrupted run.
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class CheckpointTest {
+
+    private Path directory;
+
+    /**
+     * Default constructor for CheckpointTest.
+     */
+    public CheckpointTest() {
+    }
+
+    /**
+     * Creates the directory holding the files of a test.
+     *
+     * @throws IOException if the directory cannot be created
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("checkpoint-test");
+    }
+
+    /**
+     * Deletes the directory holding the files of a test.
+     *
+     * @throws IOException if a file cannot be deleted
+     */
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (final Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) Files.delete(path);
+        }
+    }
+
+    /**
+     * Test case for writing a checkpoint twice. Verifies that the last one is read back and no temporary file is left.
+     *
+     * @throws IOException if the checkpoint cannot be written or read
+     */
+    @Test
+    public void givenCheckpoint_whenWrittenTwice_thenLastOneIsReadBack() throws IOException {
+        final Path path = directory.resolve("run.ckpt");
+
+        new Checkpoint(10, 20, 1).write(path);
+        new Checkpoint(1_000_000_000_000L, 42, 7).write(path);
+
+        assertEquals(new Checkpoint(1_000_000_000_000L, 42, 7), Checkpoint.read(path));
+        try (final Stream<Path> paths = Files.list(directory)) {
+            assertEquals(1, paths.count());
+        }
+
+        Files.writeString(path, "not a checkpoint");
+        assertThrows(StreamCorruptedException.class, () -> Checkpoint.read(path));
+    }
+
+    /**
+     * Test case for lines with mixed terminators, multi-byte characters and no final terminator, read through a
+     * buffer smaller than a line. Verifies each line and the offset after it.
+     *
+     * @throws IOException if reading fails
+     */
+    @Test
+    public void givenMixedTerminators_whenReadingLines_thenOffsetsAreExact() throws IOException {
+        final byte[] input = "[1]\r\n[\"ação\"]\n\n[3]".getBytes(StandardCharsets.UTF_8);
+
+        try (final OffsetLineReader reader = new OffsetLineReader(Channels.newChannel(new ByteArrayInputStream(input)), 3, 100)) {
+            assertEquals("[1]", reader.readLine());
+            assertEquals(105, reader.offset());
+            assertEquals("[\"ação\"]", reader.readLine());
+            assertEquals(116, reader.offset());
+            assertEquals("", reader.readLine());
+            assertEquals(117, reader.offset());
+            assertEquals("[3]", reader.readLine());
+            assertEquals(100 + input.length, reader.offset());
+            assertNull(reader.readLine());
+        }
+    }
+
+    /**
+     * Test case for a run that crashed after its checkpoint, leaving a partial line behind. Verifies that resuming
+     * truncates the partial output and produces exactly the output of an uninterrupted run.
+     *
+     * @throws IOException if a file cannot be read or written
+     */
+    @Test
+    public void givenCrashAfterCheckpoint_whenResuming_thenOutputMatchesUninterruptedRun() throws IOException {
+        final byte[] workload = new WorkloadGenerator.Builder().lines(40).operationsPerLine(50).tickers(3).build().generate();
+        final Path input = directory.resolve("input.txt");
+        final Path output = directory.resolve("output.txt");
+        final Path checkpoint = directory.resolve("output.ckpt");
+        Files.write(input, workload);
+
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        new TaxCalculator.Builder().from(new ByteArrayInputStream(workload), 8_192).dumpTo(expected, 8_192).build().run();
+
+        final int lines = 15;
+        final byte[] expectedBytes = expected.toByteArray();
+        final long inputOffset = offsetAfterLines(workload, lines);
+        final long outputOffset = offsetAfterLines(expectedBytes, lines);
+        Files.write(output, Arrays.copyOf(expectedBytes, (int) outputOffset + 25));
+        new Checkpoint(inputOffset, outputOffset, lines).write(checkpoint);
+
+        run(input, output, checkpoint, true);
+
+        assertArrayEquals(expectedBytes, Files.readAllBytes(output));
+        assertEquals(new Checkpoint(workload.length, expectedBytes.length, 40), Checkpoint.read(checkpoint));
+    }
+
+    /**
+     * Test case for a checkpointed run over an output file left by another run. Verifies that without resuming the
+     * output is rewritten from the start.
+     *
+     * @throws IOException if a file cannot be read or written
+     */
+    @Test
+    public void givenExistingOutput_whenNotResuming_thenRunStartsOver() throws IOException {
+        final Path input = directory.resolve("input.txt");
+        final Path output = directory.resolve("output.txt");
+        final Path checkpoint = directory.resolve("output.ckpt");
+        Files.writeString(input, "[{\"operation\":\"buy\", \"unit-cost\":10.00, \"quantity\": 10000}]\n");
+        Files.writeString(output, "left over by an older run, much longer than the new output\n");
+
+        run(input, output, checkpoint, false);
+
+        assertEquals("[{\"tax\":\"0.0\"}]" + System.lineSeparator(), Files.readString(output));
+        assertEquals(1, Checkpoint.read(checkpoint).lines());
+    }
+
+    private static void run(final Path input, final Path output, final Path checkpoint, final boolean resume) {
+        new TaxCalculator.Builder()
+                .from(input)
+                .dumpTo(output)
+                .checkpointedTo(checkpoint)
+                .checkpointEvery(Duration.ZERO)
+                .resume(resume)
+                .build()
+                .run();
+    }
+
+    private static long offsetAfterLines(final byte[] bytes, final int lines) {
+        int seen = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == '\n' && ++seen == lines) return i + 1;
+        }
+        throw new IllegalArgumentException("Fewer than " + lines + " lines");
+    }
+}
@@ -0,0 +1,208 @@
+package me.thiagorigonatti.capitalgains.io;
+
+import me.thiagorigonatti.capitalgains.core.TaxCalculator;
+import me.thiagorigonatti.capitalgains.exception.UnsupportedCompressionException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static me.thiagorigonatti.capitalgains.core.TaxCalculatorRunner.run;
+import static me.thiagorigonatti.capitalgains.core.TaxCalculatorRunner.runBytes;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link CompressedStreams}, ensuring compressed input is detected and decoded transparently,
+ * both sequentially and block by block, and that compressed output is readable by standard gzip decoders.
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class CompressedStreamsTest {
+
+    /**
+     * Default constructor for CompressedStreamsTest.
+     */
+    public CompressedStreamsTest() {
+    }
+
+    private static final String INPUT = """
+            [{"operation":"buy", "unit-cost":10.00, "quantity": 10000},{"operation":"sell", "unit-cost":20.00, "quantity": 5000},{"operation":"sell", "unit-cost":5.00, "quantity": 5000}]
+            [{"operation":"buy", "unit-cost":10.00, "quantity": 10000},{"operation":"sell", "unit-cost":5.00, "quantity": 5000},{"operation":"sell", "unit-cost":20.00, "quantity": 3000}]
+            """;
+
+    /**
+     * Compresses the given bytes as several concatenated plain gzip members.
+     *
+     * @param bytes   the bytes to compress
+     * @param members the number of members
+     * @return the compressed bytes
+     * @throws IOException if compression fails
+     */
+    private static byte[] multiMemberGzip(final byte[] bytes, final int members) throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final int step = bytes.length / members + 1;
+        for (int offset = 0; offset < bytes.length; offset += step) {
+            try (final GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream) {
+                @Override
+                public void close() throws IOException {
+                    finish();
+                }
+            }) {
+                gzipOutputStream.write(bytes, offset, Math.min(step, bytes.length - offset));
+            }
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Test case for multi-member gzip input. Verifies that it is decoded transparently and produces the same
+     * output as the uncompressed input.
+     *
+     * @throws IOException if compression fails
+     */
+    @Test
+    public void givenMultiMemberGzipInput_whenRunning_thenOutputMatchesPlainInput() throws IOException {
+
+        final byte[] plain = INPUT.getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(run(new TaxCalculator.Builder(), plain), run(new TaxCalculator.Builder(), multiMemberGzip(plain, 3)));
+    }
+
+    /**
+     * Test case for plain multi-member gzip arriving over a pipe with pauses between members, as from
+     * {@code (cat m1.gz; sleep 1; cat m2.gz) | ...}. Verifies that every member is decoded, not only those already
+     * available when the previous one ends.
+     *
+     * @throws Exception if compression, decompression or the writer thread fails
+     */
+    @Test
+    public void givenMultiMemberGzipOverSlowPipe_whenDecoding_thenEveryMemberIsDecoded() throws Exception {
+
+        final byte[] plain = INPUT.repeat(50).getBytes(StandardCharsets.UTF_8);
+        final byte[][] members = new byte[3][];
+        final int step = plain.length / members.length + 1;
+        for (int i = 0; i < members.length; i++) {
+            final int offset = i * step;
+            members[i] = multiMemberGzip(Arrays.copyOfRange(plain, offset, Math.min(plain.length, offset + step)), 1);
+        }
+
+        final PipedInputStream pipedInputStream = new PipedInputStream(1_024);
+        final PipedOutputStream pipedOutputStream = new PipedOutputStream(pipedInputStream);
+        final Thread writer = Thread.ofPlatform().start(() -> {
+            try (pipedOutputStream) {
+                for (byte[] member : members) {
+                    pipedOutputStream.write(member);
+                    pipedOutputStream.flush();
+                    Thread.sleep(200);
+                }
+            } catch (IOException | InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        try (final InputStream inputStream = CompressedStreams.decoding(pipedInputStream, 4_096)) {
+            assertArrayEquals(plain, inputStream.readAllBytes());
+        }
+        writer.join();
+    }
+
+    /**
+     * Test case for a gzip member whose trailer does not match its content. Verifies that decoding fails instead of
+     * returning the corrupt data silently.
+     *
+     * @throws IOException if compression fails
+     */
+    @Test
+    public void givenCorruptGzipTrailer_whenDecoding_thenIOExceptionIsThrown() throws IOException {
+
+        final byte[] gzip = multiMemberGzip(INPUT.getBytes(StandardCharsets.UTF_8), 1);
+        gzip[gzip.length - 8] ^= 1;
+
+        try (final InputStream inputStream = CompressedStreams.decoding(new ByteArrayInputStream(gzip), 8_192)) {
+            assertThrows(IOException.class, inputStream::readAllBytes);
+        }
+    }
+
+    /**
+     * Test case for block-compressed data spanning many members. Verifies that it round-trips through the parallel
+     * decoder and that standard gzip decoders read it as well.
+     *
+     * @throws IOException if compression or decompression fails
+     */
+    @Test
+    public void givenBlockGzipData_whenDecoding_thenContentRoundTripsInParallelAndSequentially() throws IOException {
+
+        final byte[] plain = new byte[1_000_000];
+        final Random random = new Random(42);
+        for (int i = 0; i < plain.length; i++) plain[i] = (byte) ('a' + random.nextInt(8));
+
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (final OutputStream outputStream = CompressedStreams.encoding(compressed)) {
+            outputStream.write(plain);
+        }
+
+        try (final InputStream inputStream = CompressedStreams.decoding(new ByteArrayInputStream(compressed.toByteArray()), 4_096)) {
+            assertInstanceOf(PipelinedGzipInputStream.class, inputStream);
+            assertArrayEquals(plain, inputStream.readAllBytes());
+        }
+
+        try (final InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+            assertArrayEquals(plain, inputStream.readAllBytes());
+        }
+    }
+
+    /**
+     * Test case for compressed output. Verifies that the calculator output can be decompressed by a standard
+     * gzip decoder and matches the uncompressed output.
+     *
+     * @throws IOException if decompression fails
+     */
+    @Test
+    public void givenCompressOutput_whenRunning_thenOutputIsGzip() throws IOException {
+
+        final byte[] plain = INPUT.getBytes(StandardCharsets.UTF_8);
+
+        try (final InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(runBytes(new TaxCalculator.Builder().compressOutput(true), plain)))) {
+            assertArrayEquals(runBytes(new TaxCalculator.Builder(), plain), inputStream.readAllBytes());
+        }
+    }
+
+    /**
+     * Test case for zstd input. Verifies that it is detected and rejected with a clear exception.
+     */
+    @Test
+    public void givenZstdInput_whenDecoding_thenThrowUnsupportedCompressionException() {
+
+        final byte[] zstd = {(byte) 0x28, (byte) 0xb5, (byte) 0x2f, (byte) 0xfd, 0, 0};
+
+        assertThrows(UnsupportedCompressionException.class, () -> CompressedStreams.decoding(new ByteArrayInputStream(zstd), 8_192));
+    }
+
+    /**
+     * Test case for plain input, including input shorter than a magic number. Verifies that it is returned untouched.
+     *
+     * @throws IOException if reading fails
+     */
+    @Test
+    public void givenPlainInput_whenDecoding_thenBytesAreUnchanged() throws IOException {
+
+        for (final String text : new String[]{"", "[", "\u001f", INPUT}) {
+            final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            try (final InputStream inputStream = CompressedStreams.decoding(new ByteArrayInputStream(bytes), 8_192)) {
+                assertArrayEquals(bytes, inputStream.readAllBytes());
+            }
+        }
+    }
+}
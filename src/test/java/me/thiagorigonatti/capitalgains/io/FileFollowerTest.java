@@ -0,0 +1,159 @@
+package me.thiagorigonatti.capitalgains.io;
+
+import me.thiagorigonatti.capitalgains.bench.WorkloadGenerator;
+import me.thiagorigonatti.capitalgains.core.TaxCalculator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link FileFollower} and the follow mode of {@link TaxCalculator}, ensuring only complete lines are
+ * processed, and that a follower restarted from its checkpoint produces the output of a single run over the file.
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class FileFollowerTest {
+
+    private Path directory;
+
+    /**
+     * Default constructor for FileFollowerTest.
+     */
+    public FileFollowerTest() {
+    }
+
+    /**
+     * Creates the directory holding the files of a test.
+     *
+     * @throws IOException if the directory cannot be created
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("file-follower-test");
+    }
+
+    /**
+     * Deletes the directory holding the files of a test.
+     *
+     * @throws IOException if a file cannot be deleted
+     */
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (final Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) Files.delete(path);
+        }
+    }
+
+    /**
+     * Test case for a line appended in two writes. Verifies that it is only returned once its terminator is written,
+     * and that the offset only moves past complete lines.
+     *
+     * @throws IOException if the file cannot be read or written
+     */
+    @Test
+    public void givenPartialLine_whenPolling_thenItIsReturnedOnceComplete() throws IOException {
+        final Path path = directory.resolve("input.txt");
+        Files.writeString(path, "[1]\r\n[\"aç");
+
+        try (final FileFollower fileFollower = new FileFollower(path, 4, 0, Duration.ofMillis(10))) {
+            assertEquals("[1]", fileFollower.poll());
+            assertNull(fileFollower.poll());
+            assertEquals(5, fileFollower.offset());
+
+            Files.writeString(path, "ão\"]\n", StandardOpenOption.APPEND);
+
+            assertEquals("[\"ação\"]", fileFollower.poll());
+            assertNull(fileFollower.poll());
+            assertEquals(Files.size(path), fileFollower.offset());
+        }
+    }
+
+    /**
+     * Test case for a followed file truncated below the bytes already read. Verifies that an
+     * {@link IllegalStateException} is thrown.
+     *
+     * @throws IOException if the file cannot be read or written
+     */
+    @Test
+    public void givenTruncatedFile_whenPolling_thenIllegalStateExceptionIsThrown() throws IOException {
+        final Path path = directory.resolve("input.txt");
+        Files.writeString(path, "[1]\n[2]\n");
+
+        try (final FileFollower fileFollower = new FileFollower(path, 64, 0, Duration.ofMillis(10))) {
+            assertEquals("[1]", fileFollower.poll());
+            Files.writeString(path, "[");
+            assertEquals("[2]", fileFollower.poll());
+            assertThrows(IllegalStateException.class, fileFollower::poll);
+        }
+    }
+
+    /**
+     * Test case for a file appended to while followed, with the follower stopped and restarted in between.
+     * Verifies that the results appear as lines are appended and that the final output matches a single run.
+     *
+     * @throws Exception if a file cannot be read or written, or the follower does not stop
+     */
+    @Test
+    public void givenAppendedFile_whenFollowingAcrossRestarts_thenOutputMatchesSingleRun() throws Exception {
+        final byte[] workload = new WorkloadGenerator.Builder().lines(30).operationsPerLine(20).tickers(3).build().generate();
+        final Path input = directory.resolve("input.txt");
+        final Path output = directory.resolve("output.txt");
+
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        new TaxCalculator.Builder().from(new ByteArrayInputStream(workload), 8_192).dumpTo(expected, 8_192).build().run();
+        final byte[] expectedBytes = expected.toByteArray();
+
+        final int firstHalf = offsetAfterLines(workload, 12);
+        Files.write(input, Arrays.copyOf(workload, firstHalf + 30));
+
+        follow(input, output, offsetAfterLines(expectedBytes, 12));
+
+        Files.write(input, Arrays.copyOfRange(workload, firstHalf + 30, workload.length), StandardOpenOption.APPEND);
+
+        follow(input, output, expectedBytes.length);
+
+        assertArrayEquals(expectedBytes, Files.readAllBytes(output));
+        assertEquals(new Checkpoint(workload.length, expectedBytes.length, 30), Checkpoint.read(directory.resolve("output.txt.ckpt")));
+    }
+
+    /**
+     * Follows the input until the output reaches the given length, then stops the follower.
+     */
+    private static void follow(final Path input, final Path output, final long outputLength) throws Exception {
+        final TaxCalculator taxCalculator = new TaxCalculator.Builder().from(input).dumpTo(output).follow(true).build();
+        final Thread thread = new Thread(taxCalculator::run);
+        thread.start();
+
+        final long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+        while ((!Files.exists(output) || Files.size(output) < outputLength) && System.nanoTime() < deadline) Thread.sleep(10);
+
+        taxCalculator.stopFollowing();
+        thread.join(Duration.ofSeconds(10).toMillis());
+        assertFalse(thread.isAlive());
+        assertEquals(outputLength, Files.size(output));
+    }
+
+    private static int offsetAfterLines(final byte[] bytes, final int lines) {
+        int seen = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == '\n' && ++seen == lines) return i + 1;
+        }
+        return bytes.length;
+    }
+}
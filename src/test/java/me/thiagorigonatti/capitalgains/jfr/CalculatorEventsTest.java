@@ -0,0 +1,131 @@
+package me.thiagorigonatti.capitalgains.jfr;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import me.thiagorigonatti.capitalgains.core.TaxCalculator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the {@link CalculatorEvents} class, running the calculator inside an in-process flight recording
+ * and reading back the events it committed.
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class CalculatorEventsTest {
+
+    private static final String INPUT = """
+            [{"operation":"buy", "unit-cost":10.00, "quantity": 10000},{"operation":"sell", "unit-cost":5.00, "quantity": 5000},{"operation":"sell", "unit-cost":20.00, "quantity": 3000}]
+            [{"operation":"buy", "unit-cost":10.00, "quantity": 10000},{"operation":"sell", "unit-cost":20.00, "quantity": 5000}]
+            """;
+
+    /**
+     * Default constructor for CalculatorEventsTest.
+     */
+    public CalculatorEventsTest() {
+    }
+
+    /**
+     * Switches emission off again, as it is JVM-wide.
+     */
+    @AfterEach
+    public void tearDown() {
+        CalculatorEvents.setEnabled(false);
+    }
+
+    private static List<RecordedEvent> record(final String input, final String... args) throws IOException {
+        final Path file = Files.createTempFile("capital-gains", ".jfr");
+        try (final Recording recording = new Recording()) {
+            recording.enable(LineProcessedEvent.class);
+            recording.enable(TaxableSellEvent.class);
+            recording.enable(LossCarriedEvent.class);
+            recording.enable(CalculationFailedEvent.class);
+            recording.start();
+
+            try {
+                new TaxCalculator.Builder(args)
+                        .from(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), 8_192)
+                        .dumpTo(new ByteArrayOutputStream(), 8_192)
+                        .build()
+                        .run();
+            } catch (RuntimeException ignored) {
+            }
+
+            recording.stop();
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file).stream()
+                    .filter(event -> event.getEventType().getName().startsWith("me.thiagorigonatti.capitalgains."))
+                    .toList();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static List<RecordedEvent> ofType(final List<RecordedEvent> events, final String name) {
+        return events.stream().filter(event -> event.getEventType().getName().equals("me.thiagorigonatti.capitalgains." + name)).toList();
+    }
+
+    /**
+     * Test case for the {@code -jfr} flag. Verifies that lines, taxable sales and carried losses are recorded with
+     * their details.
+     *
+     * @throws IOException if the recording cannot be written or read
+     */
+    @Test
+    public void givenJfrFlag_whenRunning_thenDomainEventsAreRecorded() throws IOException {
+        final List<RecordedEvent> events = record(INPUT, "-jfr");
+
+        final List<RecordedEvent> lines = ofType(events, "LineProcessed");
+        assertEquals(2, lines.size());
+        assertEquals(3, lines.get(0).getInt("operations"));
+        assertEquals(INPUT.lines().findFirst().orElseThrow().length(), lines.get(0).getInt("length"));
+
+        final List<RecordedEvent> taxableSells = ofType(events, "TaxableSell");
+        assertEquals(2, taxableSells.size());
+        assertEquals(1000.0, taxableSells.get(0).getDouble("tax"));
+        assertEquals(25000.0, taxableSells.get(0).getDouble("offsetLoss"));
+        assertEquals(10000.0, taxableSells.get(1).getDouble("tax"));
+
+        final List<RecordedEvent> lossesCarried = ofType(events, "LossCarried");
+        assertEquals(1, lossesCarried.size());
+        assertEquals(25000.0, lossesCarried.get(0).getDouble("accumulatedLoss"));
+    }
+
+    /**
+     * Test case for a failing line. Verifies that the exception is recorded.
+     *
+     * @throws IOException if the recording cannot be written or read
+     */
+    @Test
+    public void givenFailingLine_whenRunning_thenFailureIsRecorded() throws IOException {
+        final List<RecordedEvent> events = record("[{\"operation\":\"sell\", \"unit-cost\":10.00, \"quantity\": 5}]\n", "-jfr");
+
+        final List<RecordedEvent> failures = ofType(events, "CalculationFailed");
+        assertEquals(1, failures.size());
+        assertEquals("me.thiagorigonatti.capitalgains.exception.InsufficientSharesException",
+                failures.get(0).getClass("exceptionClass").getName());
+    }
+
+    /**
+     * Test case for running without the flag. Verifies that nothing is recorded even while a recording is running.
+     *
+     * @throws IOException if the recording cannot be written or read
+     */
+    @Test
+    public void givenNoJfrFlag_whenRunning_thenNoEventIsRecorded() throws IOException {
+        assertTrue(record(INPUT).isEmpty());
+    }
+}
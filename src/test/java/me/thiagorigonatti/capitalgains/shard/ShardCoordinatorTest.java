@@ -0,0 +1,112 @@
+package me.thiagorigonatti.capitalgains.shard;
+
+import me.thiagorigonatti.capitalgains.CapitalGainsCalculator;
+import me.thiagorigonatti.capitalgains.core.TaxCalculator;
+import me.thiagorigonatti.capitalgains.exception.WorkerProcessException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+import static me.thiagorigonatti.capitalgains.core.TaxCalculatorRunner.run;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the {@link ShardCoordinator} class, running the calculator across child JVMs started from the test
+ * class path and comparing the merged output with a single-process run.
+ *
+ * @author <a href="https://github.com/thiagorigonatti">Thiago Rigonatti</a>
+ * @version 1.2
+ * @since 1.2
+ */
+public class ShardCoordinatorTest {
+
+    private static final String[] LINES = {
+            "[{\"operation\":\"buy\", \"unit-cost\":10.00, \"quantity\": 100},{\"operation\":\"sell\", \"unit-cost\":15.00, \"quantity\": 50},{\"operation\":\"sell\", \"unit-cost\":15.00, \"quantity\": 50}]",
+            "[{\"operation\":\"buy\", \"unit-cost\":10.00, \"quantity\": 10000},{\"operation\":\"sell\", \"unit-cost\":20.00, \"quantity\": 5000},{\"operation\":\"sell\", \"unit-cost\":5.00, \"quantity\": 5000}]",
+            "[{\"operation\":\"buy\", \"unit-cost\":10.00, \"quantity\": 10000},{\"operation\":\"sell\", \"unit-cost\":5.00, \"quantity\": 5000},{\"operation\":\"sell\", \"unit-cost\":20.00, \"quantity\": 3000}]",
+            "[{\"operation\":\"buy\", \"ticker\":\"AAA\", \"unit-cost\":10.00, \"quantity\": 10000},{\"operation\":\"buy\", \"ticker\":\"BBB\", \"unit-cost\":25.00, \"quantity\": 5000},{\"operation\":\"sell\", \"ticker\":\"AAA\", \"unit-cost\":15.00, \"quantity\": 10000}]"
+    };
+
+    /**
+     * Default constructor for ShardCoordinatorTest.
+     */
+    public ShardCoordinatorTest() {
+    }
+
+    /**
+     * Test case for a sharded run. Verifies that lines dealt across three worker processes come back in input order,
+     * including when the number of lines is not a multiple of the number of workers.
+     */
+    @Test
+    public void givenSeveralWorkers_whenRunning_thenOutputMatchesSingleProcessInOrder() {
+        final StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 25; i++) input.append(LINES[i % LINES.length]).append('\n');
+
+        final String expected = run(new TaxCalculator.Builder(), input.toString());
+        final String sharded = run(new TaxCalculator.Builder(new String[]{"-mp3"}), input.toString());
+
+        assertEquals(25, expected.lines().count());
+        assertEquals(expected, sharded);
+    }
+
+    /**
+     * Test case for lines of very different sizes, alternating between one and two hundred operations, so that one
+     * worker fills its output pipe while the merge waits on the other. Verifies that the run completes with the
+     * output of a single-process run.
+     */
+    @Test
+    public void givenSkewedLineSizes_whenRunning_thenWorkersDoNotDeadlock() {
+        final String small = "[{\"operation\":\"buy\", \"unit-cost\":10.00, \"quantity\": 100}]";
+        final String large = "[" + String.join(",", Collections.nCopies(100,
+                "{\"operation\":\"buy\", \"unit-cost\":10.00, \"quantity\": 100},{\"operation\":\"sell\", \"unit-cost\":15.00, \"quantity\": 100}")) + "]";
+
+        final StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 400; i++) input.append(i % 2 == 0 ? small : large).append('\n');
+
+        final String expected = run(new TaxCalculator.Builder(), input.toString());
+        final String sharded = assertTimeoutPreemptively(Duration.ofSeconds(60), () -> run(new TaxCalculator.Builder(new String[]{"-mp2"}), input.toString()));
+
+        assertEquals(400, expected.lines().count());
+        assertEquals(expected, sharded);
+    }
+
+    /**
+     * Test case for a failing worker. Verifies that the run fails instead of producing output with missing lines.
+     */
+    @Test
+    public void givenLineFailingInAWorker_whenRunning_thenThrowWorkerProcessException() {
+        final String input = LINES[0] + "\n"
+                + "[{\"operation\":\"sell\", \"unit-cost\":10.00, \"quantity\": 5}]\n"
+                + LINES[1] + "\n";
+
+        assertThrows(WorkerProcessException.class, () -> run(new TaxCalculator.Builder(new String[]{"-mp2"}), input));
+    }
+
+    /**
+     * Test case for the worker command. Verifies that the coordinator-only flags are not forwarded to workers.
+     */
+    @Test
+    public void givenCoordinatorArgs_whenBuildingWorkerCommand_thenOnlyWorkerArgsAreForwarded() {
+        final List<String> command = ShardCoordinator.workerCommand(new String[]{"-mp4", "-t", "-gzo", "-bsi1m", "-pel"});
+
+        final int mainClass = command.indexOf(CapitalGainsCalculator.class.getName());
+        assertTrue(mainClass > 0);
+        assertEquals(List.of("-bsi1m", "-pel"), command.subList(mainClass + 1, command.size()));
+    }
+
+    /**
+     * Test case for the worker command of a run over files. Verifies that the file, checkpoint and follow flags are
+     * not forwarded, so that workers read their standard input and write their standard output.
+     */
+    @Test
+    public void givenFileArgs_whenBuildingWorkerCommand_thenWorkersUseTheirStandardStreams() {
+        final List<String> command = ShardCoordinator.workerCommand(new String[]{"-in=operations.txt", "-OUT=results.txt",
+                "-ckpt=run.ckpt", "-resume", "-follow", "-mp4", "-pel"});
+
+        final int mainClass = command.indexOf(CapitalGainsCalculator.class.getName());
+        assertTrue(mainClass > 0);
+        assertEquals(List.of("-pel"), command.subList(mainClass + 1, command.size()));
+    }
+}